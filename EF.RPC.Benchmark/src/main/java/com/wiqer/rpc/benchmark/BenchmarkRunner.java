@@ -0,0 +1,35 @@
+package com.wiqer.rpc.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口：依次以单线程和全部CPU线程运行，并开启GC分析（gc.alloc.rate.norm为每次操作分配的字节数），
+ * 结果写入jmh-result-{线程数}t.json，作为性能改动前后对比的基线
+ * 用法：java -jar target/benchmarks.jar [包含的基准正则]；以"-"开头的参数原样交给JMH命令行
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].startsWith("-")) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark";
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = cpus > 1 ? new int[]{1, cpus} : new int[]{1};
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
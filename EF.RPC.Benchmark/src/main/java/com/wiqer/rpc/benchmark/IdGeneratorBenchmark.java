@@ -0,0 +1,79 @@
+package com.wiqer.rpc.benchmark;
+
+import com.wiqer.rpc.serialize.utils.EFID;
+import com.wiqer.rpc.serialize.utils.EFNETID;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息ID生成：EFNETID/EFID的各生成方式与UUID对比
+ * 取代EFNETID.main中的一次性计时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    @Benchmark
+    public String uuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String efidRandom() {
+        return EFID.randomID().toString();
+    }
+
+    @Benchmark
+    public String efnetidRandom() {
+        return EFNETID.randomID().toString();
+    }
+
+    @Benchmark
+    public String efnetidRandomMore() {
+        return EFNETID.randomID().toStringMore();
+    }
+
+    @Benchmark
+    public String efnetidFast() {
+        return EFNETID.toStringFast();
+    }
+
+    @Benchmark
+    public String efnetidEasyFast8Bit() {
+        return EFNETID.toStringEasyFast8Bit();
+    }
+
+    @Benchmark
+    public String efnetidEasyFast4Bit() {
+        return EFNETID.toStringEasyFast4Bit();
+    }
+
+    @Benchmark
+    public Long efnetidRandomIncrement() {
+        return EFNETID.getRandomIncrementId();
+    }
+
+    @Benchmark
+    public String snowflake() {
+        return EFNETID.getSnowflakeId();
+    }
+
+    @Benchmark
+    public String snowflake64() {
+        return EFNETID.getSnowflake64Id();
+    }
+
+    /**
+     * BaseMsg构造时使用的生成方式
+     */
+    @Benchmark
+    public String snowflake64WithCount() {
+        return EFNETID.getSnowflake64IdWithCount();
+    }
+}
@@ -0,0 +1,70 @@
+package com.wiqer.rpc.benchmark;
+
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ObjectProxy.invoke按Method查方法描述（methodIdentityLookup），对照组为原先每次调用拼接方法键再查表
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyKeyBenchmark {
+
+    private static final String VERSION = "1.0";
+
+    @Param({"0", "1", "3"})
+    public int parameters;
+
+    private Method method;
+    private final ConcurrentHashMap<String, Object> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Method, Object> byMethod = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        for (Method m : Service.class.getMethods()) {
+            byKey.put(ObjectProxy.methodKey(m, VERSION), m);
+            byMethod.put(m, m);
+        }
+        switch (parameters) {
+            case 0:
+                method = Service.class.getMethod("ping");
+                break;
+            case 1:
+                method = Service.class.getMethod("echo", String.class);
+                break;
+            default:
+                method = Service.class.getMethod("query", String.class, int.class, long.class);
+        }
+    }
+
+    @Benchmark
+    public String methodKey() {
+        return ObjectProxy.methodKey(method, VERSION);
+    }
+
+    @Benchmark
+    public Object methodKeyLookup() {
+        return byKey.get(ObjectProxy.methodKey(method, VERSION));
+    }
+
+    @Benchmark
+    public Object methodIdentityLookup() {
+        return byMethod.get(method);
+    }
+
+    public interface Service {
+        String ping();
+
+        String echo(String message);
+
+        String query(String name, int page, long since);
+    }
+}
@@ -0,0 +1,116 @@
+package com.wiqer.rpc.benchmark;
+
+import com.wiqer.rpc.impl.core.improved.OptimizedJsonSerializer;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonSerializer（fastjson）与OptimizedJsonSerializer（Jackson）的序列化/反序列化对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+    /**
+     * 订单明细条数，1条约100字节，50条约4KB
+     */
+    @Param({"1", "50"})
+    public int items;
+
+    /**
+     * OptimizedJsonSerializer的结果缓存只缓存1KB以下的结果
+     */
+    @Param({"false", "true"})
+    public boolean optimizedCache;
+
+    private JsonSerializer json;
+    private OptimizedJsonSerializer optimized;
+    private Order order;
+    private byte[] jsonBytes;
+    private byte[] optimizedBytes;
+
+    @Setup
+    public void setup() {
+        json = new JsonSerializer();
+        optimized = new OptimizedJsonSerializer();
+        optimized.setCacheEnabled(optimizedCache);
+        order = Order.sample(items);
+        jsonBytes = json.SerializeBytes(order);
+        optimizedBytes = optimized.serialize(order);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return json.SerializeBytes(order);
+    }
+
+    @Benchmark
+    public Order jsonDeserialize() {
+        return json.DeSerializeBytes(jsonBytes, Order.class);
+    }
+
+    @Benchmark
+    public byte[] optimizedSerialize() {
+        return optimized.serialize(order);
+    }
+
+    @Benchmark
+    public Order optimizedDeserialize() {
+        return optimized.deserialize(optimizedBytes, Order.class);
+    }
+
+    /**
+     * 测试负载
+     */
+    public static class Order {
+        private long id;
+        private String customer;
+        private double amount;
+        private List<Item> items = new ArrayList<>();
+
+        static Order sample(int itemCount) {
+            Order order = new Order();
+            order.setId(1024L);
+            order.setCustomer("customer-0001");
+            for (int i = 0; i < itemCount; i++) {
+                Item item = new Item();
+                item.setSku("sku-" + i);
+                item.setQuantity(i + 1);
+                item.setPrice(9.99 + i);
+                order.getItems().add(item);
+                order.setAmount(order.getAmount() + item.getPrice() * item.getQuantity());
+            }
+            return order;
+        }
+
+        public long getId() { return id; }
+        public void setId(long id) { this.id = id; }
+        public String getCustomer() { return customer; }
+        public void setCustomer(String customer) { this.customer = customer; }
+        public double getAmount() { return amount; }
+        public void setAmount(double amount) { this.amount = amount; }
+        public List<Item> getItems() { return items; }
+        public void setItems(List<Item> items) { this.items = items; }
+    }
+
+    public static class Item {
+        private String sku;
+        private int quantity;
+        private double price;
+
+        public String getSku() { return sku; }
+        public void setSku(String sku) { this.sku = sku; }
+        public int getQuantity() { return quantity; }
+        public void setQuantity(int quantity) { this.quantity = quantity; }
+        public double getPrice() { return price; }
+        public void setPrice(double price) { this.price = price; }
+    }
+}
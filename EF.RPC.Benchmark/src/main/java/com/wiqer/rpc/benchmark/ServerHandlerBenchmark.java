@@ -0,0 +1,56 @@
+package com.wiqer.rpc.benchmark;
+
+import com.wiqer.rpc.impl.core.RpcServerHandler;
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RpcServerHandler.handle的服务端开销：请求反序列化、参数解码、反射调用和结果序列化
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerHandlerBenchmark {
+
+    /**
+     * 是否挂载MetricsCollector（同时开启阶段耗时记录）
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private RpcServerHandler handler;
+    private Calculator bean;
+    private Method method;
+    private String request;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        JsonSerializer serializer = new JsonSerializer();
+        handler = new RpcServerHandler(serializer);
+        if (metrics) {
+            handler.setMetricsCollector(new MetricsCollector());
+        }
+        bean = new Calculator();
+        method = Calculator.class.getMethod("add", int.class, int.class);
+        request = serializer.SerializeString(new SuperMsgMulti().setMsg(new Object[]{20, 22}));
+    }
+
+    @Benchmark
+    public String handle() throws Throwable {
+        return handler.handle(request, bean, method);
+    }
+
+    public static class Calculator {
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.wiqer.rpc.benchmark;
+
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * core.SynchronizerManager与sync.SynchronizerManager的一次请求-响应登记开销：
+ * 创建同步器、写入响应并释放、等待（已释放时立即返回）、取出响应
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SynchronizerBenchmark {
+
+    private final com.wiqer.rpc.impl.core.SynchronizerManager coreManager = new com.wiqer.rpc.impl.core.SynchronizerManager();
+    private final com.wiqer.rpc.impl.sync.SynchronizerManager syncManager = new com.wiqer.rpc.impl.sync.SynchronizerManager();
+    private final AtomicLong sequence = new AtomicLong();
+    private final SuperMsgMulti response = new SuperMsgMulti().setReq("ok");
+
+    @Benchmark
+    public SuperMsgMulti coreRoundTrip() throws InterruptedException {
+        String requestId = Long.toString(sequence.incrementAndGet());
+        com.wiqer.rpc.impl.core.SynchronizerManager.UnsafeSynchronizer synchronizer =
+                coreManager.createSynchronizer(requestId, 30000);
+        coreManager.setResponse(requestId, response);
+        synchronizer.acquire();
+        coreManager.releaseSynchronizer(requestId);
+        return coreManager.getResponse(requestId);
+    }
+
+    @Benchmark
+    public SuperMsgMulti syncRoundTrip() {
+        String requestId = Long.toString(sequence.incrementAndGet());
+        com.wiqer.rpc.impl.sync.SynchronizerManager.UnsafeSynchronizer synchronizer =
+                syncManager.createSynchronizer(requestId, 30000);
+        syncManager.setResponse(requestId, response);
+        syncManager.releaseSynchronizer(requestId);
+        synchronizer.acquire();
+        SuperMsgMulti result = syncManager.getResponse(requestId);
+        syncManager.removeSynchronizer(requestId);
+        return result;
+    }
+}
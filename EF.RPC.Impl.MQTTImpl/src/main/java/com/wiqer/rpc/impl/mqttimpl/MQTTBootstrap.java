@@ -32,10 +32,11 @@ public class MQTTBootstrap {
         }
         
         @Override
-        public void start() {
+        public Consumer<MsgConsumerMapType> start() {
             try {
                 // 这里可以添加MQTT特定的启动逻辑
                 super.start();
+                return this;
             } catch (Exception e) {
                 throw new RuntimeException("启动MQTT消费者失败", e);
             }
@@ -63,10 +64,11 @@ public class MQTTBootstrap {
         }
         
         @Override
-        public void start() {
+        public Producer<MsgProducerMapType> start() {
             try {
                 // 这里可以添加MQTT特定的启动逻辑
                 super.start();
+                return this;
             } catch (Exception e) {
                 throw new RuntimeException("启动MQTT生产者失败", e);
             }
@@ -0,0 +1,192 @@
+package com.wiqer.rpc.impl.mqttimpl;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Type;
+
+/**
+ * 客户端的一个MQTT流式调用，用request追加额度、cancel取消。
+ * 结果帧按关联ID分发到这里，在MQTT回调线程上通知observer，observer中不能阻塞；
+ * 服务端回复open帧带回控制主题之前的request和cancel先记下，收到后再发送
+ */
+public class MQTTClientStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(MQTTClientStream.class);
+
+    /**
+     * 控制消息的发布方式，可能在MQTT回调线程上调用，不能等待发布完成
+     */
+    public interface Control {
+        void send(String topic, MQTTMessage message) throws Exception;
+    }
+
+    private final String streamId;
+    private final Type elementType;
+    private final StreamObserver<Object> observer;
+    private final Control control;
+    private final Runnable onClose;
+    private String controlTopic;
+    private long pendingCredit;
+    private boolean cancelled;
+    private boolean done;
+
+    @SuppressWarnings("unchecked")
+    public MQTTClientStream(String streamId, Type elementType, StreamObserver<?> observer, Control control, Runnable onClose) {
+        this.streamId = streamId;
+        this.elementType = elementType;
+        this.observer = (StreamObserver<Object>) observer;
+        this.control = control;
+        this.onClose = onClose;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * 追加n条额度
+     */
+    public void request(long n) {
+        if (n <= 0) {
+            return;
+        }
+        String topic;
+        synchronized (this) {
+            if (done || cancelled) {
+                return;
+            }
+            if (controlTopic == null) {
+                pendingCredit = pendingCredit + n < 0 ? Long.MAX_VALUE : pendingCredit + n;
+                return;
+            }
+            topic = controlTopic;
+        }
+        send(topic, MQTTMessage.TYPE_REQUEST_N, n);
+    }
+
+    /**
+     * 取消后不再通知observer，服务端的onNext随之抛出CancellationException
+     */
+    public void cancel() {
+        String topic;
+        synchronized (this) {
+            if (done || cancelled) {
+                return;
+            }
+            cancelled = true;
+            topic = controlTopic;
+        }
+        if (topic != null) {
+            send(topic, MQTTMessage.TYPE_CANCEL, 0);
+            onClose.run();
+        }
+    }
+
+    /**
+     * 处理服务端回复的帧
+     */
+    public void dispatch(MQTTMessage frame) {
+        if (frame.getErrorCode() != null) {
+            if (finish()) {
+                observer.onError(new RpcException(frame.getErrorCode(), frame.getErrorMessage()));
+            }
+        } else if (MQTTMessage.STREAM_OPEN.equals(frame.getStream())) {
+            onOpen(frame.getReplyTo());
+        } else if (MQTTMessage.STREAM_NEXT.equals(frame.getStream())) {
+            onNext(frame.getReq());
+        } else if (MQTTMessage.STREAM_COMPLETE.equals(frame.getStream())) {
+            if (finish()) {
+                observer.onCompleted();
+            }
+        }
+    }
+
+    /**
+     * 客户端关闭或请求发布失败时结束流，服务端已建流时同时取消
+     */
+    public void abort(RpcException error) {
+        String topic;
+        boolean notify;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            notify = !cancelled;
+            topic = controlTopic;
+        }
+        if (topic != null) {
+            send(topic, MQTTMessage.TYPE_CANCEL, 0);
+        }
+        onClose.run();
+        if (notify) {
+            observer.onError(error);
+        }
+    }
+
+    private void onOpen(String topic) {
+        long credit;
+        boolean cancel;
+        synchronized (this) {
+            if (done || controlTopic != null) {
+                return;
+            }
+            controlTopic = topic;
+            credit = pendingCredit;
+            pendingCredit = 0;
+            cancel = cancelled;
+        }
+        if (cancel) {
+            send(topic, MQTTMessage.TYPE_CANCEL, 0);
+            onClose.run();
+        } else if (credit > 0) {
+            send(topic, MQTTMessage.TYPE_REQUEST_N, credit);
+        }
+    }
+
+    private void onNext(Object value) {
+        synchronized (this) {
+            if (done || cancelled) {
+                return;
+            }
+        }
+        try {
+            observer.onNext(MQTTPendingCalls.convert(value, elementType));
+        } catch (RuntimeException e) {
+            //observer处理失败时取消服务端的流
+            cancel();
+            observer.onError(e);
+        }
+    }
+
+    /**
+     * 只有第一次结束生效，已取消的流不再通知observer
+     */
+    private boolean finish() {
+        boolean notify;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            notify = !cancelled;
+        }
+        onClose.run();
+        return notify;
+    }
+
+    private void send(String topic, String type, long n) {
+        MQTTMessage message = new MQTTMessage();
+        message.setCorrelationId(streamId);
+        message.setType(type);
+        message.setN(n);
+        try {
+            control.send(topic, message);
+        } catch (Exception e) {
+            logger.error("MQTT流控制消息发布失败: streamId={}, type={}", streamId, type, e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.wiqer.rpc.impl.mqttimpl;
+
+import com.wiqer.rpc.impl.core.RpcException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MQTT异步发布的在途窗口
+ * 窗口大小不超过maxInflight，避免Paho在客户端侧抛出REASON_CODE_MAX_INFLIGHT
+ */
+public class MQTTInflightWindow {
+
+    private final int size;
+    private final boolean blocking;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+
+    public MQTTInflightWindow(MQTTOptions options) {
+        int window = options.getInflightWindow();
+        this.size = window > 0 ? Math.min(window, options.getMaxInflight()) : options.getMaxInflight();
+        this.blocking = options.isInflightBlocking();
+        this.acquireTimeoutMs = options.getInflightAcquireTimeout();
+        this.permits = new Semaphore(size);
+    }
+
+    /**
+     * 占用一个在途名额，窗口已满时按配置阻塞等待或快速失败
+     */
+    public void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (!blocking) {
+            throw new RpcException(RpcException.ErrorCodes.INFLIGHT_WINDOW_FULL,
+                    "MQTT在途窗口已满: " + size);
+        }
+        try {
+            if (acquireTimeoutMs <= 0) {
+                permits.acquire();
+                return;
+            }
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RpcException(RpcException.ErrorCodes.INFLIGHT_WINDOW_FULL,
+                        "等待MQTT在途窗口超时: " + acquireTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(RpcException.ErrorCodes.INFLIGHT_WINDOW_FULL, "等待MQTT在途窗口被中断", e);
+        }
+    }
+
+    /**
+     * 发布完成（成功或失败）后归还名额
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getInflight() {
+        return size - permits.availablePermits();
+    }
+}
@@ -7,11 +7,22 @@ import com.wiqer.rpc.serialize.BaseMsg;
  * 对应.NET版本的SuperMsgMulti
  */
 public class MQTTMessage extends BaseMsg {
+
+    public static final String STREAM_OPEN = "open";
+    public static final String STREAM_NEXT = "next";
+    public static final String STREAM_COMPLETE = "complete";
+    public static final String TYPE_REQUEST_N = "request";
+    public static final String TYPE_CANCEL = "cancel";
     
     private Object[] msg;  // 请求参数
     private Object req;    // 响应结果
     private String correlationId; // 关联ID
     private String replyTo; // 回复主题
+    private String errorCode; // 服务端错误码，成功时为null
+    private String errorMessage; // 服务端错误信息
+    private String stream; // 流式调用的结果帧：open（replyTo为控制主题）、next或complete，普通响应为null
+    private String type; // 流控制消息：request追加额度，cancel取消
+    private long n; // 流式请求的初始额度，或request控制消息追加的额度
     
     public MQTTMessage() {
         super();
@@ -54,6 +65,46 @@ public class MQTTMessage extends BaseMsg {
         this.replyTo = replyTo;
     }
     
+    public String getErrorCode() {
+        return errorCode;
+    }
+    
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+    
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+    
+    public String getStream() {
+        return stream;
+    }
+    
+    public void setStream(String stream) {
+        this.stream = stream;
+    }
+    
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public long getN() {
+        return n;
+    }
+    
+    public void setN(long n) {
+        this.n = n;
+    }
+    
     /**
      * 设置响应结果并返回消息
      * 对应.NET版本的setReq方法
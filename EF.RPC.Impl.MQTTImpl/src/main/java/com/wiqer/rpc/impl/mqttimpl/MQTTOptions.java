@@ -1,12 +1,15 @@
 package com.wiqer.rpc.impl.mqttimpl;
 
-import com.wiqer.rpc.impl.config.Options;
+import com.wiqer.rpc.impl.config.RpcConfig;
+import com.wiqer.rpc.impl.core.Options;
+import com.wiqer.rpc.impl.stream.ServerStreamRegistry;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
 
 /**
  * MQTT配置选项
  * 对应.NET版本的RabbitMQOptions
  */
-public class MQTTOptions extends Options {
+public class MQTTOptions implements Options {
     
     private String brokerUrl = "tcp://localhost:1883";
     private String clientId;
@@ -17,11 +20,37 @@ public class MQTTOptions extends Options {
     private boolean cleanSession = true;
     private int maxInflight = 1000;
     private int qos = 1;
+    private boolean asyncClient = false;
+    private int inflightWindow = 0;
+    private boolean inflightBlocking = true;
+    private long inflightAcquireTimeout = 0;
+    private int topicAliasMaximum = 10;
+    private String version = "v1";
+    private String shareGroup;
+    private boolean compressionEnabled = false;
+    private String compressionCodec = "lz4";
+    private int compressionThreshold = 1024;
+    private int maxDecompressedLength = PayloadCompressor.DEFAULT_MAX_DECOMPRESSED_LENGTH;
+    private int requestTimeout = 30000;
+    private int maxStreams = 256;
+    private long streamIdleTimeout = ServerStreamRegistry.DEFAULT_IDLE_TIMEOUT;
     
     public MQTTOptions() {
         this.clientId = "EFRPC_" + System.currentTimeMillis();
     }
     
+    /**
+     * 取RpcConfig中的压缩配置和请求超时，其余MQTT专有配置不变
+     */
+    public MQTTOptions applyRpcConfig(RpcConfig config) {
+        this.compressionEnabled = config.isEnableCompression();
+        this.compressionCodec = config.getCompressionCodec();
+        this.compressionThreshold = config.getCompressionThreshold();
+        this.maxDecompressedLength = config.getMaxDecompressedLength();
+        this.requestTimeout = (int) Math.min(config.getRequestTimeout(), Integer.MAX_VALUE);
+        return this;
+    }
+    
     public String getBrokerUrl() {
         return brokerUrl;
     }
@@ -93,4 +122,128 @@ public class MQTTOptions extends Options {
     public void setQos(int qos) {
         this.qos = qos;
     }
-} 
\ No newline at end of file
+    
+    public boolean isAsyncClient() {
+        return asyncClient;
+    }
+    
+    public void setAsyncClient(boolean asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+    
+    public int getInflightWindow() {
+        return inflightWindow;
+    }
+    
+    public void setInflightWindow(int inflightWindow) {
+        this.inflightWindow = inflightWindow;
+    }
+    
+    public boolean isInflightBlocking() {
+        return inflightBlocking;
+    }
+    
+    public void setInflightBlocking(boolean inflightBlocking) {
+        this.inflightBlocking = inflightBlocking;
+    }
+    
+    public long getInflightAcquireTimeout() {
+        return inflightAcquireTimeout;
+    }
+    
+    public void setInflightAcquireTimeout(long inflightAcquireTimeout) {
+        this.inflightAcquireTimeout = inflightAcquireTimeout;
+    }
+    
+    public int getTopicAliasMaximum() {
+        return topicAliasMaximum;
+    }
+    
+    public void setTopicAliasMaximum(int topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public void setVersion(String version) {
+        this.version = version;
+    }
+    
+    public String getShareGroup() {
+        return shareGroup;
+    }
+    
+    public void setShareGroup(String shareGroup) {
+        this.shareGroup = shareGroup;
+    }
+    
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+    
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+    
+    public String getCompressionCodec() {
+        return compressionCodec;
+    }
+    
+    public void setCompressionCodec(String compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+    
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+    
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+    
+    /**
+     * 压缩帧原始长度上限（字节），超过时拒绝解压
+     */
+    public int getMaxDecompressedLength() {
+        return maxDecompressedLength;
+    }
+    
+    public void setMaxDecompressedLength(int maxDecompressedLength) {
+        this.maxDecompressedLength = maxDecompressedLength;
+    }
+    
+    /**
+     * 等待响应的超时时间（毫秒），小于等于0时一直等待
+     */
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+    
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+    
+    /**
+     * 服务端同时未结束的流式调用上限，也是流式线程池的线程数上限，达到后新的流式调用回复繁忙
+     */
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+    
+    public void setMaxStreams(int maxStreams) {
+        this.maxStreams = maxStreams;
+    }
+    
+    /**
+     * 服务端流既没有推送也没有新额度的最长时间，毫秒，超时后取消并回复超时错误；0表示不回收
+     */
+    public long getStreamIdleTimeout() {
+        return streamIdleTimeout;
+    }
+    
+    public void setStreamIdleTimeout(long streamIdleTimeout) {
+        this.streamIdleTimeout = streamIdleTimeout;
+    }
+}
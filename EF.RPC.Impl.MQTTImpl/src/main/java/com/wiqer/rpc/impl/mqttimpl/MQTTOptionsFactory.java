@@ -1,12 +1,10 @@
 package com.wiqer.rpc.impl.mqttimpl;
 
-import com.wiqer.rpc.impl.MsgMathsInfoFactory;
-
 /**
  * MQTT配置工厂
  * 对应.NET版本的RabbitMQOptionsFactory
  */
-public class MQTTOptionsFactory<MsgMathsInfoMap> extends MsgMathsInfoFactory<MsgMathsInfoMap> {
+public class MQTTOptionsFactory {
     
     private MQTTOptions options;
     
@@ -33,9 +31,4 @@ public class MQTTOptionsFactory<MsgMathsInfoMap> extends MsgMathsInfoFactory<Msg
     public void setOptions(MQTTOptions options) {
         this.options = options;
     }
-    
-    @Override
-    public MsgMathsInfoMap getMsgMathsInfoMap() {
-        return new MsgMathsInfoMap();
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.wiqer.rpc.impl.mqttimpl;
+
+import com.alibaba.fastjson.JSON;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.sync.SynchronizerManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按关联ID登记的待响应调用
+ * 每次调用各用一个同步器和结果槽，同一方法的并发调用不会互相覆盖结果
+ */
+public class MQTTPendingCalls {
+
+    private final ConcurrentMap<String, PendingCall> calls = new ConcurrentHashMap<>();
+    private final int timeoutMs;
+
+    public MQTTPendingCalls(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 发布请求前登记，保证响应先于登记到达时不会丢失
+     */
+    public PendingCall register(String correlationId, Type returnType) {
+        PendingCall call = new PendingCall(returnType);
+        call.synchronizer.setSleepTime(Math.max(timeoutMs, 0));
+        calls.put(correlationId, call);
+        return call;
+    }
+
+    public boolean isPending(String correlationId) {
+        return calls.containsKey(correlationId);
+    }
+
+    public Type returnType(String correlationId) {
+        PendingCall call = calls.get(correlationId);
+        return call == null ? null : call.returnType;
+    }
+
+    /**
+     * 写入成功结果并唤醒调用方，调用已超时或不存在时返回false
+     */
+    public boolean complete(String correlationId, Object result) {
+        PendingCall call = calls.get(correlationId);
+        if (call == null) {
+            return false;
+        }
+        call.result = result;
+        call.done = true;
+        return call.synchronizer.release();
+    }
+
+    /**
+     * 写入失败原因并唤醒调用方
+     */
+    public boolean fail(String correlationId, RpcException error) {
+        PendingCall call = calls.get(correlationId);
+        if (call == null) {
+            return false;
+        }
+        call.error = error;
+        call.done = true;
+        return call.synchronizer.release();
+    }
+
+    public void remove(String correlationId) {
+        calls.remove(correlationId);
+    }
+
+    /**
+     * 等待响应，超时抛出TIMEOUT，服务端错误按错误码抛出
+     */
+    public Object await(String correlationId, PendingCall call) {
+        try {
+            call.synchronizer.acquire();
+        } finally {
+            calls.remove(correlationId);
+        }
+        if (call.error != null) {
+            throw call.error;
+        }
+        if (!call.done) {
+            throw new RpcException(RpcException.ErrorCodes.TIMEOUT,
+                    "等待MQTT响应超时: " + timeoutMs + "ms, correlationId=" + correlationId);
+        }
+        return call.result;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * 把JSON反序列化得到的中间对象转换为方法的返回类型
+     */
+    public static Object convert(Object value, Type type) {
+        if (value == null || type == null || type == Object.class) {
+            return value;
+        }
+        if (type instanceof Class && ((Class<?>) type).isInstance(value)) {
+            return value;
+        }
+        return JSON.parseObject(JSON.toJSONString(value), type);
+    }
+
+    /**
+     * 服务端调用异常转换为错误码与错误信息，RpcException保留原错误码
+     */
+    public static RpcException toRpcException(Throwable e) {
+        Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RpcException) {
+            return (RpcException) cause;
+        }
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+        return new RpcException(RpcException.ErrorCodes.INVOCATION_ERROR, message, cause);
+    }
+
+    public static class PendingCall {
+        private final Type returnType;
+        private final SynchronizerManager.UnsafeSynchronizer synchronizer = new SynchronizerManager.UnsafeSynchronizer();
+        private volatile Object result;
+        private volatile RpcException error;
+        private volatile boolean done;
+
+        PendingCall(Type returnType) {
+            this.returnType = returnType;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.wiqer.rpc.impl.mqttimpl;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.stream.ServerStream;
+import com.wiqer.rpc.impl.stream.ServerStreamRegistry;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端的MQTT流式调用，流ID即请求的关联ID。
+ * 建流后先向请求的replyTo回复open帧，带上本流的控制主题efrpc/stream/{服务端clientId}/{流ID}，
+ * 客户端在控制主题上发送request-N和cancel，结果按额度逐条回复到replyTo，最后回复complete或错误。
+ * 流式方法在额度用完时阻塞，运行在有界的流式线程池上，不占用MQTT回调线程，线程用满时拒绝建流。
+ * 流的生命周期见ServerStreamRegistry：方法返回后流仍然有效，直到结束、取消或空闲超时
+ */
+public class MQTTStreamServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MQTTStreamServer.class);
+
+    /**
+     * 结果帧的发布方式，在流式线程、异步推送的业务线程或空闲检查线程上调用，可以等待发布完成
+     */
+    public interface Publisher {
+        void publish(String topic, MQTTMessage frame) throws Exception;
+    }
+
+    /**
+     * 以observer为最后一个参数调用流式方法
+     */
+    public interface Invocation {
+        void invoke(StreamObserver<Object> observer) throws Throwable;
+    }
+
+    private final String controlPrefix;
+    private final Publisher publisher;
+    private final ExecutorService pool;
+    private final ServerStreamRegistry streams;
+
+    public MQTTStreamServer(String serverClientId, int maxStreams, Publisher publisher) {
+        this(serverClientId, maxStreams, ServerStreamRegistry.DEFAULT_IDLE_TIMEOUT, publisher);
+    }
+
+    /**
+     * @param maxStreams        同时未结束的流上限，也是流式线程数上限
+     * @param idleTimeoutMillis 流既没有推送也没有新额度的最长时间，超时后取消并回复TIMEOUT错误，0表示不回收
+     */
+    public MQTTStreamServer(String serverClientId, int maxStreams, long idleTimeoutMillis, Publisher publisher) {
+        if (maxStreams <= 0) {
+            throw new IllegalArgumentException("maxStreams必须大于0");
+        }
+        this.controlPrefix = MQTTTopics.streamControlPrefix(serverClientId);
+        this.publisher = publisher;
+        this.streams = new ServerStreamRegistry(maxStreams, idleTimeoutMillis);
+        AtomicInteger index = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(0, maxStreams, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "mqtt-stream-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 服务端需要订阅的控制主题
+     */
+    public String controlSubscription() {
+        return controlPrefix + "#";
+    }
+
+    public boolean isControlTopic(String topic) {
+        return topic.startsWith(controlPrefix);
+    }
+
+    /**
+     * 按请求建流并在流式线程池中调用方法，请求携带的n为初始额度；未结束的流或线程池已满时抛出SERVER_BUSY
+     */
+    public void start(MQTTMessage request, Invocation invocation) {
+        String streamId = request.getCorrelationId();
+        String replyTo = request.getReplyTo();
+        if (streamId == null || replyTo == null) {
+            throw new RpcException(RpcException.ErrorCodes.INVOCATION_ERROR, "流式调用缺少correlationId或replyTo");
+        }
+        ServerStream<Object> stream = streams.open(streamId, new ServerStream.Sink() {
+            @Override
+            public void next(Object value) {
+                MQTTMessage frame = frame(streamId, MQTTMessage.STREAM_NEXT);
+                frame.setResponse(value);
+                publish(replyTo, frame);
+            }
+
+            @Override
+            public void error(Throwable error) {
+                RpcException e = MQTTPendingCalls.toRpcException(error);
+                MQTTMessage frame = frame(streamId, null);
+                frame.setErrorCode(e.getErrorCode());
+                frame.setErrorMessage(e.getMessage());
+                publish(replyTo, frame);
+            }
+
+            @Override
+            public void complete() {
+                publish(replyTo, frame(streamId, MQTTMessage.STREAM_COMPLETE));
+            }
+        });
+        stream.request(request.getN());
+        try {
+            pool.execute(() -> run(streamId, replyTo, stream, invocation));
+        } catch (RejectedExecutionException e) {
+            stream.cancel();
+            throw new RpcException(RpcException.ErrorCodes.SERVER_BUSY, "流式调用数已达上限");
+        }
+    }
+
+    /**
+     * open帧也在流式线程上发布，保证先于结果帧到达客户端；方法返回后流保持打开，由observer结束
+     */
+    private void run(String streamId, String replyTo, ServerStream<Object> stream, Invocation invocation) {
+        try {
+            MQTTMessage open = frame(streamId, MQTTMessage.STREAM_OPEN);
+            open.setReplyTo(controlPrefix + streamId);
+            publish(replyTo, open);
+            invocation.invoke(stream);
+        } catch (CancellationException e) {
+            logger.debug("MQTT流式调用已取消: {}", streamId);
+            //流未被取消时方法自己抛出的CancellationException同样结束流
+            fail(streamId, stream, e);
+        } catch (Throwable e) {
+            logger.error("MQTT流式调用失败: {}", streamId, e);
+            fail(streamId, stream, e);
+        }
+    }
+
+    private static void fail(String streamId, ServerStream<Object> stream, Throwable error) {
+        try {
+            stream.onError(error);
+        } catch (RuntimeException publishError) {
+            logger.error("MQTT流错误帧发布失败: {}", streamId, publishError);
+        }
+    }
+
+    /**
+     * 处理控制主题上的request-N和cancel，流已结束时忽略
+     */
+    public void control(String topic, MQTTMessage message) {
+        String streamId = topic.substring(controlPrefix.length());
+        if (MQTTMessage.TYPE_REQUEST_N.equals(message.getType())) {
+            streams.request(streamId, message.getN());
+        } else if (MQTTMessage.TYPE_CANCEL.equals(message.getType())) {
+            streams.cancel(streamId);
+        }
+    }
+
+    public int size() {
+        return streams.size();
+    }
+
+    /**
+     * 取消全部未结束的流并停止流式线程池
+     */
+    public void close() {
+        streams.close();
+        pool.shutdownNow();
+    }
+
+    private void publish(String topic, MQTTMessage frame) {
+        try {
+            publisher.publish(topic, frame);
+        } catch (Exception e) {
+            throw new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT流结果发布失败", e);
+        }
+    }
+
+    private static MQTTMessage frame(String streamId, String status) {
+        MQTTMessage frame = new MQTTMessage();
+        frame.setCorrelationId(streamId);
+        frame.setStream(status);
+        return frame;
+    }
+}
@@ -0,0 +1,74 @@
+package com.wiqer.rpc.impl.mqttimpl;
+
+import com.wiqer.rpc.impl.annotation.EFRpcService;
+
+/**
+ * MQTT RPC主题规则
+ * 请求主题只由接口名、版本号和方法名决定，与服务端实例的clientId无关，
+ * 多个服务端实例可以通过共享订阅分摊同一主题上的请求；
+ * 流式调用的控制主题带上服务端clientId，request-N和cancel只发给执行该流的实例
+ */
+public final class MQTTTopics {
+
+    public static final String REQUEST_PREFIX = "efrpc/request/";
+    public static final String REPLY_PREFIX = "efrpc/reply/";
+    public static final String SHARE_PREFIX = "$share/";
+    public static final String STREAM_PREFIX = "efrpc/stream/";
+
+    private MQTTTopics() {
+    }
+
+    /**
+     * 请求名：{interfaceName}/{version}/{methodName}
+     */
+    public static String requestName(String interfaceName, String version, String methodName) {
+        return interfaceName + "/" + version + "/" + methodName;
+    }
+
+    /**
+     * 服务端流控制主题的前缀：efrpc/stream/{服务端clientId}/，后接流ID
+     */
+    public static String streamControlPrefix(String serverClientId) {
+        return STREAM_PREFIX + serverClientId + "/";
+    }
+
+    /**
+     * 服务端订阅主题，配置了shareGroup时使用$share/{group}/前缀交给broker负载均衡
+     */
+    public static String requestSubscription(MQTTOptions options, String requestTopic) {
+        String group = options.getShareGroup();
+        if (group == null || group.isEmpty()) {
+            return requestTopic;
+        }
+        return SHARE_PREFIX + group + "/" + requestTopic;
+    }
+
+    /**
+     * 服务版本：显式设置的版本优先，其次是实现类上@EFRpcService的版本，最后取配置默认版本
+     */
+    public static String serviceVersion(Class<?> clazz, String version, MQTTOptions options) {
+        if (version != null && !version.isEmpty()) {
+            return version;
+        }
+        EFRpcService service = clazz.getAnnotation(EFRpcService.class);
+        if (service != null) {
+            return service.version();
+        }
+        return options.getVersion();
+    }
+
+    /**
+     * 客户端使用的接口：代理的接口本身，或实现类唯一的业务接口
+     */
+    public static Class<?> serviceInterface(Class<?> clazz) {
+        if (clazz.isInterface()) {
+            return clazz;
+        }
+        for (Class<?> iface : clazz.getInterfaces()) {
+            if (!iface.getName().contains("MsgController")) {
+                return iface;
+            }
+        }
+        return clazz;
+    }
+}
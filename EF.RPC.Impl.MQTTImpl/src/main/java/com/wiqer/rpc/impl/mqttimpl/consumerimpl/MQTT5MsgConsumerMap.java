@@ -0,0 +1,315 @@
+package com.wiqer.rpc.impl.mqttimpl.consumerimpl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.wiqer.rpc.impl.consumerImpl.MsgConsumerMap;
+import com.wiqer.rpc.impl.core.MsgFun;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.MQTTPendingCalls;
+import com.wiqer.rpc.impl.mqttimpl.MQTTTopics;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.TraceContext;
+import com.wiqer.rpc.impl.trace.Tracer;
+import com.wiqer.rpc.impl.util.CompressionUtil;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import org.eclipse.paho.mqttv5.client.*;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * MQTT 5消息消费者映射
+ * 按请求主题路由到方法，回复地址取自Response Topic属性并原样回传Correlation Data；
+ * 调用失败时以用户属性回传错误码和错误信息，消息体为空
+ */
+public class MQTT5MsgConsumerMap extends MsgConsumerMap {
+
+    private static final Logger logger = LoggerFactory.getLogger(MQTT5MsgConsumerMap.class);
+
+    public static final String ERROR_CODE_PROPERTY = "rpc-error-code";
+    public static final String ERROR_MESSAGE_PROPERTY = "rpc-error-message";
+
+    private MQTTOptions options;
+    private PayloadCompressor compressor;
+    private Set<String> compressMethods = ConcurrentHashMap.newKeySet();
+    private MqttAsyncClient asyncClient;
+    private ConcurrentMap<String, MsgFun> topicMap = new ConcurrentHashMap<>();
+
+    public MQTT5MsgConsumerMap setOptions(MQTTOptions options) {
+        this.options = options;
+        return this;
+    }
+
+    @Override
+    protected void getMathsInfoMulti() {
+        // 方法信息在GetMathsInfo(Class)中按实现类解析
+    }
+
+    public void GetMathsInfo(Class<?> clazz) {
+        this.clear();
+        topicMap.clear();
+
+        try {
+            MqttConnectionOptions connectOptions = new MqttConnectionOptions();
+            connectOptions.setCleanStart(options.isCleanSession());
+            connectOptions.setConnectionTimeout(options.getConnectionTimeout());
+            connectOptions.setKeepAliveInterval(options.getKeepAliveInterval());
+            connectOptions.setReceiveMaximum(options.getMaxInflight());
+            connectOptions.setTopicAliasMaximum(options.getTopicAliasMaximum());
+
+            if (options.getUsername() != null) {
+                connectOptions.setUserName(options.getUsername());
+                connectOptions.setPassword(options.getPassword().getBytes(StandardCharsets.UTF_8));
+            }
+
+            asyncClient = new MqttAsyncClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+            asyncClient.setCallback(new MqttCallback() {
+                @Override
+                public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                    logger.error("MQTT连接断开: {}", disconnectResponse.getReasonString());
+                }
+
+                @Override
+                public void mqttErrorOccurred(MqttException exception) {
+                    logger.error("MQTT协议错误", exception);
+                }
+
+                @Override
+                public void messageArrived(String topic, MqttMessage message) throws Exception {
+                    handleRequest(topic, message);
+                }
+
+                @Override
+                public void deliveryComplete(IMqttToken token) {
+                    // 消息发送完成
+                }
+
+                @Override
+                public void connectComplete(boolean reconnect, String serverURI) {
+                    // 连接完成
+                }
+
+                @Override
+                public void authPacketArrived(int reasonCode, MqttProperties properties) {
+                    // 未使用增强认证
+                }
+            });
+            asyncClient.connect(connectOptions).waitForCompletion();
+
+            // 创建服务实例
+            this.ControllerOb = clazz.newInstance();
+            this.packageName = clazz.getPackage().getName();
+            this.FullName = clazz.getName();
+            this.className = clazz.getSimpleName();
+
+            // 获取接口信息
+            List<Class<?>> interfaces = Arrays.stream(clazz.getInterfaces())
+                    .filter(iface -> !iface.getName().contains("MsgController"))
+                    .collect(Collectors.toList());
+
+            if (interfaces.size() != 1) {
+                throw new RuntimeException("MsgController的实现类必须继承Sharing中共享的接口," +
+                        "且不能继承MsgController外的其他接口,且不能多层继承");
+            }
+
+            this.interfaceFullName = interfaces.get(0).getName();
+
+            this.version = MQTTTopics.serviceVersion(clazz, this.version, options);
+
+            compressor = new PayloadCompressor(options.getCompressionCodec(), options.getCompressionThreshold(), options.getMaxDecompressedLength());
+            compressMethods.clear();
+
+            // 处理类的方法
+            Method[] methods = clazz.getMethods();
+            for (Method method : methods) {
+                if (method.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+
+                MsgFun mfs = new MsgFun();
+                mfs.setName(method.getName());
+                mfs.setMethodInfo(method);
+                mfs.setReqFullName(MQTTTopics.requestName(this.interfaceFullName, this.version, method.getName()));
+
+                // 设置参数类型
+                Parameter[] parameters = method.getParameters();
+                Class<?>[] paramTypes = new Class<?>[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    paramTypes[i] = parameters[i].getType();
+                }
+                mfs.setReqTypes(paramTypes);
+                if (CompressionUtil.isCompressionEnabled(method, clazz, options.isCompressionEnabled())) {
+                    compressMethods.add(method.getName());
+                }
+
+                // 订阅请求主题
+                String requestTopic = MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName();
+                asyncClient.subscribe(MQTTTopics.requestSubscription(options, requestTopic), options.getQos()).waitForCompletion();
+
+                this.put(method.getName(), mfs);
+                topicMap.put(requestTopic, mfs);
+
+                logger.info("注册服务: 类名={}, 方法名={}, 返回值={}, 主题={}",
+                        clazz.getSimpleName(), method.getName(), method.getReturnType(), requestTopic);
+            }
+
+        } catch (Exception e) {
+            logger.error("初始化MQTT 5消费者失败", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handleRequest(String topic, MqttMessage message) {
+        Span span = Span.NOOP;
+        MsgFun mfs = null;
+        try {
+            mfs = topicMap.get(topic);
+            if (mfs == null) {
+                logger.error("未找到主题对应的方法: {}", topic);
+                sendError(message, new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "未找到主题对应的方法: " + topic));
+                return;
+            }
+            if (StreamObserver.isStreaming(mfs.getMethodInfo())) {
+                //流式调用目前只在MQTT 3.1.1传输上实现，见MQTTStreamServer
+                sendError(message, new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "MQTT 5传输不支持流式方法: " + topic));
+                return;
+            }
+            if (Tracer.isEnabled()) {
+                span = Tracer.startSpan(Span.SERVER, mfs.getReqFullName(), traceparentOf(message.getProperties()));
+            }
+
+            // 反序列化参数
+            Span decode = span.startChild(Span.DESERIALIZE);
+            JSONArray params = JSON.parseArray(new String(PayloadCompressor.decode(message.getPayload(), options.getMaxDecompressedLength()), StandardCharsets.UTF_8));
+            Type[] reqTypes = mfs.getReqTypes();
+            Object[] args = new Object[reqTypes.length];
+            for (int i = 0; i < reqTypes.length; i++) {
+                args[i] = params.getObject(i, reqTypes[i]);
+            }
+            decode.end();
+
+            // 调用方法
+            Span call = span.startChild(Span.INVOKE);
+            Object result;
+            try (Tracer.Scope ignored = span.makeCurrent()) {
+                result = mfs.getMethodInfo().invoke(this.ControllerOb, args);
+            }
+            call.end();
+
+            // 发送响应（请求方携带了Response Topic才回复）
+            MqttProperties requestProperties = message.getProperties();
+            if (requestProperties == null || requestProperties.getResponseTopic() == null) {
+                return;
+            }
+
+            MqttProperties responseProperties = new MqttProperties();
+            responseProperties.setCorrelationData(requestProperties.getCorrelationData());
+
+            MqttMessage responseMessage = new MqttMessage(encodePayload(mfs.getName(), JSON.toJSONBytes(result)));
+            responseMessage.setQos(options.getQos());
+            responseMessage.setProperties(responseProperties);
+            publishResponse(requestProperties.getResponseTopic(), responseMessage);
+
+        } catch (Exception e) {
+            span.setError(e);
+            logger.error("处理MQTT 5请求失败", e);
+            if (mfs != null) {
+                sendError(message, MQTTPendingCalls.toRpcException(e));
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * 调用失败时回复错误码和错误信息，客户端据此抛出RpcException而不是等到超时
+     */
+    private void sendError(MqttMessage request, RpcException error) {
+        MqttProperties requestProperties = request.getProperties();
+        if (requestProperties == null || requestProperties.getResponseTopic() == null) {
+            return;
+        }
+        MqttProperties responseProperties = new MqttProperties();
+        responseProperties.setCorrelationData(requestProperties.getCorrelationData());
+        List<UserProperty> userProperties = new ArrayList<>();
+        userProperties.add(new UserProperty(ERROR_CODE_PROPERTY, error.getErrorCode()));
+        if (error.getMessage() != null) {
+            userProperties.add(new UserProperty(ERROR_MESSAGE_PROPERTY, error.getMessage()));
+        }
+        responseProperties.setUserProperties(userProperties);
+
+        MqttMessage responseMessage = new MqttMessage(new byte[0]);
+        responseMessage.setQos(options.getQos());
+        responseMessage.setProperties(responseProperties);
+        try {
+            publishResponse(requestProperties.getResponseTopic(), responseMessage);
+        } catch (MqttException e) {
+            logger.error("MQTT错误响应发布失败: topic={}", requestProperties.getResponseTopic(), e);
+        }
+    }
+
+    private void publishResponse(String topic, MqttMessage responseMessage) throws MqttException {
+        asyncClient.publish(topic, responseMessage, null, new MqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                // 响应发布完成
+            }
+
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                logger.error("MQTT响应发布失败: topic={}", topic, exception);
+            }
+        });
+    }
+
+    private static String traceparentOf(MqttProperties properties) {
+        if (properties == null || properties.getUserProperties() == null) {
+            return null;
+        }
+        for (UserProperty property : properties.getUserProperties()) {
+            if (TraceContext.TRACEPARENT.equals(property.getKey())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 序列化后的压缩阶段，按方法开关并受大小阈值限制
+     */
+    private byte[] encodePayload(String methodName, byte[] payload) {
+        if (!compressMethods.contains(methodName)) {
+            return payload;
+        }
+        return compressor.encode(payload);
+    }
+
+    public void close() {
+        try {
+            if (asyncClient != null && asyncClient.isConnected()) {
+                asyncClient.disconnect().waitForCompletion();
+                asyncClient.close();
+            }
+        } catch (Exception e) {
+            logger.error("关闭MQTT 5客户端失败", e);
+        }
+    }
+}
@@ -1,31 +1,49 @@
 package com.wiqer.rpc.impl.mqttimpl.consumerimpl;
 
 import com.alibaba.fastjson.JSON;
-import com.wiqer.rpc.impl.MsgMathsInfo;
 import com.wiqer.rpc.impl.consumerImpl.MsgConsumerMap;
+import com.wiqer.rpc.impl.core.MsgFun;
+import com.wiqer.rpc.impl.core.RpcException;
 import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.MQTTPendingCalls;
+import com.wiqer.rpc.impl.mqttimpl.MQTTStreamServer;
+import com.wiqer.rpc.impl.mqttimpl.MQTTTopics;
+import com.wiqer.rpc.impl.util.CompressionUtil;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
 import com.wiqer.rpc.impl.mqttimpl.MQTTMessage;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.Tracer;
 import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.Arrays;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * MQTT消息消费者映射
  * 对应.NET版本的RabbitMQMsgConsumerMap
+ * 流式方法交给MQTTStreamServer，结果按请求的replyTo逐条回复，额度和取消走本实例的流控制主题
  */
 public class MQTTMsgConsumerMap extends MsgConsumerMap {
     
     private static final Logger logger = LoggerFactory.getLogger(MQTTMsgConsumerMap.class);
     
     private MQTTOptions options;
+    private PayloadCompressor compressor;
+    private Set<String> compressMethods = ConcurrentHashMap.newKeySet();
     private MqttClient mqttClient;
+    private MqttAsyncClient asyncClient;
+    private MQTTStreamServer streamServer;
     
     public MQTTMsgConsumerMap setOptions(MQTTOptions options) {
         this.options = options;
@@ -33,12 +51,14 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
     }
     
     @Override
+    protected void getMathsInfoMulti() {
+        // 方法信息在GetMathsInfo(Class)中按实现类解析
+    }
+    
     public void GetMathsInfo(Class<?> clazz) {
         this.clear();
         
         try {
-            // 创建MQTT客户端
-            mqttClient = new MqttClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
             MqttConnectOptions connectOptions = new MqttConnectOptions();
             connectOptions.setCleanSession(options.isCleanSession());
             connectOptions.setConnectionTimeout(options.getConnectionTimeout());
@@ -50,10 +70,8 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                 connectOptions.setPassword(options.getPassword().toCharArray());
             }
             
-            mqttClient.connect(connectOptions);
-            
             // 设置消息回调
-            mqttClient.setCallback(new MqttCallback() {
+            MqttCallback callback = new MqttCallback() {
                 @Override
                 public void connectionLost(Throwable cause) {
                     logger.error("MQTT连接丢失", cause);
@@ -61,6 +79,10 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                 
                 @Override
                 public void messageArrived(String topic, MqttMessage message) throws Exception {
+                    if (streamServer.isControlTopic(topic)) {
+                        handleStreamControl(topic, message);
+                        return;
+                    }
                     handleRequest(topic, message);
                 }
                 
@@ -68,10 +90,30 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                 public void deliveryComplete(IMqttDeliveryToken token) {
                     // 消息发送完成
                 }
-            });
+            };
+            
+            streamServer = new MQTTStreamServer(options.getClientId(), options.getMaxStreams(),
+                    options.getStreamIdleTimeout(), this::publishStreamFrame);
+            if (options.isAsyncClient()) {
+                asyncClient = new MqttAsyncClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+                asyncClient.setCallback(callback);
+                asyncClient.connect(connectOptions).waitForCompletion();
+            } else {
+                // 创建MQTT客户端
+                mqttClient = new MqttClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+                mqttClient.setCallback(callback);
+                mqttClient.connect(connectOptions);
+            }
+            
+            // 流控制主题只由本实例订阅
+            if (asyncClient != null) {
+                asyncClient.subscribe(streamServer.controlSubscription(), options.getQos()).waitForCompletion();
+            } else {
+                mqttClient.subscribe(streamServer.controlSubscription(), options.getQos());
+            }
             
             // 创建服务实例
-            this.ControllerObj = clazz.newInstance();
+            this.ControllerOb = clazz.newInstance();
             this.packageName = clazz.getPackage().getName();
             this.FullName = clazz.getName();
             this.className = clazz.getSimpleName();
@@ -88,6 +130,11 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
             
             this.interfaceFullName = interfaces.get(0).getName();
             
+            this.version = MQTTTopics.serviceVersion(clazz, this.version, options);
+
+            compressor = new PayloadCompressor(options.getCompressionCodec(), options.getCompressionThreshold(), options.getMaxDecompressedLength());
+            compressMethods.clear();
+
             // 处理类的方法
             Method[] methods = clazz.getMethods();
             for (Method method : methods) {
@@ -95,10 +142,10 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                     continue;
                 }
                 
-                MsgMathsInfo mfs = new MsgMathsInfo();
+                MsgFun mfs = new MsgFun();
                 mfs.setName(method.getName());
                 mfs.setMethodInfo(method);
-                mfs.setReqFullName(options.getClientId() + "." + clazz.getSimpleName() + "." + method.getName());
+                mfs.setReqFullName(MQTTTopics.requestName(this.interfaceFullName, this.version, method.getName()));
                 
                 // 设置参数类型
                 Parameter[] parameters = method.getParameters();
@@ -106,11 +153,18 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                 for (int i = 0; i < parameters.length; i++) {
                     paramTypes[i] = parameters[i].getType();
                 }
-                mfs.setReqs(paramTypes);
+                mfs.setReqTypes(paramTypes);
+                if (CompressionUtil.isCompressionEnabled(method, clazz, options.isCompressionEnabled())) {
+                    compressMethods.add(method.getName());
+                }
                 
                 // 订阅请求主题
-                String requestTopic = "efrpc/request/" + mfs.getReqFullName();
-                mqttClient.subscribe(requestTopic, options.getQos());
+                String requestTopic = MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName();
+                if (asyncClient != null) {
+                    asyncClient.subscribe(MQTTTopics.requestSubscription(options, requestTopic), options.getQos()).waitForCompletion();
+                } else {
+                    mqttClient.subscribe(MQTTTopics.requestSubscription(options, requestTopic), options.getQos());
+                }
                 
                 this.put(method.getName(), mfs);
                 
@@ -125,27 +179,44 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
     }
     
     private void handleRequest(String topic, MqttMessage message) {
+        Span span = Span.NOOP;
+        MQTTMessage request = null;
+        MsgFun mfs = null;
         try {
-            String messageStr = new String(message.getPayload());
-            MQTTMessage request = JSON.parseObject(messageStr, MQTTMessage.class);
+            String messageStr = new String(PayloadCompressor.decode(message.getPayload(), options.getMaxDecompressedLength()));
+            request = JSON.parseObject(messageStr, MQTTMessage.class);
             
             // 从主题中提取方法名
             String methodName = topic.substring(topic.lastIndexOf("/") + 1);
-            MsgMathsInfo mfs = this.get(methodName);
+            mfs = this.get(methodName);
             
             if (mfs == null) {
                 logger.error("未找到方法: {}", methodName);
+                sendError(request, null, new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "未找到方法: " + methodName));
+                return;
+            }
+            if (StreamObserver.isStreaming(mfs.getMethodInfo())) {
+                startStream(request, mfs);
                 return;
             }
+            span = Tracer.startSpan(Span.SERVER, mfs.getReqFullName(), request.getTrace());
             
             // 反序列化参数
-            Object[] args = new Object[request.getMsg().length];
-            for (int i = 0; i < request.getMsg().length; i++) {
-                args[i] = JSON.parseObject(JSON.toJSONString(request.getMsg()[i]), mfs.getReqs()[i]);
+            Span decode = span.startChild(Span.DESERIALIZE);
+            Object[] params = request.getMsg() != null ? request.getMsg() : new Object[0];
+            Object[] args = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                args[i] = JSON.parseObject(JSON.toJSONString(params[i]), mfs.getReqTypes()[i]);
             }
+            decode.end();
             
             // 调用方法
-            Object result = mfs.getMethodInfo().invoke(this.ControllerObj, args);
+            Span call = span.startChild(Span.INVOKE);
+            Object result;
+            try (Tracer.Scope ignored = span.makeCurrent()) {
+                result = mfs.getMethodInfo().invoke(this.ControllerOb, args);
+            }
+            call.end();
             
             // 发送响应（如果有返回值）
             if (mfs.getMethodInfo().getReturnType() != void.class) {
@@ -153,21 +224,140 @@ public class MQTTMsgConsumerMap extends MsgConsumerMap {
                 response.setCorrelationId(request.getCorrelationId());
                 response.setReplyTo(request.getReplyTo());
                 response.setResponse(result);
-                
-                String responseJson = JSON.toJSONString(response);
-                MqttMessage responseMessage = new MqttMessage(responseJson.getBytes());
-                responseMessage.setQos(options.getQos());
-                
-                mqttClient.publish(request.getReplyTo(), responseMessage);
+                publishResponse(mfs, response);
             }
             
         } catch (Exception e) {
+            span.setError(e);
             logger.error("处理MQTT请求失败", e);
+            sendError(request, mfs, MQTTPendingCalls.toRpcException(e));
+        } finally {
+            span.end();
+        }
+    }
+    
+    /**
+     * 解析流式方法除StreamObserver外的参数，在流式线程池中调用
+     */
+    private void startStream(MQTTMessage request, MsgFun mfs) {
+        Type[] reqTypes = mfs.getReqTypes();
+        Object[] params = request.getMsg() != null ? request.getMsg() : new Object[0];
+        Object[] args = new Object[reqTypes.length];
+        for (int i = 0; i < Math.min(params.length, args.length - 1); i++) {
+            args[i] = JSON.parseObject(JSON.toJSONString(params[i]), reqTypes[i]);
+        }
+        byte[] trace = request.getTrace();
+        streamServer.start(request, observer -> {
+            args[args.length - 1] = observer;
+            Span span = Tracer.startSpan(Span.SERVER, mfs.getReqFullName(), trace);
+            try (Tracer.Scope ignored = span.makeCurrent()) {
+                mfs.getMethodInfo().invoke(this.ControllerOb, args);
+            } catch (InvocationTargetException e) {
+                span.setError(e.getCause());
+                throw e.getCause();
+            } finally {
+                span.end();
+            }
+        });
+    }
+    
+    private void handleStreamControl(String topic, MqttMessage message) {
+        try {
+            MQTTMessage control = JSON.parseObject(new String(message.getPayload()), MQTTMessage.class);
+            streamServer.control(topic, control);
+        } catch (Exception e) {
+            logger.error("处理MQTT流控制消息失败: topic={}", topic, e);
         }
     }
     
+    /**
+     * 在流式线程上发布结果帧并等待完成，结果按额度推送，发布顺序即到达顺序
+     */
+    private void publishStreamFrame(String topic, MQTTMessage frame) throws MqttException {
+        MqttMessage message = new MqttMessage(JSON.toJSONString(frame).getBytes());
+        message.setQos(options.getQos());
+        if (asyncClient != null) {
+            asyncClient.publish(topic, message).waitForCompletion();
+        } else {
+            mqttClient.publish(topic, message);
+        }
+    }
+    
+    /**
+     * 调用失败时回复错误码和错误信息，客户端据此抛出RpcException而不是等到超时
+     */
+    private void sendError(MQTTMessage request, MsgFun mfs, RpcException error) {
+        if (request == null || request.getReplyTo() == null) {
+            return;
+        }
+        if (mfs != null && mfs.getMethodInfo().getReturnType() == void.class
+                && !StreamObserver.isStreaming(mfs.getMethodInfo())) {
+            return;
+        }
+        MQTTMessage response = new MQTTMessage();
+        response.setCorrelationId(request.getCorrelationId());
+        response.setReplyTo(request.getReplyTo());
+        response.setErrorCode(error.getErrorCode());
+        response.setErrorMessage(error.getMessage());
+        try {
+            publishResponse(mfs, response);
+        } catch (Exception e) {
+            logger.error("MQTT错误响应发布失败: topic={}", request.getReplyTo(), e);
+        }
+    }
+    
+    private void publishResponse(MsgFun mfs, MQTTMessage response) throws MqttException {
+        String responseJson = JSON.toJSONString(response);
+        byte[] payload = responseJson.getBytes();
+        MqttMessage responseMessage = new MqttMessage(mfs != null ? encodePayload(mfs.getName(), payload) : payload);
+        responseMessage.setQos(options.getQos());
+        
+        if (asyncClient != null) {
+            publishAsync(response.getReplyTo(), responseMessage);
+        } else {
+            // 同步客户端在回调线程上等待QoS握手会卡住后续消息的确认，这里只发出不等待
+            mqttClient.getTopic(response.getReplyTo()).publish(responseMessage);
+        }
+    }
+    
+    /**
+     * 在回调线程上异步发布响应
+     * 不在此处等待在途窗口：token回调与messageArrived共用同一线程，阻塞会导致死锁，
+     * 超出maxInflight时由Paho直接抛出异常
+     */
+    private void publishAsync(String topic, MqttMessage message) throws MqttException {
+        asyncClient.publish(topic, message, null, new IMqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                // 响应发布完成
+            }
+            
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                logger.error("MQTT响应发布失败: topic={}", topic, exception);
+            }
+        });
+    }
+    
+    /**
+     * 序列化后的压缩阶段，按方法开关并受大小阈值限制
+     */
+    private byte[] encodePayload(String methodName, byte[] payload) {
+        if (!compressMethods.contains(methodName)) {
+            return payload;
+        }
+        return compressor.encode(payload);
+    }
+    
     public void close() {
+        if (streamServer != null) {
+            streamServer.close();
+        }
         try {
+            if (asyncClient != null && asyncClient.isConnected()) {
+                asyncClient.disconnect().waitForCompletion();
+                asyncClient.close();
+            }
             if (mqttClient != null && mqttClient.isConnected()) {
                 mqttClient.disconnect();
                 mqttClient.close();
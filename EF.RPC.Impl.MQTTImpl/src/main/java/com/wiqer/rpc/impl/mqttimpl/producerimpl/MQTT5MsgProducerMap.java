@@ -0,0 +1,314 @@
+package com.wiqer.rpc.impl.mqttimpl.producerimpl;
+
+import com.alibaba.fastjson.JSON;
+import com.wiqer.rpc.impl.core.MsgFun;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.producerImpl.MsgProducerMap;
+import com.wiqer.rpc.impl.mqttimpl.MQTTInflightWindow;
+import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.MQTTPendingCalls;
+import com.wiqer.rpc.impl.mqttimpl.consumerimpl.MQTT5MsgConsumerMap;
+import com.wiqer.rpc.impl.mqttimpl.MQTTTopics;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.TraceContext;
+import com.wiqer.rpc.impl.trace.Tracer;
+import com.wiqer.rpc.impl.util.CompressionUtil;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import org.eclipse.paho.mqttv5.client.*;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MQTT 5消息生产者映射
+ * 回复主题与关联ID放在协议属性（Response Topic / Correlation Data）中，消息体只有参数；
+ * 长请求主题由客户端在broker允许的范围内自动分配主题别名
+ */
+public class MQTT5MsgProducerMap extends MsgProducerMap implements InvocationHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MQTT5MsgProducerMap.class);
+
+    private MQTTOptions options;
+    private PayloadCompressor compressor;
+    private Set<String> compressMethods = ConcurrentHashMap.newKeySet();
+    private MqttAsyncClient asyncClient;
+    private MQTTInflightWindow inflightWindow;
+    private MQTTPendingCalls pendingCalls;
+
+    public MQTT5MsgProducerMap setOptions(MQTTOptions options) {
+        this.options = options;
+        return this;
+    }
+
+    @Override
+    protected void getMathsInfoMulti() {
+        // 方法信息在GetMathsInfo(Class)中按接口解析
+    }
+
+    public void GetMathsInfo(Class<?> clazz) {
+        this.clear();
+        pendingCalls = new MQTTPendingCalls(options.getRequestTimeout());
+
+        try {
+            MqttConnectionOptions connectOptions = new MqttConnectionOptions();
+            connectOptions.setCleanStart(options.isCleanSession());
+            connectOptions.setConnectionTimeout(options.getConnectionTimeout());
+            connectOptions.setKeepAliveInterval(options.getKeepAliveInterval());
+            connectOptions.setReceiveMaximum(options.getMaxInflight());
+            connectOptions.setTopicAliasMaximum(options.getTopicAliasMaximum());
+
+            if (options.getUsername() != null) {
+                connectOptions.setUserName(options.getUsername());
+                connectOptions.setPassword(options.getPassword().getBytes(StandardCharsets.UTF_8));
+            }
+
+            asyncClient = new MqttAsyncClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+            asyncClient.setCallback(new MqttCallback() {
+                @Override
+                public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                    logger.error("MQTT连接断开: {}", disconnectResponse.getReasonString());
+                }
+
+                @Override
+                public void mqttErrorOccurred(MqttException exception) {
+                    logger.error("MQTT协议错误", exception);
+                }
+
+                @Override
+                public void messageArrived(String topic, MqttMessage message) throws Exception {
+                    handleResponse(message);
+                }
+
+                @Override
+                public void deliveryComplete(IMqttToken token) {
+                    // 消息发送完成
+                }
+
+                @Override
+                public void connectComplete(boolean reconnect, String serverURI) {
+                    // 连接完成
+                }
+
+                @Override
+                public void authPacketArrived(int reasonCode, MqttProperties properties) {
+                    // 未使用增强认证
+                }
+            });
+            asyncClient.connect(connectOptions).waitForCompletion();
+            asyncClient.subscribe(getReplyTopic(), options.getQos()).waitForCompletion();
+            inflightWindow = new MQTTInflightWindow(options);
+
+            Class<?> serviceInterface = MQTTTopics.serviceInterface(clazz);
+            this.interfaceFullName = serviceInterface.getName();
+            this.version = MQTTTopics.serviceVersion(clazz, this.version, options);
+
+            compressor = new PayloadCompressor(options.getCompressionCodec(), options.getCompressionThreshold(), options.getMaxDecompressedLength());
+            compressMethods.clear();
+
+            // 处理类的方法
+            Method[] methods = clazz.getMethods();
+            for (Method method : methods) {
+                if (method.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+
+                MsgFun mfs = new MsgFun();
+                mfs.setName(method.getName());
+                mfs.setMethodInfo(method);
+                mfs.setReqFullName(MQTTTopics.requestName(serviceInterface.getName(), this.version, method.getName()));
+                mfs.setResponseType(method.getGenericReturnType());
+
+                // 设置参数类型
+                Parameter[] parameters = method.getParameters();
+                Class<?>[] paramTypes = new Class<?>[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    paramTypes[i] = parameters[i].getType();
+                }
+                mfs.setReqTypes(paramTypes);
+                if (CompressionUtil.isCompressionEnabled(method, options.isCompressionEnabled())) {
+                    compressMethods.add(method.getName());
+                }
+
+                this.put(method.getName(), mfs);
+            }
+
+        } catch (Exception e) {
+            logger.error("初始化MQTT 5生产者失败", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        Span span = Span.NOOP;
+        try {
+            MsgFun mfs = this.get(method.getName());
+            if (mfs == null) {
+                throw new RuntimeException("方法 " + method.getName() + " 未找到");
+            }
+            if (StreamObserver.isStreaming(method)) {
+                throw new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "MQTT 5传输不支持流式方法: " + method.getName());
+            }
+            span = Tracer.startSpan(Span.CLIENT, mfs.getReqFullName());
+
+            String correlationId = UUID.randomUUID().toString();
+            boolean hasReturn = method.getReturnType() != void.class;
+
+            MqttProperties properties = new MqttProperties();
+            if (hasReturn) {
+                properties.setResponseTopic(getReplyTopic());
+                properties.setCorrelationData(correlationId.getBytes(StandardCharsets.UTF_8));
+            }
+            if (span.isRecording()) {
+                // MQTT 5按W3C约定以traceparent用户属性传递跟踪上下文
+                properties.setUserProperties(Collections.singletonList(
+                        new UserProperty(TraceContext.TRACEPARENT, span.getContext().toTraceparent())));
+            }
+
+            MqttMessage mqttMessage = new MqttMessage(encodePayload(mfs.getName(), JSON.toJSONBytes(args)));
+            mqttMessage.setQos(options.getQos());
+            mqttMessage.setProperties(properties);
+            String requestTopic = MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName();
+
+            MQTTPendingCalls.PendingCall call = hasReturn ? pendingCalls.register(correlationId, mfs.getResponseType()) : null;
+
+            try {
+                inflightWindow.acquire();
+            } catch (RpcException e) {
+                pendingCalls.remove(correlationId);
+                throw e;
+            }
+
+            Span send = span.startChild(Span.SEND);
+            try {
+                asyncClient.publish(requestTopic, mqttMessage, correlationId, new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                        inflightWindow.release();
+                        send.end();
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        inflightWindow.release();
+                        send.setError(exception);
+                        send.end();
+                        failPendingCall(correlationId, exception);
+                    }
+                });
+            } catch (MqttException e) {
+                inflightWindow.release();
+                pendingCalls.remove(correlationId);
+                throw e;
+            }
+
+            if (!hasReturn) {
+                return null;
+            }
+
+            Span receive = span.startChild(Span.RECEIVE);
+            try {
+                return pendingCalls.await(correlationId, call);
+            } finally {
+                receive.end();
+            }
+
+        } catch (RpcException e) {
+            span.setError(e);
+            throw e;
+        } catch (Exception e) {
+            span.setError(e);
+            logger.error("MQTT 5 RPC调用失败", e);
+            throw new RuntimeException(e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * 只读取Correlation Data定位待响应调用，消息体仅在命中时反序列化；
+     * 带错误码用户属性的响应按服务端错误处理
+     */
+    private void handleResponse(MqttMessage message) {
+        try {
+            MqttProperties properties = message.getProperties();
+            if (properties == null || properties.getCorrelationData() == null) {
+                return;
+            }
+
+            String correlationId = new String(properties.getCorrelationData(), StandardCharsets.UTF_8);
+            if (!pendingCalls.isPending(correlationId)) {
+                return;
+            }
+
+            String errorCode = userProperty(properties, MQTT5MsgConsumerMap.ERROR_CODE_PROPERTY);
+            if (errorCode != null) {
+                pendingCalls.fail(correlationId, new RpcException(errorCode,
+                        userProperty(properties, MQTT5MsgConsumerMap.ERROR_MESSAGE_PROPERTY)));
+                return;
+            }
+
+            Object result = JSON.parseObject(PayloadCompressor.decode(message.getPayload(), options.getMaxDecompressedLength()), pendingCalls.returnType(correlationId));
+            pendingCalls.complete(correlationId, result);
+
+        } catch (Exception e) {
+            logger.error("处理MQTT 5响应失败", e);
+        }
+    }
+
+    private void failPendingCall(String correlationId, Throwable cause) {
+        logger.error("MQTT请求发布失败: correlationId={}", correlationId, cause);
+        pendingCalls.fail(correlationId, new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT请求发布失败", cause));
+    }
+
+    private static String userProperty(MqttProperties properties, String key) {
+        if (properties.getUserProperties() == null) {
+            return null;
+        }
+        for (UserProperty property : properties.getUserProperties()) {
+            if (key.equals(property.getKey())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    private String getReplyTopic() {
+        return MQTTTopics.REPLY_PREFIX + options.getClientId();
+    }
+
+    /**
+     * 序列化后的压缩阶段，按方法开关并受大小阈值限制
+     */
+    private byte[] encodePayload(String methodName, byte[] payload) {
+        if (!compressMethods.contains(methodName)) {
+            return payload;
+        }
+        return compressor.encode(payload);
+    }
+
+    public void close() {
+        try {
+            if (asyncClient != null && asyncClient.isConnected()) {
+                asyncClient.disconnect().waitForCompletion();
+                asyncClient.close();
+            }
+        } catch (Exception e) {
+            logger.error("关闭MQTT 5客户端失败", e);
+        }
+    }
+}
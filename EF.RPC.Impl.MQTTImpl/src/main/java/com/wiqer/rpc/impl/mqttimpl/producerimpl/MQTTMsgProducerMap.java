@@ -1,33 +1,53 @@
 package com.wiqer.rpc.impl.mqttimpl.producerimpl;
 
 import com.alibaba.fastjson.JSON;
-import com.wiqer.rpc.impl.MsgMathsInfo;
+import com.wiqer.rpc.impl.core.MsgFun;
+import com.wiqer.rpc.impl.core.RpcException;
 import com.wiqer.rpc.impl.producerImpl.MsgProducerMap;
-import com.wiqer.rpc.impl.sync.UnsafeSynchronizer;
+import com.wiqer.rpc.impl.mqttimpl.MQTTClientStream;
+import com.wiqer.rpc.impl.mqttimpl.MQTTInflightWindow;
 import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.MQTTPendingCalls;
+import com.wiqer.rpc.impl.mqttimpl.MQTTTopics;
+import com.wiqer.rpc.impl.util.CompressionUtil;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
 import com.wiqer.rpc.impl.mqttimpl.MQTTMessage;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.Tracer;
 import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * MQTT消息生产者映射
  * 对应.NET版本的RabbitMQMsgProducerMap
+ * 回复主题按clientId统一订阅一次，响应按关联ID分发给各自的调用；
+ * 流式方法的结果帧同样按关联ID分发给对应的MQTTClientStream
  */
-public class MQTTMsgProducerMap extends MsgProducerMap {
+public class MQTTMsgProducerMap extends MsgProducerMap implements InvocationHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(MQTTMsgProducerMap.class);
     
     private MQTTOptions options;
+    private PayloadCompressor compressor;
+    private Set<String> compressMethods = ConcurrentHashMap.newKeySet();
     private MqttClient mqttClient;
-    private ConcurrentMap<String, UnsafeSynchronizer> synchronizerMap = new ConcurrentHashMap<>();
+    private MqttAsyncClient asyncClient;
+    private MQTTInflightWindow inflightWindow;
+    private MQTTPendingCalls pendingCalls;
+    private final Map<String, MQTTClientStream> streams = new ConcurrentHashMap<>();
     
     public MQTTMsgProducerMap setOptions(MQTTOptions options) {
         this.options = options;
@@ -35,12 +55,15 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
     }
     
     @Override
+    protected void getMathsInfoMulti() {
+        // 方法信息在GetMathsInfo(Class)中按接口解析
+    }
+    
     public void GetMathsInfo(Class<?> clazz) {
         this.clear();
+        pendingCalls = new MQTTPendingCalls(options.getRequestTimeout());
         
         try {
-            // 创建MQTT客户端
-            mqttClient = new MqttClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
             MqttConnectOptions connectOptions = new MqttConnectOptions();
             connectOptions.setCleanSession(options.isCleanSession());
             connectOptions.setConnectionTimeout(options.getConnectionTimeout());
@@ -52,10 +75,8 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
                 connectOptions.setPassword(options.getPassword().toCharArray());
             }
             
-            mqttClient.connect(connectOptions);
-            
             // 设置消息回调
-            mqttClient.setCallback(new MqttCallback() {
+            MqttCallback callback = new MqttCallback() {
                 @Override
                 public void connectionLost(Throwable cause) {
                     logger.error("MQTT连接丢失", cause);
@@ -70,8 +91,30 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
                 public void deliveryComplete(IMqttDeliveryToken token) {
                     // 消息发送完成
                 }
-            });
+            };
             
+            if (options.isAsyncClient()) {
+                // 异步客户端：发布不在调用线程上等待QoS握手，回复主题按clientId统一订阅一次
+                asyncClient = new MqttAsyncClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+                asyncClient.setCallback(callback);
+                asyncClient.connect(connectOptions).waitForCompletion();
+                asyncClient.subscribe(getReplyTopicPrefix() + "#", options.getQos()).waitForCompletion();
+                inflightWindow = new MQTTInflightWindow(options);
+            } else {
+                // 创建MQTT客户端
+                mqttClient = new MqttClient(options.getBrokerUrl(), options.getClientId(), new MemoryPersistence());
+                mqttClient.setCallback(callback);
+                mqttClient.connect(connectOptions);
+                mqttClient.subscribe(getReplyTopicPrefix() + "#", options.getQos());
+            }
+            
+            Class<?> serviceInterface = MQTTTopics.serviceInterface(clazz);
+            this.interfaceFullName = serviceInterface.getName();
+            this.version = MQTTTopics.serviceVersion(clazz, this.version, options);
+
+            compressor = new PayloadCompressor(options.getCompressionCodec(), options.getCompressionThreshold(), options.getMaxDecompressedLength());
+            compressMethods.clear();
+
             // 处理类的方法
             Method[] methods = clazz.getMethods();
             for (Method method : methods) {
@@ -79,10 +122,13 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
                     continue;
                 }
                 
-                MsgMathsInfo mfs = new MsgMathsInfo();
+                MsgFun mfs = new MsgFun();
                 mfs.setName(method.getName());
                 mfs.setMethodInfo(method);
-                mfs.setReqFullName(options.getClientId() + "." + clazz.getSimpleName() + "." + method.getName());
+                mfs.setReqFullName(MQTTTopics.requestName(serviceInterface.getName(), this.version, method.getName()));
+                //流式方法的响应类型是每条结果的类型
+                mfs.setResponseType(StreamObserver.isStreaming(method)
+                        ? StreamObserver.elementType(method) : method.getGenericReturnType());
                 
                 // 设置参数类型
                 Parameter[] parameters = method.getParameters();
@@ -90,11 +136,9 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
                 for (int i = 0; i < parameters.length; i++) {
                     paramTypes[i] = parameters[i].getType();
                 }
-                mfs.setReqs(paramTypes);
-                
-                // 初始化同步器（如果有返回值）
-                if (method.getReturnType() != void.class) {
-                    mfs.initUnsafeSynchronizer();
+                mfs.setReqTypes(paramTypes);
+                if (CompressionUtil.isCompressionEnabled(method, options.isCompressionEnabled())) {
+                    compressMethods.add(method.getName());
                 }
                 
                 this.put(method.getName(), mfs);
@@ -108,78 +152,253 @@ public class MQTTMsgProducerMap extends MsgProducerMap {
     
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
+        Span span = Span.NOOP;
         try {
-            MsgMathsInfo mfs = this.get(method.getName());
+            MsgFun mfs = this.get(method.getName());
             if (mfs == null) {
                 throw new RuntimeException("方法 " + method.getName() + " 未找到");
             }
+            if (StreamObserver.isStreaming(method)) {
+                //通过代理调用时不做流控，需要request-N时使用stream方法
+                stream(method.getName(), Arrays.copyOf(args, args.length - 1), Long.MAX_VALUE,
+                        (StreamObserver<?>) args[args.length - 1]);
+                return null;
+            }
+            span = Tracer.startSpan(Span.CLIENT, mfs.getReqFullName());
+            
+            if (asyncClient != null) {
+                return invokeAsync(method, mfs, args, span);
+            }
             
             // 创建请求消息
             MQTTMessage request = new MQTTMessage(args);
-            request.setCorrelationId(UUID.randomUUID().toString());
-            request.setReplyTo("efrpc/reply/" + request.getCorrelationId());
+            String correlationId = UUID.randomUUID().toString();
+            request.setCorrelationId(correlationId);
+            request.setReplyTo(getReplyTopicPrefix() + correlationId);
+            request.setTrace(span.header());
             
             // 序列化消息
             String messageJson = JSON.toJSONString(request);
-            MqttMessage mqttMessage = new MqttMessage(messageJson.getBytes());
+            MqttMessage mqttMessage = new MqttMessage(encodePayload(mfs.getName(), messageJson.getBytes()));
             mqttMessage.setQos(options.getQos());
             
-            // 发布消息到请求主题
-            String requestTopic = "efrpc/request/" + mfs.getReqFullName();
-            mqttClient.publish(requestTopic, mqttMessage);
+            // 有返回值时先按关联ID登记，回复主题已在连接时订阅
+            boolean hasReturn = method.getReturnType() != void.class;
+            MQTTPendingCalls.PendingCall call = hasReturn ? pendingCalls.register(correlationId, mfs.getResponseType()) : null;
             
-            // 订阅回复主题
-            mqttClient.subscribe(request.getReplyTo(), options.getQos());
+            // 发布消息到请求主题
+            String requestTopic = MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName();
+            Span send = span.startChild(Span.SEND);
+            try {
+                mqttClient.publish(requestTopic, mqttMessage);
+            } catch (MqttException e) {
+                pendingCalls.remove(correlationId);
+                throw new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT请求发布失败", e);
+            } finally {
+                send.end();
+            }
             
-            // 等待响应（如果有返回值）
-            if (method.getReturnType() != void.class) {
-                UnsafeSynchronizer synchronizer = mfs.getUnsafeSynchronizer();
-                synchronizerMap.put(request.getCorrelationId(), synchronizer);
-                
-                // 等待响应
-                synchronizer.acquire();
-                
-                // 获取响应结果
-                Object result = mfs.getMsg();
-                synchronizerMap.remove(request.getCorrelationId());
-                
-                return result;
+            if (!hasReturn) {
+                return null;
             }
             
-            return null;
+            // 等待响应
+            Span receive = span.startChild(Span.RECEIVE);
+            try {
+                return pendingCalls.await(correlationId, call);
+            } finally {
+                receive.end();
+            }
             
+        } catch (RpcException e) {
+            span.setError(e);
+            throw e;
         } catch (Exception e) {
+            span.setError(e);
             logger.error("MQTT RPC调用失败", e);
             throw new RuntimeException(e);
+        } finally {
+            span.end();
+        }
+    }
+    
+    /**
+     * 异步客户端调用：先登记待响应表再发布，发布结果由token回调反馈
+     */
+    private Object invokeAsync(Method method, MsgFun mfs, Object[] args, Span span) throws Exception {
+        MQTTMessage request = new MQTTMessage(args);
+        String correlationId = UUID.randomUUID().toString();
+        request.setCorrelationId(correlationId);
+        request.setReplyTo(getReplyTopicPrefix() + correlationId);
+        request.setTrace(span.header());
+        
+        MqttMessage mqttMessage = new MqttMessage(encodePayload(mfs.getName(), JSON.toJSONString(request).getBytes()));
+        mqttMessage.setQos(options.getQos());
+        String requestTopic = MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName();
+        
+        boolean hasReturn = method.getReturnType() != void.class;
+        MQTTPendingCalls.PendingCall call = hasReturn ? pendingCalls.register(correlationId, mfs.getResponseType()) : null;
+        
+        try {
+            inflightWindow.acquire();
+        } catch (RpcException e) {
+            pendingCalls.remove(correlationId);
+            throw e;
+        }
+        
+        Span send = span.startChild(Span.SEND);
+        try {
+            asyncClient.publish(requestTopic, mqttMessage, correlationId, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    inflightWindow.release();
+                    send.end();
+                }
+                
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    inflightWindow.release();
+                    send.setError(exception);
+                    send.end();
+                    failPendingCall(correlationId, exception);
+                }
+            });
+        } catch (MqttException e) {
+            inflightWindow.release();
+            pendingCalls.remove(correlationId);
+            throw e;
+        }
+        
+        if (!hasReturn) {
+            return null;
+        }
+        
+        Span receive = span.startChild(Span.RECEIVE);
+        try {
+            return pendingCalls.await(correlationId, call);
+        } finally {
+            receive.end();
+        }
+    }
+    
+    /**
+     * 调用流式方法，args不含最后的StreamObserver参数，initialRequest为随请求发送的初始额度，
+     * 之后通过返回的MQTTClientStream追加额度或取消；结果在MQTT回调线程上推送给observer
+     */
+    public MQTTClientStream stream(String methodName, Object[] args, long initialRequest, StreamObserver<?> observer) {
+        MsgFun mfs = this.get(methodName);
+        if (mfs == null || !StreamObserver.isStreaming(mfs.getMethodInfo())) {
+            throw new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "流式方法 " + methodName + " 未找到");
         }
+        String streamId = UUID.randomUUID().toString();
+        MQTTClientStream stream = new MQTTClientStream(streamId, mfs.getResponseType(), observer,
+                this::publishNoWait, () -> streams.remove(streamId));
+        
+        Span span = Tracer.startSpan(Span.CLIENT, mfs.getReqFullName());
+        MQTTMessage request = new MQTTMessage(args);
+        request.setCorrelationId(streamId);
+        request.setReplyTo(getReplyTopicPrefix() + streamId);
+        request.setN(Math.max(initialRequest, 0));
+        request.setTrace(span.header());
+        streams.put(streamId, stream);
+        try {
+            publishNoWait(MQTTTopics.REQUEST_PREFIX + mfs.getReqFullName(), request);
+        } catch (MqttException e) {
+            span.setError(e);
+            streams.remove(streamId);
+            throw new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT流式请求发布失败", e);
+        } finally {
+            span.end();
+        }
+        return stream;
+    }
+    
+    /**
+     * 流式请求和控制消息可能在回调线程上发布（observer中调用request），只发出不等待
+     */
+    private void publishNoWait(String topic, MQTTMessage message) throws MqttException {
+        MqttMessage mqttMessage = new MqttMessage(JSON.toJSONString(message).getBytes());
+        mqttMessage.setQos(options.getQos());
+        if (asyncClient != null) {
+            asyncClient.publish(topic, mqttMessage, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    // 发布完成
+                }
+                
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    MQTTClientStream stream = streams.get(message.getCorrelationId());
+                    if (stream != null) {
+                        stream.abort(new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT流消息发布失败", exception));
+                    }
+                }
+            });
+        } else {
+            mqttClient.getTopic(topic).publish(mqttMessage);
+        }
+    }
+    
+    /**
+     * 发布失败时直接唤醒等待方，不必等到响应超时
+     */
+    private void failPendingCall(String correlationId, Throwable cause) {
+        logger.error("MQTT请求发布失败: correlationId={}", correlationId, cause);
+        pendingCalls.fail(correlationId, new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT请求发布失败", cause));
+    }
+    
+    private String getReplyTopicPrefix() {
+        return MQTTTopics.REPLY_PREFIX + options.getClientId() + "/";
     }
     
     private void handleResponse(String topic, MqttMessage message) {
         try {
-            String messageStr = new String(message.getPayload());
+            String messageStr = new String(PayloadCompressor.decode(message.getPayload(), options.getMaxDecompressedLength()));
             MQTTMessage response = JSON.parseObject(messageStr, MQTTMessage.class);
             
             String correlationId = response.getCorrelationId();
-            UnsafeSynchronizer synchronizer = synchronizerMap.get(correlationId);
+            MQTTClientStream stream = correlationId == null ? null : streams.get(correlationId);
+            if (stream != null) {
+                stream.dispatch(response);
+                return;
+            }
+            if (correlationId == null || !pendingCalls.isPending(correlationId)) {
+                return;
+            }
             
-            if (synchronizer != null) {
-                // 设置响应结果
-                MsgMathsInfo mfs = this.get(response.getId());
-                if (mfs != null) {
-                    mfs.setMsg(response.getReq());
-                }
-                
-                // 释放同步器
-                synchronizer.release();
+            if (response.getErrorCode() != null) {
+                pendingCalls.fail(correlationId, new RpcException(response.getErrorCode(), response.getErrorMessage()));
+                return;
             }
             
+            // 按调用方法的返回类型还原结果并唤醒对应的调用
+            Object result = MQTTPendingCalls.convert(response.getReq(), pendingCalls.returnType(correlationId));
+            pendingCalls.complete(correlationId, result);
+            
         } catch (Exception e) {
             logger.error("处理MQTT响应失败", e);
         }
     }
     
+    /**
+     * 序列化后的压缩阶段，按方法开关并受大小阈值限制
+     */
+    private byte[] encodePayload(String methodName, byte[] payload) {
+        if (!compressMethods.contains(methodName)) {
+            return payload;
+        }
+        return compressor.encode(payload);
+    }
+    
     public void close() {
+        //断开前取消未结束的流，服务端的流式方法随之退出
+        RpcException closed = new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "MQTT客户端已关闭");
+        new ArrayList<>(streams.values()).forEach(stream -> stream.abort(closed));
         try {
+            if (asyncClient != null && asyncClient.isConnected()) {
+                asyncClient.disconnect().waitForCompletion();
+                asyncClient.close();
+            }
             if (mqttClient != null && mqttClient.isConnected()) {
                 mqttClient.disconnect();
                 mqttClient.close();
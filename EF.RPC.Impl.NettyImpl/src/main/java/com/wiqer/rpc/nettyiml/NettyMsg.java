@@ -7,4 +7,6 @@ import lombok.Data;
 public class NettyMsg {
     private String queName;
     private SuperMsgMulti superMsgMulti;
+    //收到请求时的System.nanoTime()，只在本地使用，不参与序列化
+    private transient long receivedNanos;
 }
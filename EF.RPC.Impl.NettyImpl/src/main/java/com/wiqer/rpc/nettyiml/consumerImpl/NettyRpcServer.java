@@ -2,10 +2,12 @@ package com.wiqer.rpc.nettyiml.consumerImpl;
 
 import com.wiqer.rpc.impl.RpcServer;
 import com.wiqer.rpc.impl.annotation.EFRpcMethod;
+import com.wiqer.rpc.impl.core.RpcException;
 import com.wiqer.rpc.impl.core.RpcServerHandler;
 import com.wiqer.rpc.impl.core.ServerHandler;
 import com.wiqer.rpc.nettyiml.NettyMsg;
 import com.wiqer.rpc.nettyiml.NettyMsgFun;
+import com.wiqer.rpc.nettyiml.netty.NettyTransport;
 import com.wiqer.rpc.nettyiml.netty.NodeServer;
 import com.wiqer.rpc.serialize.JsonSerializer;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +17,11 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.*;
 
+/**
+ * Netty传输服务端。NodeServer只把请求放入队列，这条传输没有回写响应的通道，
+ * 处理结果和异常（包括限流、并发限制的拒绝）都无法送回调用方，只记录日志，调用方以超时结束；
+ * 需要把拒绝回复给调用方时使用共享内存、WebSocket或MQTT传输
+ */
 @Slf4j
 public class NettyRpcServer extends RpcServer {
     Map<String, NettyMsgFun> nettyMsgFunMap =new ConcurrentSkipListMap<>();
@@ -58,7 +65,11 @@ public class NettyRpcServer extends RpcServer {
         NodeServer nodeServer=new NodeServer();
         nodeServer.setNettyMsgQueue(nettyMsgQueue);
         try {
-            nodeServer.startNettyServer(9182);
+            if (NettyTransport.isDomainSocket(serverAddress)) {
+                nodeServer.startNettyServer(serverAddress);
+            } else {
+                nodeServer.startNettyServer(9182);
+            }
         }catch (Exception e){
             log.error("nodeServer  run",e);
         }
@@ -68,10 +79,23 @@ public class NettyRpcServer extends RpcServer {
                 NettyMsg nettyMsg=nettyMsgQueue.take();
                 threadPoolExecutor.submit(()->{
                     NettyMsgFun nettyMsgFun=nettyMsgFunMap.get(nettyMsg.getQueName());
+                    if (nettyMsgFun == null) {
+                        log.error("未找到Netty请求的方法: {}", nettyMsg.getQueName());
+                        return;
+                    }
                     try {
-                        serverHandler.handle(nettyMsg.getSuperMsgMulti(),nettyMsgFun.getBean(),nettyMsgFun.getMethod());
+                        if (serverHandler instanceof RpcServerHandler) {
+                            //带上收到请求的时间，排队等待计入服务端阶段耗时
+                            ((RpcServerHandler) serverHandler).handle(nettyMsg.getSuperMsgMulti(),nettyMsgFun.getBean(),
+                                    nettyMsgFun.getMethod(), nettyMsg.getReceivedNanos());
+                        } else {
+                            serverHandler.handle(nettyMsg.getSuperMsgMulti(),nettyMsgFun.getBean(),nettyMsgFun.getMethod());
+                        }
+                    } catch (RpcException e) {
+                        //限流等拒绝是预期内的，没有回复通道，记录后丢弃
+                        log.warn("Netty请求被拒绝: {} {}", nettyMsg.getQueName(), e.toString());
                     } catch (Throwable throwable) {
-                        throwable.printStackTrace();
+                        log.error("Netty请求处理失败: {}", nettyMsg.getQueName(), throwable);
                     }
                 });
 
@@ -0,0 +1,193 @@
+package com.wiqer.rpc.nettyiml.metrics;
+
+import com.wiqer.rpc.impl.core.improved.ConnectionPool;
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import com.wiqer.rpc.impl.monitor.OpenMetricsWriter;
+import com.wiqer.rpc.impl.monitor.RpcMonitor;
+import com.wiqer.rpc.impl.monitor.SendStats;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 指标抓取端点，GET /metrics 以OpenMetrics文本格式返回已注册的指标
+ * 指标直接写入响应ByteBuf，不生成中间字符串；同类实例按注册名区分，同名注册会替换
+ */
+@Slf4j
+public class MetricsHttpServer {
+
+    public static final String PATH = "/metrics";
+
+    private final int port;
+    private final Map<String, MetricsCollector> collectors = new ConcurrentHashMap<>();
+    private final Map<String, RpcMonitor> monitors = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private final Map<String, SendStats> sendStats = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, AdaptiveConcurrencyLimiter>>> limiters = new ConcurrentHashMap<>();
+
+    private EventLoopGroup group;
+    private Channel channel;
+
+    public MetricsHttpServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @param instance 输出为instance标签
+     */
+    public MetricsHttpServer register(String instance, MetricsCollector collector) {
+        collectors.put(instance, collector);
+        return this;
+    }
+
+    /**
+     * @param instance 输出为instance标签
+     */
+    public MetricsHttpServer register(String instance, RpcMonitor monitor) {
+        monitors.put(instance, monitor);
+        return this;
+    }
+
+    public MetricsHttpServer register(String poolName, ConnectionPool pool) {
+        pools.put(poolName, pool);
+        return this;
+    }
+
+    /**
+     * 客户端发送背压的统计，如NettyClient.getSendStats()
+     */
+    public MetricsHttpServer register(String clientName, SendStats stats) {
+        sendStats.put(clientName, stats);
+        return this;
+    }
+
+    /**
+     * 自适应并发限制器在开启后按方法创建，每次抓取时重新获取，如ObjectProxy::getConcurrencyLimiters、
+     * RpcServerHandler::getConcurrencyLimiters
+     *
+     * @param instance 输出为instance标签
+     */
+    public MetricsHttpServer registerLimiters(String instance, Supplier<Map<String, AdaptiveConcurrencyLimiter>> limiters) {
+        this.limiters.put(instance, limiters);
+        return this;
+    }
+
+    public void start() throws InterruptedException {
+        group = new NioEventLoopGroup(1);
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new HttpServerCodec())
+                                .addLast(new HttpObjectAggregator(8192))
+                                .addLast(new MetricsHandler());
+                    }
+                });
+        channel = bootstrap.bind(port).sync().channel();
+        log.info("指标端点已启动: http://0.0.0.0:{}{}", port, PATH);
+    }
+
+    public void stop() {
+        if (channel != null) {
+            channel.close();
+        }
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 按类别写出所有指标，同类实例一起输出，每个指标族只有一组TYPE/HELP
+     */
+    void render(ByteBuf buf) throws Exception {
+        OpenMetricsWriter writer = new OpenMetricsWriter(new ByteBufAppendable(buf));
+        writer.writeCollectors(collectors).writeMonitors(monitors);
+        Map<String, ConnectionPool.PoolStats> poolStats = new LinkedHashMap<>();
+        for (Map.Entry<String, ConnectionPool> entry : pools.entrySet()) {
+            poolStats.put(entry.getKey(), entry.getValue().getPoolStats());
+        }
+        writer.writePools(poolStats).writeSendStats(sendStats);
+        Map<String, Map<String, AdaptiveConcurrencyLimiter>> limiterViews = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Map<String, AdaptiveConcurrencyLimiter>>> entry : limiters.entrySet()) {
+            limiterViews.put(entry.getKey(), entry.getValue().get());
+        }
+        writer.writeLimiters(limiterViews);
+        writer.finish();
+    }
+
+    private class MetricsHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            FullHttpResponse response;
+            if (request.method() != HttpMethod.GET || !new QueryStringDecoder(request.uri()).path().equals(PATH)) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+            } else {
+                ByteBuf body = ctx.alloc().buffer();
+                try {
+                    render(body);
+                    response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body);
+                    response.headers().set(HttpHeaderNames.CONTENT_TYPE, OpenMetricsWriter.CONTENT_TYPE);
+                } catch (Exception e) {
+                    body.release();
+                    log.error("输出指标失败", e);
+                    response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                }
+            }
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            if (keepAlive) {
+                HttpUtil.setKeepAlive(response, true);
+                ctx.writeAndFlush(response);
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+    }
+
+    /**
+     * 把Appendable的写入直接编码到ByteBuf
+     */
+    private static final class ByteBufAppendable implements Appendable {
+        private final ByteBuf buf;
+
+        ByteBufAppendable(ByteBuf buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            ByteBufUtil.writeUtf8(buf, csq);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            ByteBufUtil.writeUtf8(buf, csq, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (c < 0x80) {
+                buf.writeByte(c);
+            } else {
+                ByteBufUtil.writeUtf8(buf, String.valueOf(c));
+            }
+            return this;
+        }
+    }
+}
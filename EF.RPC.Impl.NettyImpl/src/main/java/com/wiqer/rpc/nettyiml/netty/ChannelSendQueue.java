@@ -0,0 +1,156 @@
+package com.wiqer.rpc.nettyiml.netty;
+
+import com.wiqer.rpc.impl.config.RpcConfig;
+import com.wiqer.rpc.impl.monitor.SendStats;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个连接的发送限流：记录已提交但尚未写入socket的消息数，
+ * 超过上限或出站缓冲超过高水位（连接不可写）时拒绝占位，由NettyClient按溢出策略处理。
+ * 写完成、连接恢复可写或断开时唤醒等待的调用方线程。
+ * 上限、溢出策略和阻塞等待时长在建立连接时取自该连接的RpcConfig，各连接互不影响
+ */
+public class ChannelSendQueue extends ChannelInboundHandlerAdapter {
+
+    private final int maxPending;
+    private final SendOverflowPolicy overflowPolicy;
+    private final long blockTimeout;
+    private final SendStats stats;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object lock = new Object();
+    //没有等待线程时写完成不进入锁
+    private volatile int waiters;
+    private volatile Channel channel;
+
+    public ChannelSendQueue(RpcConfig config, SendStats stats) {
+        this.maxPending = config.getMaxPendingSends();
+        this.overflowPolicy = SendOverflowPolicy.of(config.getSendOverflowPolicy());
+        this.blockTimeout = config.getSendBlockTimeout();
+        this.stats = stats;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        channel = ctx.channel();
+    }
+
+    /**
+     * 连接可写且待发送数未达上限时占一个位置
+     */
+    public boolean tryAcquire() {
+        Channel ch = channel;
+        if (ch == null || !ch.isActive()) {
+            return false;
+        }
+        for (; ; ) {
+            int current = pending.get();
+            if (current >= maxPending || !ch.isWritable()) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                stats.acquirePending();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 等待占位直到超时，事件循环线程上调用时不等待，否则写完成的回调无法执行
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryAcquire()) {
+            return true;
+        }
+        Channel ch = channel;
+        if (ch == null || ch.eventLoop().inEventLoop()) {
+            return false;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            waiters++;
+            try {
+                while (!tryAcquire()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !ch.isActive()) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                return true;
+            } finally {
+                waiters--;
+            }
+        }
+    }
+
+    /**
+     * 写出已占位的消息，写完成（成功或失败）后释放位置
+     */
+    public ChannelFuture write(byte[] message) {
+        ChannelFuture future;
+        try {
+            future = channel.writeAndFlush(Unpooled.copiedBuffer(message));
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        future.addListener(f -> release());
+        return future;
+    }
+
+    private void release() {
+        pending.decrementAndGet();
+        stats.releasePending();
+        signal();
+    }
+
+    private void signal() {
+        if (waiters > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            signal();
+        } else {
+            stats.recordUnwritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        signal();
+        super.channelInactive(ctx);
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public SendOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * BLOCK策略下的等待时长（毫秒）
+     */
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+}
@@ -1,22 +1,25 @@
 package com.wiqer.rpc.nettyiml.netty;
 
 
+import com.wiqer.rpc.impl.config.RpcConfig;
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.monitor.SendStats;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * netty连接器
@@ -25,34 +28,56 @@ import java.util.concurrent.ConcurrentSkipListMap;
 @Slf4j
 public class NettyClient {
     private static final NettyClient nettyClient = new NettyClient();
+    //建立连接时指定的发送配置，未指定时用defaultSendConfig
+    private static final AttributeKey<RpcConfig> SEND_CONFIG = AttributeKey.valueOf("efrpc.sendConfig");
 
     private Bootstrap bootstrap;
+    //Unix域套接字的连接器，首次连接unix://地址时创建
+    private Bootstrap domainBootstrap;
+
+    //合并flush：连续写入在事件循环的一轮中只触发一次系统调用，0表示每次写入立即flush
+    private volatile int flushConsolidationLimit = FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES;
+
+    //发送背压：出站缓冲超过高水位时连接不可写，每个连接的待发送消息数有上限，拥塞时按溢出策略处理；
+    //配置在建立连接时固定在该连接的ChannelSendQueue上
+    private volatile RpcConfig defaultSendConfig = RpcConfig.createDefault();
+    private final SendStats sendStats = new SendStats();
 
     private Map<String,Channel> channelMap =new ConcurrentSkipListMap<>();
-    private List<Channel> channels=new ArrayList<>();
+    private List<Channel> channels=new CopyOnWriteArrayList<>();
     public static NettyClient getInstance() {
         return nettyClient;
     }
 
     private NettyClient() {
         if (bootstrap == null) {
-            bootstrap = initBootstrap();
+            bootstrap = initBootstrap(NettyTransport.TCP);
         }
     }
 
-    private Bootstrap initBootstrap() {
+    private Bootstrap initBootstrap(NettyTransport transport) {
         //少线程
-        EventLoopGroup group = new NioEventLoopGroup(1);
+        EventLoopGroup group = transport.newEventLoopGroup(1);
 
         Bootstrap bootstrap = new Bootstrap();
         NettyClientHandler nettyClientHandler = new NettyClientHandler();
-        bootstrap.group(group).channel(NioSocketChannel.class)
-                .option(ChannelOption.SO_KEEPALIVE, true)
-                .option(ChannelOption.TCP_NODELAY, true)
-                .handler(new ChannelInitializer<SocketChannel>() {
+        bootstrap.group(group).channel(transport.channelClass())
+                .handler(new ChannelInitializer<Channel>() {
                     @Override
-                    protected void initChannel(SocketChannel ch) {
+                    protected void initChannel(Channel ch) {
                         ByteBuf delimiter = Unpooled.copiedBuffer("!0.0".getBytes());
+                        RpcConfig sendConfig = ch.attr(SEND_CONFIG).get();
+                        if (sendConfig == null) {
+                            sendConfig = defaultSendConfig;
+                        }
+                        ch.config().setWriteBufferWaterMark(new WriteBufferWaterMark(
+                                sendConfig.getWriteBufferLowWaterMark(), sendConfig.getWriteBufferHighWaterMark()));
+                        ch.pipeline().addLast(new ChannelSendQueue(sendConfig, sendStats));
+                        int flushLimit = flushConsolidationLimit;
+                        if (flushLimit > 0) {
+                            //调用方线程写入时没有读事件，需要consolidateWhenNoReadInProgress才会合并
+                            ch.pipeline().addLast(new FlushConsolidationHandler(flushLimit, true));
+                        }
                         ch.pipeline()
                                 //粘包
                                 .addLast(new DelimiterBasedFrameDecoder(0xffffff, delimiter))
@@ -62,23 +87,100 @@ public class NettyClient {
                                 .addLast(nettyClientHandler);
                     }
                 });
+        //域套接字没有TCP选项
+        if (!transport.isDomainSocket()) {
+            bootstrap.option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.TCP_NODELAY, true);
+        }
         return bootstrap;
     }
-    public synchronized boolean connect(List<String> addresses) {
+
+    private Bootstrap bootstrapFor(String address) {
+        if (!NettyTransport.isDomainSocket(address)) {
+            return bootstrap;
+        }
+        if (domainBootstrap == null) {
+            domainBootstrap = initBootstrap(NettyTransport.of(address));
+        }
+        return domainBootstrap;
+    }
+
+    /**
+     * 每个连接最多合并多少次flush后强制写出，对之后建立的连接生效，0表示关闭合并
+     */
+    public void setFlushConsolidationLimit(int flushConsolidationLimit) {
+        this.flushConsolidationLimit = flushConsolidationLimit;
+    }
+
+    /**
+     * 未指定发送配置的connect所用的默认发送背压：出站缓冲的高低水位、每个连接的待发送上限、
+     * 拥塞时的溢出策略和阻塞等待时长，对之后建立的连接生效
+     */
+    public void applySendConfig(RpcConfig config) {
+        config.validate();
+        this.defaultSendConfig = config;
+    }
+
+    public SendStats getSendStats() {
+        return sendStats;
+    }
+
+    /**
+     * 所有连接当前已提交但尚未写入socket的消息数
+     */
+    public int getPendingSends() {
+        return (int) sendStats.getPending();
+    }
+
+    /**
+     * 到该地址的连接的发送队列，未连接时返回null
+     */
+    public ChannelSendQueue getSendQueue(String address) {
+        return sendQueue(channelMap.get(address));
+    }
+
+    /**
+     * 到该地址的连接是否仍可用
+     */
+    public boolean isConnected(String address) {
+        Channel channel = channelMap.get(address);
+        return channel != null && channel.isActive();
+    }
+
+    /**
+     * @param addresses host:port 或 unix:///path/to.sock，同机部署时后者绕过TCP/IP协议栈
+     */
+    public boolean connect(List<String> addresses) {
+        return connect(addresses, null);
+    }
+
+    /**
+     * 按指定的发送配置建立连接；已连接的地址沿用建立连接时的配置
+     *
+     * @param sendConfig 为null时用applySendConfig设置的默认配置
+     */
+    public synchronized boolean connect(List<String> addresses, RpcConfig sendConfig) {
         boolean allSuccess = true;
         for (String address : addresses) {
             if (channelMap.containsKey(address)) {
                 continue;
             }
-            String[] ss = address.split(":");
             try {
-                ChannelFuture channelFuture = bootstrap.connect(ss[0], Integer.parseInt(ss[1])).sync();
+                Bootstrap connector = bootstrapFor(address);
+                if (sendConfig != null) {
+                    connector = connector.clone().attr(SEND_CONFIG, sendConfig);
+                }
+                ChannelFuture channelFuture = connector.connect(NettyTransport.socketAddress(address)).sync();
                 Channel channel = channelFuture.channel();
                 channelMap.put(address, channel);
                 channels.add(channel);
+                //断开的连接不再参与选择和转移，之后可以重新连接该地址
+                channel.closeFuture().addListener(f -> {
+                    channels.remove(channel);
+                    channelMap.remove(address, channel);
+                });
             } catch (Exception e) {
-                log.error(getClass().toString(), "----该worker连不上----" + address);
-                channelMap.put(address, null);
+                log.error("----该worker连不上---- {}", address, e);
                 allSuccess = false;
             }
         }
@@ -97,15 +199,16 @@ public class NettyClient {
         
         try {
             // 选择第一个可用连接发送消息
-            Channel channel = channels.get(0);
-            if (channel != null && channel.isActive()) {
-                ByteBuf byteBuf = Unpooled.copiedBuffer(message);
-                channel.writeAndFlush(byteBuf);
-                return true;
+            Channel channel = firstActive();
+            if (channel != null) {
+                return send(channel, message, true);
             } else {
                 log.error("连接不可用");
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             log.error("发送消息失败", e);
             return false;
@@ -119,9 +222,11 @@ public class NettyClient {
         Channel channel = channelMap.get(address);
         if (channel != null && channel.isActive()) {
             try {
-                ByteBuf byteBuf = Unpooled.copiedBuffer(message);
-                channel.writeAndFlush(byteBuf);
-                return true;
+                //指定了地址的发送不转移到其他连接
+                return send(channel, message, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             } catch (Exception e) {
                 log.error("发送消息到 {} 失败", address, e);
                 return false;
@@ -132,4 +237,70 @@ public class NettyClient {
         }
     }
 
+    private Channel firstActive() {
+        for (Channel channel : channels) {
+            if (channel.isActive()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private boolean send(Channel channel, byte[] message, boolean allowSpill) throws InterruptedException {
+        ChannelSendQueue queue = sendQueue(channel);
+        if (!queue.tryAcquire()) {
+            ChannelSendQueue fallback = onOverflow(queue, allowSpill);
+            if (fallback == null) {
+                sendStats.recordRejected();
+                log.warn("连接 {} 拥塞，待发送 {} 条，放弃发送", channel.remoteAddress(), queue.getPending());
+                return false;
+            }
+            queue = fallback;
+        }
+        markSentOnWrite(queue.write(message));
+        sendStats.recordSent();
+        return true;
+    }
+
+    /**
+     * 连接拥塞时按该连接的溢出策略取得可用的发送队列，放弃时返回null
+     */
+    private ChannelSendQueue onOverflow(ChannelSendQueue queue, boolean allowSpill) throws InterruptedException {
+        switch (queue.getOverflowPolicy()) {
+            case BLOCK:
+                sendStats.recordBlocked();
+                return queue.acquire(queue.getBlockTimeout(), TimeUnit.MILLISECONDS) ? queue : null;
+            case SPILL:
+                if (!allowSpill) {
+                    return null;
+                }
+                for (Channel other : channels) {
+                    ChannelSendQueue candidate = sendQueue(other);
+                    if (candidate != null && candidate != queue && candidate.tryAcquire()) {
+                        sendStats.recordSpilled();
+                        return candidate;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static ChannelSendQueue sendQueue(Channel channel) {
+        return channel == null ? null : channel.pipeline().get(ChannelSendQueue.class);
+    }
+
+    /**
+     * 调用方绑定了时间线时，在数据写入socket后记录发送完成时间；
+     * 时间线在调用结束后会被复用，写完成晚于调用结束时不再打点
+     */
+    private static void markSentOnWrite(ChannelFuture future) {
+        CallTimeline timeline = CallTimeline.current();
+        if (timeline != null) {
+            long callId = timeline.getCallId();
+            future.addListener(f -> timeline.markIfCall(callId, CallTimeline.Point.SENT));
+        }
+    }
+
 }
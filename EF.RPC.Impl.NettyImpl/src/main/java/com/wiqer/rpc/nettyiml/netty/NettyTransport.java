@@ -0,0 +1,125 @@
+package com.wiqer.rpc.nettyiml.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.kqueue.KQueue;
+import io.netty.channel.kqueue.KQueueDomainSocketChannel;
+import io.netty.channel.kqueue.KQueueEventLoopGroup;
+import io.netty.channel.kqueue.KQueueServerDomainSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * 按地址选择Netty传输：unix:///run/efrpc.sock 使用Unix域套接字（Linux为epoll，macOS为kqueue），
+ * host:port 使用NIO的TCP。两种传输共用同一套编解码
+ */
+public enum NettyTransport {
+    TCP,
+    UNIX_EPOLL,
+    UNIX_KQUEUE;
+
+    public static final String UNIX_SCHEME = "unix://";
+
+    public static boolean isDomainSocket(String address) {
+        return address != null && address.startsWith(UNIX_SCHEME);
+    }
+
+    /**
+     * 地址对应的传输，当前平台没有可用的本地传输时抛出IllegalStateException
+     */
+    public static NettyTransport of(String address) {
+        if (!isDomainSocket(address)) {
+            return TCP;
+        }
+        if (Epoll.isAvailable()) {
+            return UNIX_EPOLL;
+        }
+        if (KQueue.isAvailable()) {
+            return UNIX_KQUEUE;
+        }
+        throw new IllegalStateException("当前平台不支持Unix域套接字: " + address, Epoll.unavailabilityCause());
+    }
+
+    /**
+     * unix://后为套接字文件路径，host:port按TCP解析，IPv6地址需写成[::1]:port；格式不合法时抛出IllegalArgumentException
+     */
+    public static SocketAddress socketAddress(String address) {
+        if (isDomainSocket(address)) {
+            return new DomainSocketAddress(socketPath(address));
+        }
+        int colon = address.lastIndexOf(':');
+        boolean bracketed = address.startsWith("[");
+        if (colon <= 0 || colon == address.length() - 1
+                || (bracketed ? address.charAt(colon - 1) != ']' : address.indexOf(':') != colon)) {
+            throw new IllegalArgumentException("地址应为host:port、[IPv6]:port或unix:///path: " + address);
+        }
+        String host = bracketed ? address.substring(1, colon - 1) : address.substring(0, colon);
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("端口不合法: " + address, e);
+        }
+        return new InetSocketAddress(host, port);
+    }
+
+    /**
+     * unix:///run/efrpc.sock 中的 /run/efrpc.sock，unix://efrpc.sock 为相对路径；
+     * 不做URI解码，路径中可以有空格
+     */
+    public static String socketPath(String address) {
+        String path = address.substring(UNIX_SCHEME.length());
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("缺少套接字文件路径: " + address);
+        }
+        return new File(path).getPath();
+    }
+
+    public boolean isDomainSocket() {
+        return this != TCP;
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        switch (this) {
+            case UNIX_EPOLL:
+                return new EpollEventLoopGroup(threads);
+            case UNIX_KQUEUE:
+                return new KQueueEventLoopGroup(threads);
+            default:
+                return new NioEventLoopGroup(threads);
+        }
+    }
+
+    public Class<? extends Channel> channelClass() {
+        switch (this) {
+            case UNIX_EPOLL:
+                return EpollDomainSocketChannel.class;
+            case UNIX_KQUEUE:
+                return KQueueDomainSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        switch (this) {
+            case UNIX_EPOLL:
+                return EpollServerDomainSocketChannel.class;
+            case UNIX_KQUEUE:
+                return KQueueServerDomainSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+}
@@ -5,13 +5,15 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
@@ -24,22 +26,40 @@ public class NodeServer {
     }
 
     public void startNettyServer(int port) throws Exception {
+        startNettyServer(NettyTransport.TCP, new InetSocketAddress(port));
+    }
+
+    /**
+     * @param address host:port 或 unix:///path/to.sock，后者在Linux上使用epoll、macOS上使用kqueue的域套接字
+     */
+    public void startNettyServer(String address) throws Exception {
+        NettyTransport transport = NettyTransport.of(address);
+        if (transport.isDomainSocket()) {
+            //上次未正常退出时遗留的套接字文件会导致bind失败
+            Files.deleteIfExists(Paths.get(NettyTransport.socketPath(address)));
+        }
+        startNettyServer(transport, NettyTransport.socketAddress(address));
+    }
+
+    private void startNettyServer(NettyTransport transport, SocketAddress address) throws Exception {
         //boss单线程
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(1);
         ///HashedWheelTimer
         // EventLoopGroup workerGroup = new NioEventLoopGroup(CpuNum.workerCount());
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
             bootstrap.group(bossGroup, bossGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.serverChannelClass())
                     .handler(new LoggingHandler(LogLevel.INFO))
                     .option(ChannelOption.SO_BACKLOG, 1024)
-                    //保持长连接
-                    .childOption(ChannelOption.SO_KEEPALIVE, true)
                     //出来网络io事件，如记录日志、对消息编解码等
                     .childHandler(new ChildChannelHandler());
+            if (!transport.isDomainSocket()) {
+                //保持长连接
+                bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
+            }
             //绑定端口，同步等待成功
-            ChannelFuture future = bootstrap.bind(port).sync();
+            ChannelFuture future = bootstrap.bind(address).sync();
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 bossGroup.shutdownGracefully (1000, 3000, TimeUnit.MILLISECONDS);
                 // bossGroup.shutdownGracefully (1000, 3000, TimeUnit.MILLISECONDS);
@@ -25,7 +25,9 @@ public class NodeServerHandler  extends SimpleChannelInboundHandler<String> {
         if (StringUtils.isEmpty(message)) {
             return;
         }
+        long receivedNanos = System.nanoTime();
         NettyMsg msg = FastJsonUtils.toBean(message, NettyMsg.class);
+        msg.setReceivedNanos(receivedNanos);
         nettyMsgQueue.offer(msg);
 
     }
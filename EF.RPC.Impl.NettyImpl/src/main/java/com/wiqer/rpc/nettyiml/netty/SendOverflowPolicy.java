@@ -0,0 +1,31 @@
+package com.wiqer.rpc.nettyiml.netty;
+
+/**
+ * 连接的待发送消息达到上限或连接不可写时的处理方式
+ */
+public enum SendOverflowPolicy {
+    /**
+     * 调用方线程等待连接恢复可写，超时后放弃
+     */
+    BLOCK,
+    /**
+     * 立即放弃发送
+     */
+    FAIL_FAST,
+    /**
+     * 改用其他可写的连接发送，都不可写时放弃
+     */
+    SPILL;
+
+    /**
+     * 解析RpcConfig中的配置值：block、fail_fast、spill，不区分大小写
+     */
+    public static SendOverflowPolicy of(String name) {
+        for (SendOverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("未知的发送溢出策略: " + name);
+    }
+}
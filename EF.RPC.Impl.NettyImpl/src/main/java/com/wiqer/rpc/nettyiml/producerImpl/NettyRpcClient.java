@@ -1,4 +1,49 @@
 package com.wiqer.rpc.nettyiml.producerImpl;
 
-public class NettyRpcClient {
+import com.wiqer.rpc.impl.RpcClient;
+import com.wiqer.rpc.impl.config.RpcConfig;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.monitor.SendStats;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.nettyiml.netty.NettyClient;
+import com.wiqer.rpc.nettyiml.proxy.NettyObjectProxy;
+
+import java.util.Collections;
+
+/**
+ * Netty传输客户端，按RpcConfig设置的发送背压连接服务端，代理的调用只发往该地址。
+ * NettyClient是进程内共用的连接器，发送配置固定在本客户端建立的连接上，不影响其他客户端；
+ * 该地址已被其他客户端连接时沿用已有连接的配置
+ */
+public class NettyRpcClient extends RpcClient {
+
+    private final NettyClient nettyClient = NettyClient.getInstance();
+
+    public NettyRpcClient(String address) {
+        this(address, RpcConfig.createDefault());
+    }
+
+    /**
+     * @param address host:port 或 unix:///path/to.sock
+     */
+    public NettyRpcClient(String address, RpcConfig config) {
+        super(address);
+        config.validate();
+        if (!nettyClient.connect(Collections.singletonList(address), config)) {
+            throw new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "连接Netty服务端失败: " + address);
+        }
+    }
+
+    public NettyClient getNettyClient() {
+        return nettyClient;
+    }
+
+    public SendStats getSendStats() {
+        return nettyClient.getSendStats();
+    }
+
+    @Override
+    public <T, P> ObjectProxy createObjectProxy(Class<T> interfaceClass, String version) {
+        return new NettyObjectProxy(interfaceClass, version, nettyClient, address);
+    }
 }
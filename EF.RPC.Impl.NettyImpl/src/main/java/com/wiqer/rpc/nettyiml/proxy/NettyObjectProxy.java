@@ -2,6 +2,7 @@ package com.wiqer.rpc.nettyiml.proxy;
 
 import com.wiqer.rpc.impl.core.RpcException;
 import com.wiqer.rpc.impl.core.SynchronizerManager;
+import com.wiqer.rpc.impl.monitor.CallTimeline;
 import com.wiqer.rpc.impl.proxy.ObjectProxy;
 import com.wiqer.rpc.nettyiml.netty.NettyClient;
 import com.wiqer.rpc.serialize.JsonSerializer;
@@ -14,18 +15,20 @@ import java.lang.reflect.Method;
 import java.util.UUID;
 
 /**
- * Netty对象代理 - 实现基于Netty的RPC调用
+ * Netty对象代理 - 实现基于Netty的RPC调用，请求发往创建代理时绑定的服务端地址
  */
 @Slf4j
 public class NettyObjectProxy extends ObjectProxy {
 
     private final NettyClient nettyClient;
+    private final String address;
     private final SynchronizerManager synchronizerManager;
     private final SerializerInterface serializer;
 
-    public NettyObjectProxy(Class clazz, String version, NettyClient nettyClient) {
+    public NettyObjectProxy(Class clazz, String version, NettyClient nettyClient, String address) {
         super(clazz, version);
         this.nettyClient = nettyClient;
+        this.address = address;
         this.synchronizerManager = new SynchronizerManager();
         this.serializer = new JsonSerializer();
     }
@@ -43,9 +46,11 @@ public class NettyObjectProxy extends ObjectProxy {
             
             // 序列化消息
             byte[] messageBytes = serializer.SerializeBytes(superMsgMulti);
+            CallTimeline.markCurrent(CallTimeline.Point.SERIALIZED);
             
             // 发送消息
-            boolean sent = nettyClient.sendMessage(messageBytes);
+            boolean sent = nettyClient.sendMessage(address, messageBytes);
+            CallTimeline.markCurrent(CallTimeline.Point.ENQUEUED);
             if (!sent) {
                 throw new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, 
                     "发送消息失败: " + method.getName());
@@ -0,0 +1,237 @@
+package com.wiqer.rpc.websocketimpl;
+
+import com.alibaba.fastjson.JSON;
+import com.wiqer.rpc.impl.core.RpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import io.netty.util.CharsetUtil;
+
+/**
+ * WebSocket RPC的二进制帧编解码，字符串均为2字节无符号长度加UTF-8内容：
+ * 请求：版本(1) 类型(1) requestId，之后调用帧为 serviceName methodName 参数JSON数组(剩余字节)，
+ * request-N帧为8字节额度，取消帧没有内容
+ * 响应：版本(1) 状态(1，见STATUS_*) requestId 结果JSON(剩余字节)，
+ * 错误响应在requestId之后为错误码（RpcException.ErrorCodes）和错误信息(剩余字节)
+ * 结果由服务端处理器序列化一次后直接写入帧，不再包一层JSON；开启负载压缩时结果和参数可以是
+ * PayloadCompressor的压缩帧，以0xC1开头，JSON不会以该字节开头，读取方按首字节区分
+ */
+public final class WebSocketRpcCodec {
+
+    public static final byte VERSION = 1;
+
+    public static final byte KIND_CALL = 0;
+    public static final byte KIND_REQUEST_N = 1;
+    public static final byte KIND_CANCEL = 2;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte STATUS_NEXT = 2;
+    public static final byte STATUS_COMPLETE = 3;
+
+    /**
+     * 文本帧中WebSocketRpcRequest.type的取值，为空时表示调用
+     */
+    public static final String TYPE_REQUEST_N = "request";
+    public static final String TYPE_CANCEL = "cancel";
+
+    private WebSocketRpcCodec() {
+    }
+
+    public static WebSocketRpcServer.WebSocketRpcRequest decodeRequest(ByteBuf in) {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的二进制帧版本: " + version);
+        }
+        byte kind = in.readByte();
+        WebSocketRpcServer.WebSocketRpcRequest request = new WebSocketRpcServer.WebSocketRpcRequest();
+        request.setRequestId(readString(in));
+        switch (kind) {
+            case KIND_CALL:
+                request.setServiceName(readString(in));
+                request.setMethodName(readString(in));
+                if (in.isReadable()) {
+                    request.setParameters(JSON.parseObject(readPayload(in), Object[].class));
+                }
+                break;
+            case KIND_REQUEST_N:
+                request.setType(TYPE_REQUEST_N);
+                request.setN(in.readLong());
+                break;
+            case KIND_CANCEL:
+                request.setType(TYPE_CANCEL);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的二进制帧类型: " + kind);
+        }
+        return request;
+    }
+
+    public static ByteBuf encodeRequest(ByteBufAllocator alloc, String requestId, String serviceName,
+                                        String methodName, Object[] parameters) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(KIND_CALL);
+        writeString(out, requestId);
+        writeString(out, serviceName);
+        writeString(out, methodName);
+        if (parameters != null) {
+            out.writeBytes(JSON.toJSONBytes(parameters));
+        }
+        return out;
+    }
+
+    /**
+     * 为流式调用追加n条额度
+     */
+    public static ByteBuf encodeRequestN(ByteBufAllocator alloc, String requestId, long n) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(KIND_REQUEST_N);
+        writeString(out, requestId);
+        out.writeLong(n);
+        return out;
+    }
+
+    public static ByteBuf encodeCancel(ByteBufAllocator alloc, String requestId) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(KIND_CANCEL);
+        writeString(out, requestId);
+        return out;
+    }
+
+    /**
+     * @param payload 成功时为服务端处理器返回的结果JSON，失败时为错误信息，错误码为INVOCATION_ERROR
+     */
+    public static ByteBuf encodeResponse(ByteBufAllocator alloc, String requestId, boolean success, String payload) {
+        return success ? encodeResponse(alloc, requestId, STATUS_OK, payload)
+                : encodeErrorResponse(alloc, requestId, RpcException.ErrorCodes.INVOCATION_ERROR, payload);
+    }
+
+    /**
+     * 错误响应，客户端可按错误码区分限流、并发限制等拒绝和业务异常
+     */
+    public static ByteBuf encodeErrorResponse(ByteBufAllocator alloc, String requestId, String errorCode, String message) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(STATUS_ERROR);
+        writeString(out, requestId);
+        writeString(out, errorCode);
+        if (message != null) {
+            out.writeCharSequence(message, CharsetUtil.UTF_8);
+        }
+        return out;
+    }
+
+    /**
+     * 读取错误响应中requestId之后的部分，还原为RpcException
+     */
+    public static RpcException decodeError(ByteBuf in) {
+        String errorCode = readString(in);
+        String message = in.toString(CharsetUtil.UTF_8);
+        in.skipBytes(in.readableBytes());
+        return new RpcException(errorCode, message);
+    }
+
+    /**
+     * @param status STATUS_OK、STATUS_NEXT或STATUS_COMPLETE，错误响应用encodeErrorResponse
+     */
+    public static ByteBuf encodeResponse(ByteBufAllocator alloc, String requestId, byte status, String payload) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(status);
+        writeString(out, requestId);
+        if (payload != null) {
+            out.writeCharSequence(payload, CharsetUtil.UTF_8);
+        }
+        return out;
+    }
+
+    /**
+     * 写入已编码的结果，payload可以是PayloadCompressor压缩后的帧
+     */
+    public static ByteBuf encodeResponse(ByteBufAllocator alloc, String requestId, byte status, byte[] payload) {
+        ByteBuf out = alloc.buffer();
+        out.writeByte(VERSION);
+        out.writeByte(status);
+        writeString(out, requestId);
+        if (payload != null) {
+            out.writeBytes(payload);
+        }
+        return out;
+    }
+
+    /**
+     * 读取requestId之后的结果或参数，压缩帧按默认原始长度上限解压
+     */
+    public static byte[] readPayload(ByteBuf in) {
+        byte[] payload = new byte[in.readableBytes()];
+        in.readBytes(payload);
+        return PayloadCompressor.decode(payload);
+    }
+
+    /**
+     * 文本帧的响应，结果JSON直接嵌入，字段与WebSocketRpcResponse相同
+     */
+    public static String encodeTextResponse(String requestId, String result) {
+        return textResponse(requestId, null, result);
+    }
+
+    /**
+     * 流式调用的一条结果，stream字段为next
+     */
+    public static String encodeTextStreamNext(String requestId, String result) {
+        return textResponse(requestId, "next", result);
+    }
+
+    /**
+     * 流式调用正常结束，stream字段为complete
+     */
+    public static String encodeTextStreamComplete(String requestId) {
+        return textResponse(requestId, "complete", null);
+    }
+
+    /**
+     * 文本帧的错误响应，字段与WebSocketRpcResponse相同
+     */
+    public static String encodeTextError(String requestId, String errorCode, String message) {
+        WebSocketRpcServer.WebSocketRpcResponse response = new WebSocketRpcServer.WebSocketRpcResponse();
+        response.setRequestId(requestId);
+        response.setSuccess(false);
+        response.setErrorCode(errorCode);
+        response.setError(message);
+        return JSON.toJSONString(response);
+    }
+
+    private static String textResponse(String requestId, String stream, String result) {
+        int length = result == null ? 4 : result.length();
+        StringBuilder text = new StringBuilder(length + 80)
+                .append("{\"requestId\":").append(JSON.toJSONString(requestId))
+                .append(",\"success\":true");
+        if (stream != null) {
+            text.append(",\"stream\":\"").append(stream).append('"');
+        }
+        return text.append(",\"result\":").append(result == null ? "null" : result)
+                .append('}').toString();
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        if (value != null) {
+            int length = out.writeCharSequence(value, CharsetUtil.UTF_8);
+            if (length > 0xffff) {
+                throw new IllegalArgumentException("字符串超过65535字节");
+            }
+            out.setShort(lengthIndex, length);
+        }
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readUnsignedShort();
+        String value = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
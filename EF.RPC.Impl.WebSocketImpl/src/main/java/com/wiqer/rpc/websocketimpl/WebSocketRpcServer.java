@@ -3,10 +3,17 @@ package com.wiqer.rpc.websocketimpl;
 import com.alibaba.fastjson.JSON;
 import com.wiqer.rpc.impl.RpcServer;
 import com.wiqer.rpc.impl.core.BaseServer;
+import com.wiqer.rpc.impl.core.RpcException;
 import com.wiqer.rpc.impl.core.RpcServerHandler;
 import com.wiqer.rpc.impl.core.ServerHandler;
+import com.wiqer.rpc.impl.stream.ServerStream;
+import com.wiqer.rpc.impl.stream.ServerStreamRegistry;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.util.CompressionUtil;
 import com.wiqer.rpc.serialize.JsonSerializer;
 import com.wiqer.rpc.serialize.SuperMsgMulti;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import io.netty.buffer.ByteBuf;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -14,27 +21,63 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket RPC服务器
  * 参考.NET版本的WebSocket实现
+ * 文本帧为JSON，二进制帧格式见WebSocketRpcCodec，响应使用与请求相同的帧类型
+ * 最后一个参数为StreamObserver的方法是流式方法：客户端调用后以request帧授予额度，服务端每条结果一帧，按额度推送，可随时取消；
+ * 流的生命周期见ServerStreamRegistry，方法返回后流仍然有效，直到结束、取消或空闲超时
  */
 @Slf4j
 public class WebSocketRpcServer extends BaseServer {
+
+    public static final int DEFAULT_MAX_STREAM_THREADS = 256;
+    public static final int DEFAULT_MAX_STREAMS_PER_CONNECTION = 32;
     
     private final int port;
     private final ServerHandler serverHandler;
     private final Map<String, Method> methodMap = new ConcurrentHashMap<>();
     private final Map<String, Object> serviceMap = new ConcurrentHashMap<>();
+    private volatile boolean compressionEnabled;
+    //二进制帧结果的负载压缩，与permessage-deflate无关；为null时不压缩
+    private volatile PayloadCompressor payloadCompressor;
+    private volatile boolean compressAllMethods;
+    //@RpcMethod/@RpcService（含服务接口上的）开启了enableCompression的方法
+    private final Set<Method> compressMethods = ConcurrentHashMap.newKeySet();
+    //为null时在Netty事件循环上直接调用服务方法
+    private volatile Executor executor;
+    private volatile int maxInFlightPerConnection;
+    private volatile int flushConsolidationLimit = FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES;
+    //流式方法会阻塞等待客户端额度，不能在事件循环上执行，也不占用业务线程池；为null时使用服务器自带的有界线程池
+    private volatile Executor streamExecutor;
+    private volatile ExecutorService streamPool;
+    private volatile int maxStreamThreads = DEFAULT_MAX_STREAM_THREADS;
+    private volatile int maxStreamsPerConnection = DEFAULT_MAX_STREAMS_PER_CONNECTION;
+    private volatile long streamIdleTimeout = ServerStreamRegistry.DEFAULT_IDLE_TIMEOUT;
     
     public WebSocketRpcServer(String serverAddress) {
         super(serverAddress);
@@ -50,6 +93,8 @@ public class WebSocketRpcServer extends BaseServer {
     
     @Override
     public void serverRun() {
+        ExecutorService ownStreamPool = newStreamPool(maxStreamThreads);
+        streamPool = ownStreamPool;
         EventLoopGroup bossGroup = new NioEventLoopGroup(1);
         EventLoopGroup workerGroup = new NioEventLoopGroup();
         
@@ -62,11 +107,22 @@ public class WebSocketRpcServer extends BaseServer {
                         protected void initChannel(SocketChannel ch) throws Exception {
                             ChannelPipeline pipeline = ch.pipeline();
                             
+                            // 合并flush，响应在业务线程池中写回时同样生效
+                            int flushLimit = flushConsolidationLimit;
+                            if (flushLimit > 0) {
+                                pipeline.addLast(new FlushConsolidationHandler(flushLimit, true));
+                            }
+                            
                             // HTTP编解码器
                             pipeline.addLast(new HttpServerCodec());
                             pipeline.addLast(new ChunkedWriteHandler());
                             pipeline.addLast(new HttpObjectAggregator(65536));
                             
+                            // 客户端提出permessage-deflate时协商压缩
+                            if (compressionEnabled) {
+                                pipeline.addLast(new WebSocketServerCompressionHandler());
+                            }
+
                             // WebSocket协议处理器
                             pipeline.addLast(new WebSocketServerProtocolHandler("/ws", null, true));
                             
@@ -84,9 +140,106 @@ public class WebSocketRpcServer extends BaseServer {
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            ownStreamPool.shutdownNow();
         }
     }
+
+    /**
+     * 线程按需创建、空闲60秒回收，线程数达到上限后新的流式调用直接回复繁忙
+     */
+    private static ExecutorService newStreamPool(int maxThreads) {
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "websocket-stream-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
     
+    /**
+     * 开启后与提出permessage-deflate的客户端协商压缩，帧更小但每条消息多一次压缩，需在start前设置
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * 二进制帧的结果按PayloadCompressor压缩，超过阈值时以0xC1标记开头；allMethods为false时只压缩
+     * 开启了enableCompression的方法。文本帧必须是UTF-8，不压缩
+     */
+    public void setPayloadCompression(PayloadCompressor compressor, boolean allMethods) {
+        this.payloadCompressor = compressor;
+        this.compressAllMethods = allMethods;
+    }
+
+    /**
+     * 设置后服务方法在该线程池中调用并写回响应，慢方法不再阻塞同一事件循环上的其他连接；
+     * 线程池拒绝时直接回复错误
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 每个请求一个虚拟线程，需要Java 21及以上
+     */
+    public void useVirtualThreads() {
+        try {
+            setExecutor((Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("当前JVM不支持虚拟线程", e);
+        }
+    }
+
+    /**
+     * 单个连接同时在业务线程池中执行的请求上限，达到后暂停读取该连接，0表示不限制；只在设置了executor时生效
+     */
+    public void setMaxInFlightPerConnection(int maxInFlightPerConnection) {
+        this.maxInFlightPerConnection = maxInFlightPerConnection;
+    }
+
+    /**
+     * 流式方法使用的线程池，替换服务器自带的有界线程池；不要与executor共用，
+     * 流式方法等待客户端额度时一直占着线程，会饿死普通请求
+     */
+    public void setStreamExecutor(Executor streamExecutor) {
+        this.streamExecutor = streamExecutor;
+    }
+
+    /**
+     * 服务器自带的流式线程池的线程上限，即同时进行的流式调用总数上限，需在start前设置
+     */
+    public void setMaxStreamThreads(int maxStreamThreads) {
+        if (maxStreamThreads <= 0) {
+            throw new IllegalArgumentException("maxStreamThreads必须大于0");
+        }
+        this.maxStreamThreads = maxStreamThreads;
+    }
+
+    /**
+     * 单个连接上同时未结束的流式调用上限，超出后新的流式调用回复繁忙，0表示不限制
+     */
+    public void setMaxStreamsPerConnection(int maxStreamsPerConnection) {
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+    }
+
+    /**
+     * 流既没有推送也没有新额度的最长时间，毫秒，超时后取消并回复超时错误、释放连接上的名额；0表示不回收，需在start前设置
+     */
+    public void setStreamIdleTimeout(long streamIdleTimeout) {
+        if (streamIdleTimeout < 0) {
+            throw new IllegalArgumentException("streamIdleTimeout不能为负数");
+        }
+        this.streamIdleTimeout = streamIdleTimeout;
+    }
+
+    /**
+     * 每个连接最多合并多少次flush后强制写出，同一轮事件循环中的多个响应只触发一次系统调用；0表示每条响应立即flush，需在start前设置
+     */
+    public void setFlushConsolidationLimit(int flushConsolidationLimit) {
+        this.flushConsolidationLimit = flushConsolidationLimit;
+    }
+
     /**
      * 注册服务
      */
@@ -98,71 +251,239 @@ public class WebSocketRpcServer extends BaseServer {
         for (Method method : methods) {
             String methodKey = serviceName + "." + method.getName();
             methodMap.put(methodKey, method);
+            if (CompressionUtil.isCompressionEnabled(method, serviceBean.getClass(), false)) {
+                compressMethods.add(method);
+            }
             log.info("注册WebSocket RPC方法: {}", methodKey);
         }
     }
     
     /**
-     * WebSocket RPC处理器
+     * WebSocket RPC处理器，事件循环上只做解码和查找方法，设置了业务线程池时调用和写回都在线程池中进行
      */
     private class WebSocketRpcHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
-        
+        //本连接已提交到业务线程池、尚未写回响应的请求数，不含流式调用
+        private final AtomicInteger inFlight = new AtomicInteger();
+        //本连接上未结束的流式调用
+        private final ServerStreamRegistry streams = new ServerStreamRegistry(maxStreamsPerConnection, streamIdleTimeout);
+
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) throws Exception {
-            if (frame instanceof TextWebSocketFrame) {
-                String request = ((TextWebSocketFrame) frame).text();
-                log.debug("收到WebSocket RPC请求: {}", request);
-                
+            boolean binary = frame instanceof BinaryWebSocketFrame;
+            if (!binary && !(frame instanceof TextWebSocketFrame)) {
+                return;
+            }
+            WebSocketRpcRequest rpcRequest = null;
+            try {
+                // 解析请求
+                if (binary) {
+                    rpcRequest = WebSocketRpcCodec.decodeRequest(frame.content());
+                } else {
+                    String request = ((TextWebSocketFrame) frame).text();
+                    log.debug("收到WebSocket RPC请求: {}", request);
+                    rpcRequest = JSON.parseObject(request, WebSocketRpcRequest.class);
+                }
+                if (rpcRequest.getType() != null) {
+                    onStreamControl(rpcRequest);
+                    return;
+                }
+
+                // 查找服务和方法
+                Object serviceBean = serviceMap.get(rpcRequest.getServiceName());
+                Method method = methodMap.get(rpcRequest.getServiceName() + "." + rpcRequest.getMethodName());
+
+                if (serviceBean == null || method == null) {
+                    sendErrorResponse(ctx, binary, rpcRequest.getRequestId(),
+                            new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "服务或方法不存在"));
+                    return;
+                }
+
+                // 构建SuperMsgMulti
+                SuperMsgMulti superMsg = new SuperMsgMulti();
+                superMsg.setId(rpcRequest.getRequestId());
+                superMsg.setMsg(rpcRequest.getParameters());
+
+                if (StreamObserver.isStreaming(method)) {
+                    startStream(ctx, binary, superMsg, serviceBean, method);
+                    return;
+                }
+
+                Executor current = executor;
+                if (current == null) {
+                    invoke(ctx, binary, superMsg, serviceBean, method);
+                    return;
+                }
+                inFlight.incrementAndGet();
+                updateAutoRead(ctx);
                 try {
-                    // 解析请求
-                    WebSocketRpcRequest rpcRequest = JSON.parseObject(request, WebSocketRpcRequest.class);
-                    
-                    // 查找服务和方法
-                    Object serviceBean = serviceMap.get(rpcRequest.getServiceName());
-                    Method method = methodMap.get(rpcRequest.getServiceName() + "." + rpcRequest.getMethodName());
-                    
-                    if (serviceBean == null || method == null) {
-                        sendErrorResponse(ctx, rpcRequest.getRequestId(), "服务或方法不存在");
-                        return;
-                    }
-                    
-                    // 构建SuperMsgMulti
-                    SuperMsgMulti superMsg = new SuperMsgMulti();
-                    superMsg.setId(rpcRequest.getRequestId());
-                    superMsg.setMsg(rpcRequest.getParameters());
-                    
-                    // 调用服务
-                    String response = serverHandler.handle(superMsg, serviceBean, method);
-                    
-                    // 发送响应
-                    WebSocketRpcResponse rpcResponse = new WebSocketRpcResponse();
-                    rpcResponse.setRequestId(rpcRequest.getRequestId());
-                    rpcResponse.setResult(response);
-                    rpcResponse.setSuccess(true);
-                    
-                    ctx.channel().writeAndFlush(new TextWebSocketFrame(JSON.toJSONString(rpcResponse)));
-                    
-                } catch (Throwable e) {
+                    current.execute(() -> {
+                        try {
+                            invoke(ctx, binary, superMsg, serviceBean, method);
+                        } finally {
+                            inFlight.decrementAndGet();
+                            ctx.channel().eventLoop().execute(() -> updateAutoRead(ctx));
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.decrementAndGet();
+                    updateAutoRead(ctx);
+                    sendErrorResponse(ctx, binary, rpcRequest.getRequestId(), busy());
+                }
+
+            } catch (Throwable e) {
+                log.error("处理WebSocket RPC请求失败", e);
+                sendErrorResponse(ctx, binary, rpcRequest != null ? rpcRequest.getRequestId() : "unknown", RpcException.of(e));
+            }
+        }
+
+        private void invoke(ChannelHandlerContext ctx, boolean binary, SuperMsgMulti superMsg, Object serviceBean, Method method) {
+            try {
+                // 调用服务
+                String response = serverHandler.handle(superMsg, serviceBean, method);
+
+                // 发送响应，结果已是JSON，直接写入帧
+                if (binary) {
+                    ctx.writeAndFlush(new BinaryWebSocketFrame(encodeBinary(
+                            ctx, superMsg.Id, WebSocketRpcCodec.STATUS_OK, response, compressorFor(method))));
+                } else {
+                    ctx.writeAndFlush(new TextWebSocketFrame(
+                            WebSocketRpcCodec.encodeTextResponse(superMsg.Id, response)));
+                }
+            } catch (Throwable e) {
+                RpcException error = RpcException.of(e);
+                if (isRejection(error)) {
+                    log.debug("WebSocket RPC请求被拒绝: {}", error.toString());
+                } else {
                     log.error("处理WebSocket RPC请求失败", e);
-                    sendErrorResponse(ctx, "unknown", e.getMessage());
                 }
+                sendErrorResponse(ctx, binary, superMsg.Id, error);
             }
         }
-        
-        private void sendErrorResponse(ChannelHandlerContext ctx, String requestId, String error) {
-            WebSocketRpcResponse response = new WebSocketRpcResponse();
-            response.setRequestId(requestId);
-            response.setSuccess(false);
-            response.setError(error);
-            
-            ctx.channel().writeAndFlush(new TextWebSocketFrame(JSON.toJSONString(response)));
+
+        /**
+         * 流已结束时迟到的控制帧直接忽略
+         */
+        private void onStreamControl(WebSocketRpcRequest control) {
+            if (WebSocketRpcCodec.TYPE_REQUEST_N.equals(control.getType())) {
+                streams.request(control.getRequestId(), control.getN());
+            } else if (WebSocketRpcCodec.TYPE_CANCEL.equals(control.getType())) {
+                streams.cancel(control.getRequestId());
+            }
         }
-        
+
+        /**
+         * 流式方法会在额度用完时阻塞，总是在流式线程池中执行，也不计入在途请求数，
+         * 否则暂停读取后收不到客户端的request帧；连接上的流数或线程池达到上限时回复繁忙
+         */
+        private void startStream(ChannelHandlerContext ctx, boolean binary, SuperMsgMulti superMsg, Object serviceBean, Method method) {
+            String requestId = superMsg.Id;
+            if (!(serverHandler instanceof RpcServerHandler)) {
+                sendErrorResponse(ctx, binary, requestId,
+                        new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "当前处理器不支持流式方法"));
+                return;
+            }
+            PayloadCompressor compressor = compressorFor(method);
+            ServerStream<Object> stream;
+            try {
+                stream = streams.open(requestId, new ServerStream.Sink() {
+                    @Override
+                    public void next(Object value) {
+                        writeStreamFrame(ctx, binary, requestId, WebSocketRpcCodec.STATUS_NEXT, JSON.toJSONString(value), compressor);
+                    }
+
+                    @Override
+                    public void error(Throwable error) {
+                        sendErrorResponse(ctx, binary, requestId, RpcException.of(error));
+                    }
+
+                    @Override
+                    public void complete() {
+                        writeStreamFrame(ctx, binary, requestId, WebSocketRpcCodec.STATUS_COMPLETE, null, null);
+                    }
+                });
+            } catch (RpcException e) {
+                //连接上的流数达到上限或流ID重复
+                sendErrorResponse(ctx, binary, requestId, e);
+                return;
+            }
+            Executor current = streamExecutor != null ? streamExecutor : streamPool;
+            try {
+                current.execute(() -> {
+                    try {
+                        ((RpcServerHandler) serverHandler).handleStream(superMsg, serviceBean, method, stream);
+                    } catch (CancellationException e) {
+                        log.debug("流式调用已取消: {}", requestId);
+                        //流未被取消时方法自己抛出的CancellationException同样结束流
+                        stream.onError(e);
+                    } catch (Throwable e) {
+                        if (!isRejection(RpcException.of(e))) {
+                            log.error("流式调用失败", e);
+                        }
+                        stream.onError(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                stream.cancel();
+                sendErrorResponse(ctx, binary, requestId, busy());
+            }
+        }
+
+        private void writeStreamFrame(ChannelHandlerContext ctx, boolean binary, String requestId, byte status,
+                                      String payload, PayloadCompressor compressor) {
+            if (binary) {
+                ctx.writeAndFlush(new BinaryWebSocketFrame(encodeBinary(ctx, requestId, status, payload, compressor)));
+            } else if (status == WebSocketRpcCodec.STATUS_NEXT) {
+                ctx.writeAndFlush(new TextWebSocketFrame(WebSocketRpcCodec.encodeTextStreamNext(requestId, payload)));
+            } else {
+                ctx.writeAndFlush(new TextWebSocketFrame(WebSocketRpcCodec.encodeTextStreamComplete(requestId)));
+            }
+        }
+
+        private ByteBuf encodeBinary(ChannelHandlerContext ctx, String requestId, byte status, String payload,
+                                     PayloadCompressor compressor) {
+            if (compressor == null || payload == null) {
+                return WebSocketRpcCodec.encodeResponse(ctx.alloc(), requestId, status, payload);
+            }
+            return WebSocketRpcCodec.encodeResponse(ctx.alloc(), requestId, status,
+                    compressor.encode(payload.getBytes(CharsetUtil.UTF_8)));
+        }
+
+        /**
+         * 在事件循环上按当前在途请求数暂停或恢复读取，超出上限的请求留在socket缓冲区中，由TCP流控反压到客户端
+         */
+        private void updateAutoRead(ChannelHandlerContext ctx) {
+            int limit = maxInFlightPerConnection;
+            boolean autoRead = limit <= 0 || inFlight.get() < limit;
+            if (ctx.channel().config().isAutoRead() != autoRead) {
+                ctx.channel().config().setAutoRead(autoRead);
+            }
+        }
+
+        /**
+         * 错误响应带上错误码，限流、并发限制等拒绝和业务异常一样回复给调用方
+         */
+        private void sendErrorResponse(ChannelHandlerContext ctx, boolean binary, String requestId, RpcException error) {
+            if (binary) {
+                ctx.writeAndFlush(new BinaryWebSocketFrame(WebSocketRpcCodec.encodeErrorResponse(
+                        ctx.alloc(), requestId, error.getErrorCode(), error.getMessage())));
+            } else {
+                ctx.writeAndFlush(new TextWebSocketFrame(
+                        WebSocketRpcCodec.encodeTextError(requestId, error.getErrorCode(), error.getMessage())));
+            }
+        }
+
         @Override
         public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
             log.info("WebSocket客户端连接: {}", ctx.channel().remoteAddress());
         }
         
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            //连接断开后取消未结束的流，阻塞在onNext上的方法随之退出
+            streams.close();
+            super.channelInactive(ctx);
+        }
+
         @Override
         public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
             log.info("WebSocket客户端断开: {}", ctx.channel().remoteAddress());
@@ -175,6 +496,26 @@ public class WebSocketRpcServer extends BaseServer {
         }
     }
     
+    /**
+     * 该方法的二进制结果使用的压缩器，不压缩时返回null
+     */
+    private PayloadCompressor compressorFor(Method method) {
+        PayloadCompressor compressor = payloadCompressor;
+        return compressor != null && (compressAllMethods || compressMethods.contains(method)) ? compressor : null;
+    }
+
+    private static RpcException busy() {
+        return new RpcException(RpcException.ErrorCodes.SERVER_BUSY, "服务端繁忙");
+    }
+
+    /**
+     * 限流和并发限制是预期内的拒绝，不记错误日志
+     */
+    private static boolean isRejection(RpcException error) {
+        return RpcException.ErrorCodes.RATE_LIMITED.equals(error.getErrorCode())
+                || RpcException.ErrorCodes.CONCURRENCY_LIMITED.equals(error.getErrorCode());
+    }
+
     /**
      * WebSocket RPC请求
      */
@@ -183,6 +524,9 @@ public class WebSocketRpcServer extends BaseServer {
         private String serviceName;
         private String methodName;
         private Object[] parameters;
+        //为空时是调用，request为流式调用追加n条额度，cancel为取消流
+        private String type;
+        private long n;
         
         // getters and setters
         public String getRequestId() { return requestId; }
@@ -196,6 +540,12 @@ public class WebSocketRpcServer extends BaseServer {
         
         public Object[] getParameters() { return parameters; }
         public void setParameters(Object[] parameters) { this.parameters = parameters; }
+        
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        
+        public long getN() { return n; }
+        public void setN(long n) { this.n = n; }
     }
     
     /**
@@ -206,6 +556,8 @@ public class WebSocketRpcServer extends BaseServer {
         private boolean success;
         private Object result;
         private String error;
+        //失败时的错误码，取值见RpcException.ErrorCodes
+        private String errorCode;
         
         // getters and setters
         public String getRequestId() { return requestId; }
@@ -219,5 +571,8 @@ public class WebSocketRpcServer extends BaseServer {
         
         public String getError() { return error; }
         public void setError(String error) { this.error = error; }
+        
+        public String getErrorCode() { return errorCode; }
+        public void setErrorCode(String errorCode) { this.errorCode = errorCode; }
     }
 } 
\ No newline at end of file
@@ -66,10 +66,17 @@ public @interface RpcMethod {
      */
     long cacheExpire() default 300;
     
+    /**
+     * 是否幂等
+     * 
+     * @return true表示重复执行不会产生额外副作用，只有幂等方法才会重试和对冲，默认为false
+     */
+    boolean idempotent() default false;
+    
     /**
      * 是否启用重试
      * 
-     * @return true表示启用重试，false表示禁用重试，默认为true
+     * @return true表示启用重试，false表示禁用重试，仅在idempotent为true时生效，默认为true
      */
     boolean enableRetry() default true;
     
@@ -213,6 +220,20 @@ public @interface RpcMethod {
      */
     String cacheStrategy() default "lru";
     
+    /**
+     * 是否合并并发的相同请求
+     * 
+     * @return true表示相同参数的并发调用只发送一次请求并共享结果，仅适用于幂等方法，默认为false
+     */
+    boolean singleFlight() default false;
+    
+    /**
+     * 是否启用对冲请求
+     * 
+     * @return true表示调用耗时超过该方法近期p95时再发送一份相同请求，先返回的结果生效，仅在idempotent为true时生效，默认为false
+     */
+    boolean enableHedging() default false;
+    
     /**
      * 自定义属性
      * 
@@ -0,0 +1,158 @@
+package com.wiqer.rpc.impl.breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 熔断器，对应@RpcMethod的enableCircuitBreaker/circuitBreakerFailureThreshold/circuitBreakerRecoveryTime
+ * 关闭状态下统计滑动窗口内的失败次数，达到阈值后打开；打开期间直接拒绝，
+ * 恢复时间过后进入半开状态，只放行一个探测请求，成功则关闭，失败则重新打开。
+ * 窗口分为若干桶，每个桶是一个long，高位为桶所属的时间片编号、低位为失败次数，
+ * 换桶和计数在同一次CAS中完成，切换时间片时不会丢失并发的计数
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int BUCKETS = 10;
+    private static final long DEFAULT_WINDOW_MILLIS = 10000;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long recoveryNanos;
+    private final long bucketNanos;
+    //时间片编号从构造时刻算起，保证非负
+    private final long originNanos = System.nanoTime();
+
+    private final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+    private final AtomicLong openedAt = new AtomicLong();
+    //0表示空桶，否则为 (时间片编号 + 1) << COUNT_BITS | 失败次数
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder openCount = new LongAdder();
+
+    public CircuitBreaker(String name, int failureThreshold, long recoveryMillis) {
+        this(name, failureThreshold, recoveryMillis, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param windowMillis 统计失败次数的滑动窗口长度（毫秒）
+     */
+    public CircuitBreaker(String name, int failureThreshold, long recoveryMillis, long windowMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.recoveryNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, recoveryMillis));
+        this.bucketNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / BUCKETS);
+    }
+
+    /**
+     * 调用前检查，返回false时应立即失败；返回true时调用结束后必须回报onSuccess或onFailure
+     */
+    public boolean tryAcquire() {
+        int current = state.get();
+        if (current == State.CLOSED.ordinal()) {
+            return true;
+        }
+        if (current == State.OPEN.ordinal()
+                && System.nanoTime() - openedAt.get() >= recoveryNanos
+                && state.compareAndSet(current, State.HALF_OPEN.ordinal())) {
+            // 恢复时间已过，由抢到状态切换的调用作为探测请求
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void onSuccess() {
+        if (state.get() == State.HALF_OPEN.ordinal() && state.compareAndSet(State.HALF_OPEN.ordinal(), State.CLOSED.ordinal())) {
+            resetWindow();
+        }
+    }
+
+    public void onFailure() {
+        int current = state.get();
+        if (current == State.HALF_OPEN.ordinal()) {
+            open(current);
+            return;
+        }
+        if (current != State.CLOSED.ordinal()) {
+            return;
+        }
+        long tag = (System.nanoTime() - originNanos) / bucketNanos + 1;
+        int index = (int) (tag % BUCKETS);
+        for (;;) {
+            long bucket = buckets.get(index);
+            long next;
+            if (bucket >>> COUNT_BITS == tag) {
+                if ((bucket & COUNT_MASK) == COUNT_MASK) {
+                    //计数已饱和，远超任何阈值
+                    break;
+                }
+                next = bucket + 1;
+            } else {
+                //桶属于已过去的时间片，换成当前时间片并计入本次失败
+                next = tag << COUNT_BITS | 1;
+            }
+            if (buckets.compareAndSet(index, bucket, next)) {
+                break;
+            }
+        }
+        if (windowFailures(tag) >= failureThreshold) {
+            open(current);
+        }
+    }
+
+    private void open(int expected) {
+        if (state.compareAndSet(expected, State.OPEN.ordinal())) {
+            openedAt.set(System.nanoTime());
+            openCount.increment();
+        }
+    }
+
+    private long windowFailures(long tag) {
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = buckets.get(i);
+            if (bucket != 0 && tag - (bucket >>> COUNT_BITS) < BUCKETS) {
+                sum += bucket & COUNT_MASK;
+            }
+        }
+        return sum;
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    public State getState() {
+        return State.values()[state.get()];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitBreaker{name=%s, state=%s, opened=%d, rejected=%d}",
+                name, getState(), getOpenCount(), getRejectedCount());
+    }
+}
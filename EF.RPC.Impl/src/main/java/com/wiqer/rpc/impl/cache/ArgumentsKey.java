@@ -0,0 +1,36 @@
+package com.wiqer.rpc.impl.cache;
+
+import java.util.Arrays;
+
+/**
+ * 参数键：按元素深度比较，数组参数按内容比较
+ */
+public final class ArgumentsKey {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Object[] args;
+    private final int hash;
+
+    public ArgumentsKey(Object[] args) {
+        this.args = args == null ? EMPTY : args.clone();
+        this.hash = Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArgumentsKey)) {
+            return false;
+        }
+        ArgumentsKey other = (ArgumentsKey) o;
+        return hash == other.hash && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,339 @@
+package com.wiqer.rpc.impl.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端方法结果缓存
+ * 对应@RpcMethod的enableCache/cacheExpire/maxCacheSize/cacheStrategy，
+ * 键为方法ID加参数的深度哈希，并发未命中的同一键只发起一次远程调用
+ */
+public class ResultCache {
+
+    public static final String STRATEGY_LRU = "lru";
+    public static final String STRATEGY_LFU = "lfu";
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final String methodId;
+    private final long ttlNanos;
+    private final Object noResponse;
+    private final Store store;
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param expireMillis 过期时间（毫秒），小于等于0表示不过期
+     */
+    public ResultCache(String methodId, int maxSize, long expireMillis, String strategy) {
+        this(methodId, maxSize, expireMillis, strategy, null);
+    }
+
+    /**
+     * @param noResponse loader返回该对象（例如等待响应超时）时不写入缓存，原样返回给调用方
+     */
+    public ResultCache(String methodId, int maxSize, long expireMillis, String strategy, Object noResponse) {
+        this.methodId = methodId;
+        this.noResponse = noResponse;
+        this.ttlNanos = expireMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(expireMillis) : 0;
+        this.store = STRATEGY_LFU.equalsIgnoreCase(strategy) ? new LfuStore(maxSize) : new LruStore(maxSize);
+    }
+
+    /**
+     * 远程调用
+     */
+    public interface Loader extends SingleFlight.Loader {
+    }
+
+    /**
+     * 读取缓存，未命中时通过loader加载；同一键的并发未命中共享一次加载
+     */
+    public Object get(Object[] args, Loader loader) throws Throwable {
+        ArgumentsKey key = new ArgumentsKey(args);
+        Object cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached == NULL_VALUE ? null : cached;
+        }
+        misses.increment();
+
+        // 失败结果和未收到响应不缓存，合并等待的调用收到同样的异常或结果
+        return singleFlight.execute(key, () -> {
+            Object value = loader.load();
+            if (noResponse != null && value == noResponse) {
+                return value;
+            }
+            Object stored = value == null ? NULL_VALUE : value;
+            synchronized (store) {
+                if (store.put(key, new Entry(stored, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0))) {
+                    evictions.increment();
+                }
+            }
+            return value;
+        });
+    }
+
+    private Object lookup(ArgumentsKey key) {
+        synchronized (store) {
+            Entry entry = store.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireAt != 0 && entry.expireAt - System.nanoTime() <= 0) {
+                store.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (store) {
+            store.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    public String getMethodId() {
+        return methodId;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(methodId, hits.sum(), misses.sum(),
+                singleFlight.getExecutionCount(), singleFlight.getCollapsedCount(),
+                evictions.sum(), expirations.sum(), size());
+    }
+
+    static final class Entry {
+        final Object value;
+        final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 存储结构，由外层对象锁保护
+     */
+    interface Store {
+        Entry get(ArgumentsKey key);
+
+        /**
+         * @return 是否因容量淘汰了其他条目
+         */
+        boolean put(ArgumentsKey key, Entry entry);
+
+        void remove(ArgumentsKey key);
+
+        void clear();
+
+        int size();
+    }
+
+    /**
+     * LRU：访问顺序的LinkedHashMap
+     */
+    static final class LruStore implements Store {
+        private final int maxSize;
+        private final LinkedHashMap<ArgumentsKey, Entry> map;
+
+        LruStore(int maxSize) {
+            this.maxSize = Math.max(1, maxSize);
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        @Override
+        public Entry get(ArgumentsKey key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean put(ArgumentsKey key, Entry entry) {
+            map.put(key, entry);
+            if (map.size() > maxSize) {
+                Iterator<ArgumentsKey> it = map.keySet().iterator();
+                it.next();
+                it.remove();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void remove(ArgumentsKey key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * LFU：按访问频次分桶，同频次内按插入顺序淘汰，读写均为O(1)
+     */
+    static final class LfuStore implements Store {
+        private final int maxSize;
+        private final HashMap<ArgumentsKey, Entry> values = new HashMap<>();
+        private final HashMap<ArgumentsKey, Integer> counts = new HashMap<>();
+        private final HashMap<Integer, LinkedHashSet<ArgumentsKey>> buckets = new HashMap<>();
+        private int minCount;
+
+        LfuStore(int maxSize) {
+            this.maxSize = Math.max(1, maxSize);
+        }
+
+        @Override
+        public Entry get(ArgumentsKey key) {
+            Entry entry = values.get(key);
+            if (entry != null) {
+                touch(key);
+            }
+            return entry;
+        }
+
+        @Override
+        public boolean put(ArgumentsKey key, Entry entry) {
+            if (values.containsKey(key)) {
+                values.put(key, entry);
+                touch(key);
+                return false;
+            }
+            boolean evicted = false;
+            if (values.size() >= maxSize) {
+                LinkedHashSet<ArgumentsKey> bucket = buckets.get(minCount);
+                ArgumentsKey victim = bucket.iterator().next();
+                removeFromBucket(victim, minCount);
+                values.remove(victim);
+                counts.remove(victim);
+                evicted = true;
+            }
+            values.put(key, entry);
+            counts.put(key, 1);
+            buckets.computeIfAbsent(1, k -> new LinkedHashSet<>()).add(key);
+            minCount = 1;
+            return evicted;
+        }
+
+        private void touch(ArgumentsKey key) {
+            int count = counts.get(key);
+            removeFromBucket(key, count);
+            if (count == minCount && !buckets.containsKey(count)) {
+                minCount = count + 1;
+            }
+            counts.put(key, count + 1);
+            buckets.computeIfAbsent(count + 1, k -> new LinkedHashSet<>()).add(key);
+        }
+
+        private void removeFromBucket(ArgumentsKey key, int count) {
+            LinkedHashSet<ArgumentsKey> bucket = buckets.get(count);
+            bucket.remove(key);
+            if (bucket.isEmpty()) {
+                buckets.remove(count);
+            }
+        }
+
+        @Override
+        public void remove(ArgumentsKey key) {
+            Integer count = counts.remove(key);
+            if (count == null) {
+                return;
+            }
+            removeFromBucket(key, count);
+            values.remove(key);
+            if (count == minCount) {
+                minCount = buckets.isEmpty() ? 0 : recomputeMinCount();
+            }
+        }
+
+        private int recomputeMinCount() {
+            int min = Integer.MAX_VALUE;
+            for (Integer c : buckets.keySet()) {
+                min = Math.min(min, c);
+            }
+            return min;
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+            counts.clear();
+            buckets.clear();
+            minCount = 0;
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public static class CacheStats {
+        private final String methodId;
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long collapsedCount;
+        private final long evictionCount;
+        private final long expirationCount;
+        private final int size;
+
+        public CacheStats(String methodId, long hitCount, long missCount, long loadCount, long collapsedCount,
+                          long evictionCount, long expirationCount, int size) {
+            this.methodId = methodId;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.collapsedCount = collapsedCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+            this.size = size;
+        }
+
+        public String getMethodId() { return methodId; }
+        public long getHitCount() { return hitCount; }
+        public long getMissCount() { return missCount; }
+        public long getLoadCount() { return loadCount; }
+        public long getCollapsedCount() { return collapsedCount; }
+        public long getEvictionCount() { return evictionCount; }
+        public long getExpirationCount() { return expirationCount; }
+        public int getSize() { return size; }
+
+        public double getHitRate() {
+            long total = hitCount + missCount;
+            return total > 0 ? (double) hitCount / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheStats{method=%s, hitRate=%.2f%%, hits=%d, misses=%d, loads=%d, collapsed=%d, evictions=%d, expirations=%d, size=%d}",
+                    methodId, getHitRate() * 100, hitCount, missCount, loadCount, collapsedCount,
+                    evictionCount, expirationCount, size);
+        }
+    }
+}
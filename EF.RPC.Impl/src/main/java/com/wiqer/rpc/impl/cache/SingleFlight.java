@@ -0,0 +1,66 @@
+package com.wiqer.rpc.impl.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求合并：同一键上并发的调用只执行一次，其余调用共享结果或异常
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * 实际调用
+     */
+    public interface Loader {
+        Object load() throws Throwable;
+    }
+
+    public Object execute(Object key, Loader loader) throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsed.increment();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        try {
+            executions.increment();
+            Object value = loader.load();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * 实际执行的次数
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * 被合并（未单独执行）的调用次数
+     */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    public int getInflightCount() {
+        return inflight.size();
+    }
+}
@@ -19,9 +19,19 @@ public class RpcConfig {
     private long requestTimeout = 30000; // 30秒
     private long heartbeatInterval = 30000; // 30秒
     
+    // 发送背压配置
+    private int writeBufferLowWaterMark = 32 * 1024; // 出站缓冲回落到该字节数以下时恢复可写
+    private int writeBufferHighWaterMark = 64 * 1024; // 出站缓冲超过该字节数时不可写
+    private int maxPendingSends = 1024; // 每个连接已提交未写出的消息数上限
+    private String sendOverflowPolicy = "block"; // block, fail_fast, spill
+    private long sendBlockTimeout = 1000; // block策略的等待时长，毫秒
+    
     // 序列化配置
     private String serializerType = "json"; // json, protobuf
     private boolean enableCompression = false;
+    private String compressionCodec = "lz4"; // lz4, deflate
+    private int compressionThreshold = 1024; // 小于该字节数不压缩
+    private int maxDecompressedLength = 16 * 1024 * 1024; // 压缩帧原始长度上限，超过时拒绝解压
     
     // 重试配置
     private int maxRetries = 3;
@@ -114,5 +124,24 @@ public class RpcConfig {
         if (maxThreads < coreThreads) {
             throw new IllegalArgumentException("maxThreads cannot be less than coreThreads");
         }
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("compressionThreshold must be non-negative");
+        }
+        if (maxDecompressedLength <= 0) {
+            throw new IllegalArgumentException("maxDecompressedLength must be positive");
+        }
+        if (writeBufferLowWaterMark <= 0 || writeBufferHighWaterMark < writeBufferLowWaterMark) {
+            throw new IllegalArgumentException("writeBufferLowWaterMark must be positive and not greater than writeBufferHighWaterMark");
+        }
+        if (maxPendingSends <= 0) {
+            throw new IllegalArgumentException("maxPendingSends must be positive");
+        }
+        if (!"block".equalsIgnoreCase(sendOverflowPolicy) && !"fail_fast".equalsIgnoreCase(sendOverflowPolicy)
+                && !"spill".equalsIgnoreCase(sendOverflowPolicy)) {
+            throw new IllegalArgumentException("sendOverflowPolicy must be 'block', 'fail_fast' or 'spill'");
+        }
+        if (sendBlockTimeout < 0) {
+            throw new IllegalArgumentException("sendBlockTimeout must be non-negative");
+        }
     }
 } 
\ No newline at end of file
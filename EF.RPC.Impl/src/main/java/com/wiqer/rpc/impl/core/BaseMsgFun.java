@@ -1,5 +1,14 @@
 package com.wiqer.rpc.impl.core;
 
+import com.wiqer.rpc.impl.breaker.CircuitBreaker;
+import com.wiqer.rpc.impl.cache.ResultCache;
+import com.wiqer.rpc.impl.cache.SingleFlight;
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import com.wiqer.rpc.impl.limit.RateLimiter;
+import com.wiqer.rpc.impl.monitor.RpcMonitor;
+import com.wiqer.rpc.impl.retry.LatencyTracker;
+import com.wiqer.rpc.impl.retry.RetryPolicy;
 import com.wiqer.rpc.serialize.SuperMsgMulti;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,6 +21,24 @@ public class BaseMsgFun extends MsgFun {
 
     public ConcurrentHashMap<String, CountDownLatch> uscd;//= new ConcurrentDictionary<int, UnsafeSynchronizer>();
     public ConcurrentHashMap<String, SuperMsgMulti> msgcd;//= new ConcurrentDictionary<int, UnsafeSynchronizer>();
+    //@RpcMethod(enableCache = true)时的结果缓存，未开启为null
+    public ResultCache resultCache;
+    //@RpcMethod(singleFlight = true)时的请求合并，未开启为null
+    public SingleFlight singleFlight;
+    //@RpcMethod(enableRateLimit = true)时的客户端限流器，仅在代理开启客户端限流后生效
+    public RateLimiter rateLimiter;
+    //@RpcMethod(enableCircuitBreaker = true)时的熔断器，每个代理对应一个远端，未开启为null
+    public CircuitBreaker circuitBreaker;
+    //@RpcMethod(idempotent = true, enableRetry = true)时的重试策略，未开启为null
+    public RetryPolicy retryPolicy;
+    //@RpcMethod(idempotent = true, enableHedging = true)时的耗时统计，用于决定对冲时机，未开启为null
+    public LatencyTracker latencyTracker;
+    //代理开启自适应并发限制后的并发上限，未开启为null
+    public volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+    //代理设置MetricsCollector后解析的指标句柄，未设置为null
+    public volatile MetricsCollector.MethodMetrics metrics;
+    //代理设置RpcMonitor后解析的监控句柄，未设置为null
+    public volatile RpcMonitor.MethodHandle monitor;
 
     public void initUnsafeSynchronizer() {
         uscd = new ConcurrentHashMap<String, CountDownLatch>();
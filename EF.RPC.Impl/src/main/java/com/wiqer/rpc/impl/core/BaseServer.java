@@ -1,5 +1,6 @@
 package com.wiqer.rpc.impl.core;
 
+import com.wiqer.rpc.impl.local.LocalServiceRegistry;
 import com.wiqer.rpc.impl.util.ServiceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,8 @@ public abstract class BaseServer  extends Server {
         logger.info("Adding service, interface: {}, version: {}, bean：{}", interfaceName, version, serviceBean);
         String serviceKey = ServiceUtil.makeServiceKey(interfaceName, version);
         serviceMap.put(serviceKey, serviceBean);
+        //同进程的代理开启本地路由后可以直接调用
+        LocalServiceRegistry.register(interfaceName, version, serviceBean);
     }
 
     public void start() {
@@ -45,6 +48,7 @@ public abstract class BaseServer  extends Server {
     }
 
     public void stop() {
+        serviceMap.values().forEach(LocalServiceRegistry::unregister);
         // destroy server thread
         if (thread != null && thread.isAlive()) {
             thread.interrupt();
@@ -57,6 +57,19 @@ public class RpcException extends RuntimeException {
         return methodName;
     }
     
+    /**
+     * 服务端处理异常转换为可回复给调用方的RpcException：InvocationTargetException取业务异常，
+     * RpcException保留原错误码，其余为INVOCATION_ERROR，异常信息为空时用异常类名
+     */
+    public static RpcException of(Throwable e) {
+        Throwable cause = e instanceof java.lang.reflect.InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RpcException) {
+            return (RpcException) cause;
+        }
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+        return new RpcException(ErrorCodes.INVOCATION_ERROR, message, cause);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -83,5 +96,10 @@ public class RpcException extends RuntimeException {
         public static final String SERIALIZATION_ERROR = "SERIALIZATION_ERROR";
         public static final String NETWORK_ERROR = "NETWORK_ERROR";
         public static final String INVOCATION_ERROR = "INVOCATION_ERROR";
+        public static final String INFLIGHT_WINDOW_FULL = "INFLIGHT_WINDOW_FULL";
+        public static final String RATE_LIMITED = "RATE_LIMIT_ERROR";
+        public static final String CIRCUIT_OPEN = "CIRCUIT_BREAKER_ERROR";
+        public static final String CONCURRENCY_LIMITED = "CONCURRENCY_LIMIT_EXCEEDED";
+        public static final String SERVER_BUSY = "SERVER_BUSY";
     }
 } 
\ No newline at end of file
@@ -1,47 +1,278 @@
 package com.wiqer.rpc.impl.core;
 
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import com.wiqer.rpc.impl.limit.RateLimiter;
+import com.wiqer.rpc.impl.limit.RateLimiters;
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.Tracer;
 import com.wiqer.rpc.serialize.SerializerInterface;
 import com.wiqer.rpc.serialize.SuperMsgMulti;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class RpcServerHandler implements ServerHandler {
     SerializerInterface serializer;
+    //方法未开启限流时的占位，避免每次请求重复解析注解
+    private static final RateLimiter NO_LIMIT = new RateLimiter() {
+        @Override
+        public boolean tryAcquire() { return true; }
+        @Override
+        public String getStrategy() { return "none"; }
+        @Override
+        public long getPassedCount() { return 0; }
+        @Override
+        public long getRejectedCount() { return 0; }
+    };
+    private final ConcurrentHashMap<Method, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Method, AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private volatile boolean adaptiveConcurrencyEnabled;
+    private final ConcurrentHashMap<Method, MetricsCollector.MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+    private volatile MetricsCollector metricsCollector;
     public RpcServerHandler( SerializerInterface serializer){
         this.serializer=serializer;
     }
     private static final Logger logger = LoggerFactory.getLogger(RpcServerHandler.class);
+
+    public void setMetricsCollector(MetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+        methodMetrics.clear();
+    }
+
+    /**
+     * 每个方法只解析一次指标句柄
+     */
+    private MetricsCollector.MethodMetrics metricsOf(Object serviceBean, Method method) {
+        MetricsCollector collector = metricsCollector;
+        if (collector == null) {
+            return null;
+        }
+        return methodMetrics.computeIfAbsent(method, m -> collector.methodMetrics(serviceBean.getClass().getName(), m.getName()));
+    }
+
+    /**
+     * 开启后每个方法按处理耗时自适应调整并发上限，超出上限的请求直接拒绝
+     */
+    public void setAdaptiveConcurrencyEnabled(boolean adaptiveConcurrencyEnabled) {
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
+    }
+
+    /**
+     * 各方法当前的自适应并发上限，键为方法签名
+     */
+    public Map<String, Integer> getConcurrencyLimits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        concurrencyLimiters.forEach((method, limiter) -> limits.put(method.toGenericString(), limiter.getLimit()));
+        return Collections.unmodifiableMap(limits);
+    }
+
+    /**
+     * 各方法的自适应并发限制器，键为"实现类名.方法名"，供指标端点输出上限和在途数
+     */
+    public Map<String, AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+        concurrencyLimiters.values().forEach(limiter -> limiters.put(limiter.getName(), limiter));
+        return Collections.unmodifiableMap(limiters);
+    }
+
+    /**
+     * 已开启限流的方法及其限流器，键为方法签名
+     */
+    public Map<String, RateLimiter> getRateLimiters() {
+        Map<String, RateLimiter> limiters = new LinkedHashMap<>();
+        rateLimiters.forEach((method, limiter) -> {
+            if (limiter != NO_LIMIT) {
+                limiters.put(method.toGenericString(), limiter);
+            }
+        });
+        return Collections.unmodifiableMap(limiters);
+    }
     @Override
     public String handle(String request, Object serviceBean, Method method) throws Throwable {
 
+        long receivedNanos = System.nanoTime();
         SuperMsgMulti superMsg =serializer.DeSerializeString(request,SuperMsgMulti.class);
-        return handle( superMsg,  serviceBean,  method);
+        return handle( superMsg,  serviceBean,  method, receivedNanos);
     }
     @Override
     public String handle(SuperMsgMulti superMsg, Object serviceBean, Method method) throws Throwable {
+        return handle(superMsg, serviceBean, method, 0L);
+    }
+
+    /**
+     * @param receivedNanos 传输层收到请求的System.nanoTime()，排队和反序列化耗时计入统计和自适应并发限制的RTT，
+     *                      0表示以进入处理器的时间为准
+     */
+    public String handle(SuperMsgMulti superMsg, Object serviceBean, Method method, long receivedNanos) throws Throwable {
         if (serviceBean == null) {
             logger.error("Can not find service implement ");
             return null;
         }
+        if (receivedNanos == 0) {
+            receivedNanos = System.nanoTime();
+        }
 
+        //从请求携带的跟踪头继续客户端的链路
+        Span span = Tracer.startSpan(Span.SERVER, method.getName(), superMsg.Trace);
+        if (!span.isRecording()) {
+            return dispatch(superMsg, serviceBean, method, span, receivedNanos);
+        }
+        //业务方法中发起的下游调用挂在本次服务端阶段下
+        try (Tracer.Scope ignored = span.makeCurrent()) {
+            return dispatch(superMsg, serviceBean, method, span, receivedNanos);
+        } catch (Throwable t) {
+            span.setError(t);
+            throw t;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * 调用流式方法：observer作为最后一个参数传入，其余参数来自superMsg。
+     * 方法返回只表示流已启动，之后由方法（或它启动的线程）通过observer推送和结束；方法抛出的异常原样抛给传输层
+     */
+    public void handleStream(SuperMsgMulti superMsg, Object serviceBean, Method method, StreamObserver<?> observer) throws Throwable {
+        if (serviceBean == null) {
+            throw new RpcException(RpcException.ErrorCodes.SERVICE_NOT_FOUND, "Can not find service implement");
+        }
+        acquireRateLimit(serviceBean, method, metricsOf(serviceBean, method));
+        Span span = Tracer.startSpan(Span.SERVER, method.getName(), superMsg.Trace);
+        try {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Object[] objs = new Object[parameterTypes.length];
+            int count = superMsg.msg == null ? 0 : Math.min(superMsg.msg.length, objs.length - 1);
+            for (int j = 0; j < count; j++) {
+                objs[j] = this.serializer.DeSerializeString(superMsg.msg[j].toString(), parameterTypes[j]);
+            }
+            objs[objs.length - 1] = observer;
+            try (Tracer.Scope ignored = span.makeCurrent()) {
+                method.invoke(serviceBean, objs);
+            }
+        } catch (InvocationTargetException e) {
+            span.setError(e.getCause());
+            throw e.getCause();
+        } catch (Throwable t) {
+            span.setError(t);
+            throw t;
+        } finally {
+            span.end();
+        }
+    }
+
+    private void acquireRateLimit(Object serviceBean, Method method, MetricsCollector.MethodMetrics metrics) {
+        RateLimiter rateLimiter = rateLimiters.computeIfAbsent(method, m -> {
+            RateLimiter limiter = RateLimiters.forMethod(m, serviceBean.getClass());
+            return limiter != null ? limiter : NO_LIMIT;
+        });
+        if (!rateLimiter.tryAcquire()) {
+            if (metrics != null) {
+                metrics.recordError(RpcException.ErrorCodes.RATE_LIMITED);
+            }
+            throw new RpcException(RpcException.ErrorCodes.RATE_LIMITED,
+                    "超出限流阈值(" + rateLimiter.getStrategy() + ")", serviceBean.getClass().getName(), method.getName());
+        }
+    }
+
+    private String dispatch(SuperMsgMulti superMsg, Object serviceBean, Method method, Span span, long receivedNanos) throws Throwable {
+        MetricsCollector.MethodMetrics metrics = metricsOf(serviceBean, method);
+        acquireRateLimit(serviceBean, method, metrics);
+
+        AdaptiveConcurrencyLimiter concurrencyLimiter = !adaptiveConcurrencyEnabled ? null
+                : concurrencyLimiters.computeIfAbsent(method,
+                        m -> new AdaptiveConcurrencyLimiter(serviceBean.getClass().getName() + "." + m.getName()));
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+            if (metrics != null) {
+                metrics.recordError(RpcException.ErrorCodes.CONCURRENCY_LIMITED);
+            }
+            throw new RpcException(RpcException.ErrorCodes.CONCURRENCY_LIMITED,
+                    "超出自适应并发上限(" + concurrencyLimiter.getLimit() + ")", serviceBean.getClass().getName(), method.getName());
+        }
+        if (metrics == null && concurrencyLimiter == null) {
+            return invoke(superMsg, serviceBean, method, span, null);
+        }
+
+        if (metrics != null) {
+            metrics.recordRequest();
+        }
+        long start = System.nanoTime();
+        CallTimeline timeline = metrics == null ? null
+                : CallTimeline.acquire().markAt(CallTimeline.Point.RECEIVED, receivedNanos);
+        boolean completed = false;
+        try {
+            String response = invoke(superMsg, serviceBean, method, span, timeline);
+            completed = true;
+            return response;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.recordResponseNanos(elapsed, completed);
+                if (completed) {
+                    metrics.recordServerStages(timeline);
+                }
+                timeline.release();
+            }
+            if (concurrencyLimiter != null) {
+                if (completed) {
+                    //从传输层收到请求算起，排队等待线程也是过载信号
+                    concurrencyLimiter.onSuccess(System.nanoTime() - receivedNanos);
+                } else {
+                    concurrencyLimiter.onIgnored();
+                }
+            }
+        }
+    }
+
+    /**
+     * timeline不为null时记录各阶段时间点，并把服务端阶段耗时写入superMsg.Timing随响应带回
+     */
+    private String invoke(SuperMsgMulti superMsg, Object serviceBean, Method method, Span span, CallTimeline timeline) throws Throwable {
         Class<?>[] parameterTypes = method.getParameterTypes();
 
 
         if (null != superMsg.msg&& superMsg.msg.length>0)
         {
+            Span decode = span.startChild(Span.DESERIALIZE);
             Object[] objs = new Object[superMsg.msg.length];
             for (int j = 0; j < superMsg.msg.length; j++)
             {
                 //mfs.reqs.Length
                 objs[j] = this.serializer.DeSerializeString(superMsg.msg[j].toString(),parameterTypes[j]);
             }
-            Object response =method.invoke(serviceBean, objs);
+            decode.end();
+            if (timeline != null) {
+                timeline.mark(CallTimeline.Point.DESERIALIZED).mark(CallTimeline.Point.INVOKE_START);
+            }
+            Span call = span.startChild(Span.INVOKE);
+            Object response;
+            try {
+                response = method.invoke(serviceBean, objs);
+            } finally {
+                call.end();
+            }
+            if (timeline != null) {
+                timeline.mark(CallTimeline.Point.INVOKE_END);
+            }
             if (method.getReturnType() != Void.class)
             {
                 superMsg.setResponse(response);
-                return serializer.SerializeString(response);
+                String reply = serializer.SerializeString(response);
+                if (timeline != null) {
+                    //回复交还传输层发送前打点
+                    timeline.mark(CallTimeline.Point.REPLY_SENT);
+                    superMsg.Timing = timeline.serverDurations();
+                }
+                return reply;
             }
         }
         return null;
@@ -1,10 +1,15 @@
 package com.wiqer.rpc.impl.core.improved;
 
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.monitor.LatencyHistogram;
+import com.wiqer.rpc.impl.monitor.StageHistograms;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -42,64 +47,70 @@ public class MetricsCollector {
     private final LongAdder serializationErrors = new LongAdder();
     private final LongAdder deserializationErrors = new LongAdder();
     
+    // 流水线各阶段耗时（纳秒）
+    private volatile StageHistograms stageHistograms = new StageHistograms();
+    
+    // 方法指标句柄，按"服务名.方法名"缓存
+    private final ConcurrentHashMap<String, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取方法指标句柄，应在代理或服务注册时解析一次并缓存在方法描述上，
+     * 调用路径上直接使用句柄记录，无需拼接键和查表
+     */
+    public MethodMetrics methodMetrics(String serviceName, String methodName) {
+        return methodMetrics.computeIfAbsent(serviceName + "." + methodName, MethodMetrics::new);
+    }
+    
     /**
      * 记录请求
      */
     public void recordRequest(String serviceName, String methodName) {
-        totalRequests.increment();
-        requestsPerSecond.increment();
+        methodMetrics(serviceName, methodName).recordRequest();
         
-        String key = serviceName + "." + methodName;
-        responseTimeStats.computeIfAbsent(key, k -> new ResponseTimeStats());
-        
-        logger.debug("Recorded request: {}.{}", serviceName, methodName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded request: {}.{}", serviceName, methodName);
+        }
     }
     
     /**
-     * 记录响应
+     * 记录响应，耗时单位为毫秒，能拿到纳秒耗时的调用方应使用recordResponseNanos
      */
     public void recordResponse(String serviceName, String methodName, long duration, boolean success) {
-        String key = serviceName + "." + methodName;
-        ResponseTimeStats stats = responseTimeStats.get(key);
-        if (stats != null) {
-            stats.recordResponse(duration);
-        }
+        recordResponseNanos(serviceName, methodName, TimeUnit.MILLISECONDS.toNanos(duration), success);
+    }
+    
+    /**
+     * 记录响应，耗时单位为纳秒
+     */
+    public void recordResponseNanos(String serviceName, String methodName, long durationNanos, boolean success) {
+        methodMetrics(serviceName, methodName).recordResponseNanos(durationNanos, success);
         
-        if (success) {
-            successfulRequests.increment();
-        } else {
-            failedRequests.increment();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded response: {}.{} in {}ns, success={}", 
+                    serviceName, methodName, durationNanos, success);
         }
-        
-        logger.debug("Recorded response: {}.{} in {}ms, success={}", 
-                serviceName, methodName, duration, success);
     }
     
     /**
      * 记录超时
      */
     public void recordTimeout(String serviceName, String methodName) {
-        timeoutRequests.increment();
-        failedRequests.increment();
+        methodMetrics(serviceName, methodName).recordTimeout();
         
-        String key = serviceName + "." + methodName;
-        ResponseTimeStats stats = responseTimeStats.get(key);
-        if (stats != null) {
-            stats.recordTimeout();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded timeout: {}.{}", serviceName, methodName);
         }
-        
-        logger.debug("Recorded timeout: {}.{}", serviceName, methodName);
     }
     
     /**
      * 记录错误
      */
     public void recordError(String serviceName, String methodName, String errorType) {
-        String key = serviceName + "." + methodName + "." + errorType;
-        errorCounters.computeIfAbsent(key, k -> new LongAdder()).increment();
-        failedRequests.increment();
+        methodMetrics(serviceName, methodName).recordError(errorType);
         
-        logger.debug("Recorded error: {}.{} - {}", serviceName, methodName, errorType);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded error: {}.{} - {}", serviceName, methodName, errorType);
+        }
     }
     
     /**
@@ -163,6 +174,13 @@ public class MetricsCollector {
         );
     }
     
+    /**
+     * 各流水线阶段的耗时分布
+     */
+    public StageHistograms getStageHistograms() {
+        return stageHistograms;
+    }
+    
     /**
      * 重置指标
      */
@@ -174,57 +192,142 @@ public class MetricsCollector {
         requestsPerSecond.reset();
         responseTimeStats.clear();
         errorCounters.clear();
+        methodMetrics.values().forEach(MethodMetrics::resetStats);
+        stageHistograms = new StageHistograms();
         lastResetTime.set(System.currentTimeMillis());
         
         logger.info("Metrics reset");
     }
     
+    /**
+     * 方法指标句柄，记录时只有计数器自增和直方图写入，不分配对象
+     */
+    public final class MethodMetrics {
+        private final String key;
+        private volatile ResponseTimeStats stats;
+        
+        private MethodMetrics(String key) {
+            this.key = key;
+            this.stats = responseTimeStats.computeIfAbsent(key, k -> new ResponseTimeStats());
+        }
+        
+        public void recordRequest() {
+            totalRequests.increment();
+            requestsPerSecond.increment();
+        }
+        
+        /**
+         * 耗时单位为纳秒
+         */
+        public void recordResponseNanos(long durationNanos, boolean success) {
+            stats.recordResponseNanos(durationNanos);
+            if (success) {
+                successfulRequests.increment();
+            } else {
+                failedRequests.increment();
+            }
+        }
+        
+        public void recordTimeout() {
+            timeoutRequests.increment();
+            failedRequests.increment();
+            stats.recordTimeout();
+        }
+        
+        /**
+         * 错误路径按错误类型分别计数，允许拼接键
+         */
+        public void recordError(String errorType) {
+            errorCounters.computeIfAbsent(key + "." + errorType, k -> new LongAdder()).increment();
+            failedRequests.increment();
+        }
+        
+        /**
+         * 客户端一次调用的阶段耗时，serverDurations为响应带回的服务端阶段耗时
+         */
+        public void recordClientStages(CallTimeline timeline, long[] serverDurations) {
+            stageHistograms.recordClient(timeline, serverDurations);
+        }
+        
+        public void recordServerStages(CallTimeline timeline) {
+            stageHistograms.recordServer(timeline);
+        }
+        
+        public String getKey() { return key; }
+        public ResponseTimeStats getStats() { return stats; }
+        
+        private void resetStats() {
+            stats = responseTimeStats.computeIfAbsent(key, k -> new ResponseTimeStats());
+        }
+    }
+    
     /**
      * 响应时间统计
+     * 按纳秒记录，分布记录在对数分桶直方图中，可读取累计或按周期的p50/p90/p99/p999；
+     * 按毫秒记录时亚毫秒的调用全部落在0和1两个桶里，分位数失去意义。
+     * 总耗时、最小/最大/平均值的getter仍返回毫秒
      */
     public static class ResponseTimeStats {
-        private final AtomicLong count = new AtomicLong(0);
-        private final AtomicLong totalTime = new AtomicLong(0);
-        private final AtomicLong minTime = new AtomicLong(Long.MAX_VALUE);
-        private final AtomicLong maxTime = new AtomicLong(0);
-        private final AtomicLong timeoutCount = new AtomicLong(0);
+        private static final double NANOS_PER_MILLI = 1_000_000.0;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator minTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+        private final LongAdder timeoutCount = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
         
+        /**
+         * 耗时单位为毫秒
+         */
         public void recordResponse(long duration) {
-            count.incrementAndGet();
-            totalTime.addAndGet(duration);
-            
-            // 更新最小时间
-            long currentMin = minTime.get();
-            while (duration < currentMin && !minTime.compareAndSet(currentMin, duration)) {
-                currentMin = minTime.get();
-            }
-            
-            // 更新最大时间
-            long currentMax = maxTime.get();
-            while (duration > currentMax && !maxTime.compareAndSet(currentMax, duration)) {
-                currentMax = maxTime.get();
-            }
+            recordResponseNanos(TimeUnit.MILLISECONDS.toNanos(duration));
+        }
+        
+        public void recordResponseNanos(long durationNanos) {
+            count.increment();
+            totalTime.add(durationNanos);
+            minTime.accumulate(durationNanos);
+            maxTime.accumulate(durationNanos);
+            histogram.record(durationNanos);
         }
         
         public void recordTimeout() {
-            timeoutCount.incrementAndGet();
+            timeoutCount.increment();
         }
         
-        public long getCount() { return count.get(); }
-        public long getTotalTime() { return totalTime.get(); }
-        public long getMinTime() { return minTime.get() == Long.MAX_VALUE ? 0 : minTime.get(); }
-        public long getMaxTime() { return maxTime.get(); }
-        public long getTimeoutCount() { return timeoutCount.get(); }
+        public long getCount() { return count.sum(); }
+        public long getTotalTime() { return TimeUnit.NANOSECONDS.toMillis(totalTime.sum()); }
+        public long getTotalTimeNanos() { return totalTime.sum(); }
+        public long getMinTime() { return minTime.get() == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(minTime.get()); }
+        public long getMaxTime() { return TimeUnit.NANOSECONDS.toMillis(maxTime.get()); }
+        public long getTimeoutCount() { return timeoutCount.sum(); }
         
         public double getAverageTime() {
-            long count = this.count.get();
-            return count > 0 ? (double) totalTime.get() / count : 0.0;
+            long count = this.count.sum();
+            return count > 0 ? (double) totalTime.sum() / count / NANOS_PER_MILLI : 0.0;
+        }
+        
+        /**
+         * 累计耗时分布，单位纳秒
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return histogram.snapshot();
+        }
+        
+        /**
+         * 距上次调用以来的耗时分布，单位纳秒
+         */
+        public LatencyHistogram.Snapshot getIntervalLatency() {
+            return histogram.intervalSnapshot();
         }
         
         @Override
         public String toString() {
-            return String.format("ResponseTimeStats{count=%d, avg=%.2fms, min=%dms, max=%dms, timeouts=%d}",
-                    getCount(), getAverageTime(), getMinTime(), getMaxTime(), getTimeoutCount());
+            LatencyHistogram.Snapshot latency = getLatency();
+            return String.format("ResponseTimeStats{count=%d, avg=%.2fms, min=%dms, max=%dms, p50=%.3fms, p90=%.3fms, p99=%.3fms, p999=%.3fms, timeouts=%d}",
+                    getCount(), getAverageTime(), getMinTime(), getMaxTime(),
+                    latency.getP50() / NANOS_PER_MILLI, latency.getP90() / NANOS_PER_MILLI,
+                    latency.getP99() / NANOS_PER_MILLI, latency.getP999() / NANOS_PER_MILLI, getTimeoutCount());
         }
     }
     
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +26,7 @@ public class OptimizedJsonSerializer implements Serializer {
     private final ConcurrentHashMap<String, Class<?>> deserializationCache = new ConcurrentHashMap<>();
     
     private boolean compressionEnabled = false;
+    private PayloadCompressor compressor = new PayloadCompressor();
     private boolean cacheEnabled = true;
     private final AtomicLong hitCount = new AtomicLong(0);
     private final AtomicLong missCount = new AtomicLong(0);
@@ -73,6 +75,9 @@ public class OptimizedJsonSerializer implements Serializer {
             }
             
             byte[] result = objectMapper.writeValueAsBytes(obj);
+            if (compressionEnabled) {
+                result = compressor.encode(result);
+            }
             
             if (cacheEnabled && result.length < 1024) { // 只缓存小对象
                 serializationCache.put(cacheKey, result);
@@ -92,7 +97,7 @@ public class OptimizedJsonSerializer implements Serializer {
         }
         
         try {
-            return objectMapper.readValue(data, clazz);
+            return objectMapper.readValue(PayloadCompressor.decode(data, compressor.getMaxDecompressedLength()), clazz);
         } catch (Exception e) {
             throw RpcException.serializationError("Failed to deserialize to " + clazz.getName(), e);
         }
@@ -162,11 +167,33 @@ public class OptimizedJsonSerializer implements Serializer {
     @Override
     public void setCompressionEnabled(boolean enabled) {
         this.compressionEnabled = enabled;
+        // 已缓存的字节与新的压缩设置不一致
+        serializationCache.clear();
         if (enabled) {
             logger.info("Compression enabled for JSON serializer");
         }
     }
     
+    /**
+     * 设置压缩算法与阈值
+     */
+    public void setCompressor(PayloadCompressor compressor) {
+        this.compressor = compressor;
+    }
+    
+    public PayloadCompressor getCompressor() {
+        return compressor;
+    }
+    
+    /**
+     * 按RpcConfig设置压缩开关、算法、阈值和解压长度上限
+     */
+    public void configure(RpcConfig config) {
+        this.compressor = new PayloadCompressor(config.getCompressionCodec(),
+                config.getCompressionThreshold(), config.getMaxDecompressedLength());
+        setCompressionEnabled(config.isEnableCompression());
+    }
+    
     @Override
     public boolean isCacheEnabled() {
         return cacheEnabled;
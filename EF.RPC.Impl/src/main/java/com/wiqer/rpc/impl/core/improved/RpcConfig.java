@@ -21,6 +21,9 @@ public class RpcConfig {
     // 序列化配置
     private String serializerType = "json"; // json, protobuf
     private boolean enableCompression = false;
+    private String compressionCodec = "lz4"; // lz4, deflate
+    private int compressionThreshold = 1024; // 小于该字节数不压缩
+    private int maxDecompressedLength = 16 * 1024 * 1024; // 压缩帧原始长度上限，超过时拒绝解压
     
     // 重试配置
     private int maxRetries = 3;
@@ -104,6 +107,15 @@ public class RpcConfig {
         if (!serializerType.equals("json") && !serializerType.equals("protobuf")) {
             throw new IllegalArgumentException("serializerType must be 'json' or 'protobuf'");
         }
+        if (!compressionCodec.equals("lz4") && !compressionCodec.equals("deflate")) {
+            throw new IllegalArgumentException("compressionCodec must be 'lz4' or 'deflate'");
+        }
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("compressionThreshold must be >= 0");
+        }
+        if (maxDecompressedLength <= 0) {
+            throw new IllegalArgumentException("maxDecompressedLength must be > 0");
+        }
     }
     
     // Getters and Setters
@@ -171,6 +183,30 @@ public class RpcConfig {
         this.enableCompression = enableCompression;
     }
     
+    public String getCompressionCodec() {
+        return compressionCodec;
+    }
+    
+    public void setCompressionCodec(String compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+    
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+    
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+    
+    public int getMaxDecompressedLength() {
+        return maxDecompressedLength;
+    }
+    
+    public void setMaxDecompressedLength(int maxDecompressedLength) {
+        this.maxDecompressedLength = maxDecompressedLength;
+    }
+    
     public int getMaxRetries() {
         return maxRetries;
     }
@@ -1,5 +1,6 @@
 package com.wiqer.rpc.impl.ioc;
 
+import com.wiqer.rpc.impl.local.LocalServiceRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -46,6 +47,7 @@ public class IOCContainer {
     public void registerBean(String beanName, Object bean) {
         beanCache.put(beanName, bean);
         log.info("注册Bean: {}", beanName);
+        LocalServiceRegistry.invalidate();
     }
     
     /**
@@ -126,6 +128,7 @@ public class IOCContainer {
         beanCache.clear();
         beanDefinitionCache.clear();
         methodInfoCache.clear();
+        LocalServiceRegistry.invalidate();
         log.info("清除所有缓存");
     }
     
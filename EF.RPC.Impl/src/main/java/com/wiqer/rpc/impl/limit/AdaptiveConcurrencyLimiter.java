@@ -0,0 +1,162 @@
+package com.wiqer.rpc.impl.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制（Gradient算法）
+ * 以长期平滑的RTT作为无排队基线，与最近一个采样窗口的平均RTT相比得到梯度：
+ * RTT上升说明请求开始排队，按梯度收缩并发上限；RTT平稳则在当前上限基础上增加sqrt(limit)的探测余量。
+ * 获取/释放只有一次CAS，上限每个采样窗口由一个线程重新计算一次
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final long DEFAULT_WINDOW_MILLIS = 100;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_DECAY = 0.05;
+    private static final double RTT_TOLERANCE = 1.5;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile double limit;
+    private volatile double longRttNanos = -1;
+
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAdder windowDrops = new LongAdder();
+    private volatile long windowStart = System.nanoTime();
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(String name) {
+        this(name, 20, 1, 1000);
+    }
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this(name, initialLimit, minLimit, maxLimit, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param windowMillis 采样窗口长度（毫秒），每个窗口调整一次上限
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, long windowMillis) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * 并发数未达上限时占用一个名额；返回true后必须调用onSuccess/onDropped归还
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求正常完成
+     *
+     * @param rttNanos 请求耗时（纳秒）
+     */
+    public void onSuccess(long rttNanos) {
+        inflight.decrementAndGet();
+        windowRttSum.add(rttNanos);
+        windowSamples.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * 请求超时或因过载失败，视为拥塞信号
+     */
+    public void onDropped() {
+        inflight.decrementAndGet();
+        windowDrops.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * 请求失败但与负载无关（例如业务异常），只归还名额
+     */
+    public void onIgnored() {
+        inflight.decrementAndGet();
+    }
+
+    private void maybeUpdate() {
+        long now = System.nanoTime();
+        if (now - windowStart < windowNanos || !updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (now - windowStart < windowNanos) {
+                return;
+            }
+            long samples = windowSamples.sumThenReset();
+            long rttSum = windowRttSum.sumThenReset();
+            long drops = windowDrops.sumThenReset();
+            windowStart = now;
+
+            double current = limit;
+            double next;
+            if (drops > 0) {
+                // 出现超时等丢弃，直接按乘性因子收缩
+                next = current * 0.9;
+            } else if (samples >= MIN_WINDOW_SAMPLES) {
+                double shortRtt = (double) rttSum / samples;
+                double longRtt = longRttNanos < 0 ? shortRtt : longRttNanos;
+                // 基线缓慢跟随，排队导致的RTT上升不会立刻被当作新基线
+                longRttNanos = longRtt + (shortRtt - longRtt) * LONG_RTT_DECAY;
+                double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / shortRtt));
+                double target = current * gradient + Math.sqrt(current);
+                next = current * (1 - SMOOTHING) + target * SMOOTHING;
+            } else {
+                return;
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdaptiveConcurrencyLimiter{name=%s, limit=%d, inflight=%d, rejected=%d}",
+                name, getLimit(), getInflight(), getRejectedCount());
+    }
+}
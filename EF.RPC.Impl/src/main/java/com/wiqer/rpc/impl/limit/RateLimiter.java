@@ -0,0 +1,21 @@
+package com.wiqer.rpc.impl.limit;
+
+/**
+ * 限流器
+ */
+public interface RateLimiter {
+
+    /**
+     * 尝试获取一个许可，不阻塞
+     */
+    boolean tryAcquire();
+
+    /**
+     * 限流策略名称
+     */
+    String getStrategy();
+
+    long getPassedCount();
+
+    long getRejectedCount();
+}
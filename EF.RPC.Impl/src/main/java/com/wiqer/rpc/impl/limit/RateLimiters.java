@@ -0,0 +1,40 @@
+package com.wiqer.rpc.impl.limit;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.annotation.RpcService;
+import com.wiqer.rpc.impl.util.RpcAnnotations;
+
+import java.lang.reflect.Method;
+
+/**
+ * 根据@RpcMethod / @RpcService的限流配置创建限流器
+ */
+public final class RateLimiters {
+
+    private RateLimiters() {
+    }
+
+    public static RateLimiter create(int threshold, int windowSize, String strategy) {
+        if (SlidingWindowRateLimiter.STRATEGY.equalsIgnoreCase(strategy)) {
+            return new SlidingWindowRateLimiter(threshold, windowSize);
+        }
+        return new TokenBucketRateLimiter(threshold, windowSize);
+    }
+
+    /**
+     * 方法（或其接口方法）上的@RpcMethod优先，其次是实现类（或其接口）上的@RpcService；未开启限流返回null
+     */
+    public static RateLimiter forMethod(Method method, Class<?> serviceClass) {
+        RpcMethod rpcMethod = RpcAnnotations.findRpcMethod(method, serviceClass);
+        if (rpcMethod != null) {
+            return rpcMethod.enableRateLimit()
+                    ? create(rpcMethod.rateLimitThreshold(), rpcMethod.rateLimitWindowSize(), rpcMethod.rateLimitStrategy())
+                    : null;
+        }
+        RpcService rpcService = RpcAnnotations.findRpcService(serviceClass);
+        if (rpcService != null && rpcService.enableRateLimit()) {
+            return create(rpcService.rateLimitThreshold(), rpcService.rateLimitWindowSize(), rpcService.rateLimitStrategy());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.wiqer.rpc.impl.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 滑动窗口限流器，窗口划分为固定数量的子桶。
+ * 每个桶是一个long，高位为桶所属的时间片编号、低位为计数，换桶和计数在同一次CAS中完成；
+ * 先判断窗口内其他桶的计数，再在当前桶上CAS加一，被拒绝的请求不计数，无需回退
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+    public static final String STRATEGY = "sliding_window";
+
+    private static final int BUCKETS = 10;
+    private static final int COUNT_BITS = 32;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long limit;
+    private final long bucketNanos;
+    //时间片编号从构造时刻算起，保证非负
+    private final long originNanos = System.nanoTime();
+    //0表示空桶，否则为 (时间片编号 + 1) << COUNT_BITS | 计数
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permitsPerSecond 每秒许可数
+     * @param windowSeconds    窗口长度（秒），窗口内最多permitsPerSecond*windowSeconds个请求
+     */
+    public SlidingWindowRateLimiter(int permitsPerSecond, int windowSeconds) {
+        int window = Math.max(1, windowSeconds);
+        this.limit = Math.min(COUNT_MASK, Math.max(1L, (long) permitsPerSecond * window));
+        this.bucketNanos = TimeUnit.SECONDS.toNanos(window) / BUCKETS;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        long tag = (System.nanoTime() - originNanos) / bucketNanos + 1;
+        int index = (int) (tag % BUCKETS);
+        long others = otherBuckets(tag, index);
+        for (;;) {
+            long bucket = buckets.get(index);
+            //桶属于已过去的时间片时换成当前时间片，从0开始计数
+            long count = bucket >>> COUNT_BITS == tag ? bucket & COUNT_MASK : 0;
+            if (others + count >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (buckets.compareAndSet(index, bucket, tag << COUNT_BITS | (count + 1))) {
+                passed.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 窗口内除当前桶以外的计数
+     */
+    private long otherBuckets(long tag, int index) {
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = buckets.get(i);
+            if (i != index && bucket != 0 && tag - (bucket >>> COUNT_BITS) < BUCKETS) {
+                sum += bucket & COUNT_MASK;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String getStrategy() {
+        return STRATEGY;
+    }
+
+    @Override
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,65 @@
+package com.wiqer.rpc.impl.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌桶限流器，按GCRA（理论到达时间）实现，整个限流器只有一个AtomicLong，无锁；
+ * 配置的速率与桶容量对所有调用线程共同生效，与线程数无关
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    public static final String STRATEGY = "token_bucket";
+
+    private final AtomicLong theoreticalArrivalTime;
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permitsPerSecond 每秒许可数
+     * @param burstSeconds     桶容量对应的秒数
+     */
+    public TokenBucketRateLimiter(int permitsPerSecond, int burstSeconds) {
+        int permits = Math.max(1, permitsPerSecond);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / permits);
+        long capacity = Math.max(1, (long) permits * Math.max(1, burstSeconds));
+        this.burstToleranceNanos = intervalNanos * (capacity - 1);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        for (;;) {
+            long now = System.nanoTime();
+            long current = theoreticalArrivalTime.get();
+            long next = Math.max(current, now) + intervalNanos;
+            if (next - now > burstToleranceNanos + intervalNanos) {
+                rejected.increment();
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                passed.increment();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String getStrategy() {
+        return STRATEGY;
+    }
+
+    @Override
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
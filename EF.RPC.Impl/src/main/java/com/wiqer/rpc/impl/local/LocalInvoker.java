@@ -0,0 +1,59 @@
+package com.wiqer.rpc.impl.local;
+
+import com.wiqer.rpc.serialize.SerializerInterface;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * 同进程调用：解析时把接口方法绑定到服务实例并预编译为(Object[])Object的MethodHandle，
+ * 调用时不再做反射查找和访问检查，业务异常原样抛出
+ */
+public class LocalInvoker {
+
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final MethodHandle handle;
+    private final Type[] parameterTypes;
+    private final Type returnType;
+    private final boolean returnsValue;
+
+    /**
+     * @param method 代理接口上的方法，按接口分派到bean的实现
+     */
+    public LocalInvoker(Object bean, Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        this.handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(bean)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(SPREAD_TYPE);
+        this.parameterTypes = method.getGenericParameterTypes();
+        this.returnType = method.getGenericReturnType();
+        this.returnsValue = method.getReturnType() != void.class;
+    }
+
+    /**
+     * @param copier 不为null时参数和返回值都经序列化深拷贝，与远程调用一样隔离调用方和服务方的对象
+     */
+    public Object invoke(Object[] args, SerializerInterface copier) throws Throwable {
+        Object[] actual = args == null ? new Object[0] : args;
+        if (copier != null) {
+            actual = new Object[actual.length];
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = copy(copier, args[i], parameterTypes[i]);
+            }
+        }
+        Object result = (Object) handle.invokeExact(actual);
+        return copier != null && returnsValue ? copy(copier, result, returnType) : result;
+    }
+
+    private static Object copy(SerializerInterface copier, Object value, Type type) {
+        if (value == null) {
+            return null;
+        }
+        return copier.DeSerializeString(copier.SerializeString(value), type);
+    }
+}
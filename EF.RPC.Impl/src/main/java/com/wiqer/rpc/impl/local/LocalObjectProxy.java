@@ -0,0 +1,26 @@
+package com.wiqer.rpc.impl.local;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.impl.util.ServiceUtil;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+
+import java.lang.reflect.Method;
+
+/**
+ * 同进程代理：始终开启本地路由，目标服务不在本进程时没有可走的传输
+ */
+public class LocalObjectProxy extends ObjectProxy {
+
+    public LocalObjectProxy(Class clazz, String version, boolean copyArguments) {
+        super(clazz, version);
+        setLocalRouting(true, copyArguments);
+    }
+
+    @Override
+    protected boolean sendMsg(Object proxy, Method method, SuperMsgMulti superMsgMulti, String markName) {
+        String serviceKey = ServiceUtil.makeServiceKey(method.getDeclaringClass().getName(), version);
+        throw new RpcException(RpcException.ErrorCodes.SERVICE_NOT_FOUND,
+                "本进程未注册服务: " + serviceKey, method.getDeclaringClass().getName(), method.getName());
+    }
+}
@@ -0,0 +1,30 @@
+package com.wiqer.rpc.impl.local;
+
+import com.wiqer.rpc.impl.RpcClient;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+
+/**
+ * 同进程传输：代理只调用本进程内注册的服务（BaseServer.addService或IOCContainer），
+ * 服务未注册时调用失败。用于服务端和客户端部署在同一JVM，以及不依赖broker的测试
+ */
+public class LocalRpcClient extends RpcClient {
+
+    private final boolean copyArguments;
+
+    public LocalRpcClient() {
+        this(false);
+    }
+
+    /**
+     * @param copyArguments 参数和返回值是否经序列化深拷贝，false时按引用传递
+     */
+    public LocalRpcClient(boolean copyArguments) {
+        super("local");
+        this.copyArguments = copyArguments;
+    }
+
+    @Override
+    public <T, P> ObjectProxy createObjectProxy(Class<T> interfaceClass, String version) {
+        return new LocalObjectProxy(interfaceClass, version, copyArguments);
+    }
+}
@@ -0,0 +1,108 @@
+package com.wiqer.rpc.impl.local;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.ioc.IOCContainer;
+import com.wiqer.rpc.impl.util.ServiceUtil;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本进程内已注册的服务，键与BaseServer.serviceMap相同（接口名#版本）。
+ * 开启本地路由的代理据此判断目标服务是否在同一JVM中，命中时直接调用而不经过序列化和broker。
+ * 注册表变化时递增generation，代理按generation缓存查找结果
+ */
+public final class LocalServiceRegistry {
+
+    private static final ConcurrentHashMap<String, LocalService> SERVICES = new ConcurrentHashMap<>();
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private LocalServiceRegistry() {
+    }
+
+    /**
+     * 按给定接口名注册，同时按bean实现的各接口注册，已有同名服务时不覆盖
+     */
+    public static void register(String interfaceName, String version, Object bean) {
+        LocalService service = new LocalService(bean);
+        SERVICES.put(ServiceUtil.makeServiceKey(interfaceName, version), service);
+        for (Class<?> iface : bean.getClass().getInterfaces()) {
+            SERVICES.putIfAbsent(ServiceUtil.makeServiceKey(iface.getName(), version), service);
+        }
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * 移除该bean注册的所有键
+     */
+    public static void unregister(Object bean) {
+        SERVICES.values().removeIf(service -> service.bean == bean);
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * IOCContainer中的Bean变化后调用，使代理重新查找
+     */
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    public static int generation() {
+        return GENERATION.get();
+    }
+
+    /**
+     * 先按接口名和版本查找，找不到时取IOCContainer中实现该接口的Bean（不区分版本，排除代理对象本身）
+     *
+     * @return 不在本进程时返回null
+     */
+    public static LocalService lookup(Class<?> iface, String version) {
+        LocalService service = SERVICES.get(ServiceUtil.makeServiceKey(iface.getName(), version));
+        if (service != null) {
+            return service;
+        }
+        Object bean = IOCContainer.getInstance().getBean(iface);
+        if (bean == null || Proxy.isProxyClass(bean.getClass())) {
+            return null;
+        }
+        return new LocalService(bean);
+    }
+
+    public static void clear() {
+        SERVICES.clear();
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * 一个本地服务实例及其各方法预编译的调用
+     */
+    public static final class LocalService {
+        private final Object bean;
+        private final ConcurrentHashMap<Method, LocalInvoker> invokers = new ConcurrentHashMap<>();
+
+        LocalService(Object bean) {
+            this.bean = bean;
+        }
+
+        public Object getBean() {
+            return bean;
+        }
+
+        public LocalInvoker invoker(Method method) {
+            LocalInvoker invoker = invokers.get(method);
+            if (invoker != null) {
+                return invoker;
+            }
+            return invokers.computeIfAbsent(method, m -> {
+                try {
+                    return new LocalInvoker(bean, m);
+                } catch (IllegalAccessException e) {
+                    throw new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND,
+                            "无法访问本地服务方法: " + m, e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.wiqer.rpc.impl.monitor;
+
+import java.util.Arrays;
+
+/**
+ * 一次调用在固定流水线节点上的纳秒时间戳，未经过的节点为0
+ * 客户端依次经过PROXY_ENTER、SERIALIZED、ENQUEUED、SENT、RECEIVED、DESERIALIZED；
+ * 服务端依次经过RECEIVED、DESERIALIZED、INVOKE_START、INVOKE_END、REPLY_SENT。
+ * 调用路径上用acquire取当前线程复用的实例，结束后release，每次调用不分配对象
+ */
+public final class CallTimeline {
+
+    public enum Point {
+        PROXY_ENTER,
+        SERIALIZED,
+        ENQUEUED,
+        SENT,
+        RECEIVED,
+        DESERIALIZED,
+        INVOKE_START,
+        INVOKE_END,
+        REPLY_SENT
+    }
+
+    /**
+     * 随响应带回的服务端阶段数，顺序为 反序列化、分发、方法执行、回复
+     */
+    public static final int SERVER_STAGES = 4;
+
+    private static final Point[] POINTS = Point.values();
+    //客户端代理在发送期间绑定到当前线程，传输层可在序列化、入队后打点
+    private static final ThreadLocal<CallTimeline> CURRENT = new ThreadLocal<>();
+    //每个线程复用的实例
+    private static final ThreadLocal<CallTimeline> POOLED = ThreadLocal.withInitial(CallTimeline::new);
+
+    private final long[] marks = new long[POINTS.length];
+    //每次acquire加一，异步打点据此丢弃已结束调用的迟到时间点
+    private volatile long callId;
+    private boolean inUse;
+
+    /**
+     * 取当前线程复用的时间线并清空；已被占用时（同一线程上的嵌套调用）新建一个。用完必须release
+     */
+    public static CallTimeline acquire() {
+        CallTimeline timeline = POOLED.get();
+        if (timeline.inUse) {
+            timeline = new CallTimeline();
+        }
+        Arrays.fill(timeline.marks, 0);
+        timeline.callId++;
+        timeline.inUse = true;
+        return timeline;
+    }
+
+    public void release() {
+        inUse = false;
+    }
+
+    public long getCallId() {
+        return callId;
+    }
+
+    /**
+     * 时间线仍属于callId对应的调用时打点，供写完成回调等异步打点使用
+     */
+    public void markIfCall(long callId, Point point) {
+        if (this.callId == callId) {
+            mark(point);
+        }
+    }
+
+    public CallTimeline mark(Point point) {
+        marks[point.ordinal()] = System.nanoTime();
+        return this;
+    }
+
+    public CallTimeline markAt(Point point, long nanos) {
+        marks[point.ordinal()] = nanos;
+        return this;
+    }
+
+    public long get(Point point) {
+        return marks[point.ordinal()];
+    }
+
+    /**
+     * 两个节点之间的耗时，任一节点未经过时为0
+     */
+    public long between(Point from, Point to) {
+        long start = marks[from.ordinal()];
+        long end = marks[to.ordinal()];
+        return start != 0 && end != 0 && end > start ? end - start : 0;
+    }
+
+    /**
+     * 服务端各阶段耗时（纳秒），放入响应的Timing字段
+     */
+    public long[] serverDurations() {
+        return new long[]{
+                between(Point.RECEIVED, Point.DESERIALIZED),
+                between(Point.DESERIALIZED, Point.INVOKE_START),
+                between(Point.INVOKE_START, Point.INVOKE_END),
+                between(Point.INVOKE_END, Point.REPLY_SENT)
+        };
+    }
+
+    public static CallTimeline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程绑定的时间线上打点，未绑定时不做任何事
+     */
+    public static void markCurrent(Point point) {
+        CallTimeline timeline = CURRENT.get();
+        if (timeline != null) {
+            timeline.mark(point);
+        }
+    }
+
+    /**
+     * 传null解除绑定
+     */
+    public static void setCurrent(CallTimeline timeline) {
+        if (timeline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timeline);
+        }
+    }
+}
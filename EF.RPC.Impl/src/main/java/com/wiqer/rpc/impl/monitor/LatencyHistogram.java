@@ -0,0 +1,177 @@
+package com.wiqer.rpc.impl.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数分桶耗时直方图（HdrHistogram的简化实现）
+ * 每个2的幂区间再均分为32个子桶，相对误差约3%；写入按线程分段，一次记录只有一次原子自增。
+ * 计数只增不减，区间快照取两次累计快照的差值，读取不影响写入
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * 可区分的最大值为2^MAX_EXPONENT，超出的记入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int MAX_STRIPES = 4;
+
+    private final AtomicLongArray[] stripes;
+    private final int mask;
+    private final LongAdder sum = new LongAdder();
+
+    private long[] lastCounts = new long[BUCKETS];
+    private long lastSum;
+
+    public LatencyHistogram() {
+        int n = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+        this.stripes = new AtomicLongArray[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        this.mask = n - 1;
+    }
+
+    public void record(long value) {
+        stripes[(int) Thread.currentThread().getId() & mask].getAndIncrement(bucketIndex(value));
+        sum.add(value);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int k = index - SUB_BUCKETS;
+        int shift = k / SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + k % SUB_BUCKETS) << shift;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        return lowerBound(index) + (1L << shift) - 1;
+    }
+
+    private long[] cumulativeCounts() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 自创建以来的累计分布
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(cumulativeCounts(), sum.sum());
+    }
+
+    /**
+     * 距上一次调用以来的区间分布，适合按固定周期（例如每秒）调用
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        long[] counts = cumulativeCounts();
+        long currentSum = sum.sum();
+        long[] delta = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            delta[i] = counts[i] - lastCounts[i];
+        }
+        Snapshot snapshot = new Snapshot(delta, currentSum - lastSum);
+        lastCounts = counts;
+        lastSum = currentSum;
+        return snapshot;
+    }
+
+    /**
+     * 直方图快照，分位数取所在桶的上界
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        /**
+         * @param percentile 百分位，例如99.9
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getP50() { return getValueAtPercentile(50); }
+        public long getP90() { return getValueAtPercentile(90); }
+        public long getP99() { return getValueAtPercentile(99); }
+        public long getP999() { return getValueAtPercentile(99.9); }
+
+        @Override
+        public String toString() {
+            return String.format("Latency{count=%d, mean=%.2f, p50=%d, p90=%d, p99=%d, p999=%d, max=%d}",
+                    count, getMean(), getP50(), getP90(), getP99(), getP999(), getMax());
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.wiqer.rpc.impl.monitor;
+
+import com.wiqer.rpc.impl.core.ConnectionPool;
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以OpenMetrics文本格式输出MetricsCollector、RpcMonitor、连接池、客户端发送背压和自适应并发限制的指标
+ * 直接遍历实时计数器写入Appendable，不构建中间集合；方法耗时以summary输出p50/p90/p99/p999。
+ * 直方图按纳秒记录，输出时按OpenMetrics约定换算为秒。
+ * 同类实例一次传入，每个指标族只输出一次TYPE/HELP，其后每个实例的样本以实例名为标签，
+ * 因此每次抓取中每个write方法只调用一次
+ */
+public class OpenMetricsWriter {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String PREFIX = "efrpc_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Appendable out;
+    //当前输出的实例，每个样本的第一个标签
+    private String instanceLabel;
+    private String instance;
+
+    public OpenMetricsWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * 某个指标族中一个实例的样本
+     */
+    private interface Samples<T> {
+        void write(T source) throws IOException;
+    }
+
+    /**
+     * @param collectors 实例名到MetricsCollector，实例名输出为instance标签
+     */
+    public OpenMetricsWriter writeCollectors(Map<String, MetricsCollector> collectors) throws IOException {
+        Map<String, MetricsCollector.MetricsSnapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, MetricsCollector> entry : collectors.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        instanceLabel = "instance";
+
+        family("requests", "counter", "RPC requests", snapshots,
+                snapshot -> sample("requests_total", snapshot.getTotalRequests()));
+        family("responses", "counter", "RPC responses by outcome", snapshots, snapshot -> {
+            sample("responses_total", "outcome", "success", snapshot.getSuccessfulRequests());
+            sample("responses_total", "outcome", "failure", snapshot.getFailedRequests());
+            sample("responses_total", "outcome", "timeout", snapshot.getTimeoutRequests());
+        });
+
+        family("connections_active", "gauge", "Active connections", snapshots,
+                snapshot -> sample("connections_active", snapshot.getActiveConnections()));
+        family("connections_created", "counter", "Connections created", snapshots,
+                snapshot -> sample("connections_created_total", snapshot.getTotalConnections()));
+        family("connection_errors", "counter", "Connection errors", snapshots,
+                snapshot -> sample("connection_errors_total", snapshot.getConnectionErrors()));
+
+        family("serializations", "counter", "Serialization operations by outcome", snapshots, snapshot -> {
+            sample("serializations_total", "op", "serialize", "outcome", "success", snapshot.getSerializationCount());
+            sample("serializations_total", "op", "serialize", "outcome", "failure", snapshot.getSerializationErrors());
+            sample("serializations_total", "op", "deserialize", "outcome", "success", snapshot.getDeserializationCount());
+            sample("serializations_total", "op", "deserialize", "outcome", "failure", snapshot.getDeserializationErrors());
+        });
+
+        family("method_latency_seconds", "summary", "RPC latency per method", snapshots, snapshot -> {
+            for (Map.Entry<String, MetricsCollector.ResponseTimeStats> entry : snapshot.getResponseTimeStats().entrySet()) {
+                MetricsCollector.ResponseTimeStats stats = entry.getValue();
+                summary("method_latency_seconds", entry.getKey(), stats.getLatency(), stats.getCount(), stats.getTotalTimeNanos());
+            }
+        });
+
+        family("method_timeouts", "counter", "RPC timeouts per method", snapshots, snapshot -> {
+            for (Map.Entry<String, MetricsCollector.ResponseTimeStats> entry : snapshot.getResponseTimeStats().entrySet()) {
+                methodSample("method_timeouts_total", entry.getKey(), null, entry.getValue().getTimeoutCount());
+            }
+        });
+
+        family("method_errors", "counter", "RPC errors per method and type", snapshots, snapshot -> {
+            for (Map.Entry<String, LongAdder> entry : snapshot.getErrorCounters().entrySet()) {
+                // 键为"服务名.方法名.错误类型"
+                String key = entry.getKey();
+                int split = key.lastIndexOf('.');
+                methodSample("method_errors_total", split > 0 ? key.substring(0, split) : key,
+                        split > 0 ? key.substring(split + 1) : "", entry.getValue().sum());
+            }
+        });
+
+        family("stage_latency_seconds", "summary", "RPC latency per pipeline stage", collectors, collector -> {
+            StageHistograms stages = collector.getStageHistograms();
+            for (StageHistograms.Stage stage : StageHistograms.Stage.values()) {
+                LatencyHistogram.Snapshot latency = stages.getLatency(stage);
+                if (latency.getCount() == 0) {
+                    continue;
+                }
+                for (double q : QUANTILES) {
+                    open("stage_latency_seconds");
+                    out.append(',');
+                    label("stage", stage.getLabel());
+                    out.append(",quantile=\"").append(Double.toString(q)).append('"');
+                    close(seconds(latency.getValueAtPercentile(q * 100)));
+                }
+                sample("stage_latency_seconds_count", "stage", stage.getLabel(), latency.getCount());
+                open("stage_latency_seconds_sum");
+                out.append(',');
+                label("stage", stage.getLabel());
+                close(seconds(latency.getSum()));
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @param monitors 实例名到RpcMonitor，实例名输出为instance标签
+     */
+    public OpenMetricsWriter writeMonitors(Map<String, RpcMonitor> monitors) throws IOException {
+        instanceLabel = "instance";
+
+        family("monitor_requests", "counter", "Requests seen by RpcMonitor", monitors,
+                monitor -> sample("monitor_requests_total", monitor.getOverallStats().getTotalRequests()));
+        family("monitor_responses", "counter", "Responses seen by RpcMonitor by outcome", monitors, monitor -> {
+            RpcMonitor.OverallStats overall = monitor.getOverallStats();
+            sample("monitor_responses_total", "outcome", "success", overall.getTotalResponses());
+            sample("monitor_responses_total", "outcome", "error", overall.getTotalErrors());
+            sample("monitor_responses_total", "outcome", "timeout", overall.getTotalTimeouts());
+        });
+
+        family("monitor_latency_seconds", "summary", "Overall latency seen by RpcMonitor", monitors, monitor -> {
+            LatencyHistogram.Snapshot latency = monitor.getLatency();
+            for (double q : QUANTILES) {
+                open("monitor_latency_seconds");
+                out.append(',');
+                label("quantile", Double.toString(q));
+                close(seconds(latency.getValueAtPercentile(q * 100)));
+            }
+            sample("monitor_latency_seconds_count", latency.getCount());
+            open("monitor_latency_seconds_sum");
+            close(seconds(latency.getSum()));
+        });
+
+        family("monitor_method_requests", "counter", "Requests per method", monitors, monitor ->
+                monitor.forEachMethodStats((key, stats) -> methodSampleUnchecked("monitor_method_requests_total", key, null, stats.getRequests())));
+        family("monitor_method_errors", "counter", "Errors per method", monitors, monitor ->
+                monitor.forEachMethodStats((key, stats) -> methodSampleUnchecked("monitor_method_errors_total", key, null, stats.getErrors())));
+        family("monitor_method_timeouts", "counter", "Timeouts per method", monitors, monitor ->
+                monitor.forEachMethodStats((key, stats) -> methodSampleUnchecked("monitor_method_timeouts_total", key, null, stats.getTimeouts())));
+
+        family("monitor_method_latency_seconds", "summary", "Latency per method", monitors, monitor ->
+                monitor.forEachMethodStats((key, stats) -> {
+                    try {
+                        LatencyHistogram.Snapshot snapshot = stats.getLatency();
+                        summary("monitor_method_latency_seconds", key, snapshot, snapshot.getCount(), snapshot.getSum());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+
+        Map<String, ConnectionPool.ConnectionPoolStats> pools = new LinkedHashMap<>();
+        for (Map.Entry<String, RpcMonitor> entry : monitors.entrySet()) {
+            ConnectionPool.ConnectionPoolStats pool = entry.getValue().getConnectionPoolStats();
+            if (pool != null) {
+                pools.put(entry.getKey(), pool);
+            }
+        }
+        family("pool_connections", "gauge", "Connection pool connections by state", pools, pool -> {
+            sample("pool_connections", "state", "total", pool.getTotalConnections());
+            sample("pool_connections", "state", "active", pool.getActiveConnections());
+            sample("pool_connections", "state", "available", pool.getAvailableConnections());
+        });
+        return this;
+    }
+
+    /**
+     * @param pools 连接池名到统计，连接池名输出为pool标签
+     */
+    public OpenMetricsWriter writePools(Map<String, com.wiqer.rpc.impl.core.improved.ConnectionPool.PoolStats> pools) throws IOException {
+        instanceLabel = "pool";
+        family("pool_size", "gauge", "Connection pool size by kind", pools, pool -> {
+            sample("pool_size", "kind", "current", pool.getCurrentPoolSize());
+            sample("pool_size", "kind", "active", pool.getActiveConnections());
+            sample("pool_size", "kind", "idle", pool.getIdleConnections());
+            sample("pool_size", "kind", "max", pool.getMaxPoolSize());
+            sample("pool_size", "kind", "min", pool.getMinPoolSize());
+        });
+        family("pool_connections_created", "counter", "Connections created by the pool", pools,
+                pool -> sample("pool_connections_created_total", pool.getTotalConnectionsCreated()));
+        family("pool_connections_closed", "counter", "Connections closed by the pool", pools,
+                pool -> sample("pool_connections_closed_total", pool.getTotalConnectionsClosed()));
+        family("pool_wait_milliseconds", "gauge", "Average wait for a pooled connection", pools,
+                pool -> sample("pool_wait_milliseconds", pool.getAverageWaitTime()));
+        return this;
+    }
+
+    /**
+     * @param clients 客户端名到发送统计，客户端名输出为client标签
+     */
+    public OpenMetricsWriter writeSendStats(Map<String, SendStats> clients) throws IOException {
+        instanceLabel = "client";
+        family("send_messages", "counter", "Messages submitted for writing by the client", clients,
+                stats -> sample("send_messages_total", stats.getSent()));
+        family("send_overflows", "counter", "Client sends that found the connection congested, by action taken", clients, stats -> {
+            sample("send_overflows_total", "action", "blocked", stats.getBlocked());
+            sample("send_overflows_total", "action", "spilled", stats.getSpilled());
+            sample("send_overflows_total", "action", "rejected", stats.getRejected());
+        });
+        family("send_unwritable", "counter", "Times a client connection went over the write buffer high water mark", clients,
+                stats -> sample("send_unwritable_total", stats.getUnwritable()));
+        family("send_pending", "gauge", "Messages submitted but not yet written to the socket", clients,
+                stats -> sample("send_pending", stats.getPending()));
+        return this;
+    }
+
+    /**
+     * @param limiters 实例名到该实例各方法的自适应并发限制器，方法键为"服务名.方法名"，实例名输出为instance标签
+     */
+    public OpenMetricsWriter writeLimiters(Map<String, Map<String, AdaptiveConcurrencyLimiter>> limiters) throws IOException {
+        instanceLabel = "instance";
+        family("concurrency_limit", "gauge", "Current adaptive concurrency limit per method", limiters, methods -> {
+            for (Map.Entry<String, AdaptiveConcurrencyLimiter> entry : methods.entrySet()) {
+                methodSample("concurrency_limit", entry.getKey(), null, entry.getValue().getLimit());
+            }
+        });
+        family("concurrency_inflight", "gauge", "Requests holding an adaptive concurrency permit per method", limiters, methods -> {
+            for (Map.Entry<String, AdaptiveConcurrencyLimiter> entry : methods.entrySet()) {
+                methodSample("concurrency_inflight", entry.getKey(), null, entry.getValue().getInflight());
+            }
+        });
+        family("concurrency_rejected", "counter", "Requests rejected by the adaptive concurrency limit per method", limiters, methods -> {
+            for (Map.Entry<String, AdaptiveConcurrencyLimiter> entry : methods.entrySet()) {
+                methodSample("concurrency_rejected_total", entry.getKey(), null, entry.getValue().getRejectedCount());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 输出结束标记，每次抓取最后调用一次
+     */
+    public void finish() throws IOException {
+        out.append("# EOF\n");
+    }
+
+    /**
+     * 输出一个指标族：TYPE/HELP一次，再依次输出每个实例的样本；没有实例时不输出
+     */
+    private <T> void family(String family, String type, String help, Map<String, T> instances, Samples<T> samples) throws IOException {
+        if (instances.isEmpty()) {
+            return;
+        }
+        out.append("# TYPE ").append(PREFIX).append(family).append(' ').append(type).append('\n');
+        out.append("# HELP ").append(PREFIX).append(family).append(' ').append(help).append('\n');
+        for (Map.Entry<String, T> entry : instances.entrySet()) {
+            instance = entry.getKey();
+            samples.write(entry.getValue());
+        }
+    }
+
+    /**
+     * 样本名和实例标签，其余标签以逗号开头接在后面
+     */
+    private void open(String name) throws IOException {
+        out.append(PREFIX).append(name).append('{');
+        label(instanceLabel, instance);
+    }
+
+    private void close(String value) throws IOException {
+        out.append("} ").append(value).append('\n');
+    }
+
+    private void sample(String name, long value) throws IOException {
+        open(name);
+        close(Long.toString(value));
+    }
+
+    private void sample(String name, String label, String labelValue, long value) throws IOException {
+        open(name);
+        out.append(',');
+        label(label, labelValue);
+        close(Long.toString(value));
+    }
+
+    private void sample(String name, String label1, String value1, String label2, String value2, long value) throws IOException {
+        open(name);
+        out.append(',');
+        label(label1, value1);
+        out.append(',');
+        label(label2, value2);
+        close(Long.toString(value));
+    }
+
+    /**
+     * 耗时summary，latency和sumNanos为纳秒，按秒输出
+     */
+    private void summary(String family, String methodKey, LatencyHistogram.Snapshot latency, long count, long sumNanos) throws IOException {
+        for (double q : QUANTILES) {
+            open(family);
+            out.append(',');
+            methodLabels(methodKey);
+            out.append(",quantile=\"").append(Double.toString(q)).append('"');
+            close(seconds(latency.getValueAtPercentile(q * 100)));
+        }
+        methodSample(family + "_count", methodKey, null, count);
+        open(family + "_sum");
+        out.append(',');
+        methodLabels(methodKey);
+        close(seconds(sumNanos));
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / NANOS_PER_SECOND);
+    }
+
+    private void methodSample(String name, String methodKey, String type, long value) throws IOException {
+        open(name);
+        out.append(',');
+        methodLabels(methodKey);
+        if (type != null) {
+            out.append(',');
+            label("type", type);
+        }
+        close(Long.toString(value));
+    }
+
+    private void methodSampleUnchecked(String name, String methodKey, String type, long value) {
+        try {
+            methodSample(name, methodKey, type, value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 方法键为"服务名.方法名"，按最后一个点拆成两个标签
+     */
+    private void methodLabels(String methodKey) throws IOException {
+        int split = methodKey.lastIndexOf('.');
+        label("service", split > 0 ? methodKey.substring(0, split) : "");
+        out.append(',');
+        label("method", split > 0 ? methodKey.substring(split + 1) : methodKey);
+    }
+
+    private void label(String name, String value) throws IOException {
+        out.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -4,7 +4,8 @@ import com.wiqer.rpc.impl.core.ConnectionPool;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.concurrent.atomic.LongAccumulator;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -19,12 +20,16 @@ public class RpcMonitor {
     private final LongAdder totalErrors = new LongAdder();
     private final LongAdder totalTimeouts = new LongAdder();
     
-    private final AtomicLong minResponseTime = new AtomicLong(Long.MAX_VALUE);
-    private final AtomicLong maxResponseTime = new AtomicLong(0);
+    private final LongAccumulator minResponseTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxResponseTime = new LongAccumulator(Math::max, 0);
     private final LongAdder totalResponseTime = new LongAdder();
+    private final LatencyHistogram responseTimeHistogram = new LatencyHistogram();
+    //最近一个统计周期（1秒）的耗时分布
+    private volatile LatencyHistogram.Snapshot intervalLatency = responseTimeHistogram.intervalSnapshot();
     
     private final ConcurrentHashMap<String, ServiceStats> serviceStatsMap = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, MethodStats> methodStatsMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, MethodHandle>> handles = new ConcurrentHashMap<>();
     
     private final ScheduledExecutorService monitorExecutor;
     private final ConnectionPool connectionPool;
@@ -40,78 +45,75 @@ public class RpcMonitor {
         startMonitoring();
     }
     
+    /**
+     * 获取方法监控句柄，应在代理或服务注册时解析一次并缓存在方法描述上；
+     * 句柄按服务名、方法名两级缓存，按名称记录的方法命中时不拼接键、不分配对象
+     */
+    public MethodHandle methodHandle(String serviceName, String methodName) {
+        ConcurrentHashMap<String, MethodHandle> methods = handles.get(serviceName);
+        if (methods == null) {
+            methods = handles.computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>());
+        }
+        MethodHandle handle = methods.get(methodName);
+        if (handle == null) {
+            handle = methods.computeIfAbsent(methodName, k -> new MethodHandle(
+                    serviceStatsMap.computeIfAbsent(serviceName, s -> new ServiceStats()),
+                    methodStatsMap.computeIfAbsent(serviceName + "." + methodName, m -> new MethodStats())));
+        }
+        return handle;
+    }
+    
     /**
      * 记录请求开始
      */
     public void recordRequestStart(String serviceName, String methodName) {
-        totalRequests.increment();
-        
-        String serviceKey = serviceName;
-        String methodKey = serviceName + "." + methodName;
-        
-        serviceStatsMap.computeIfAbsent(serviceKey, k -> new ServiceStats()).recordRequest();
-        methodStatsMap.computeIfAbsent(methodKey, k -> new MethodStats()).recordRequest();
+        methodHandle(serviceName, methodName).recordRequestStart();
     }
     
     /**
-     * 记录请求成功
+     * 记录请求成功，耗时单位为毫秒
      */
     public void recordRequestSuccess(String serviceName, String methodName, long responseTime) {
-        totalResponses.increment();
-        
-        String serviceKey = serviceName;
-        String methodKey = serviceName + "." + methodName;
-        
-        // 更新响应时间统计
-        updateResponseTimeStats(responseTime);
-        
-        serviceStatsMap.computeIfAbsent(serviceKey, k -> new ServiceStats()).recordSuccess(responseTime);
-        methodStatsMap.computeIfAbsent(methodKey, k -> new MethodStats()).recordSuccess(responseTime);
+        methodHandle(serviceName, methodName).recordRequestSuccess(responseTime);
     }
     
     /**
      * 记录请求失败
      */
     public void recordRequestError(String serviceName, String methodName, String error) {
-        totalErrors.increment();
-        
-        String serviceKey = serviceName;
-        String methodKey = serviceName + "." + methodName;
-        
-        serviceStatsMap.computeIfAbsent(serviceKey, k -> new ServiceStats()).recordError(error);
-        methodStatsMap.computeIfAbsent(methodKey, k -> new MethodStats()).recordError(error);
+        methodHandle(serviceName, methodName).recordRequestError(error);
     }
     
     /**
      * 记录请求超时
      */
     public void recordRequestTimeout(String serviceName, String methodName) {
-        totalTimeouts.increment();
-        
-        String serviceKey = serviceName;
-        String methodKey = serviceName + "." + methodName;
-        
-        serviceStatsMap.computeIfAbsent(serviceKey, k -> new ServiceStats()).recordTimeout();
-        methodStatsMap.computeIfAbsent(methodKey, k -> new MethodStats()).recordTimeout();
+        methodHandle(serviceName, methodName).recordRequestTimeout();
     }
     
     /**
-     * 更新响应时间统计
+     * 更新响应时间统计，总耗时和最值按毫秒累计，直方图按纳秒记录
      */
-    private void updateResponseTimeStats(long responseTime) {
+    private void updateResponseTimeStats(long responseTimeNanos) {
+        long responseTime = TimeUnit.NANOSECONDS.toMillis(responseTimeNanos);
         totalResponseTime.add(responseTime);
-        
-        long currentMin = minResponseTime.get();
-        while (responseTime < currentMin && 
-               !minResponseTime.compareAndSet(currentMin, responseTime)) {
-            currentMin = minResponseTime.get();
-        }
-        
-        long currentMax = maxResponseTime.get();
-        while (responseTime > currentMax && 
-               !maxResponseTime.compareAndSet(currentMax, responseTime)) {
-            currentMax = maxResponseTime.get();
-        }
+        minResponseTime.accumulate(responseTime);
+        maxResponseTime.accumulate(responseTime);
+        responseTimeHistogram.record(responseTimeNanos);
+    }
+    
+    /**
+     * 累计的整体耗时分布，单位纳秒
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return responseTimeHistogram.snapshot();
+    }
+    
+    /**
+     * 最近一个统计周期（1秒）的整体耗时分布
+     */
+    public LatencyHistogram.Snapshot getIntervalLatency() {
+        return intervalLatency;
     }
     
     /**
@@ -149,6 +151,20 @@ public class RpcMonitor {
         return methodStatsMap.get(serviceName + "." + methodName);
     }
     
+    /**
+     * 遍历各服务的实时统计，不复制
+     */
+    public void forEachServiceStats(BiConsumer<String, ServiceStats> action) {
+        serviceStatsMap.forEach(action);
+    }
+    
+    /**
+     * 遍历各方法的实时统计，键为"服务名.方法名"，不复制
+     */
+    public void forEachMethodStats(BiConsumer<String, MethodStats> action) {
+        methodStatsMap.forEach(action);
+    }
+    
     /**
      * 获取连接池统计信息
      */
@@ -197,6 +213,15 @@ public class RpcMonitor {
      * 启动监控
      */
     private void startMonitoring() {
+        // 每秒滚动一次耗时分布
+        monitorExecutor.scheduleAtFixedRate(() -> {
+            try {
+                rollLatencyInterval();
+            } catch (Exception e) {
+                log.error("滚动耗时统计失败", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        
         // 定期输出统计信息
         monitorExecutor.scheduleWithFixedDelay(() -> {
             try {
@@ -219,6 +244,12 @@ public class RpcMonitor {
         }, 30, 30, TimeUnit.SECONDS);
     }
     
+    private void rollLatencyInterval() {
+        intervalLatency = responseTimeHistogram.intervalSnapshot();
+        serviceStatsMap.values().forEach(ServiceStats::rollInterval);
+        methodStatsMap.values().forEach(ServiceStats::rollInterval);
+    }
+    
     /**
      * 输出监控信息
      */
@@ -232,6 +263,7 @@ public class RpcMonitor {
             stats.getTotalErrors(), stats.getTotalTimeouts());
         log.info("响应时间 - 最小: {}ms, 最大: {}ms, 平均: {:.2f}ms", 
             stats.getMinResponseTime(), stats.getMaxResponseTime(), stats.getAvgResponseTime());
+        log.info("响应时间分布(最近1秒，纳秒) - {}", intervalLatency);
         log.info("错误率: {:.2f}%, 超时率: {:.2f}%", 
             stats.getErrorRate() * 100, stats.getTimeoutRate() * 100);
         
@@ -250,6 +282,53 @@ public class RpcMonitor {
         log.info("RPC监控器已关闭");
     }
     
+    /**
+     * 方法监控句柄，持有服务和方法统计的直接引用，记录时不拼接键、不查表
+     */
+    public final class MethodHandle {
+        private final ServiceStats serviceStats;
+        private final MethodStats methodStats;
+        
+        private MethodHandle(ServiceStats serviceStats, MethodStats methodStats) {
+            this.serviceStats = serviceStats;
+            this.methodStats = methodStats;
+        }
+        
+        public void recordRequestStart() {
+            totalRequests.increment();
+            serviceStats.recordRequest();
+            methodStats.recordRequest();
+        }
+        
+        /**
+         * 耗时单位为毫秒，能拿到纳秒耗时的调用方应使用recordRequestSuccessNanos
+         */
+        public void recordRequestSuccess(long responseTime) {
+            recordRequestSuccessNanos(TimeUnit.MILLISECONDS.toNanos(responseTime));
+        }
+        
+        public void recordRequestSuccessNanos(long responseTimeNanos) {
+            totalResponses.increment();
+            updateResponseTimeStats(responseTimeNanos);
+            serviceStats.recordSuccessNanos(responseTimeNanos);
+            methodStats.recordSuccessNanos(responseTimeNanos);
+        }
+        
+        public void recordRequestError(String error) {
+            totalErrors.increment();
+            serviceStats.recordError(error);
+            methodStats.recordError(error);
+        }
+        
+        public void recordRequestTimeout() {
+            totalTimeouts.increment();
+            serviceStats.recordTimeout();
+            methodStats.recordTimeout();
+        }
+        
+        public MethodStats getMethodStats() { return methodStats; }
+    }
+    
     /**
      * 总体统计信息
      */
@@ -299,28 +378,31 @@ public class RpcMonitor {
         private final LongAdder errors = new LongAdder();
         private final LongAdder timeouts = new LongAdder();
         private final LongAdder totalTime = new LongAdder();
-        private final AtomicLong minTime = new AtomicLong(Long.MAX_VALUE);
-        private final AtomicLong maxTime = new AtomicLong(0);
+        private final LongAccumulator minTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private volatile LatencyHistogram.Snapshot intervalLatency = histogram.intervalSnapshot();
         
         public void recordRequest() { requests.increment(); }
         public void recordSuccess(long responseTime) { 
+            recordSuccessNanos(TimeUnit.MILLISECONDS.toNanos(responseTime));
+        }
+        /**
+         * 平均值和最值按毫秒统计，直方图按纳秒记录
+         */
+        public void recordSuccessNanos(long responseTimeNanos) {
+            long responseTime = TimeUnit.NANOSECONDS.toMillis(responseTimeNanos);
             responses.increment(); 
             totalTime.add(responseTime);
-            updateTimeStats(responseTime);
+            minTime.accumulate(responseTime);
+            maxTime.accumulate(responseTime);
+            histogram.record(responseTimeNanos);
         }
         public void recordError(String error) { errors.increment(); }
         public void recordTimeout() { timeouts.increment(); }
         
-        private void updateTimeStats(long responseTime) {
-            long currentMin = minTime.get();
-            while (responseTime < currentMin && !minTime.compareAndSet(currentMin, responseTime)) {
-                currentMin = minTime.get();
-            }
-            
-            long currentMax = maxTime.get();
-            while (responseTime > currentMax && !maxTime.compareAndSet(currentMax, responseTime)) {
-                currentMax = maxTime.get();
-            }
+        void rollInterval() {
+            intervalLatency = histogram.intervalSnapshot();
         }
         
         public long getRequests() { return requests.sum(); }
@@ -333,6 +415,8 @@ public class RpcMonitor {
         }
         public long getMinResponseTime() { return minTime.get(); }
         public long getMaxResponseTime() { return maxTime.get(); }
+        public LatencyHistogram.Snapshot getLatency() { return histogram.snapshot(); }
+        public LatencyHistogram.Snapshot getIntervalLatency() { return intervalLatency; }
     }
     
     /**
@@ -0,0 +1,83 @@
+package com.wiqer.rpc.impl.monitor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端发送背压的统计，由传输层的发送限流更新，OpenMetricsWriter输出
+ */
+public class SendStats {
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unwritable = new LongAdder();
+    private final LongAdder pending = new LongAdder();
+
+    public void recordSent() {
+        sent.increment();
+    }
+
+    public void recordBlocked() {
+        blocked.increment();
+    }
+
+    public void recordSpilled() {
+        spilled.increment();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public void recordUnwritable() {
+        unwritable.increment();
+    }
+
+    /**
+     * 占用一个待发送位置，写完成后调用releasePending
+     */
+    public void acquirePending() {
+        pending.increment();
+    }
+
+    public void releasePending() {
+        pending.decrement();
+    }
+
+    /**
+     * 已提交写出的消息数
+     */
+    public long getSent() { return sent.sum(); }
+
+    /**
+     * 因连接拥塞而等待过的发送次数
+     */
+    public long getBlocked() { return blocked.sum(); }
+
+    /**
+     * 改用其他连接发送的次数
+     */
+    public long getSpilled() { return spilled.sum(); }
+
+    /**
+     * 拥塞时放弃的发送次数
+     */
+    public long getRejected() { return rejected.sum(); }
+
+    /**
+     * 连接超过高水位变为不可写的次数
+     */
+    public long getUnwritable() { return unwritable.sum(); }
+
+    /**
+     * 所有连接当前已提交但尚未写入socket的消息数
+     */
+    public long getPending() { return pending.sum(); }
+
+    @Override
+    public String toString() {
+        return "SendStats{sent=" + getSent() + ", blocked=" + getBlocked() + ", spilled=" + getSpilled()
+                + ", rejected=" + getRejected() + ", unwritable=" + getUnwritable() + ", pending=" + getPending() + '}';
+    }
+}
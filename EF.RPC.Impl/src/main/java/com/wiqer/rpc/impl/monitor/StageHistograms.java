@@ -0,0 +1,100 @@
+package com.wiqer.rpc.impl.monitor;
+
+import com.wiqer.rpc.impl.monitor.CallTimeline.Point;
+
+/**
+ * 按流水线阶段汇总的耗时直方图（纳秒）
+ * 相邻两个已经过的节点之间的耗时记入后一个节点对应的阶段；
+ * 客户端收到服务端带回的阶段耗时后，往返时间减去服务端总耗时即为网络（含broker）耗时
+ */
+public class StageHistograms {
+
+    public enum Stage {
+        SERIALIZE("serialize"),
+        ENQUEUE("enqueue"),
+        WRITE("write"),
+        NETWORK("network"),
+        DESERIALIZE("deserialize"),
+        SERVER_DESERIALIZE("server_deserialize"),
+        SERVER_DISPATCH("server_dispatch"),
+        SERVER_INVOKE("server_invoke"),
+        SERVER_REPLY("server_reply");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Stage[] SERVER = {Stage.SERVER_DESERIALIZE, Stage.SERVER_DISPATCH,
+            Stage.SERVER_INVOKE, Stage.SERVER_REPLY};
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    public StageHistograms() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录客户端时间线
+     * @param serverDurations 响应带回的服务端阶段耗时，没有时为null
+     */
+    public void recordClient(CallTimeline timeline, long[] serverDurations) {
+        long previous = timeline.get(Point.PROXY_ENTER);
+        previous = step(Stage.SERIALIZE, previous, timeline.get(Point.SERIALIZED));
+        previous = step(Stage.ENQUEUE, previous, timeline.get(Point.ENQUEUED));
+        previous = step(Stage.WRITE, previous, timeline.get(Point.SENT));
+        long received = timeline.get(Point.RECEIVED);
+        if (received != 0 && previous != 0) {
+            long network = received - previous;
+            if (serverDurations != null) {
+                for (int i = 0; i < SERVER.length && i < serverDurations.length; i++) {
+                    network -= serverDurations[i];
+                    if (serverDurations[i] > 0) {
+                        histograms[SERVER[i].ordinal()].record(serverDurations[i]);
+                    }
+                }
+            }
+            histograms[Stage.NETWORK.ordinal()].record(Math.max(0, network));
+            previous = received;
+        }
+        step(Stage.DESERIALIZE, previous, timeline.get(Point.DESERIALIZED));
+    }
+
+    /**
+     * 记录服务端时间线
+     */
+    public void recordServer(CallTimeline timeline) {
+        long previous = timeline.get(Point.RECEIVED);
+        previous = step(Stage.SERVER_DESERIALIZE, previous, timeline.get(Point.DESERIALIZED));
+        previous = step(Stage.SERVER_DISPATCH, previous, timeline.get(Point.INVOKE_START));
+        previous = step(Stage.SERVER_INVOKE, previous, timeline.get(Point.INVOKE_END));
+        step(Stage.SERVER_REPLY, previous, timeline.get(Point.REPLY_SENT));
+    }
+
+    private long step(Stage stage, long previous, long current) {
+        if (current == 0) {
+            return previous;
+        }
+        if (previous != 0 && current >= previous) {
+            histograms[stage.ordinal()].record(current - previous);
+        }
+        return current;
+    }
+
+    public LatencyHistogram.Snapshot getLatency(Stage stage) {
+        return histograms[stage.ordinal()].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getIntervalLatency(Stage stage) {
+        return histograms[stage.ordinal()].intervalSnapshot();
+    }
+}
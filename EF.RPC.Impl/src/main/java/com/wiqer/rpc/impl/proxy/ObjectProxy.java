@@ -1,7 +1,27 @@
 package com.wiqer.rpc.impl.proxy;
 
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.breaker.CircuitBreaker;
+import com.wiqer.rpc.impl.cache.ArgumentsKey;
+import com.wiqer.rpc.impl.cache.ResultCache;
+import com.wiqer.rpc.impl.cache.SingleFlight;
+import com.wiqer.rpc.impl.config.RpcConfig;
 import com.wiqer.rpc.impl.core.BaseMsgFun;
+import com.wiqer.rpc.impl.core.MsgFun;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import com.wiqer.rpc.impl.limit.RateLimiter;
+import com.wiqer.rpc.impl.limit.RateLimiters;
+import com.wiqer.rpc.impl.local.LocalServiceRegistry;
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.monitor.RpcMonitor;
+import com.wiqer.rpc.impl.retry.LatencyTracker;
+import com.wiqer.rpc.impl.retry.RetryBudget;
+import com.wiqer.rpc.impl.retry.RetryPolicy;
 import com.wiqer.rpc.impl.producerImpl.MsgProducerMap;
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.Tracer;
 import com.wiqer.rpc.impl.util.ServiceUtil;
 import com.wiqer.rpc.serialize.SuperMsgMulti;
 import org.slf4j.Logger;
@@ -12,7 +32,20 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -20,8 +53,30 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public abstract class ObjectProxy<T, P> extends MsgProducerMap implements InvocationHandler {
     private static final Logger logger = LoggerFactory.getLogger(ObjectProxy.class);
+    //未收到响应（同步器超时）的内部标记，重试用尽后仍按原行为返回null
+    private static final Object NO_RESPONSE = new Object();
+    //对冲调用的两次请求都在共享的有界线程池中执行，调用线程只等待先返回的结果；线程用尽时不再对冲
+    private static final int HEDGE_MAX_THREADS = 64;
+    private static final ExecutorService HEDGE_EXECUTOR = new ThreadPoolExecutor(0, HEDGE_MAX_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+        Thread t = new Thread(r, "rpc-hedge");
+        t.setDaemon(true);
+        return t;
+    });
     private Class<T> clazz;
     protected String version;
+    //客户端限流默认关闭，由服务端统一限流
+    private volatile boolean clientRateLimitEnabled;
+    //所有代理默认共用一个重试预算
+    private volatile RetryBudget retryBudget = RetryBudget.DEFAULT;
+    private final LongAdder hedgeCount = new LongAdder();
+    //本地路由默认关闭，开启后目标服务在本进程时直接调用
+    private volatile boolean localRouting;
+    private volatile boolean localCopyArguments;
+    //按注册表generation缓存的本地服务查找结果
+    private volatile LocalTarget localTarget;
+    //方法描述按Method缓存，调用时不再拼接方法键
+    private final Map<Method, BaseMsgFun> descriptors = new ConcurrentHashMap<>();
     public ObjectProxy(Class<T> clazz, String version){
         this.clazz = clazz;
         this.version = version;
@@ -41,16 +96,53 @@ public abstract class ObjectProxy<T, P> extends MsgProducerMap implements Invoca
             baseMsgFun.methodInfo = method;
             baseMsgFun.ReqFullName = version + "." + FullName + "." + baseMsgFun.Name;
             baseMsgFun.reqTypes=method.getParameterTypes();
-            String serviceName = ServiceUtil.makeServiceKey(baseMsgFun.Name, version);
-            AtomicReference<String> queName= new AtomicReference<>(serviceName + "." + method.getName());
-            Arrays.stream(baseMsgFun.reqTypes).forEach(classType->{
-                queName.set(queName.get()+classType.toString().hashCode()%100+"");
-            });
-            baseMsgFun.FullName =queName.get();
-            this.put(queName.get(), baseMsgFun);
+            String queName = methodKey(method, version);
+            baseMsgFun.FullName =queName;
+            RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+            if (rpcMethod != null && rpcMethod.enableCache()) {
+                baseMsgFun.resultCache = new ResultCache(baseMsgFun.FullName, rpcMethod.maxCacheSize(),
+                        TimeUnit.SECONDS.toMillis(rpcMethod.cacheExpire()), rpcMethod.cacheStrategy(), NO_RESPONSE);
+            } else if (rpcMethod != null && rpcMethod.singleFlight()) {
+                //结果缓存本身已合并未命中的请求
+                baseMsgFun.singleFlight = new SingleFlight();
+            }
+            if (rpcMethod != null && rpcMethod.enableRateLimit()) {
+                baseMsgFun.rateLimiter = RateLimiters.create(rpcMethod.rateLimitThreshold(),
+                        rpcMethod.rateLimitWindowSize(), rpcMethod.rateLimitStrategy());
+            }
+            if (rpcMethod != null && rpcMethod.enableCircuitBreaker()) {
+                baseMsgFun.circuitBreaker = new CircuitBreaker(baseMsgFun.FullName,
+                        rpcMethod.circuitBreakerFailureThreshold(), rpcMethod.circuitBreakerRecoveryTime());
+            }
+            //重试和对冲会让服务端多次执行同一请求，只对声明为幂等的方法开启
+            boolean idempotent = rpcMethod != null && rpcMethod.idempotent();
+            if (idempotent && rpcMethod.enableRetry() && rpcMethod.retryCount() > 0) {
+                baseMsgFun.retryPolicy = new RetryPolicy(rpcMethod.retryCount(), rpcMethod.retryInterval());
+            }
+            if (rpcMethod != null && rpcMethod.enableHedging()) {
+                if (idempotent) {
+                    baseMsgFun.latencyTracker = new LatencyTracker(0.95, 20);
+                } else {
+                    logger.warn("{} 未声明idempotent = true，不开启对冲", baseMsgFun.FullName);
+                }
+            }
+            this.put(queName, baseMsgFun);
+            descriptors.put(method, baseMsgFun);
         });
     }
 
+    /**
+     * 方法在代理中的键：服务键 + 方法名 + 各参数类型的哈希，注册时计算一次，作为方法描述的FullName
+     */
+    public static String methodKey(Method method, String version) {
+        String serviceName = ServiceUtil.makeServiceKey(method.getName(), version);
+        AtomicReference<String> queName= new AtomicReference<>(serviceName + "." + method.getName());
+        Arrays.stream(method.getParameterTypes()).forEach(classType->{
+            queName.set(queName.get()+classType.toString().hashCode()%100+"");
+        });
+        return queName.get();
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (Object.class == method.getDeclaringClass()) {
@@ -67,33 +159,499 @@ public abstract class ObjectProxy<T, P> extends MsgProducerMap implements Invoca
                 throw new IllegalStateException(String.valueOf(method));
             }
         }
+        if (localRouting)
+        {
+            LocalServiceRegistry.LocalService local = localService();
+            if (local != null)
+            {
+                return local.invoker(method).invoke(args, localCopyArguments ? serializer : null);
+            }
+        }
+        BaseMsgFun baseMsgFun = descriptors.get(method);
+        if (baseMsgFun == null)
+        {
+            throw new NoSuchMethodError("未成功加载到方法,请仔细排查一下");
+        }
+        String markName = baseMsgFun.FullName;
+        if (clientRateLimitEnabled && baseMsgFun.rateLimiter != null && !baseMsgFun.rateLimiter.tryAcquire())
+        {
+            throw new RpcException(RpcException.ErrorCodes.RATE_LIMITED,
+                    "超出客户端限流阈值(" + baseMsgFun.rateLimiter.getStrategy() + ")", clazz.getName(), method.getName());
+        }
+        Object result;
+        if (baseMsgFun.resultCache != null)
+        {
+            //超时得到的NO_RESPONSE不写入缓存
+            result = baseMsgFun.resultCache.get(args, () -> sendAndReceive(proxy, method, args, baseMsgFun, markName));
+        }
+        else if (baseMsgFun.singleFlight != null)
+        {
+            result = baseMsgFun.singleFlight.execute(new ArgumentsKey(args), () -> sendAndReceive(proxy, method, args, baseMsgFun, markName));
+        }
+        else
+        {
+            result = sendAndReceive(proxy, method, args, baseMsgFun, markName);
+        }
+        return result == NO_RESPONSE ? null : result;
+    }
+
+    private LocalServiceRegistry.LocalService localService() {
+        int generation = LocalServiceRegistry.generation();
+        LocalTarget target = localTarget;
+        if (target == null || target.generation != generation)
+        {
+            target = new LocalTarget(generation, LocalServiceRegistry.lookup(clazz, version));
+            localTarget = target;
+        }
+        return target.service;
+    }
+
+    /**
+     * 按重试策略执行调用：只有幂等方法才有重试策略，只重试超时和网络错误，退避时间指数增长并带抖动，
+     * 每次重试都要从重试预算中扣除；未收到响应时返回NO_RESPONSE，由调用方转换为null。
+     * 有重试或对冲时各次请求归在同一个rpc.call阶段下
+     */
+    private Object sendAndReceive(Object proxy, Method method, Object[] args, BaseMsgFun baseMsgFun, String markName) throws Throwable {
+        RetryPolicy policy = baseMsgFun.retryPolicy;
+        if (policy == null && baseMsgFun.latencyTracker == null)
+        {
+            return attempt(proxy, method, args, baseMsgFun, markName, null);
+        }
+        Span span = Tracer.startSpan(Span.CALL, baseMsgFun.FullName);
+        try
+        {
+            Object result = retryLoop(proxy, method, args, baseMsgFun, markName, policy, span);
+            if (result == NO_RESPONSE && span.isRecording())
+            {
+                span.setError(new RpcException(RpcException.ErrorCodes.TIMEOUT, "未收到响应"));
+            }
+            return result;
+        }
+        catch (Throwable t)
+        {
+            span.setError(t);
+            throw t;
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    private Object retryLoop(Object proxy, Method method, Object[] args, BaseMsgFun baseMsgFun, String markName,
+                             RetryPolicy policy, Span span) throws Throwable {
+        RetryBudget budget = retryBudget;
+        budget.deposit();
+        for (int retry = 1; ; retry++)
+        {
+            Object result = null;
+            Throwable failure = null;
+            try
+            {
+                result = hedgedAttempt(proxy, method, args, baseMsgFun, markName, budget, span);
+            }
+            catch (Throwable t)
+            {
+                failure = t;
+            }
+            if (failure == null && result != NO_RESPONSE)
+            {
+                return result;
+            }
+            if (policy == null || retry > policy.getMaxRetries()
+                    || (failure != null && !isRetryable(failure)) || !budget.tryWithdraw())
+            {
+                if (failure != null)
+                {
+                    throw failure;
+                }
+                return NO_RESPONSE;
+            }
+            logger.debug("重试调用 {}，第{}次", markName, retry);
+            Thread.sleep(policy.backoffMillis(retry));
+        }
+    }
+
+    /**
+     * 调用耗时超过该方法近期p95仍未返回时，再发送一份相同请求，先成功返回的结果生效；对冲请求同样消耗重试预算。
+     * 只在能按请求ID区分响应的传输上对冲（见correlatesResponses），否则两份响应会互相串用；
+     * 每个代理只绑定一个远端地址，对冲请求与原请求发往同一地址，由传输层的连接选择分散到不同连接上，
+     * 主要缓解单次请求在排队、GC停顿或丢包重传上的长尾
+     */
+    private Object hedgedAttempt(Object proxy, Method method, Object[] args, BaseMsgFun baseMsgFun, String markName,
+                                 RetryBudget budget, Span parent) throws Throwable {
+        LatencyTracker tracker = baseMsgFun.latencyTracker;
+        if (tracker == null)
+        {
+            return attempt(proxy, method, args, baseMsgFun, markName, parent);
+        }
+        long start = System.nanoTime();
+        long hedgeAfter = correlatesResponses() ? tracker.getQuantileNanos() : -1;
+        HedgedCall call = hedgeAfter < 0 ? null : new HedgedCall(tracker, start);
+        if (call == null || !call.submit(() -> attempt(proxy, method, args, baseMsgFun, markName, parent)))
+        {
+            //样本不足、传输不支持或线程池已满时在当前线程直接调用
+            Object result = attempt(proxy, method, args, baseMsgFun, markName, parent);
+            if (result != NO_RESPONSE)
+            {
+                tracker.record(System.nanoTime() - start);
+            }
+            return result;
+        }
+        try
+        {
+            return call.winner.get(hedgeAfter, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            //先占位再扣预算，原请求已经结束时不消耗预算
+            if (call.reserve())
+            {
+                if (!budget.tryWithdraw())
+                {
+                    call.release();
+                }
+                else if (call.submit(() -> attempt(proxy, method, args, baseMsgFun, markName, parent)))
+                {
+                    hedgeCount.increment();
+                }
+                else
+                {
+                    budget.refund();
+                    call.release();
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause();
+        }
+        try
+        {
+            return call.winner.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private interface Attempt {
+        Object call() throws Throwable;
+    }
+
+    /**
+     * 一次对冲调用中各请求的共享状态：先成功的结果生效，全部结束仍未成功时以最后一次的结果为准
+     */
+    private static final class HedgedCall {
+        private final CompletableFuture<Object> winner = new CompletableFuture<>();
+        //已提交或已占位、尚未结束的请求数
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final LatencyTracker tracker;
+        private final long start;
+        private volatile Object lastResult;
+        private volatile Throwable lastError;
+
+        private HedgedCall(LatencyTracker tracker, long start) {
+            this.tracker = tracker;
+            this.start = start;
+        }
+
+        /**
+         * 提交到对冲线程池，线程池已满时返回false
+         */
+        boolean submit(Attempt attempt) {
+            try
+            {
+                HEDGE_EXECUTOR.execute(() -> {
+                    Object result = null;
+                    Throwable error = null;
+                    try
+                    {
+                        result = attempt.call();
+                    }
+                    catch (Throwable t)
+                    {
+                        error = t;
+                    }
+                    complete(result, error);
+                });
+                return true;
+            }
+            catch (RejectedExecutionException e)
+            {
+                return false;
+            }
+        }
+
+        private void complete(Object result, Throwable error) {
+            if (error == null && result != NO_RESPONSE)
+            {
+                tracker.record(System.nanoTime() - start);
+                winner.complete(result);
+            }
+            lastResult = result;
+            lastError = error;
+            release();
+        }
+
+        /**
+         * 仍有请求未结束且没有结果时为对冲请求占位
+         */
+        boolean reserve() {
+            for (;;)
+            {
+                int current = pending.get();
+                if (current == 0 || winner.isDone())
+                {
+                    return false;
+                }
+                if (pending.compareAndSet(current, current + 1))
+                {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (pending.decrementAndGet() == 0 && !winner.isDone())
+            {
+                Throwable error = lastError;
+                if (error != null)
+                {
+                    winner.completeExceptionally(error);
+                }
+                else
+                {
+                    winner.complete(lastResult);
+                }
+            }
+        }
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause())
+        {
+            if (t instanceof RpcException)
+            {
+                String code = ((RpcException) t).getErrorCode();
+                if (RpcException.ErrorCodes.TIMEOUT.equals(code) || RpcException.ErrorCodes.NETWORK_ERROR.equals(code))
+                {
+                    return true;
+                }
+            }
+            else if (t instanceof IOException)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * RpcException取错误码，其他异常取类名
+     */
+    private static String errorType(Throwable failure) {
+        return failure instanceof RpcException && ((RpcException) failure).getErrorCode() != null
+                ? ((RpcException) failure).getErrorCode() : failure.getClass().getSimpleName();
+    }
+
+    /**
+     * 服务端因过载拒绝（限流、并发限制、线程池满），计入熔断但不重试
+     */
+    private static boolean isServerOverload(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause())
+        {
+            if (t instanceof RpcException)
+            {
+                String code = ((RpcException) t).getErrorCode();
+                return RpcException.ErrorCodes.RATE_LIMITED.equals(code)
+                        || RpcException.ErrorCodes.CONCURRENCY_LIMITED.equals(code)
+                        || RpcException.ErrorCodes.SERVER_BUSY.equals(code);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 熔断器打开时直接失败，不再占用调用线程等待同步器超时；未收到响应、传输异常和服务端过载拒绝计为失败，
+     * 业务异常说明服务端可用，按成功回报。
+     * 开启自适应并发限制时，超出当前上限的调用直接拒绝，完成后以耗时和是否超时调整上限
+     *
+     * @param parent 重试和对冲时的rpc.call阶段，对冲请求在线程池中执行，需显式传入；为null时以当前线程的当前阶段为父阶段
+     */
+    private Object attempt(Object proxy, Method method, Object[] args, BaseMsgFun baseMsgFun, String markName,
+                           Span parent) throws Throwable {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = baseMsgFun.concurrencyLimiter;
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire())
+        {
+            throw new RpcException(RpcException.ErrorCodes.CONCURRENCY_LIMITED,
+                    "超出自适应并发上限(" + concurrencyLimiter.getLimit() + ")", clazz.getName(), method.getName());
+        }
+        CircuitBreaker breaker = baseMsgFun.circuitBreaker;
+        if (breaker != null && !breaker.tryAcquire())
+        {
+            if (concurrencyLimiter != null)
+            {
+                concurrencyLimiter.onIgnored();
+            }
+            throw new RpcException(RpcException.ErrorCodes.CIRCUIT_OPEN,
+                    "熔断器已打开(" + breaker.getState() + ")", clazz.getName(), method.getName());
+        }
+        MetricsCollector.MethodMetrics metrics = baseMsgFun.metrics;
+        if (metrics != null)
+        {
+            metrics.recordRequest();
+        }
+        RpcMonitor.MethodHandle monitor = baseMsgFun.monitor;
+        if (monitor != null)
+        {
+            monitor.recordRequestStart();
+        }
         SuperMsgMulti msg = new SuperMsgMulti();
         msg.setMsg(args);
-        String serviceName = ServiceUtil.makeServiceKey(method.getName(), version);
-        AtomicReference<String> queName= new AtomicReference<>(serviceName + "." + method.getName());
-        Arrays.stream(method.getParameterTypes()).forEach(classType->{
-            queName.set(queName.get()+classType.toString().hashCode()%100+"");
-        });
-        BaseMsgFun baseMsgFun= (BaseMsgFun)this.get(queName.get());
-        if (baseMsgFun != null)
+        //跟踪头随请求发给服务端
+        Span span = parent != null ? parent.startChild(Span.CLIENT) : Tracer.startSpan(Span.CLIENT, baseMsgFun.FullName);
+        msg.Trace = span.header();
+        long start = System.nanoTime();
+        //设置了指标时在当前线程复用的时间线上记录各阶段时间点，发送期间绑定到当前线程供传输层打点
+        CallTimeline timeline = metrics != null ? CallTimeline.acquire().markAt(CallTimeline.Point.PROXY_ENTER, start) : null;
+        long[] serverDurations = null;
+        boolean success = false;
+        //未收到响应和网络类异常视为拥塞，业务异常不参与并发上限调整
+        boolean dropped = true;
+        boolean breakerFailure = true;
+        Throwable failure = null;
+        try
         {
-            sendMsg( proxy,method,msg,queName.get());
+            Span send = span.startChild(Span.SEND);
+            if (timeline != null)
+            {
+                CallTimeline.setCurrent(timeline);
+                try
+                {
+                    sendMsg( proxy,method,msg,markName);
+                }
+                finally
+                {
+                    CallTimeline.setCurrent(null);
+                }
+                if (timeline.get(CallTimeline.Point.SENT) == 0)
+                {
+                    timeline.mark(CallTimeline.Point.SENT);
+                }
+            }
+            else
+            {
+                sendMsg( proxy,method,msg,markName);
+            }
+            send.end();
             if (method.getReturnType() != Void.class)
             {
-                baseMsgFun.acquire(msg.Id);
-                msg = baseMsgFun.getAndRemoveMsg(msg);
+                Span receive = span.startChild(Span.RECEIVE);
+                if (!receivesInSendMsg())
+                {
+                    baseMsgFun.acquire(msg.Id);
+                    msg = baseMsgFun.getAndRemoveMsg(msg);
+                }
+                receive.end();
+                if (timeline != null && msg != null)
+                {
+                    timeline.mark(CallTimeline.Point.RECEIVED);
+                    serverDurations = msg.Timing;
+                }
                 if (null == msg)
                 {
-                    return null;
+                    if (span.isRecording())
+                    {
+                        span.setError(new RpcException(RpcException.ErrorCodes.TIMEOUT, "未收到响应"));
+                    }
+                    return NO_RESPONSE;
                 }
                 else
                 {// this.serializer.DeSerializeString(method.ReturnType, new object().ToString());
-                    return this.serializer.DeSerializeString(method.getReturnType(), msg.getResponse().toString());
+                    Span decode = span.startChild(Span.DESERIALIZE);
+                    Object response = this.serializer.DeSerializeString(method.getReturnType(), msg.getResponse().toString());
+                    decode.end();
+                    if (timeline != null)
+                    {
+                        timeline.mark(CallTimeline.Point.DESERIALIZED);
+                    }
+                    success = true;
+                    return response;
                 }
             }
+            success = true;
         }
-        else {
-            throw new NoSuchMethodError("未成功加载到方法,请仔细排查一下");
+        catch (Throwable t)
+        {
+            failure = t;
+            dropped = isRetryable(t);
+            breakerFailure = dropped || isServerOverload(t);
+            span.setError(t);
+            throw t;
+        }
+        finally
+        {
+            span.end();
+            if (breaker != null)
+            {
+                if (success || !breakerFailure)
+                {
+                    breaker.onSuccess();
+                }
+                else
+                {
+                    breaker.onFailure();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (metrics != null)
+            {
+                if (success)
+                {
+                    metrics.recordClientStages(timeline, serverDurations);
+                }
+                if (!success && dropped)
+                {
+                    metrics.recordTimeout();
+                }
+                else
+                {
+                    metrics.recordResponseNanos(elapsed, success);
+                }
+                timeline.release();
+            }
+            if (monitor != null)
+            {
+                if (success)
+                {
+                    monitor.recordRequestSuccessNanos(elapsed);
+                }
+                else if (failure == null)
+                {
+                    monitor.recordRequestTimeout();
+                }
+                else
+                {
+                    monitor.recordRequestError(errorType(failure));
+                }
+            }
+            if (concurrencyLimiter != null)
+            {
+                if (success)
+                {
+                    concurrencyLimiter.onSuccess(elapsed);
+                }
+                else if (dropped)
+                {
+                    concurrencyLimiter.onDropped();
+                }
+                else
+                {
+                    concurrencyLimiter.onIgnored();
+                }
+            }
         }
         // Debug
         if (logger.isDebugEnabled()) {
@@ -109,8 +667,197 @@ public abstract class ObjectProxy<T, P> extends MsgProducerMap implements Invoca
         return null;//Java 真牛B，不用转空值类型
     }
 
+    /**
+     * 各方法结果缓存的统计信息
+     */
+    public Map<String, ResultCache.CacheStats> getResultCacheStats() {
+        Map<String, ResultCache.CacheStats> stats = new LinkedHashMap<>();
+        for (MsgFun fun : this.values()) {
+            ResultCache cache = ((BaseMsgFun) fun).resultCache;
+            if (cache != null) {
+                stats.put(fun.Name, cache.getStats());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 声明了@RpcMethod(idempotent = true)、开启重试且未显式设置retryCount/retryInterval的方法按RpcConfig的maxRetries/retryDelay重试；
+     * 非幂等方法不受影响
+     */
+    public void applyRetryConfig(RpcConfig config) {
+        for (MsgFun fun : this.values()) {
+            BaseMsgFun baseMsgFun = (BaseMsgFun) fun;
+            RpcMethod rpcMethod = baseMsgFun.methodInfo.getAnnotation(RpcMethod.class);
+            if (rpcMethod != null && rpcMethod.idempotent() && rpcMethod.enableRetry() && usesDefaultRetrySettings(rpcMethod)) {
+                baseMsgFun.retryPolicy = config.getMaxRetries() > 0
+                        ? new RetryPolicy(config.getMaxRetries(), config.getRetryDelay()) : null;
+            }
+        }
+    }
+
+    private static boolean usesDefaultRetrySettings(RpcMethod rpcMethod) {
+        try {
+            return RpcMethod.class.getMethod("retryCount").getDefaultValue().equals(rpcMethod.retryCount())
+                    && RpcMethod.class.getMethod("retryInterval").getDefaultValue().equals(rpcMethod.retryInterval());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * 已发出的对冲请求次数
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * 为每个方法解析一次指标句柄，调用路径上直接记录，传null关闭
+     */
+    public void setMetricsCollector(MetricsCollector metricsCollector) {
+        for (MsgFun fun : this.values()) {
+            BaseMsgFun baseMsgFun = (BaseMsgFun) fun;
+            baseMsgFun.metrics = metricsCollector == null ? null
+                    : metricsCollector.methodMetrics(clazz.getName(), baseMsgFun.Name);
+        }
+    }
+
+    /**
+     * 为每个方法解析一次RpcMonitor的监控句柄，调用路径上直接记录，传null关闭
+     */
+    public void setRpcMonitor(RpcMonitor rpcMonitor) {
+        for (MsgFun fun : this.values()) {
+            BaseMsgFun baseMsgFun = (BaseMsgFun) fun;
+            baseMsgFun.monitor = rpcMonitor == null ? null
+                    : rpcMonitor.methodHandle(clazz.getName(), baseMsgFun.Name);
+        }
+    }
+
+    /**
+     * 为每个方法开启自适应并发限制，上限根据RTT变化自动调整
+     */
+    public void setAdaptiveConcurrencyEnabled(boolean enabled) {
+        for (MsgFun fun : this.values()) {
+            BaseMsgFun baseMsgFun = (BaseMsgFun) fun;
+            if (!enabled) {
+                baseMsgFun.concurrencyLimiter = null;
+            } else if (baseMsgFun.concurrencyLimiter == null) {
+                baseMsgFun.concurrencyLimiter = new AdaptiveConcurrencyLimiter(baseMsgFun.FullName);
+            }
+        }
+    }
+
+    /**
+     * 各方法当前的自适应并发上限
+     */
+    public Map<String, Integer> getConcurrencyLimits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (MsgFun fun : this.values()) {
+            AdaptiveConcurrencyLimiter limiter = ((BaseMsgFun) fun).concurrencyLimiter;
+            if (limiter != null) {
+                limits.put(fun.Name, limiter.getLimit());
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * 各方法的自适应并发限制器，键为"接口名.方法名"，供指标端点输出上限和在途数
+     */
+    public Map<String, AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+        for (MsgFun fun : this.values()) {
+            AdaptiveConcurrencyLimiter limiter = ((BaseMsgFun) fun).concurrencyLimiter;
+            if (limiter != null) {
+                limiters.put(clazz.getName() + "." + fun.Name, limiter);
+            }
+        }
+        return limiters;
+    }
+
+    /**
+     * 在发送前按@RpcMethod的限流配置拒绝超出阈值的调用，减少无效的网络往返
+     */
+    public void setClientRateLimitEnabled(boolean clientRateLimitEnabled) {
+        this.clientRateLimitEnabled = clientRateLimitEnabled;
+    }
+
+    /**
+     * 各方法的客户端限流器，可读取通过/拒绝次数
+     */
+    public Map<String, RateLimiter> getRateLimiters() {
+        Map<String, RateLimiter> limiters = new LinkedHashMap<>();
+        for (MsgFun fun : this.values()) {
+            RateLimiter limiter = ((BaseMsgFun) fun).rateLimiter;
+            if (limiter != null) {
+                limiters.put(fun.Name, limiter);
+            }
+        }
+        return limiters;
+    }
+
+    /**
+     * 各方法熔断器的当前状态
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        Map<String, CircuitBreaker> breakers = new LinkedHashMap<>();
+        for (MsgFun fun : this.values()) {
+            CircuitBreaker breaker = ((BaseMsgFun) fun).circuitBreaker;
+            if (breaker != null) {
+                breakers.put(fun.Name, breaker);
+            }
+        }
+        return breakers;
+    }
+
+    /**
+     * 开启后目标服务注册在本进程（BaseServer或IOCContainer）时直接调用其实现，不经过序列化和传输，
+     * 也不经过客户端的缓存、限流、熔断和重试；copyArguments为true时参数和返回值经序列化深拷贝，否则按引用传递
+     */
+    public void setLocalRouting(boolean enabled, boolean copyArguments) {
+        this.localCopyArguments = copyArguments;
+        this.localRouting = enabled;
+    }
+
+    public boolean isLocalRouting() {
+        return localRouting;
+    }
+
+    private static final class LocalTarget {
+        private final int generation;
+        private final LocalServiceRegistry.LocalService service;
+
+        private LocalTarget(int generation, LocalServiceRegistry.LocalService service) {
+            this.generation = generation;
+            this.service = service;
+        }
+    }
+
     protected abstract boolean sendMsg(Object proxy, Method method,SuperMsgMulti superMsgMulti,String markName) throws IOException;
 
+    /**
+     * 同步传输在sendMsg中已等到响应并写入superMsgMulti时返回true，不再经同步器等待
+     */
+    protected boolean receivesInSendMsg() {
+        return false;
+    }
+
+    /**
+     * 传输按请求ID把响应交给对应的调用时返回true，只有这样的传输才会发送对冲请求
+     */
+    protected boolean correlatesResponses() {
+        return false;
+    }
+
     private Class<?> getClassType(Object obj) {
         Class<?> classType = obj.getClass();
 
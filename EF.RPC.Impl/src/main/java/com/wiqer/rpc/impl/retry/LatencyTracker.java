@@ -0,0 +1,58 @@
+package com.wiqer.rpc.impl.retry;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 方法最近调用耗时的分位数估计，用于决定对冲请求的发送时机
+ * 保留最近SAMPLES次耗时，每记录RECOMPUTE_INTERVAL次重新计算一次分位数
+ */
+public class LatencyTracker {
+
+    private static final int SAMPLES = 256;
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    private final double quantile;
+    private final int minSamples;
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long quantileNanos = -1;
+
+    /**
+     * @param quantile   分位数，例如0.95
+     * @param minSamples 样本数不足时不给出估计
+     */
+    public LatencyTracker(double quantile, int minSamples) {
+        this.quantile = quantile;
+        this.minSamples = Math.max(1, Math.min(SAMPLES, minSamples));
+    }
+
+    public void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % SAMPLES), nanos);
+        if (n + 1 >= minSamples && (n + 1) % RECOMPUTE_INTERVAL == 0) {
+            recompute(Math.min(n + 1, SAMPLES));
+        }
+    }
+
+    private void recompute(long size) {
+        long[] copy = new long[(int) size];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        quantileNanos = copy[(int) Math.min(copy.length - 1, Math.ceil(quantile * copy.length) - 1)];
+    }
+
+    /**
+     * @return 分位数耗时（纳秒），样本不足时返回-1
+     */
+    public long getQuantileNanos() {
+        return quantileNanos;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+}
@@ -0,0 +1,105 @@
+package com.wiqer.rpc.impl.retry;
+
+import com.wiqer.rpc.impl.limit.RateLimiter;
+import com.wiqer.rpc.impl.limit.TokenBucketRateLimiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重试预算，限制重试（含对冲请求）占正常请求的比例，避免下游故障时重试放大流量
+ * 每个请求存入ratio个令牌，每次重试取出一个；另有每秒minRetriesPerSecond次的保底额度，低流量时也能重试
+ */
+public class RetryBudget {
+
+    /**
+     * 默认预算：重试不超过请求量的20%，每秒保底10次
+     */
+    public static final RetryBudget DEFAULT = new RetryBudget(0.2, 10);
+
+    private static final long SCALE = 1000;
+    private static final long MAX_BALANCE = 1000 * SCALE;
+
+    private final long depositPerRequest;
+    private final RateLimiter reserve;
+    private final AtomicLong balance = new AtomicLong();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param ratio               重试占请求量的最大比例
+     * @param minRetriesPerSecond 保底的每秒重试次数
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("ratio must be between 0 and 1");
+        }
+        this.depositPerRequest = (long) (ratio * SCALE);
+        this.reserve = minRetriesPerSecond > 0 ? new TokenBucketRateLimiter(minRetriesPerSecond, 1) : null;
+    }
+
+    /**
+     * 每个原始请求调用一次
+     */
+    public void deposit() {
+        requests.increment();
+        if (depositPerRequest == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= MAX_BALANCE) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(MAX_BALANCE, current + depositPerRequest)));
+    }
+
+    /**
+     * 每次重试前调用，返回false表示预算已用完，不应重试
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                if (reserve != null && reserve.tryAcquire()) {
+                    retries.increment();
+                    return true;
+                }
+                exhausted.increment();
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        retries.increment();
+        return true;
+    }
+
+    /**
+     * 取出的额度最终没有用于重试时归还到余额
+     */
+    public void refund() {
+        retries.decrement();
+        long current;
+        do {
+            current = balance.get();
+            if (current >= MAX_BALANCE) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(MAX_BALANCE, current + SCALE)));
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
@@ -0,0 +1,54 @@
+package com.wiqer.rpc.impl.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试策略：指数退避加随机抖动
+ * 第n次重试等待 [d/2, d] 之间的随机时间，d = min(baseInterval * 2^(n-1), maxInterval)
+ */
+public class RetryPolicy {
+
+    private static final long DEFAULT_MAX_INTERVAL_MILLIS = 30000;
+
+    private final int maxRetries;
+    private final long baseIntervalMillis;
+    private final long maxIntervalMillis;
+
+    public RetryPolicy(int maxRetries, long baseIntervalMillis) {
+        this(maxRetries, baseIntervalMillis, DEFAULT_MAX_INTERVAL_MILLIS);
+    }
+
+    public RetryPolicy(int maxRetries, long baseIntervalMillis, long maxIntervalMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseIntervalMillis = Math.max(0, baseIntervalMillis);
+        this.maxIntervalMillis = Math.max(this.baseIntervalMillis, maxIntervalMillis);
+    }
+
+    /**
+     * @param retry 第几次重试，从1开始
+     */
+    public long backoffMillis(int retry) {
+        if (baseIntervalMillis == 0) {
+            return 0;
+        }
+        int shift = Math.min(Math.max(0, retry - 1), 30);
+        long delay = Math.min(maxIntervalMillis, baseIntervalMillis << shift);
+        if (delay < 0) {
+            delay = maxIntervalMillis;
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseIntervalMillis() {
+        return baseIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+}
@@ -0,0 +1,203 @@
+package com.wiqer.rpc.impl.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条共享内存连接，对应目录下的一个映射文件，内含请求和响应两个环形缓冲区。
+ * 文件头：魔数、版本、单个缓冲区容量和连接状态，客户端创建文件后置为READY，服务端接入后置为ATTACHED，任一端关闭后置为CLOSED。
+ * 请求缓冲区只有客户端写、响应缓冲区只有服务端写，同一端的多个线程写入时在本对象上串行化
+ */
+public class ShmConnection implements AutoCloseable {
+
+    public static final String FILE_SUFFIX = ".shm";
+
+    private static final int MAGIC = 0x45465253;
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int STATE_OFFSET = 12;
+    private static final int HEADER_LENGTH = 64;
+
+    static final int STATE_READY = 1;
+    static final int STATE_ATTACHED = 2;
+    static final int STATE_CLOSED = 3;
+
+    private final Path path;
+    //持有映射，缓冲区被回收前地址一直有效
+    private final MappedByteBuffer buffer;
+    private final long stateAddress;
+    private final ShmRingBuffer requests;
+    private final ShmRingBuffer responses;
+    private final boolean client;
+    private final Object requestLock = new Object();
+    private final Object responseLock = new Object();
+
+    private ShmConnection(Path path, MappedByteBuffer buffer, int capacity, boolean client) {
+        this.path = path;
+        this.buffer = buffer;
+        this.stateAddress = ShmUnsafe.address(buffer) + STATE_OFFSET;
+        this.requests = new ShmRingBuffer(buffer, HEADER_LENGTH, capacity);
+        this.responses = new ShmRingBuffer(buffer, HEADER_LENGTH + ShmRingBuffer.requiredBytes(capacity), capacity);
+        this.client = client;
+    }
+
+    /**
+     * 客户端在目录下新建连接文件，服务端扫描目录后接入
+     *
+     * @param capacity 每个方向环形缓冲区的大小，必须是2的幂
+     */
+    public static ShmConnection create(Path directory, int capacity) throws IOException {
+        Files.createDirectories(directory);
+        Path path = directory.resolve("efrpc-" + UUID.randomUUID() + FILE_SUFFIX);
+        MappedByteBuffer buffer = map(path, HEADER_LENGTH + 2 * ShmRingBuffer.requiredBytes(capacity));
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        ShmConnection connection = new ShmConnection(path, buffer, capacity, true);
+        connection.setState(STATE_READY);
+        return connection;
+    }
+
+    /**
+     * 服务端接入客户端创建的连接文件，文件未就绪或已被接入时返回null
+     */
+    public static ShmConnection attach(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size < HEADER_LENGTH) {
+            return null;
+        }
+        MappedByteBuffer buffer = map(path, size);
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            return null;
+        }
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (size < HEADER_LENGTH + 2L * ShmRingBuffer.requiredBytes(capacity)) {
+            return null;
+        }
+        ShmConnection connection = new ShmConnection(path, buffer, capacity, false);
+        if (!ShmUnsafe.compareAndSwapInt(connection.stateAddress, STATE_READY, STATE_ATTACHED)) {
+            return null;
+        }
+        return connection;
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            //映射在通道关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 等待服务端接入
+     */
+    public boolean awaitAttached(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ShmIdleStrategy idle = new ShmIdleStrategy();
+        while (getState() == STATE_READY) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            idle.idle();
+        }
+        return getState() == STATE_ATTACHED;
+    }
+
+    /**
+     * 客户端写入一条请求，缓冲区满时等待消费，超时返回false
+     */
+    public boolean sendRequest(byte[] frame, long timeout, TimeUnit unit) {
+        return send(requests, requestLock, frame, unit.toNanos(timeout));
+    }
+
+    /**
+     * 服务端写入一条响应，缓冲区满时等待消费，超时返回false
+     */
+    public boolean sendResponse(byte[] frame, long timeout, TimeUnit unit) {
+        return send(responses, responseLock, frame, unit.toNanos(timeout));
+    }
+
+    private boolean send(ShmRingBuffer ring, Object lock, byte[] frame, long timeoutNanos) {
+        synchronized (lock) {
+            if (ring.offer(frame)) {
+                return true;
+            }
+            long deadline = System.nanoTime() + timeoutNanos;
+            ShmIdleStrategy idle = new ShmIdleStrategy();
+            while (!isClosed()) {
+                if (ring.offer(frame)) {
+                    return true;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                idle.idle();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 服务端读取请求，只能由一个线程调用
+     *
+     * @throws IllegalStateException 请求缓冲区已损坏，连接随之关闭
+     */
+    public byte[] pollRequest() {
+        return poll(requests);
+    }
+
+    /**
+     * 客户端读取响应，只能由一个线程调用
+     *
+     * @throws IllegalStateException 响应缓冲区已损坏，连接随之关闭
+     */
+    public byte[] pollResponse() {
+        return poll(responses);
+    }
+
+    private byte[] poll(ShmRingBuffer ring) {
+        try {
+            return ring.poll();
+        } catch (IllegalStateException e) {
+            //损坏后的读写位置不可信，通知对端不再使用这条连接
+            setState(STATE_CLOSED);
+            throw e;
+        }
+    }
+
+    public boolean isClosed() {
+        return getState() == STATE_CLOSED;
+    }
+
+    int getState() {
+        return ShmUnsafe.getIntVolatile(stateAddress);
+    }
+
+    private void setState(int state) {
+        ShmUnsafe.putIntVolatile(stateAddress, state);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 置为关闭状态通知对端，客户端一侧同时删除连接文件
+     */
+    @Override
+    public void close() throws IOException {
+        setState(STATE_CLOSED);
+        if (client) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
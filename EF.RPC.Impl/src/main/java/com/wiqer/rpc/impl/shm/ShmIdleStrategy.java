@@ -0,0 +1,52 @@
+package com.wiqer.rpc.impl.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 轮询共享内存时的等待策略：先自旋，再让出CPU，最后park且时长逐次翻倍直到上限。
+ * 有消息时调用reset回到自旋阶段，持续空闲时CPU占用降到很低。单核机器上自旋只会占住对端需要的CPU，默认不自旋
+ */
+public class ShmIdleStrategy {
+
+    static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+
+    private final long maxSpins;
+    private final long maxYields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private long spins;
+    private long yields;
+    private long parkNanos;
+
+    public ShmIdleStrategy() {
+        this(MULTI_CORE ? 10_000 : 0, 100, TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public ShmIdleStrategy(long maxSpins, long maxYields, long minParkNanos, long maxParkNanos) {
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        this.parkNanos = minParkNanos;
+    }
+
+    public void idle() {
+        if (spins < maxSpins) {
+            spins++;
+        } else if (yields < maxYields) {
+            yields++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+        }
+    }
+
+    public void reset() {
+        spins = 0;
+        yields = 0;
+        parkNanos = minParkNanos;
+    }
+}
@@ -0,0 +1,34 @@
+package com.wiqer.rpc.impl.shm;
+
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import lombok.Data;
+
+import java.lang.reflect.Method;
+
+/**
+ * 共享内存传输的消息，字段与NettyMsg相同，序列化后作为环形缓冲区中一条记录的内容。
+ * 服务端处理失败时回复error=true并带上错误码和错误信息，由客户端还原为RpcException
+ */
+@Data
+public class ShmMsg {
+    private String queName;
+    private SuperMsgMulti superMsgMulti;
+    private boolean error;
+    private String errorCode;
+    private String errorMessage;
+
+    /**
+     * 方法在服务端的键：服务键 + 方法名 + 参数类型，重载方法互不冲突
+     */
+    public static String queName(String serviceKey, Method method) {
+        StringBuilder name = new StringBuilder(serviceKey).append('.').append(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                name.append(',');
+            }
+            name.append(types[i].getName());
+        }
+        return name.append(')').toString();
+    }
+}
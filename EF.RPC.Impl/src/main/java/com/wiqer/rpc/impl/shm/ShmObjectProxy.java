@@ -0,0 +1,58 @@
+package com.wiqer.rpc.impl.shm;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.impl.util.ServiceUtil;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * 共享内存对象代理，sendMsg内完成发送和等待，结果直接写回请求消息
+ */
+public class ShmObjectProxy extends ObjectProxy {
+
+    private final ShmRpcClient client;
+    private final String serviceKey;
+
+    public ShmObjectProxy(Class clazz, String version, ShmRpcClient client) {
+        super(clazz, version);
+        this.client = client;
+        this.serviceKey = ServiceUtil.makeServiceKey(clazz.getName(), version);
+    }
+
+    @Override
+    protected boolean sendMsg(Object proxy, Method method, SuperMsgMulti superMsgMulti, String markName) throws IOException {
+        ShmMsg request = new ShmMsg();
+        request.setQueName(ShmMsg.queName(serviceKey, method));
+        request.setSuperMsgMulti(superMsgMulti);
+        ShmMsg response = client.call(request);
+        if (response == null) {
+            throw new RpcException(RpcException.ErrorCodes.TIMEOUT,
+                    "等待响应超时", method.getDeclaringClass().getName(), method.getName());
+        }
+        if (response.isError()) {
+            throw new RpcException(response.getErrorCode(), response.getErrorMessage(),
+                    method.getDeclaringClass().getName(), method.getName());
+        }
+        SuperMsgMulti reply = response.getSuperMsgMulti();
+        //无返回值时按JSON的null反序列化
+        superMsgMulti.setResponse(reply.getResponse() != null ? reply.getResponse() : "null");
+        superMsgMulti.Timing = reply.Timing;
+        return true;
+    }
+
+    @Override
+    protected boolean receivesInSendMsg() {
+        return true;
+    }
+
+    /**
+     * 客户端按请求ID分发响应，可以对冲
+     */
+    @Override
+    protected boolean correlatesResponses() {
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package com.wiqer.rpc.impl.shm;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一次等待响应的调用。调用线程先自旋一小段时间，响应通常在这期间到达；
+ * 之后park直到接收线程写入响应并unpark，或者超时
+ */
+class ShmPendingCall {
+
+    private static final int SPINS = ShmIdleStrategy.MULTI_CORE ? 20_000 : 0;
+
+    private final Thread waiter = Thread.currentThread();
+    private volatile ShmMsg reply;
+
+    void complete(ShmMsg reply) {
+        this.reply = reply;
+        LockSupport.unpark(waiter);
+    }
+
+    /**
+     * @return 超时或线程被中断时返回null
+     */
+    ShmMsg await(long timeoutNanos) {
+        for (int i = 0; i < SPINS; i++) {
+            ShmMsg result = reply;
+            if (result != null) {
+                return result;
+            }
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        ShmMsg result;
+        while ((result = reply) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.wiqer.rpc.impl.shm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 位于内存映射文件中的单生产者单消费者环形缓冲区，生产者和消费者可以在不同进程中。
+ * 布局：head（消费位置）和tail（生产位置）各占一个缓存行，之后是容量为2的幂的数据区；
+ * 每条记录为4字节长度加消息体，按8字节对齐，放不下时写入填充标记并回绕到数据区开头。
+ * 消息先写入数据区再以有序写发布tail，消费后以有序写发布head，不需要锁。
+ * 同一进程内有多个生产者时由调用方串行化offer。
+ * 映射文件可能被其他进程写坏，poll读到越界的记录长度时抛出IllegalStateException，由调用方关闭连接
+ */
+public class ShmRingBuffer {
+
+    private static final int CACHE_LINE = 64;
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = CACHE_LINE;
+    public static final int HEADER_LENGTH = CACHE_LINE * 2;
+    private static final int RECORD_HEADER = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int PADDING = -1;
+
+    private final ByteBuffer buffer;
+    private final long headAddress;
+    private final long tailAddress;
+    private final long dataAddress;
+    private final int capacity;
+    private final int mask;
+
+    //生产者本地维护的tail和最近读到的head，只有生产者线程访问
+    private long producerTail;
+    private long headCache;
+    //消费者本地维护的head和最近读到的tail，只有消费者线程访问
+    private long consumerHead;
+    private long tailCache;
+
+    /**
+     * @param buffer   映射的直接缓冲区，需保持引用直到不再使用
+     * @param offset   本缓冲区在映射中的起始位置，需按缓存行对齐
+     * @param capacity 数据区大小，必须是2的幂
+     */
+    public ShmRingBuffer(ByteBuffer buffer, int offset, int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity < ALIGNMENT * 2) {
+            throw new IllegalArgumentException("容量必须是2的幂: " + capacity);
+        }
+        if (offset < 0 || offset + requiredBytes(capacity) > buffer.capacity()) {
+            throw new IllegalArgumentException("映射区域不足以容纳环形缓冲区");
+        }
+        long base = ShmUnsafe.address(buffer) + offset;
+        this.buffer = buffer;
+        this.headAddress = base + HEAD_OFFSET;
+        this.tailAddress = base + TAIL_OFFSET;
+        this.dataAddress = base + HEADER_LENGTH;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.producerTail = ShmUnsafe.getLongVolatile(tailAddress);
+        this.headCache = ShmUnsafe.getLongVolatile(headAddress);
+        this.consumerHead = headCache;
+        this.tailCache = producerTail;
+    }
+
+    /**
+     * 头部加数据区占用的字节数
+     */
+    public static int requiredBytes(int capacity) {
+        return HEADER_LENGTH + capacity;
+    }
+
+    /**
+     * 单条消息的最大长度，保证回绕填充后仍能写入
+     */
+    public int maxMessageLength() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    /**
+     * 写入一条消息，空间不足时返回false，由调用方决定等待或放弃
+     */
+    public boolean offer(byte[] message) {
+        int length = message.length;
+        if (length > maxMessageLength()) {
+            throw new IllegalArgumentException("消息长度" + length + "超过环形缓冲区上限" + maxMessageLength());
+        }
+        int recordLength = align(RECORD_HEADER + length);
+        long tail = producerTail;
+        int index = (int) (tail & mask);
+        int toEnd = capacity - index;
+        int required = recordLength > toEnd ? toEnd + recordLength : recordLength;
+        if (required > capacity - (tail - headCache)) {
+            headCache = ShmUnsafe.getLongVolatile(headAddress);
+            if (required > capacity - (tail - headCache)) {
+                return false;
+            }
+        }
+        if (recordLength > toEnd) {
+            ShmUnsafe.putInt(dataAddress + index, PADDING);
+            tail += toEnd;
+            index = 0;
+        }
+        ShmUnsafe.putInt(dataAddress + index, length);
+        ShmUnsafe.copyToMemory(message, dataAddress + index + RECORD_HEADER, length);
+        tail += recordLength;
+        producerTail = tail;
+        ShmUnsafe.putOrderedLong(tailAddress, tail);
+        return true;
+    }
+
+    /**
+     * 取出一条消息，没有消息时返回null
+     *
+     * @throws IllegalStateException 记录长度越界或超出已发布的范围，缓冲区已损坏
+     */
+    public byte[] poll() {
+        long head = consumerHead;
+        if (head == tailCache) {
+            tailCache = ShmUnsafe.getLongVolatile(tailAddress);
+            if (head == tailCache) {
+                return null;
+            }
+        }
+        int index = (int) (head & mask);
+        int length = ShmUnsafe.getInt(dataAddress + index);
+        if (length == PADDING) {
+            head += capacity - index;
+            index = 0;
+            length = ShmUnsafe.getInt(dataAddress);
+        }
+        //填充只会出现在回绕前，数据区开头再读到填充同样视为损坏
+        if (length < 0 || length > maxMessageLength()) {
+            throw new IllegalStateException("环形缓冲区记录长度非法: " + length + "，位置" + head);
+        }
+        long next = head + align(RECORD_HEADER + length);
+        if (next - tailCache > 0) {
+            throw new IllegalStateException("环形缓冲区记录超出已发布范围: " + head + "+" + length + " > " + tailCache);
+        }
+        byte[] message = new byte[length];
+        ShmUnsafe.copyFromMemory(dataAddress + index + RECORD_HEADER, message, length);
+        consumerHead = next;
+        ShmUnsafe.putOrderedLong(headAddress, next);
+        return message;
+    }
+
+    /**
+     * 当前未消费的字节数（含填充），仅供监控
+     */
+    public long size() {
+        return ShmUnsafe.getLongVolatile(tailAddress) - ShmUnsafe.getLongVolatile(headAddress);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
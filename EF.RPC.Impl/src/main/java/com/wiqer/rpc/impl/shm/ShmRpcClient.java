@@ -0,0 +1,130 @@
+package com.wiqer.rpc.impl.shm;
+
+import com.wiqer.rpc.impl.RpcClient;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import com.wiqer.rpc.serialize.SerializerInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同机跨进程的共享内存传输客户端，address为与ShmRpcServer约定的目录。
+ * 创建时新建一条连接并等待服务端接入，由一个接收线程轮询响应缓冲区并唤醒对应的调用线程
+ */
+public class ShmRpcClient extends RpcClient {
+    private static final Logger logger = LoggerFactory.getLogger(ShmRpcClient.class);
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    private static final long ATTACH_TIMEOUT_MILLIS = 5000;
+
+    private final ShmConnection connection;
+    private final SerializerInterface serializer = new JsonSerializer();
+    private final ConcurrentHashMap<String, ShmPendingCall> pendingCalls = new ConcurrentHashMap<>();
+    private final Thread receiver;
+    private volatile long timeoutMillis = 30000;
+    private volatile boolean running = true;
+
+    public ShmRpcClient(String directory) throws IOException {
+        this(directory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 每个方向环形缓冲区的大小，必须是2的幂，单条消息不能超过其一半
+     */
+    public ShmRpcClient(String directory, int capacity) throws IOException {
+        super(directory);
+        this.connection = ShmConnection.create(Paths.get(directory), capacity);
+        if (!connection.awaitAttached(ATTACH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            connection.close();
+            throw new IOException("共享内存服务端未接入: " + directory);
+        }
+        this.receiver = new Thread(this::receive, "efrpc-shm-client");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public <T, P> ObjectProxy createObjectProxy(Class<T> interfaceClass, String version) {
+        return new ShmObjectProxy(interfaceClass, version, this);
+    }
+
+    /**
+     * 发送请求并等待响应，返回的消息带有结果和服务端耗时或错误信息，超时返回null
+     */
+    ShmMsg call(ShmMsg request) throws IOException {
+        String requestId = request.getSuperMsgMulti().Id;
+        ShmPendingCall call = new ShmPendingCall();
+        pendingCalls.put(requestId, call);
+        try {
+            byte[] frame = serializer.SerializeBytes(request);
+            CallTimeline.markCurrent(CallTimeline.Point.SERIALIZED);
+            if (!connection.sendRequest(frame, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException(connection.isClosed() ? "共享内存连接已关闭" : "共享内存请求缓冲区已满");
+            }
+            //写入缓冲区即对端可见，没有单独的发送阶段
+            CallTimeline.markCurrent(CallTimeline.Point.SENT);
+            return call.await(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        } finally {
+            pendingCalls.remove(requestId);
+        }
+    }
+
+    private void receive() {
+        ShmIdleStrategy idle = new ShmIdleStrategy();
+        while (running && !connection.isClosed()) {
+            byte[] frame = connection.pollResponse();
+            if (frame == null) {
+                idle.idle();
+                continue;
+            }
+            idle.reset();
+            try {
+                ShmMsg reply = serializer.DeSerializeBytes(frame, ShmMsg.class);
+                ShmPendingCall call = pendingCalls.get(reply.getSuperMsgMulti().Id);
+                if (call != null) {
+                    call.complete(reply);
+                }
+            } catch (IllegalStateException e) {
+                logger.error("共享内存响应缓冲区已损坏，关闭连接: {}", connection.getPath(), e);
+                break;
+            } catch (Exception e) {
+                logger.error("共享内存响应解析失败", e);
+            }
+        }
+        //连接已不可用，等待中的调用立即失败而不是等到超时
+        ShmMsg closed = new ShmMsg();
+        closed.setError(true);
+        closed.setErrorCode(RpcException.ErrorCodes.NETWORK_ERROR);
+        closed.setErrorMessage("共享内存连接已关闭");
+        pendingCalls.values().forEach(call -> call.complete(closed));
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 关闭连接和接收线程，不影响RpcClient共用的线程池
+     */
+    public void close() {
+        running = false;
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.warn("关闭共享内存连接失败", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        close();
+        super.stop();
+    }
+}
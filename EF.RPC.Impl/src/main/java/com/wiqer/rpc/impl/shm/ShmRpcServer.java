@@ -0,0 +1,201 @@
+package com.wiqer.rpc.impl.shm;
+
+import com.wiqer.rpc.impl.RpcServer;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.core.RpcServerHandler;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import com.wiqer.rpc.serialize.SerializerInterface;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同机跨进程的共享内存传输服务端，serverAddress为与客户端约定的目录。
+ * 服务线程定期扫描目录接入新的连接文件，每条连接由一个轮询线程读取请求；
+ * 默认在轮询线程上直接处理，避免线程切换，业务耗时较长时可设置executor
+ */
+public class ShmRpcServer extends RpcServer {
+    private static final Logger logger = LoggerFactory.getLogger(ShmRpcServer.class);
+
+    private static final long SCAN_INTERVAL_MILLIS = 50;
+    private static final long REPLY_TIMEOUT_MILLIS = 30000;
+
+    private final RpcServerHandler serverHandler;
+    private final SerializerInterface serializer = new JsonSerializer();
+    private final Map<String, ShmTarget> targets = new HashMap<>();
+    private final Map<Path, ShmConnection> connections = new ConcurrentHashMap<>();
+    private volatile Executor executor;
+    private volatile boolean running;
+
+    public ShmRpcServer(String directory) {
+        this(directory, new RpcServerHandler(new JsonSerializer()));
+    }
+
+    public ShmRpcServer(String directory, RpcServerHandler serverHandler) {
+        super(directory);
+        this.serverHandler = serverHandler;
+    }
+
+    /**
+     * 设置后请求交给executor处理，轮询线程只负责读取；为null时在轮询线程上处理
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void serverRun() {
+        serviceMap.forEach((serviceKey, serviceBean) -> {
+            for (Method method : serviceBean.getClass().getMethods()) {
+                if (method.getDeclaringClass() != Object.class) {
+                    targets.put(ShmMsg.queName(serviceKey, method), new ShmTarget(serviceBean, method));
+                }
+            }
+        });
+        Path directory = Paths.get(serverAddress);
+        running = true;
+        try {
+            Files.createDirectories(directory);
+            while (!Thread.currentThread().isInterrupted()) {
+                accept(directory);
+                Thread.sleep(SCAN_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("共享内存目录不可用: {}", directory, e);
+        } finally {
+            running = false;
+            connections.values().forEach(this::closeQuietly);
+        }
+    }
+
+    private void accept(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ShmConnection.FILE_SUFFIX)) {
+            for (Path path : files) {
+                if (connections.containsKey(path)) {
+                    continue;
+                }
+                ShmConnection connection;
+                try {
+                    connection = ShmConnection.attach(path);
+                } catch (IOException e) {
+                    //客户端可能刚删除文件
+                    continue;
+                }
+                if (connection == null) {
+                    continue;
+                }
+                connections.put(path, connection);
+                Thread poller = new Thread(() -> poll(connection), "efrpc-shm-server-" + connections.size());
+                poller.setDaemon(true);
+                poller.start();
+                logger.info("接入共享内存连接: {}", path);
+            }
+        }
+    }
+
+    private void poll(ShmConnection connection) {
+        ShmIdleStrategy idle = new ShmIdleStrategy();
+        try {
+            while (running && !connection.isClosed()) {
+                byte[] frame = connection.pollRequest();
+                if (frame == null) {
+                    idle.idle();
+                    continue;
+                }
+                idle.reset();
+                long receivedNanos = System.nanoTime();
+                Executor current = executor;
+                if (current == null) {
+                    dispatch(connection, frame, receivedNanos);
+                } else {
+                    current.execute(() -> dispatch(connection, frame, receivedNanos));
+                }
+            }
+        } catch (IllegalStateException e) {
+            logger.error("共享内存请求缓冲区已损坏，关闭连接: {}", connection.getPath(), e);
+        } finally {
+            connections.remove(connection.getPath());
+            closeQuietly(connection);
+        }
+    }
+
+    private void dispatch(ShmConnection connection, byte[] frame, long receivedNanos) {
+        String requestId = null;
+        ShmMsg response = new ShmMsg();
+        SuperMsgMulti reply = new SuperMsgMulti();
+        try {
+            ShmMsg request = serializer.DeSerializeBytes(frame, ShmMsg.class);
+            SuperMsgMulti superMsg = request.getSuperMsgMulti();
+            requestId = superMsg.Id;
+            ShmTarget target = targets.get(request.getQueName());
+            if (target == null) {
+                logger.error("未找到共享内存请求的方法: {}", request.getQueName());
+                fail(response, new RpcException(RpcException.ErrorCodes.METHOD_NOT_FOUND, "未找到方法: " + request.getQueName()));
+            } else {
+                reply.setReq(serverHandler.handle(superMsg, target.bean, target.method, receivedNanos));
+                reply.Timing = superMsg.Timing;
+            }
+        } catch (Throwable t) {
+            RpcException error = RpcException.of(t);
+            if (!isRejection(error)) {
+                logger.error("共享内存请求处理失败", t);
+            }
+            fail(response, error);
+        }
+        if (requestId == null) {
+            return;
+        }
+        //处理失败时也回复，调用方不必等到超时
+        reply.Id = requestId;
+        response.setSuperMsgMulti(reply);
+        if (!connection.sendResponse(serializer.SerializeBytes(response), REPLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            logger.warn("共享内存响应未能写入: {}", connection.getPath());
+        }
+    }
+
+    private static void fail(ShmMsg response, RpcException error) {
+        response.setError(true);
+        response.setErrorCode(error.getErrorCode());
+        response.setErrorMessage(error.getMessage());
+    }
+
+    /**
+     * 限流和并发限制是预期内的拒绝，不记错误日志
+     */
+    private static boolean isRejection(RpcException error) {
+        return RpcException.ErrorCodes.RATE_LIMITED.equals(error.getErrorCode())
+                || RpcException.ErrorCodes.CONCURRENCY_LIMITED.equals(error.getErrorCode());
+    }
+
+    private void closeQuietly(ShmConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.warn("关闭共享内存连接失败", e);
+        }
+    }
+
+    private static final class ShmTarget {
+        private final Object bean;
+        private final Method method;
+
+        private ShmTarget(Object bean, Method method) {
+            this.bean = bean;
+            this.method = method;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.wiqer.rpc.impl.shm;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * 共享内存传输对sun.misc.Unsafe的全部访问都集中在这里。
+ * 映射文件被另一个进程同时读写，需要按绝对地址做有序写和volatile读，
+ * Java 8没有可替代的公开API（VarHandle需要Java 9）；只开放传输层用到的几个操作，
+ * 调用方负责保证地址落在仍被引用的映射缓冲区内
+ */
+@SuppressWarnings({"restriction", "sunapi"})
+final class ShmUnsafe {
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+    private static final long BYTE_ARRAY_OFFSET;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            BYTE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ShmUnsafe() {
+    }
+
+    /**
+     * 直接缓冲区的起始地址
+     */
+    static long address(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("需要直接缓冲区或内存映射缓冲区");
+        }
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    static int getInt(long address) {
+        return UNSAFE.getInt(address);
+    }
+
+    static void putInt(long address, int value) {
+        UNSAFE.putInt(address, value);
+    }
+
+    static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, address);
+    }
+
+    static void putIntVolatile(long address, int value) {
+        UNSAFE.putIntVolatile(null, address, value);
+    }
+
+    static boolean compareAndSwapInt(long address, int expected, int value) {
+        return UNSAFE.compareAndSwapInt(null, address, expected, value);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    /**
+     * 有序写：之前的写入对读到该值的对端可见，比volatile写开销小
+     */
+    static void putOrderedLong(long address, long value) {
+        UNSAFE.putOrderedLong(null, address, value);
+    }
+
+    static void copyToMemory(byte[] source, long address, int length) {
+        UNSAFE.copyMemory(source, BYTE_ARRAY_OFFSET, null, address, length);
+    }
+
+    static void copyFromMemory(long address, byte[] target, int length) {
+        UNSAFE.copyMemory(null, address, target, BYTE_ARRAY_OFFSET, length);
+    }
+}
@@ -0,0 +1,150 @@
+package com.wiqer.rpc.impl.stream;
+
+import com.wiqer.rpc.impl.core.RpcException;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 服务端交给流式方法的StreamObserver，按客户端授予的额度（request-N）推送：
+ * 额度用完时onNext阻塞调用线程直到客户端再次request或取消，因此流式方法不能运行在IO线程上。
+ * 客户端取消或连接断开后onNext抛出CancellationException，方法据此结束推送。
+ * 流在onCompleted、onError、取消或空闲超时之前一直有效，与方法是否返回无关，方法可以把observer交给其他线程异步推送
+ */
+public class ServerStream<T> implements StreamObserver<T> {
+
+    /**
+     * 传输层的写出方式
+     */
+    public interface Sink {
+        void next(Object value);
+
+        void error(Throwable error);
+
+        void complete();
+    }
+
+    private final Sink sink;
+    //流结束时调用一次，由ServerStreamRegistry用来释放流ID和名额
+    private final Runnable onTerminate;
+    private long credit;
+    private boolean cancelled;
+    private boolean done;
+    private boolean terminated;
+    private long lastActiveNanos = System.nanoTime();
+
+    public ServerStream(Sink sink) {
+        this(sink, null);
+    }
+
+    public ServerStream(Sink sink, Runnable onTerminate) {
+        this.sink = sink;
+        this.onTerminate = onTerminate;
+    }
+
+    /**
+     * 客户端追加n条额度
+     */
+    public synchronized void request(long n) {
+        if (n <= 0) {
+            return;
+        }
+        credit = credit + n < 0 ? Long.MAX_VALUE : credit + n;
+        lastActiveNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            notifyAll();
+        }
+        terminate();
+    }
+
+    /**
+     * 超过idleNanos既没有推送也没有新的额度时取消流，并以TIMEOUT错误通知客户端
+     *
+     * @return 本次是否因空闲而结束
+     */
+    public boolean expireIfIdle(long nowNanos, long idleNanos) {
+        synchronized (this) {
+            if (cancelled || done || nowNanos - lastActiveNanos < idleNanos) {
+                return false;
+            }
+            cancelled = true;
+            notifyAll();
+        }
+        terminate();
+        sink.error(new RpcException(RpcException.ErrorCodes.TIMEOUT, "流空闲超时"));
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onNext(T value) {
+        synchronized (this) {
+            while (credit == 0 && !cancelled && !done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+            if (cancelled) {
+                throw new CancellationException("流已取消");
+            }
+            if (done) {
+                throw new IllegalStateException("流已结束");
+            }
+            credit--;
+            lastActiveNanos = System.nanoTime();
+        }
+        sink.next(value);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        boolean notify = finish();
+        terminate();
+        if (notify) {
+            sink.error(error);
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        boolean notify = finish();
+        terminate();
+        if (notify) {
+            sink.complete();
+        }
+    }
+
+    /**
+     * 只有第一次结束生效，已取消的流不再通知客户端
+     */
+    private synchronized boolean finish() {
+        if (done) {
+            return false;
+        }
+        done = true;
+        notifyAll();
+        return !cancelled;
+    }
+
+    private void terminate() {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+        }
+        if (onTerminate != null) {
+            onTerminate.run();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.wiqer.rpc.impl.stream;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端未结束的流，各传输共用同一套生命周期：
+ * 流从open开始占用流ID和名额，直到onCompleted、onError、客户端取消或空闲超时才释放，
+ * 流式方法返回并不结束流，方法可以异步推送；方法返回后既不推送也不结束的流由空闲超时回收并通知客户端
+ */
+public class ServerStreamRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerStreamRegistry.class);
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 300000; // 5分钟
+
+    //所有注册表共用一个空闲检查线程
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "server-stream-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, ServerStream<Object>> streams = new ConcurrentHashMap<>();
+    private final int maxStreams;
+    private final long idleTimeoutNanos;
+    private final ScheduledFuture<?> sweep;
+
+    /**
+     * @param maxStreams        同时未结束的流上限，0表示不限制
+     * @param idleTimeoutMillis 既没有推送也没有新额度的最长时间，0表示不回收
+     */
+    public ServerStreamRegistry(int maxStreams, long idleTimeoutMillis) {
+        if (maxStreams < 0 || idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("maxStreams和idleTimeoutMillis不能为负数");
+        }
+        this.maxStreams = maxStreams;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        if (idleTimeoutMillis > 0) {
+            long period = Math.max(idleTimeoutMillis / 4, 10);
+            this.sweep = SWEEPER.scheduleAtFixedRate(this::expireIdle, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweep = null;
+        }
+    }
+
+    /**
+     * 登记新流，流结束时自动移除；名额用完时抛出SERVER_BUSY，流ID重复时抛出INVOCATION_ERROR
+     */
+    public synchronized ServerStream<Object> open(String streamId, ServerStream.Sink sink) {
+        if (maxStreams > 0 && streams.size() >= maxStreams) {
+            throw new RpcException(RpcException.ErrorCodes.SERVER_BUSY, "未结束的流式调用数已达上限");
+        }
+        if (streams.containsKey(streamId)) {
+            throw new RpcException(RpcException.ErrorCodes.INVOCATION_ERROR, "流ID重复: " + streamId);
+        }
+        ServerStream<Object> stream = new ServerStream<>(sink, () -> streams.remove(streamId));
+        streams.put(streamId, stream);
+        return stream;
+    }
+
+    /**
+     * 客户端追加额度，流已结束时忽略
+     */
+    public void request(String streamId, long n) {
+        ServerStream<Object> stream = streams.get(streamId);
+        if (stream != null) {
+            stream.request(n);
+        }
+    }
+
+    /**
+     * 客户端取消，流已结束时忽略
+     */
+    public void cancel(String streamId) {
+        ServerStream<Object> stream = streams.get(streamId);
+        if (stream != null) {
+            stream.cancel();
+        }
+    }
+
+    public int size() {
+        return streams.size();
+    }
+
+    /**
+     * 取消全部未结束的流并停止空闲检查，连接断开或服务关闭时调用
+     */
+    public void close() {
+        if (sweep != null) {
+            sweep.cancel(false);
+        }
+        streams.values().forEach(ServerStream::cancel);
+    }
+
+    private void expireIdle() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, ServerStream<Object>> entry : streams.entrySet()) {
+            try {
+                if (entry.getValue().expireIfIdle(now, idleTimeoutNanos)) {
+                    logger.warn("流式调用空闲超时，已取消: {}", entry.getKey());
+                }
+            } catch (RuntimeException e) {
+                logger.error("流空闲超时通知失败: {}", entry.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.wiqer.rpc.impl.stream;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * 流式方法的结果接收者。服务方法把它声明为最后一个参数即成为流式方法，
+ * 调用后通过onNext持续推送，结束时调用onCompleted或onError
+ */
+public interface StreamObserver<T> {
+
+    void onNext(T value);
+
+    void onError(Throwable error);
+
+    void onCompleted();
+
+    /**
+     * 最后一个参数为StreamObserver的方法按流式调用
+     */
+    static boolean isStreaming(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        return types.length > 0 && types[types.length - 1] == StreamObserver.class;
+    }
+
+    /**
+     * 流式方法推送的结果类型，即StreamObserver的泛型参数，未声明或为通配符时为Object
+     */
+    static Type elementType(Method method) {
+        Type[] types = method.getGenericParameterTypes();
+        Type last = types[types.length - 1];
+        if (last instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) last).getActualTypeArguments()[0];
+            if (element instanceof Class || element instanceof ParameterizedType) {
+                return element;
+            }
+        }
+        return Object.class;
+    }
+}
@@ -0,0 +1,125 @@
+package com.wiqer.rpc.impl.trace;
+
+/**
+ * 调用链中的一个阶段，结束时交给当前的SpanExporter
+ * 未开启跟踪时所有操作都落在共享的NOOP实例上，不产生任何分配
+ */
+public class Span {
+
+    /**
+     * 一次代理调用，包含它的全部重试和对冲请求
+     */
+    public static final String CALL = "rpc.call";
+    public static final String CLIENT = "rpc.client";
+    public static final String SERVER = "rpc.server";
+    public static final String SEND = "transport.send";
+    public static final String RECEIVE = "transport.receive";
+    public static final String DESERIALIZE = "deserialize";
+    public static final String INVOKE = "invoke";
+
+    public static final Span NOOP = new Span(null, null, null, 0);
+
+    private final String name;
+    private final String target;
+    private final TraceContext context;
+    private final long parentSpanId;
+    private final long startEpochMillis;
+    private final long startNanos;
+    private long endNanos;
+    private Throwable error;
+
+    Span(String name, String target, TraceContext context, long parentSpanId) {
+        this.name = name;
+        this.target = target;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.startEpochMillis = context != null ? System.currentTimeMillis() : 0;
+        this.startNanos = context != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 在同一链路下开始子阶段
+     */
+    public Span startChild(String childName) {
+        if (context == null) {
+            return NOOP;
+        }
+        return Tracer.startSpan(childName, target, context);
+    }
+
+    /**
+     * 写入消息的二进制跟踪头，未记录时为null
+     */
+    public byte[] header() {
+        return context != null ? context.toBytes() : null;
+    }
+
+    /**
+     * 设为当前线程的当前阶段，之后在该线程上发起的调用以它为父阶段；未记录时不做任何事
+     */
+    public Tracer.Scope makeCurrent() {
+        return context != null ? Tracer.activate(this) : Tracer.Scope.NOOP;
+    }
+
+    public void setError(Throwable error) {
+        if (context != null) {
+            this.error = error;
+        }
+    }
+
+    public void end() {
+        if (context == null || endNanos != 0) {
+            return;
+        }
+        endNanos = System.nanoTime();
+        Tracer.export(this);
+    }
+
+    public boolean isRecording() {
+        return context != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 调用的服务方法
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    public TraceContext getContext() {
+        return context;
+    }
+
+    /**
+     * 父阶段的spanId，根阶段为0
+     */
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    public long getDurationNanos() {
+        return endNanos != 0 ? endNanos - startNanos : 0;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (context == null) {
+            return "Span{noop}";
+        }
+        return "Span{name=" + name + ", target=" + target + ", traceId=" + context.getTraceId()
+                + ", spanId=" + context.getSpanId() + ", parentSpanId=" + Long.toHexString(parentSpanId)
+                + ", durationNanos=" + getDurationNanos() + (error != null ? ", error=" + error : "") + "}";
+    }
+}
@@ -0,0 +1,15 @@
+package com.wiqer.rpc.impl.trace;
+
+/**
+ * 已结束阶段的导出器，在结束阶段的线程上同步调用，实现应尽快返回
+ */
+public interface SpanExporter {
+
+    /**
+     * 默认导出器，安装时跟踪整体关闭
+     */
+    SpanExporter NOOP = span -> {
+    };
+
+    void export(Span span);
+}
@@ -0,0 +1,179 @@
+package com.wiqer.rpc.impl.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 跟踪上下文，与W3C Trace Context的traceparent兼容
+ * 消息头使用二进制格式：版本(1) + traceId(16) + spanId(8) + flags(1)，共26字节
+ */
+public final class TraceContext {
+
+    public static final String TRACEPARENT = "traceparent";
+    public static final int BINARY_LENGTH = 26;
+    public static final byte FLAG_SAMPLED = 0x01;
+
+    private static final byte VERSION = 0;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final byte flags;
+
+    public TraceContext(long traceIdHigh, long traceIdLow, long spanId, byte flags) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.flags = flags;
+    }
+
+    /**
+     * 新建一条链路的根上下文
+     */
+    public static TraceContext newRoot() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong();
+        long low = random.nextLong();
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+        return new TraceContext(high, low, nextSpanId(), FLAG_SAMPLED);
+    }
+
+    /**
+     * 同一链路下的子上下文
+     */
+    public TraceContext newChild() {
+        return new TraceContext(traceIdHigh, traceIdLow, nextSpanId(), flags);
+    }
+
+    private static long nextSpanId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BINARY_LENGTH];
+        bytes[0] = VERSION;
+        putLong(bytes, 1, traceIdHigh);
+        putLong(bytes, 9, traceIdLow);
+        putLong(bytes, 17, spanId);
+        bytes[25] = flags;
+        return bytes;
+    }
+
+    /**
+     * 解析二进制头，格式不合法时返回null
+     */
+    public static TraceContext fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < BINARY_LENGTH || bytes[0] != VERSION) {
+            return null;
+        }
+        long high = getLong(bytes, 1);
+        long low = getLong(bytes, 9);
+        long span = getLong(bytes, 17);
+        if ((high == 0 && low == 0) || span == 0) {
+            return null;
+        }
+        return new TraceContext(high, low, span, bytes[25]);
+    }
+
+    /**
+     * 格式为 00-{traceId}-{spanId}-{flags}
+     */
+    public String toTraceparent() {
+        char[] chars = new char[55];
+        chars[0] = '0';
+        chars[1] = '0';
+        chars[2] = '-';
+        putHex(chars, 3, traceIdHigh);
+        putHex(chars, 19, traceIdLow);
+        chars[35] = '-';
+        putHex(chars, 36, spanId);
+        chars[52] = '-';
+        chars[53] = HEX[(flags >> 4) & 0xF];
+        chars[54] = HEX[flags & 0xF];
+        return new String(chars);
+    }
+
+    /**
+     * 解析traceparent，格式不合法时返回null
+     */
+    public static TraceContext parse(String traceparent) {
+        if (traceparent == null || traceparent.length() < 55 || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return null;
+        }
+        try {
+            long high = Long.parseUnsignedLong(traceparent.substring(3, 19), 16);
+            long low = Long.parseUnsignedLong(traceparent.substring(19, 35), 16);
+            long span = Long.parseUnsignedLong(traceparent.substring(36, 52), 16);
+            byte flags = (byte) Integer.parseInt(traceparent.substring(53, 55), 16);
+            if ((high == 0 && low == 0) || span == 0) {
+                return null;
+            }
+            return new TraceContext(high, low, span, flags);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String getTraceId() {
+        char[] chars = new char[32];
+        putHex(chars, 0, traceIdHigh);
+        putHex(chars, 16, traceIdLow);
+        return new String(chars);
+    }
+
+    public String getSpanId() {
+        char[] chars = new char[16];
+        putHex(chars, 0, spanId);
+        return new String(chars);
+    }
+
+    public long getTraceIdHigh() {
+        return traceIdHigh;
+    }
+
+    public long getTraceIdLow() {
+        return traceIdLow;
+    }
+
+    public long getSpanIdValue() {
+        return spanId;
+    }
+
+    public boolean isSampled() {
+        return (flags & FLAG_SAMPLED) != 0;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void putHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+}
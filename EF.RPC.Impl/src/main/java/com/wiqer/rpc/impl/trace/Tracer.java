@@ -0,0 +1,120 @@
+package com.wiqer.rpc.impl.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 全局跟踪入口
+ * 默认安装SpanExporter.NOOP，此时startSpan只做一次volatile读并返回Span.NOOP。
+ * 服务端处理请求期间把服务端阶段设为当前线程的当前阶段，业务方法里发起的下游调用以它为父阶段
+ */
+public final class Tracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+
+    private static volatile SpanExporter exporter = SpanExporter.NOOP;
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private Tracer() {
+    }
+
+    /**
+     * 安装导出器，传null恢复为不跟踪
+     */
+    public static void setExporter(SpanExporter spanExporter) {
+        exporter = spanExporter == null ? SpanExporter.NOOP : spanExporter;
+    }
+
+    public static SpanExporter getExporter() {
+        return exporter;
+    }
+
+    public static boolean isEnabled() {
+        return exporter != SpanExporter.NOOP;
+    }
+
+    /**
+     * 以当前线程的当前阶段为父阶段，没有时开始新链路
+     */
+    public static Span startSpan(String name, String target) {
+        if (exporter == SpanExporter.NOOP) {
+            return Span.NOOP;
+        }
+        Span current = CURRENT.get();
+        return startSpan(name, target, current != null ? current.getContext() : null);
+    }
+
+    /**
+     * 当前线程的当前阶段，没有时为null
+     */
+    public static Span currentSpan() {
+        return CURRENT.get();
+    }
+
+    static Scope activate(Span span) {
+        Span previous = CURRENT.get();
+        CURRENT.set(span);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * 当前阶段的作用域，关闭时恢复之前的当前阶段，应在同一线程上关闭
+     */
+    public interface Scope extends AutoCloseable {
+        Scope NOOP = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @param parent 上游上下文，为null时开始新链路；上游未采样时不记录
+     */
+    public static Span startSpan(String name, String target, TraceContext parent) {
+        if (exporter == SpanExporter.NOOP) {
+            return Span.NOOP;
+        }
+        if (parent == null) {
+            return new Span(name, target, TraceContext.newRoot(), 0);
+        }
+        if (!parent.isSampled()) {
+            return Span.NOOP;
+        }
+        return new Span(name, target, parent.newChild(), parent.getSpanIdValue());
+    }
+
+    /**
+     * 从消息的二进制跟踪头继续链路，头不存在或不合法时开始新链路
+     */
+    public static Span startSpan(String name, String target, byte[] parentHeader) {
+        if (exporter == SpanExporter.NOOP) {
+            return Span.NOOP;
+        }
+        return startSpan(name, target, TraceContext.fromBytes(parentHeader));
+    }
+
+    /**
+     * 从traceparent文本继续链路
+     */
+    public static Span startSpan(String name, String target, String traceparent) {
+        if (exporter == SpanExporter.NOOP) {
+            return Span.NOOP;
+        }
+        return startSpan(name, target, TraceContext.parse(traceparent));
+    }
+
+    static void export(Span span) {
+        try {
+            exporter.export(span);
+        } catch (Exception e) {
+            logger.warn("导出调用链阶段失败: {}", span.getName(), e);
+        }
+    }
+}
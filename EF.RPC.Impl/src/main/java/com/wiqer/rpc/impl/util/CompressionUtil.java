@@ -0,0 +1,31 @@
+package com.wiqer.rpc.impl.util;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.annotation.RpcService;
+
+import java.lang.reflect.Method;
+
+/**
+ * 压缩开关解析：全局配置、@RpcService、@RpcMethod任一开启即压缩
+ */
+public class CompressionUtil {
+
+    public static boolean isCompressionEnabled(Method method, boolean globalEnabled) {
+        return isCompressionEnabled(method, method.getDeclaringClass(), globalEnabled);
+    }
+
+    /**
+     * 服务端按实现类解析，注解只写在服务接口上时同样生效
+     */
+    public static boolean isCompressionEnabled(Method method, Class<?> serviceClass, boolean globalEnabled) {
+        if (globalEnabled) {
+            return true;
+        }
+        RpcMethod rpcMethod = RpcAnnotations.findRpcMethod(method, serviceClass);
+        if (rpcMethod != null && rpcMethod.enableCompression()) {
+            return true;
+        }
+        RpcService rpcService = RpcAnnotations.findRpcService(serviceClass);
+        return rpcService != null && rpcService.enableCompression();
+    }
+}
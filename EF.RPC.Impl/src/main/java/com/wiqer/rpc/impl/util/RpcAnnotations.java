@@ -0,0 +1,50 @@
+package com.wiqer.rpc.impl.util;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.annotation.RpcService;
+
+import java.lang.reflect.Method;
+
+/**
+ * 注解解析：服务端遍历的是实现类的方法，注解可能只写在服务接口上，先查实现类再查其接口
+ */
+public final class RpcAnnotations {
+
+    private RpcAnnotations() {
+    }
+
+    public static RpcMethod findRpcMethod(Method method, Class<?> serviceClass) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (rpcMethod != null || serviceClass == null) {
+            return rpcMethod;
+        }
+        for (Class<?> iface : serviceClass.getInterfaces()) {
+            try {
+                rpcMethod = iface.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(RpcMethod.class);
+                if (rpcMethod != null) {
+                    return rpcMethod;
+                }
+            } catch (NoSuchMethodException ignored) {
+                // 该接口未声明此方法
+            }
+        }
+        return null;
+    }
+
+    public static RpcService findRpcService(Class<?> serviceClass) {
+        if (serviceClass == null) {
+            return null;
+        }
+        RpcService rpcService = serviceClass.getAnnotation(RpcService.class);
+        if (rpcService != null) {
+            return rpcService;
+        }
+        for (Class<?> iface : serviceClass.getInterfaces()) {
+            rpcService = iface.getAnnotation(RpcService.class);
+            if (rpcService != null) {
+                return rpcService;
+            }
+        }
+        return null;
+    }
+}
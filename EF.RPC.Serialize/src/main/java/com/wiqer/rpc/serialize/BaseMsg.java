@@ -21,4 +21,10 @@ public class BaseMsg {
      
     public LocalDateTime CreationDate ;
 
+    //跟踪上下文的二进制头（traceparent的26字节形式），未开启跟踪时为null，不写入消息
+    public byte[] Trace ;
+
+    //服务端各阶段耗时（纳秒），随响应带回客户端，未开启指标时为null
+    public long[] Timing ;
+
 }
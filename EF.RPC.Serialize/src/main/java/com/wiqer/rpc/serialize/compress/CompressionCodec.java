@@ -0,0 +1,27 @@
+package com.wiqer.rpc.serialize.compress;
+
+/**
+ * 压缩编解码器
+ */
+public interface CompressionCodec {
+
+    /**
+     * 编解码器ID，写入帧头
+     */
+    byte getId();
+
+    /**
+     * 编解码器名称
+     */
+    String getName();
+
+    /**
+     * 压缩
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压，originalLength为帧头记录的原始长度
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength);
+}
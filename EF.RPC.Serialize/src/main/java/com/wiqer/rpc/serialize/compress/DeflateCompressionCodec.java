@@ -0,0 +1,78 @@
+package com.wiqer.rpc.serialize.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate编解码器，压缩率高于LZ4，适合带宽受限的链路
+ */
+public class DeflateCompressionCodec implements CompressionCodec {
+
+    public static final byte ID = 2;
+    public static final String NAME = "deflate";
+
+    private final int level;
+
+    public DeflateCompressionCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public DeflateCompressionCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] restored = new byte[originalLength];
+            int n = 0;
+            while (n < originalLength && !inflater.finished()) {
+                int read = inflater.inflate(restored, n, originalLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != originalLength) {
+                throw new IllegalStateException("deflate数据长度不匹配: " + n + "/" + originalLength);
+            }
+            return restored;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("deflate数据格式错误", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
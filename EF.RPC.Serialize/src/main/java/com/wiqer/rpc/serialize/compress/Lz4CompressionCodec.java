@@ -0,0 +1,55 @@
+package com.wiqer.rpc.serialize.compress;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4编解码器，压缩率一般但速度最快，适合低延迟链路
+ * 解压使用safeDecompressor，按压缩数据长度读取，不信任帧头长度，损坏的数据不会越界读取
+ */
+public class Lz4CompressionCodec implements CompressionCodec {
+
+    public static final byte ID = 1;
+    public static final String NAME = "lz4";
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4CompressionCodec() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        return compressor.compress(data);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+        byte[] restored = new byte[originalLength];
+        int n;
+        try {
+            n = decompressor.decompress(data, offset, length, restored, 0, originalLength);
+        } catch (LZ4Exception e) {
+            throw new IllegalStateException("lz4数据格式错误", e);
+        }
+        if (n != originalLength) {
+            throw new IllegalStateException("lz4数据长度不匹配: " + n + "/" + originalLength);
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,130 @@
+package com.wiqer.rpc.serialize.compress;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 序列化之后的压缩阶段
+ * 压缩帧格式：[标记字节][编解码器ID][原始长度4字节][压缩数据]
+ * 标记字节取0xC0|标志位，0xC0/0xC1在UTF-8中不会出现，和未压缩的JSON负载不会混淆，
+ * 因此解码端无需协商，未压缩负载按原样透传
+ */
+public class PayloadCompressor {
+
+    public static final byte FRAME_MARKER = (byte) 0xC0;
+    public static final byte FLAG_COMPRESSED = 0x01;
+    public static final int HEADER_LENGTH = 6;
+
+    public static final String DEFAULT_CODEC = Lz4CompressionCodec.NAME;
+    public static final int DEFAULT_THRESHOLD = 1024;
+    //解压前按帧头的原始长度分配内存，超过上限的帧视为损坏或恶意数据
+    public static final int DEFAULT_MAX_DECOMPRESSED_LENGTH = 16 * 1024 * 1024;
+
+    private static final Map<String, CompressionCodec> CODECS_BY_NAME = new ConcurrentHashMap<>();
+    private static final CompressionCodec[] CODECS_BY_ID = new CompressionCodec[256];
+
+    static {
+        register(new Lz4CompressionCodec());
+        register(new DeflateCompressionCodec());
+    }
+
+    private final CompressionCodec codec;
+    private final int threshold;
+    private final int maxDecompressedLength;
+
+    public PayloadCompressor() {
+        this(DEFAULT_CODEC, DEFAULT_THRESHOLD);
+    }
+
+    public PayloadCompressor(String codecName, int threshold) {
+        this(codecName, threshold, DEFAULT_MAX_DECOMPRESSED_LENGTH);
+    }
+
+    public PayloadCompressor(String codecName, int threshold, int maxDecompressedLength) {
+        this.codec = getCodec(codecName);
+        this.threshold = threshold;
+        this.maxDecompressedLength = maxDecompressedLength;
+    }
+
+    /**
+     * 注册编解码器，ID需全局唯一
+     */
+    public static synchronized void register(CompressionCodec codec) {
+        CODECS_BY_NAME.put(codec.getName(), codec);
+        CODECS_BY_ID[codec.getId() & 0xFF] = codec;
+    }
+
+    public static CompressionCodec getCodec(String name) {
+        CompressionCodec codec = CODECS_BY_NAME.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("不支持的压缩算法: " + name);
+        }
+        return codec;
+    }
+
+    /**
+     * 小于阈值或压缩无收益时返回原负载
+     */
+    public byte[] encode(byte[] payload) {
+        if (payload == null || payload.length < threshold) {
+            return payload;
+        }
+        byte[] compressed = codec.compress(payload);
+        if (compressed.length + HEADER_LENGTH >= payload.length) {
+            return payload;
+        }
+        byte[] frame = new byte[HEADER_LENGTH + compressed.length];
+        frame[0] = (byte) (FRAME_MARKER | FLAG_COMPRESSED);
+        frame[1] = codec.getId();
+        int length = payload.length;
+        frame[2] = (byte) (length >>> 24);
+        frame[3] = (byte) (length >>> 16);
+        frame[4] = (byte) (length >>> 8);
+        frame[5] = (byte) length;
+        System.arraycopy(compressed, 0, frame, HEADER_LENGTH, compressed.length);
+        return frame;
+    }
+
+    /**
+     * 按帧头还原负载，未压缩的负载原样返回，原始长度上限取默认值
+     */
+    public static byte[] decode(byte[] frame) {
+        return decode(frame, DEFAULT_MAX_DECOMPRESSED_LENGTH);
+    }
+
+    /**
+     * 按帧头还原负载，原始长度为负或超过maxLength时在分配内存前拒绝
+     */
+    public static byte[] decode(byte[] frame, int maxLength) {
+        if (!isCompressed(frame)) {
+            return frame;
+        }
+        CompressionCodec codec = CODECS_BY_ID[frame[1] & 0xFF];
+        if (codec == null) {
+            throw new IllegalStateException("未知的压缩算法ID: " + frame[1]);
+        }
+        int length = ((frame[2] & 0xFF) << 24) | ((frame[3] & 0xFF) << 16)
+                | ((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF);
+        if (length < 0 || length > maxLength) {
+            throw new IllegalStateException("压缩帧原始长度非法: " + length + ", 上限: " + maxLength);
+        }
+        return codec.decompress(frame, HEADER_LENGTH, frame.length - HEADER_LENGTH, length);
+    }
+
+    public static boolean isCompressed(byte[] frame) {
+        return frame != null && frame.length >= HEADER_LENGTH
+                && frame[0] == (byte) (FRAME_MARKER | FLAG_COMPRESSED);
+    }
+
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getMaxDecompressedLength() {
+        return maxDecompressedLength;
+    }
+}
@@ -13,6 +13,11 @@ import java.util.Map;
  */
 public class RpcMessage {
     
+    /**
+     * 跟踪上下文的元数据键
+     */
+    public static final String TRACEPARENT = "traceparent";
+    
     /**
      * 消息ID
      */
@@ -159,6 +164,25 @@ public class RpcMessage {
         return metadata != null ? metadata.get(key) : null;
     }
     
+    /**
+     * 设置跟踪上下文
+     * 
+     * @param traceparent W3C traceparent
+     */
+    public void setTraceparent(String traceparent) {
+        addMetadata(TRACEPARENT, traceparent);
+    }
+    
+    /**
+     * 获取跟踪上下文
+     * 
+     * @return W3C traceparent，未携带时为null
+     */
+    public String getTraceparent() {
+        Object traceparent = getMetadata(TRACEPARENT);
+        return traceparent != null ? traceparent.toString() : null;
+    }
+    
     /**
      * 消息类型枚举
      */
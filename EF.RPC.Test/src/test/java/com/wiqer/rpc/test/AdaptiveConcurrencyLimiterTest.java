@@ -0,0 +1,66 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应并发限制测试
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static void window(AdaptiveConcurrencyLimiter limiter, long rttMillis) throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        }
+        Thread.sleep(2);
+        assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+    }
+
+    @Test
+    void testRejectsAboveLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("svc.get", 2, 1, 100);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.onIgnored();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void testGrowsWhileRttStable() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("svc.get", 10, 1, 100, 1);
+        for (int i = 0; i < 20; i++) {
+            window(limiter, 5);
+        }
+        assertTrue(limiter.getLimit() > 10, "limit=" + limiter.getLimit());
+    }
+
+    @Test
+    void testShrinksWhenRttRises() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("svc.get", 50, 1, 100, 1);
+        window(limiter, 5);
+        int before = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            window(limiter, 50);
+        }
+        assertTrue(limiter.getLimit() < before, "before=" + before + ", after=" + limiter.getLimit());
+    }
+
+    @Test
+    void testDropShrinks() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("svc.get", 50, 1, 100, 1);
+        assertTrue(limiter.tryAcquire());
+        Thread.sleep(2);
+        limiter.onDropped();
+        assertEquals(45, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+}
@@ -0,0 +1,99 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.breaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器测试
+ */
+public class CircuitBreakerTest {
+
+    private static void fail(CircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    void testOpensAtThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("svc.get", 3, 60000);
+        fail(breaker, 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(breaker, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    void testHalfOpenSingleProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("svc.get", 1, 20);
+        fail(breaker, 1);
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testProbeFailureReopens() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("svc.get", 1, 20);
+        fail(breaker, 1);
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testFailuresOutsideWindowIgnored() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("svc.get", 2, 60000, 50);
+        fail(breaker, 1);
+        Thread.sleep(80);
+
+        fail(breaker, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testConcurrentFailuresAreNotLost() throws InterruptedException {
+        int threads = 4;
+        int perThread = 20000;
+        //窗口足够长，所有失败都落在窗口内，任何一次计数丢失都会使熔断器保持关闭
+        CircuitBreaker breaker = new CircuitBreaker("svc.get", threads * perThread, 60000, 10000);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    breaker.onFailure();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
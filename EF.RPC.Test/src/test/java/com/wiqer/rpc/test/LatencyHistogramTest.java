@@ -0,0 +1,67 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.monitor.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对数分桶耗时直方图测试
+ */
+public class LatencyHistogramTest {
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.04 + 1, "expected~" + expected + ", actual=" + actual);
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(5000.5, snapshot.getMean(), 0.001);
+        assertClose(5000, snapshot.getP50());
+        assertClose(9000, snapshot.getP90());
+        assertClose(9900, snapshot.getP99());
+        assertClose(9990, snapshot.getP999());
+        assertClose(10000, snapshot.getMax());
+        assertEquals(1, snapshot.getMin());
+    }
+
+    @Test
+    void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getP50());
+        assertEquals(7, snapshot.getMax());
+    }
+
+    @Test
+    void testIntervalSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+        assertEquals(100, histogram.intervalSnapshot().getCount());
+
+        histogram.record(50);
+        LatencyHistogram.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(1, interval.getCount());
+        assertEquals(50, interval.getP99());
+        assertEquals(101, histogram.snapshot().getCount());
+    }
+
+    @Test
+    void testHugeValueClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertTrue(histogram.snapshot().getMax() > 0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.test.load.LoadGenerator;
+import com.wiqer.rpc.test.load.LoadReport;
+import com.wiqer.rpc.test.load.LoadTransport;
+import com.wiqer.rpc.test.load.LoopbackTransport;
+import com.wiqer.rpc.test.load.LoadService;
+import com.wiqer.rpc.test.load.MqttLoopbackTransport;
+import com.wiqer.rpc.test.load.WebSocketTransport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 开环压测生成器测试
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    void testCorrectsCoordinatedOmission() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator(1, 1000, 0, 1000, TimeUnit.MILLISECONDS);
+        LoadReport report = generator.run("stall", () -> () -> {
+            if (calls.incrementAndGet() == 100) {
+                Thread.sleep(200);
+            }
+            return null;
+        });
+
+        //停顿期间本应发出的约200次调用都要计入等待时间
+        assertTrue(report.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(report.getLatency().getP90() >= TimeUnit.MILLISECONDS.toNanos(50), report.toString());
+        assertTrue(report.getServiceTime().getP90() < TimeUnit.MILLISECONDS.toNanos(50), report.toString());
+    }
+
+    @Test
+    void testHoldsTargetRate() throws Exception {
+        LoadGenerator generator = new LoadGenerator(2, 2000, 100, 500, TimeUnit.MILLISECONDS);
+        LoadReport report = generator.run("rate", () -> () -> null);
+
+        assertEquals(0, report.getErrors());
+        assertEquals(1000, report.getCompleted(), 100);
+        assertEquals(2000, report.getThroughput(), 200);
+    }
+
+    @Test
+    void testCountsErrors() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator(1, 1000, 0, 200, TimeUnit.MILLISECONDS);
+        LoadReport report = generator.run("errors", () -> () -> {
+            if (calls.incrementAndGet() % 2 == 0) {
+                throw new IllegalStateException("fail");
+            }
+            return null;
+        });
+
+        assertEquals(report.getCompleted(), report.getErrors(), 1);
+        assertTrue(report.getFirstError() instanceof IllegalStateException);
+    }
+
+    @Test
+    void testLoopbackTransport() throws Exception {
+        try (LoopbackTransport transport = new LoopbackTransport(2)) {
+            runAgainst(transport);
+        }
+    }
+
+    @Test
+    void testWebSocketTransport() throws Exception {
+        try (WebSocketTransport transport = new WebSocketTransport()) {
+            runAgainst(transport);
+        }
+    }
+
+    /**
+     * 对应LoadHarness的mqtt和mqtt-async模式，多个压测线程共用一个生产者
+     */
+    @ParameterizedTest
+    @CsvSource({"0, false", "1, false", "0, true", "1, true"})
+    void testMqttTransport(int qos, boolean asyncClient) throws Exception {
+        try (MqttLoopbackTransport transport = new MqttLoopbackTransport(qos, asyncClient)) {
+            assertEquals("mqtt-qos" + qos + (asyncClient ? "-async" : ""), transport.getName());
+            runAgainst(transport);
+        }
+    }
+
+    private static void runAgainst(LoadTransport transport) throws Exception {
+        transport.start();
+        LoadGenerator generator = new LoadGenerator(2, 500, 50, 200, TimeUnit.MILLISECONDS);
+        LoadReport report = generator.run(transport.getName(), () -> {
+            LoadService client = transport.newClient();
+            return () -> {
+                if (client.add(20, 22) != 42) {
+                    throw new IllegalStateException("返回值错误");
+                }
+                return null;
+            };
+        });
+
+        assertEquals(0, report.getErrors(), String.valueOf(report.getFirstError()));
+        assertTrue(report.getCompleted() > 0);
+    }
+}
@@ -0,0 +1,86 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.local.LocalRpcClient;
+import com.wiqer.rpc.impl.local.LocalServiceRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 同进程传输测试
+ */
+public class LocalTransportTest {
+
+    public interface ListService {
+        List<String> append(List<String> list, String item);
+
+        int size(List<String> list);
+    }
+
+    public static class ListServiceImpl implements ListService {
+        @Override
+        public List<String> append(List<String> list, String item) {
+            list.add(item);
+            return list;
+        }
+
+        @Override
+        public int size(List<String> list) {
+            return list.size();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        LocalServiceRegistry.clear();
+    }
+
+    @Test
+    void testPassesArgumentsByReference() {
+        LocalServiceRegistry.register(ListService.class.getName(), "1.0", new ListServiceImpl());
+        ListService service = new LocalRpcClient().createService(ListService.class, "1.0");
+
+        List<String> list = new ArrayList<>();
+        List<String> result = service.append(list, "a");
+
+        assertSame(list, result);
+        assertEquals(1, list.size());
+        assertEquals(1, service.size(list));
+    }
+
+    @Test
+    void testCopiesArgumentsWhenEnabled() {
+        LocalServiceRegistry.register(ListService.class.getName(), "1.0", new ListServiceImpl());
+        ListService service = new LocalRpcClient(true).createService(ListService.class, "1.0");
+
+        List<String> list = new ArrayList<>();
+        List<String> result = service.append(list, "a");
+
+        assertNotSame(list, result);
+        assertTrue(list.isEmpty());
+        assertEquals(1, result.size());
+        assertEquals("a", result.get(0));
+    }
+
+    @Test
+    void testFailsWhenServiceNotRegistered() {
+        ListService service = new LocalRpcClient().createService(ListService.class, "1.0");
+
+        RpcException e = assertThrows(RpcException.class, () -> service.size(new ArrayList<>()));
+        assertEquals(RpcException.ErrorCodes.SERVICE_NOT_FOUND, e.getErrorCode());
+    }
+
+    @Test
+    void testRoutesAfterLateRegistration() {
+        ListService service = new LocalRpcClient().createService(ListService.class, "1.0");
+        assertThrows(RpcException.class, () -> service.size(new ArrayList<>()));
+
+        LocalServiceRegistry.register(ListService.class.getName(), "1.0", new ListServiceImpl());
+        assertEquals(0, service.size(new ArrayList<>()));
+    }
+}
@@ -0,0 +1,106 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.monitor.LatencyHistogram;
+import com.wiqer.rpc.impl.monitor.RpcMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 方法指标句柄测试
+ */
+public class MetricsHandleTest {
+
+    @Test
+    void testHandleSharedWithStringApi() {
+        MetricsCollector collector = new MetricsCollector();
+        MetricsCollector.MethodMetrics metrics = collector.methodMetrics("svc", "get");
+
+        metrics.recordRequest();
+        metrics.recordResponseNanos(12, true);
+        collector.recordRequest("svc", "get");
+        collector.recordResponse("svc", "get", 30, false);
+
+        MetricsCollector.MetricsSnapshot snapshot = collector.getSnapshot();
+        assertEquals(2, snapshot.getTotalRequests());
+        assertEquals(1, snapshot.getSuccessfulRequests());
+        assertSame(metrics, collector.methodMetrics("svc", "get"));
+        assertEquals(2, snapshot.getResponseTimeStats().get("svc.get").getCount());
+    }
+
+    @Test
+    void testStringApiKeepsMilliseconds() {
+        MetricsCollector collector = new MetricsCollector();
+        collector.recordResponse("svc", "get", 30, true);
+        collector.recordResponseNanos("svc", "get", TimeUnit.MILLISECONDS.toNanos(10), true);
+
+        MetricsCollector.ResponseTimeStats stats = collector.methodMetrics("svc", "get").getStats();
+        assertEquals(40, stats.getTotalTime());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(40), stats.getTotalTimeNanos());
+        assertEquals(30, stats.getMaxTime());
+    }
+
+    @Test
+    void testHandleSurvivesReset() {
+        MetricsCollector collector = new MetricsCollector();
+        MetricsCollector.MethodMetrics metrics = collector.methodMetrics("svc", "get");
+        metrics.recordResponseNanos(10, true);
+
+        collector.reset();
+        metrics.recordResponseNanos(20, true);
+
+        MetricsCollector.ResponseTimeStats stats = collector.getSnapshot().getResponseTimeStats().get("svc.get");
+        assertEquals(1, stats.getCount());
+        assertSame(stats, metrics.getStats());
+    }
+
+    @Test
+    void testSubMillisecondLatencyKeepsPrecision() {
+        MetricsCollector collector = new MetricsCollector();
+        MetricsCollector.MethodMetrics metrics = collector.methodMetrics("svc", "get");
+        for (int i = 0; i < 100; i++) {
+            metrics.recordResponseNanos(TimeUnit.MICROSECONDS.toNanos(i < 90 ? 200 : 800), true);
+        }
+
+        LatencyHistogram.Snapshot latency = metrics.getStats().getLatency();
+        //按毫秒记录时两者都会变成0
+        assertEquals(200_000, latency.getP50(), 200_000 * 0.05);
+        assertEquals(800_000, latency.getP99(), 800_000 * 0.05);
+        assertEquals(0.26, metrics.getStats().getAverageTime(), 0.001);
+    }
+
+    @Test
+    void testMonitorHandleIsResolvedOnce() {
+        RpcMonitor monitor = new RpcMonitor(null);
+        RpcMonitor.MethodHandle handle = monitor.methodHandle("svc", "get");
+        assertSame(handle, monitor.methodHandle("svc", "get"));
+
+        monitor.recordRequestStart("svc", "get");
+        handle.recordRequestStart();
+        assertEquals(2, monitor.getMethodStats("svc", "get").getRequests());
+        monitor.shutdown();
+    }
+
+    @Test
+    void testProxyRecordsThroughCachedHandles() {
+        RpcMonitor monitor = new RpcMonitor(null);
+        MetricsCollector collector = new MetricsCollector();
+        RetryPolicyTest.ScriptedProxy proxy = new RetryPolicyTest.ScriptedProxy(attempt -> "42", true);
+        proxy.setRpcMonitor(monitor);
+        proxy.setMetricsCollector(collector);
+        RetryPolicyTest.OrderService service = proxy.service();
+
+        assertEquals(42, service.create(1));
+        assertEquals(42, service.create(2));
+
+        String serviceName = RetryPolicyTest.OrderService.class.getName();
+        RpcMonitor.MethodStats stats = monitor.getMethodStats(serviceName, "create");
+        assertEquals(2, stats.getRequests());
+        assertEquals(2, stats.getResponses());
+        assertEquals(2, collector.methodMetrics(serviceName, "create").getStats().getCount());
+        monitor.shutdown();
+    }
+}
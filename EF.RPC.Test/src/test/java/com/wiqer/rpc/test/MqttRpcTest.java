@@ -0,0 +1,471 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.mqttimpl.MQTTClientStream;
+import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.MQTTTopics;
+import com.wiqer.rpc.impl.mqttimpl.consumerimpl.MQTT5MsgConsumerMap;
+import com.wiqer.rpc.impl.mqttimpl.consumerimpl.MQTTMsgConsumerMap;
+import com.wiqer.rpc.impl.mqttimpl.producerimpl.MQTT5MsgProducerMap;
+import com.wiqer.rpc.impl.mqttimpl.producerimpl.MQTTMsgProducerMap;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MQTT传输测试，在进程内启动Moquette broker（仅支持MQTT 3.1.1），
+ * MQTT 5需要通过-Defrpc.mqtt5.broker=tcp://host:port指定外部broker
+ */
+public class MqttRpcTest {
+
+    public interface CalcService {
+        int add(int a, int b);
+
+        String echo(String text);
+
+        String fail(String reason);
+    }
+
+    public static class CalcServiceImpl implements CalcService {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public String echo(String text) {
+            return text;
+        }
+
+        @Override
+        public String fail(String reason) {
+            throw new IllegalStateException(reason);
+        }
+    }
+
+    public interface RepeatService {
+        @RpcMethod(enableCompression = true)
+        String repeat(String text, int times);
+    }
+
+    //注解只写在接口上，服务端按实现类注册时也要压缩回复
+    public static class RepeatServiceImpl implements RepeatService {
+        @Override
+        public String repeat(String text, int times) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < times; i++) {
+                builder.append(text);
+            }
+            return builder.toString();
+        }
+    }
+
+    public interface TickService {
+        void ticks(int count, StreamObserver<Integer> observer);
+
+        void ticksLater(int count, StreamObserver<Integer> observer);
+
+        void hang(StreamObserver<Integer> observer);
+    }
+
+    public static class TickServiceImpl implements TickService {
+        static volatile CountDownLatch cancelled = new CountDownLatch(1);
+        static volatile CountDownLatch returned = new CountDownLatch(1);
+
+        /**
+         * 把observer交给其他线程推送，方法立即返回
+         */
+        @Override
+        public void ticksLater(int count, StreamObserver<Integer> observer) {
+            Thread pusher = new Thread(() -> ticks(count, observer));
+            pusher.setDaemon(true);
+            pusher.start();
+            returned.countDown();
+        }
+
+        /**
+         * 既不推送也不结束流就返回
+         */
+        @Override
+        public void hang(StreamObserver<Integer> observer) {
+        }
+
+        @Override
+        public void ticks(int count, StreamObserver<Integer> observer) {
+            try {
+                for (int i = 0; count < 0 || i < count; i++) {
+                    observer.onNext(i);
+                }
+                observer.onCompleted();
+            } catch (CancellationException e) {
+                cancelled.countDown();
+                throw e;
+            }
+        }
+    }
+
+    private Server broker;
+    private String brokerUrl;
+
+    @BeforeEach
+    void startBroker() throws IOException {
+        int port = freePort();
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, "127.0.0.1");
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(port));
+        properties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true");
+        broker = new Server();
+        broker.startServer(new MemoryConfig(properties));
+        brokerUrl = "tcp://127.0.0.1:" + port;
+    }
+
+    @AfterEach
+    void stopBroker() {
+        broker.stopServer();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testRoundTrip(boolean asyncClient) {
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("calc-server", asyncClient));
+        consumer.GetMathsInfo(CalcServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("calc-client", asyncClient));
+        producer.GetMathsInfo(CalcService.class);
+        try {
+            CalcService service = proxy(producer);
+            assertEquals(3, service.add(1, 2));
+            assertEquals("hello", service.echo("hello"));
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testCompressionAnnotatedOnInterfaceOnly() throws Exception {
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("repeat-server", false));
+        consumer.GetMathsInfo(RepeatServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("repeat-client", false));
+        producer.GetMathsInfo(RepeatService.class);
+        BlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+        MqttClient sniffer = new MqttClient(brokerUrl, "repeat-sniffer", new MemoryPersistence());
+        try {
+            sniffer.connect();
+            sniffer.subscribe(MQTTTopics.REPLY_PREFIX + "#", 1, (topic, message) -> replies.add(message.getPayload()));
+            RepeatService service = (RepeatService) Proxy.newProxyInstance(RepeatService.class.getClassLoader(),
+                    new Class[]{RepeatService.class}, producer);
+            String result = service.repeat("efrpc-", 1000);
+            assertEquals(6000, result.length());
+            byte[] reply = replies.poll(5, TimeUnit.SECONDS);
+            assertNotNull(reply);
+            assertTrue(PayloadCompressor.isCompressed(reply));
+            assertTrue(reply.length < result.length());
+        } finally {
+            sniffer.disconnect();
+            sniffer.close();
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testConcurrentCallsToSameMethodGetTheirOwnResults(boolean asyncClient) throws Exception {
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("calc-server", asyncClient));
+        consumer.GetMathsInfo(CalcServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("calc-client", asyncClient));
+        producer.GetMathsInfo(CalcService.class);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CalcService service = proxy(producer);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int a = i;
+                results.add(pool.submit(() -> service.add(a, 1000)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i + 1000, results.get(i).get(10, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            pool.shutdownNow();
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testServerExceptionIsRepliedAsRpcException(boolean asyncClient) {
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("calc-server", asyncClient));
+        consumer.GetMathsInfo(CalcServiceImpl.class);
+        MQTTOptions clientOptions = options("calc-client", asyncClient);
+        //错误响应应立即返回，不应等到超时
+        clientOptions.setRequestTimeout(5000);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(clientOptions);
+        producer.GetMathsInfo(CalcService.class);
+        try {
+            CalcService service = proxy(producer);
+            long start = System.nanoTime();
+            RpcException e = assertThrows(RpcException.class, () -> service.fail("boom"));
+            assertEquals(RpcException.ErrorCodes.INVOCATION_ERROR, e.getErrorCode());
+            assertEquals("boom", e.getMessage());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals("still works", service.echo("still works"));
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testNoServerTimesOut() {
+        MQTTOptions clientOptions = options("calc-client", true);
+        clientOptions.setRequestTimeout(300);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(clientOptions);
+        producer.GetMathsInfo(CalcService.class);
+        try {
+            RpcException e = assertThrows(RpcException.class, () -> proxy(producer).add(1, 2));
+            assertEquals(RpcException.ErrorCodes.TIMEOUT, e.getErrorCode());
+        } finally {
+            producer.close();
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "efrpc.mqtt5.broker", matches = ".+")
+    void testMqtt5RoundTripAndErrorReply() throws Exception {
+        MQTTOptions serverOptions = options("calc-server-5", true);
+        serverOptions.setBrokerUrl(System.getProperty("efrpc.mqtt5.broker"));
+        MQTT5MsgConsumerMap consumer = new MQTT5MsgConsumerMap().setOptions(serverOptions);
+        consumer.GetMathsInfo(CalcServiceImpl.class);
+        MQTTOptions clientOptions = options("calc-client-5", true);
+        clientOptions.setBrokerUrl(serverOptions.getBrokerUrl());
+        MQTT5MsgProducerMap producer = new MQTT5MsgProducerMap().setOptions(clientOptions);
+        producer.GetMathsInfo(CalcService.class);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CalcService service = (CalcService) Proxy.newProxyInstance(CalcService.class.getClassLoader(),
+                    new Class[]{CalcService.class}, producer);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final int a = i;
+                results.add(pool.submit(() -> service.add(a, 1)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i + 1, results.get(i).get(10, TimeUnit.SECONDS).intValue());
+            }
+            RpcException e = assertThrows(RpcException.class, () -> service.fail("boom"));
+            assertEquals(RpcException.ErrorCodes.INVOCATION_ERROR, e.getErrorCode());
+        } finally {
+            pool.shutdownNow();
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testStreamPushesWithinCredit(boolean asyncClient) throws Exception {
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("tick-server", asyncClient));
+        consumer.GetMathsInfo(TickServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("tick-client", asyncClient));
+        producer.GetMathsInfo(TickService.class);
+        try {
+            Collector collector = new Collector();
+            MQTTClientStream stream = producer.stream("ticks", new Object[]{5}, 2, collector);
+            assertEquals(0, collector.next());
+            assertEquals(1, collector.next());
+            //额度用完后服务端不再推送
+            assertNull(collector.items.poll(300, TimeUnit.MILLISECONDS));
+
+            stream.request(10);
+            assertEquals(2, collector.next());
+            assertEquals(3, collector.next());
+            assertEquals(4, collector.next());
+            collector.done.get(5, TimeUnit.SECONDS);
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testStreamCancelStopsServerMethod() throws Exception {
+        TickServiceImpl.cancelled = new CountDownLatch(1);
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("tick-server", true));
+        consumer.GetMathsInfo(TickServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("tick-client", true));
+        producer.GetMathsInfo(TickService.class);
+        try {
+            Collector collector = new Collector();
+            MQTTClientStream stream = producer.stream("ticks", new Object[]{-1}, 1, collector);
+            assertEquals(0, collector.next());
+            stream.cancel();
+            assertTrue(TickServiceImpl.cancelled.await(5, TimeUnit.SECONDS));
+            assertFalse(collector.done.isDone());
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testStreamThroughProxyAndServerBusy() throws Exception {
+        MQTTOptions serverOptions = options("tick-server", true);
+        serverOptions.setMaxStreams(1);
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(serverOptions);
+        consumer.GetMathsInfo(TickServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("tick-client", true));
+        producer.GetMathsInfo(TickService.class);
+        try {
+            //代理调用不做流控
+            Collector all = new Collector();
+            TickService service = (TickService) Proxy.newProxyInstance(TickService.class.getClassLoader(),
+                    new Class[]{TickService.class}, producer);
+            service.ticks(3, all);
+            all.done.get(5, TimeUnit.SECONDS);
+            assertEquals(3, all.items.size());
+
+            //没有额度的流占住唯一的流式线程，下一个流被拒绝
+            Collector first = new Collector();
+            producer.stream("ticks", new Object[]{-1}, 0, first);
+            Collector second = new Collector();
+            producer.stream("ticks", new Object[]{1}, 1, second);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> second.done.get(5, TimeUnit.SECONDS));
+            assertEquals(RpcException.ErrorCodes.SERVER_BUSY, ((RpcException) e.getCause()).getErrorCode());
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testStreamStaysOpenAfterMethodReturns() throws Exception {
+        TickServiceImpl.returned = new CountDownLatch(1);
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(options("tick-server", true));
+        consumer.GetMathsInfo(TickServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("tick-client", true));
+        producer.GetMathsInfo(TickService.class);
+        try {
+            Collector collector = new Collector();
+            MQTTClientStream stream = producer.stream("ticksLater", new Object[]{3}, 0, collector);
+            assertTrue(TickServiceImpl.returned.await(5, TimeUnit.SECONDS));
+            //方法返回后额度仍然送达异步推送的线程
+            Thread.sleep(200);
+            stream.request(10);
+            assertEquals(0, collector.next());
+            assertEquals(1, collector.next());
+            assertEquals(2, collector.next());
+            collector.done.get(5, TimeUnit.SECONDS);
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    @Test
+    void testNeverCompletingStreamTimesOutAndFreesSlot() throws Exception {
+        MQTTOptions serverOptions = options("tick-server", true);
+        serverOptions.setMaxStreams(1);
+        serverOptions.setStreamIdleTimeout(300);
+        MQTTMsgConsumerMap consumer = new MQTTMsgConsumerMap().setOptions(serverOptions);
+        consumer.GetMathsInfo(TickServiceImpl.class);
+        MQTTMsgProducerMap producer = new MQTTMsgProducerMap().setOptions(options("tick-client", true));
+        producer.GetMathsInfo(TickService.class);
+        try {
+            Collector hanging = new Collector();
+            producer.stream("hang", new Object[0], 1, hanging);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> hanging.done.get(5, TimeUnit.SECONDS));
+            assertEquals(RpcException.ErrorCodes.TIMEOUT, ((RpcException) e.getCause()).getErrorCode());
+
+            //空闲超时后名额释放
+            Collector next = new Collector();
+            producer.stream("ticks", new Object[]{1}, 1, next);
+            assertEquals(0, next.next());
+            next.done.get(5, TimeUnit.SECONDS);
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+
+    private static class Collector implements StreamObserver<Integer> {
+        final BlockingQueue<Integer> items = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        @Override
+        public void onNext(Integer value) {
+            items.add(value);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            done.completeExceptionally(error);
+        }
+
+        @Override
+        public void onCompleted() {
+            done.complete(null);
+        }
+
+        int next() throws InterruptedException {
+            Integer value = items.poll(5, TimeUnit.SECONDS);
+            assertNotNull(value, "等待流结果超时");
+            return value;
+        }
+    }
+
+    private CalcService proxy(MQTTMsgProducerMap producer) {
+        return (CalcService) Proxy.newProxyInstance(CalcService.class.getClassLoader(),
+                new Class[]{CalcService.class}, producer);
+    }
+
+    private MQTTOptions options(String clientId, boolean asyncClient) {
+        MQTTOptions options = new MQTTOptions();
+        options.setBrokerUrl(brokerUrl);
+        options.setClientId(clientId);
+        options.setAsyncClient(asyncClient);
+        options.setQos(1);
+        options.setRequestTimeout(10000);
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
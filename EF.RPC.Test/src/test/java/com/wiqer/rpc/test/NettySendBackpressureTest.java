@@ -0,0 +1,281 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.config.RpcConfig;
+import com.wiqer.rpc.impl.monitor.SendStats;
+import com.wiqer.rpc.nettyiml.netty.ChannelSendQueue;
+import com.wiqer.rpc.nettyiml.netty.NettyClient;
+import com.wiqer.rpc.nettyiml.netty.SendOverflowPolicy;
+import com.wiqer.rpc.nettyiml.producerImpl.NettyRpcClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NettyClient发送背压测试：服务端不读取时，按溢出策略阻塞等待、立即失败或转移到其他连接
+ */
+public class NettySendBackpressureTest {
+
+    public interface EchoService {
+        String echo(String text);
+    }
+
+    private static final byte[] MESSAGE = new byte[64 * 1024];
+
+    private final NettyClient client = NettyClient.getInstance();
+    private final SendStats stats = client.getSendStats();
+    private final List<StalledServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (StalledServer server : servers) {
+            server.close();
+        }
+        //断开的连接从NettyClient中移除后再进入下一个测试
+        for (StalledServer server : servers) {
+            waitUntil(() -> !client.isConnected(server.address));
+        }
+    }
+
+    @Test
+    void testFailFastRejectsImmediately() throws Exception {
+        StalledServer server = server(false);
+        RpcConfig config = config("fail_fast", 1000);
+        NettyRpcClient rpcClient = new NettyRpcClient(server.address, config);
+        assertSame(stats, rpcClient.getSendStats());
+
+        fill(server.address);
+        long rejected = stats.getRejected();
+        long blocked = stats.getBlocked();
+        long start = System.nanoTime();
+        assertFalse(client.sendMessage(server.address, MESSAGE));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(rejected + 1, stats.getRejected());
+        assertEquals(blocked, stats.getBlocked());
+
+        //服务端开始读取后恢复发送
+        server.drain();
+        waitUntil(() -> client.sendMessage(server.address, MESSAGE));
+    }
+
+    @Test
+    void testBlockWaitsForWritability() throws Exception {
+        StalledServer server = server(false);
+        new NettyRpcClient(server.address, config("block", 1000));
+
+        fill(server.address);
+        long blocked = stats.getBlocked();
+        long start = System.nanoTime();
+        assertFalse(client.sendMessage(server.address, MESSAGE));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(blocked + 1, stats.getBlocked());
+
+        //等待期间服务端开始读取，同一次发送成功返回
+        Thread drainer = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+            server.drain();
+        });
+        drainer.start();
+        start = System.nanoTime();
+        assertTrue(client.sendMessage(server.address, MESSAGE));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(blocked + 2, stats.getBlocked());
+        drainer.join();
+    }
+
+    @Test
+    void testSpillMovesSendsToAnotherConnection() throws Exception {
+        StalledServer stalled = server(false);
+        StalledServer reading = server(true);
+        RpcConfig config = config("spill", 1000);
+        new NettyRpcClient(stalled.address, config);
+        new NettyRpcClient(reading.address, config);
+        fill(stalled.address);
+
+        long spilled = stats.getSpilled();
+        //未指定地址的发送先用第一个连接，拥塞后转移到仍可写的连接
+        for (int i = 0; i < 4096 && stats.getSpilled() == spilled; i++) {
+            client.sendMessage(MESSAGE);
+        }
+        assertTrue(stats.getSpilled() > spilled);
+        waitUntil(() -> reading.received.get() > 0);
+
+        //指定了地址的发送不转移
+        long rejected = stats.getRejected();
+        assertFalse(client.sendMessage(stalled.address, MESSAGE));
+        assertEquals(rejected + 1, stats.getRejected());
+    }
+
+    @Test
+    void testSendConfigIsPerClient() throws Exception {
+        StalledServer failFast = server(false);
+        StalledServer blocking = server(false);
+        new NettyRpcClient(failFast.address, config("fail_fast", 0));
+        new NettyRpcClient(blocking.address, config("block", 300));
+        //后创建的客户端不改变先创建的客户端的连接
+        assertEquals(SendOverflowPolicy.FAIL_FAST, client.getSendQueue(failFast.address).getOverflowPolicy());
+        assertEquals(SendOverflowPolicy.BLOCK, client.getSendQueue(blocking.address).getOverflowPolicy());
+        assertEquals(300, client.getSendQueue(blocking.address).getBlockTimeout());
+
+        fill(failFast.address);
+        fill(blocking.address);
+        long start = System.nanoTime();
+        assertFalse(client.sendMessage(failFast.address, MESSAGE));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+        start = System.nanoTime();
+        assertFalse(client.sendMessage(blocking.address, MESSAGE));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    void testProxySendsToItsOwnAddress() throws Exception {
+        StalledServer first = server(true);
+        StalledServer second = server(true);
+        new NettyRpcClient(first.address);
+        NettyRpcClient secondClient = new NettyRpcClient(second.address);
+
+        //服务端不回复，调用在后台线程上等待，只检查请求到达了哪个服务端
+        EchoService service = secondClient.createService(EchoService.class, "1.0");
+        Thread caller = new Thread(() -> {
+            try {
+                service.echo("hello");
+            } catch (RuntimeException e) {
+                //等待响应超时
+            }
+        });
+        caller.setDaemon(true);
+        caller.start();
+        waitUntil(() -> second.received.get() > 0);
+        Thread.sleep(100);
+        assertEquals(0, first.received.get());
+        caller.interrupt();
+    }
+
+    private StalledServer server(boolean draining) throws IOException {
+        StalledServer server = new StalledServer(draining);
+        servers.add(server);
+        return server;
+    }
+
+    /**
+     * 出站缓冲很小、每个连接最多4条待发送，服务端不读取时很快拥塞
+     */
+    private static RpcConfig config(String policy, long blockTimeout) {
+        RpcConfig config = RpcConfig.createDefault();
+        config.setWriteBufferLowWaterMark(16 * 1024);
+        config.setWriteBufferHighWaterMark(64 * 1024);
+        config.setMaxPendingSends(4);
+        config.setSendOverflowPolicy(policy);
+        config.setSendBlockTimeout(blockTimeout);
+        return config;
+    }
+
+    /**
+     * 绕过溢出策略直接在发送队列上写到连接持续拥塞为止；
+     * 事件循环尚未写出时待发送数也会短暂达到上限，隔一段时间仍无法占位才算拥塞
+     */
+    private void fill(String address) throws InterruptedException {
+        ChannelSendQueue queue = client.getSendQueue(address);
+        assertNotNull(queue);
+        int failures = 0;
+        for (int i = 0; i < 8192 && failures < 3; i++) {
+            if (queue.tryAcquire()) {
+                queue.write(MESSAGE);
+                failures = 0;
+            } else {
+                failures++;
+                Thread.sleep(50);
+            }
+        }
+        assertEquals(3, failures, "服务端不读取时连接一直可写");
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待条件超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 接受连接但在drain之前不读取的服务端，接收缓冲设得很小，客户端的出站数据很快积压
+     */
+    private static final class StalledServer implements AutoCloseable {
+        final ServerSocket socket = new ServerSocket();
+        final String address;
+        final AtomicLong received = new AtomicLong();
+        private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+        private volatile boolean draining;
+
+        StalledServer(boolean draining) throws IOException {
+            this.draining = draining;
+            socket.setReceiveBufferSize(4096);
+            socket.bind(new InetSocketAddress("127.0.0.1", 0));
+            address = "127.0.0.1:" + socket.getLocalPort();
+            daemon(this::acceptLoop);
+        }
+
+        void drain() {
+            draining = true;
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket connection = socket.accept();
+                    accepted.add(connection);
+                    daemon(() -> readLoop(connection));
+                }
+            } catch (IOException e) {
+                //服务端已关闭
+            }
+        }
+
+        private void readLoop(Socket connection) {
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                while (!draining) {
+                    Thread.sleep(10);
+                }
+                InputStream in = connection.getInputStream();
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    received.addAndGet(n);
+                }
+            } catch (IOException | InterruptedException e) {
+                //连接已关闭
+            }
+        }
+
+        private static void daemon(Runnable task) {
+            Thread thread = new Thread(task, "stalled-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            for (Socket connection : accepted) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.nettyiml.NettyMsg;
+import com.wiqer.rpc.nettyiml.netty.NettyClient;
+import com.wiqer.rpc.nettyiml.netty.NettyTransport;
+import com.wiqer.rpc.nettyiml.netty.NodeServer;
+import com.wiqer.rpc.serialize.utils.FastJsonUtils;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Netty传输选择与地址解析测试
+ */
+public class NettyTransportTest {
+
+    @Test
+    void testUnixAddress() {
+        assertTrue(NettyTransport.isDomainSocket("unix:///run/efrpc.sock"));
+        assertEquals("/run/efrpc.sock", NettyTransport.socketPath("unix:///run/efrpc.sock"));
+        assertEquals("efrpc.sock", NettyTransport.socketPath("unix://efrpc.sock"));
+        assertEquals("/tmp/ef rpc.sock", NettyTransport.socketPath("unix:///tmp/ef rpc.sock"));
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketPath("unix://"));
+
+        DomainSocketAddress address = (DomainSocketAddress) NettyTransport.socketAddress("unix:///run/efrpc.sock");
+        assertEquals("/run/efrpc.sock", address.path());
+    }
+
+    @Test
+    void testTcpAddress() throws Exception {
+        InetSocketAddress ipv4 = (InetSocketAddress) NettyTransport.socketAddress("127.0.0.1:8080");
+        assertEquals(InetAddress.getByName("127.0.0.1"), ipv4.getAddress());
+        assertEquals(8080, ipv4.getPort());
+
+        InetSocketAddress ipv6 = (InetSocketAddress) NettyTransport.socketAddress("[::1]:9090");
+        assertEquals(InetAddress.getByName("::1"), ipv6.getAddress());
+        assertEquals(9090, ipv6.getPort());
+    }
+
+    @Test
+    void testInvalidTcpAddress() {
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress("localhost"));
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress("localhost:"));
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress(":8080"));
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress("localhost:http"));
+        //IPv6需要方括号，否则无法区分端口
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress("::1:8080"));
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.socketAddress("[::1]"));
+    }
+
+    @Test
+    void testTransportSelection() {
+        assertEquals(NettyTransport.TCP, NettyTransport.of("127.0.0.1:8080"));
+        assertEquals(NettyTransport.TCP, NettyTransport.of("[::1]:8080"));
+        assertFalse(NettyTransport.TCP.isDomainSocket());
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void testEpollSelectedForUnixAddress() {
+        assumeTrue(Epoll.isAvailable(), "epoll不可用");
+        NettyTransport transport = NettyTransport.of("unix:///run/efrpc.sock");
+        assertEquals(NettyTransport.UNIX_EPOLL, transport);
+        assertTrue(transport.isDomainSocket());
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void testUnixDomainSocketRoundTrip(@TempDir Path dir) throws Exception {
+        assumeTrue(Epoll.isAvailable(), "epoll不可用");
+        Path socket = dir.resolve("efrpc.sock");
+        String address = "unix://" + socket;
+        BlockingQueue<NettyMsg> received = new LinkedBlockingQueue<>();
+        NodeServer server = new NodeServer();
+        server.setNettyMsgQueue(received);
+        //startNettyServer阻塞到监听关闭，中断线程时退出并释放事件循环
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.startNettyServer(address);
+            } catch (Exception ignored) {
+            }
+        }, "netty-uds-server");
+        serverThread.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Files.exists(socket) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            NettyClient client = NettyClient.getInstance();
+            assertTrue(client.connect(Collections.singletonList(address)));
+
+            NettyMsg msg = new NettyMsg();
+            msg.setQueName("calc.add");
+            byte[] frame = (FastJsonUtils.convertObjectToJSON(msg) + "!0.0").getBytes(StandardCharsets.UTF_8);
+            assertTrue(client.sendMessage(address, frame));
+
+            NettyMsg got = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(got);
+            assertEquals("calc.add", got.getQueName());
+            assertTrue(got.getReceivedNanos() > 0);
+        } finally {
+            serverThread.interrupt();
+            serverThread.join(5000);
+            //监听通道关闭时由Netty删除套接字文件，等它删完再清理临时目录
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (Files.exists(socket) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.core.improved.MetricsCollector;
+import com.wiqer.rpc.impl.limit.AdaptiveConcurrencyLimiter;
+import com.wiqer.rpc.impl.monitor.OpenMetricsWriter;
+import com.wiqer.rpc.impl.monitor.RpcMonitor;
+import com.wiqer.rpc.impl.monitor.SendStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OpenMetrics输出测试
+ */
+public class OpenMetricsWriterTest {
+
+    @Test
+    void testMetricsCollectorExposition() throws Exception {
+        MetricsCollector collector = new MetricsCollector();
+        MetricsCollector.MethodMetrics metrics = collector.methodMetrics("com.demo.UserService", "get");
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordRequest();
+            metrics.recordResponseNanos(TimeUnit.MILLISECONDS.toNanos(i), true);
+        }
+        metrics.recordError("RATE_LIMIT_ERROR");
+
+        StringBuilder out = new StringBuilder();
+        new OpenMetricsWriter(out).writeCollectors(Collections.singletonMap("server", collector)).finish();
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE efrpc_requests counter\n"));
+        assertTrue(text.contains("efrpc_requests_total{instance=\"server\"} 100\n"), text);
+        assertTrue(text.contains("efrpc_responses_total{instance=\"server\",outcome=\"success\"} 100\n"));
+        assertTrue(text.contains("# TYPE efrpc_method_latency_seconds summary\n"));
+        Matcher p50 = Pattern.compile("efrpc_method_latency_seconds\\{instance=\"server\",service=\"com.demo.UserService\",method=\"get\",quantile=\"0.5\"} (\\S+)\n").matcher(text);
+        assertTrue(p50.find(), text);
+        assertEquals(0.050, Double.parseDouble(p50.group(1)), 0.050 * 0.05);
+        assertTrue(text.contains("efrpc_method_latency_seconds_count{instance=\"server\",service=\"com.demo.UserService\",method=\"get\"} 100\n"));
+        assertTrue(text.contains("efrpc_method_latency_seconds_sum{instance=\"server\",service=\"com.demo.UserService\",method=\"get\"} 5.05\n"));
+        assertTrue(text.contains("efrpc_method_errors_total{instance=\"server\",service=\"com.demo.UserService\",method=\"get\",type=\"RATE_LIMIT_ERROR\"} 1\n"));
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+
+    @Test
+    void testFamiliesAreWrittenOncePerScrape() throws Exception {
+        Map<String, MetricsCollector> collectors = new LinkedHashMap<>();
+        collectors.put("client", new MetricsCollector());
+        collectors.put("server", new MetricsCollector());
+        collectors.get("client").recordRequest("com.demo.UserService", "get");
+        collectors.get("server").recordResponseNanos("com.demo.UserService", "get", 5, true);
+        Map<String, RpcMonitor> monitors = new LinkedHashMap<>();
+        monitors.put("a", new RpcMonitor(null));
+        monitors.put("b", new RpcMonitor(null));
+
+        StringBuilder out = new StringBuilder();
+        new OpenMetricsWriter(out).writeCollectors(collectors).writeMonitors(monitors).finish();
+        String text = out.toString();
+
+        assertEquals(1, occurrences(text, "# TYPE efrpc_requests counter\n"), text);
+        assertEquals(1, occurrences(text, "# TYPE efrpc_method_latency_seconds summary\n"));
+        assertEquals(1, occurrences(text, "# TYPE efrpc_monitor_requests counter\n"));
+        assertTrue(text.contains("efrpc_requests_total{instance=\"client\"} 1\n"));
+        assertTrue(text.contains("efrpc_requests_total{instance=\"server\"} 0\n"));
+        assertTrue(text.contains("efrpc_monitor_requests_total{instance=\"a\"} 0\n"));
+        assertTrue(text.contains("efrpc_monitor_requests_total{instance=\"b\"} 0\n"));
+        //同一指标族的样本连续出现
+        int header = text.indexOf("# TYPE efrpc_requests counter\n");
+        int nextHeader = text.indexOf("# TYPE", header + 1);
+        assertTrue(text.lastIndexOf("efrpc_requests_total{") < nextHeader);
+    }
+
+    private static int occurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testSendStatsExposition() throws Exception {
+        SendStats stats = new SendStats();
+        stats.recordSent();
+        stats.recordSent();
+        stats.recordBlocked();
+        stats.recordRejected();
+        stats.acquirePending();
+
+        StringBuilder out = new StringBuilder();
+        Map<String, SendStats> clients = new LinkedHashMap<>();
+        clients.put("netty", stats);
+        clients.put("websocket", new SendStats());
+        new OpenMetricsWriter(out).writeSendStats(clients).finish();
+        String text = out.toString();
+
+        assertTrue(text.contains("efrpc_send_messages_total{client=\"netty\"} 2\n"), text);
+        assertTrue(text.contains("efrpc_send_overflows_total{client=\"netty\",action=\"blocked\"} 1\n"));
+        assertTrue(text.contains("efrpc_send_overflows_total{client=\"netty\",action=\"spilled\"} 0\n"));
+        assertTrue(text.contains("efrpc_send_overflows_total{client=\"netty\",action=\"rejected\"} 1\n"));
+        assertTrue(text.contains("# TYPE efrpc_send_pending gauge\n"));
+        assertTrue(text.contains("efrpc_send_pending{client=\"netty\"} 1\n"));
+        assertTrue(text.contains("efrpc_send_pending{client=\"websocket\"} 0\n"));
+        assertEquals(1, occurrences(text, "# TYPE efrpc_send_pending gauge\n"));
+        assertEquals(1, occurrences(text, "# TYPE efrpc_send_overflows counter\n"));
+    }
+
+    @Test
+    void testConcurrencyLimiterExposition() throws Exception {
+        AdaptiveConcurrencyLimiter get = new AdaptiveConcurrencyLimiter("com.demo.UserService.get", 2, 1, 100);
+        assertTrue(get.tryAcquire());
+        assertTrue(get.tryAcquire());
+        assertFalse(get.tryAcquire());
+        Map<String, AdaptiveConcurrencyLimiter> client = new LinkedHashMap<>();
+        client.put("com.demo.UserService.get", get);
+        Map<String, Map<String, AdaptiveConcurrencyLimiter>> limiters = new LinkedHashMap<>();
+        limiters.put("client", client);
+        limiters.put("server", Collections.singletonMap("com.demo.UserServiceImpl.get",
+                new AdaptiveConcurrencyLimiter("com.demo.UserServiceImpl.get", 20, 1, 100)));
+
+        StringBuilder out = new StringBuilder();
+        new OpenMetricsWriter(out).writeLimiters(limiters).finish();
+        String text = out.toString();
+
+        assertEquals(1, occurrences(text, "# TYPE efrpc_concurrency_limit gauge\n"), text);
+        assertEquals(1, occurrences(text, "# TYPE efrpc_concurrency_inflight gauge\n"));
+        assertTrue(text.contains("efrpc_concurrency_limit{instance=\"client\",service=\"com.demo.UserService\",method=\"get\"} 2\n"), text);
+        assertTrue(text.contains("efrpc_concurrency_inflight{instance=\"client\",service=\"com.demo.UserService\",method=\"get\"} 2\n"));
+        assertTrue(text.contains("efrpc_concurrency_rejected_total{instance=\"client\",service=\"com.demo.UserService\",method=\"get\"} 1\n"));
+        assertTrue(text.contains("efrpc_concurrency_limit{instance=\"server\",service=\"com.demo.UserServiceImpl\",method=\"get\"} 20\n"));
+        assertTrue(text.contains("efrpc_concurrency_inflight{instance=\"server\",service=\"com.demo.UserServiceImpl\",method=\"get\"} 0\n"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.core.improved.OptimizedJsonSerializer;
+import com.wiqer.rpc.impl.core.improved.RpcConfig;
+import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 负载压缩测试
+ */
+public class PayloadCompressorTest {
+
+    private static byte[] largeJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\"},");
+        }
+        sb.setCharAt(sb.length() - 1, ']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testLz4RoundTrip() {
+        byte[] payload = largeJson();
+        byte[] frame = new PayloadCompressor("lz4", 1024).encode(payload);
+
+        assertTrue(PayloadCompressor.isCompressed(frame));
+        assertTrue(frame.length < payload.length);
+        assertArrayEquals(payload, PayloadCompressor.decode(frame));
+    }
+
+    @Test
+    void testDeflateRoundTrip() {
+        byte[] payload = largeJson();
+        byte[] frame = new PayloadCompressor("deflate", 1024).encode(payload);
+
+        assertTrue(PayloadCompressor.isCompressed(frame));
+        assertArrayEquals(payload, PayloadCompressor.decode(frame));
+    }
+
+    @Test
+    void testBelowThresholdPassThrough() {
+        byte[] payload = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new PayloadCompressor("lz4", 1024).encode(payload);
+
+        assertSame(payload, frame);
+        assertFalse(PayloadCompressor.isCompressed(frame));
+        assertSame(payload, PayloadCompressor.decode(frame));
+    }
+
+    @Test
+    void testUnknownCodec() {
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCompressor("snappy", 0));
+    }
+
+    @Test
+    void testRejectsNegativeOrOversizedOriginalLength() {
+        byte[] frame = new PayloadCompressor("lz4", 1024).encode(largeJson());
+
+        byte[] negative = frame.clone();
+        negative[2] = (byte) 0x80;
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decode(negative));
+
+        byte[] huge = frame.clone();
+        huge[2] = 0x7F;
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decode(huge));
+
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decode(frame, largeJson().length - 1));
+    }
+
+    @Test
+    void testLz4RejectsCorruptData() {
+        byte[] frame = new PayloadCompressor("lz4", 1024).encode(largeJson());
+        //截断压缩数据，safeDecompressor只读取实际存在的字节
+        byte[] truncated = Arrays.copyOf(frame, frame.length / 2);
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decode(truncated));
+    }
+
+    @Test
+    void testRpcConfigWiring() {
+        RpcConfig config = RpcConfig.createDefault();
+        config.setEnableCompression(true);
+        config.setCompressionCodec("deflate");
+        config.setCompressionThreshold(64);
+        OptimizedJsonSerializer serializer = new OptimizedJsonSerializer();
+        serializer.configure(config);
+
+        assertTrue(serializer.isCompressionEnabled());
+        assertEquals("deflate", serializer.getCompressor().getCodec().getName());
+        assertEquals(64, serializer.getCompressor().getThreshold());
+
+        com.wiqer.rpc.impl.config.RpcConfig rpcConfig = com.wiqer.rpc.impl.config.RpcConfig.createDefault();
+        rpcConfig.setEnableCompression(true);
+        rpcConfig.setCompressionCodec("deflate");
+        rpcConfig.setMaxDecompressedLength(1024);
+        MQTTOptions options = new MQTTOptions().applyRpcConfig(rpcConfig);
+        assertTrue(options.isCompressionEnabled());
+        assertEquals("deflate", options.getCompressionCodec());
+        assertEquals(1024, options.getMaxDecompressedLength());
+    }
+}
@@ -0,0 +1,103 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.limit.RateLimiter;
+import com.wiqer.rpc.impl.limit.SlidingWindowRateLimiter;
+import com.wiqer.rpc.impl.limit.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限流器测试
+ */
+public class RateLimiterTest {
+
+    private static int drain(RateLimiter limiter, int attempts) {
+        int passed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (limiter.tryAcquire()) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+
+    @Test
+    void testTokenBucketBurst() {
+        RateLimiter limiter = new TokenBucketRateLimiter(10, 1);
+        int passed = drain(limiter, 100);
+
+        assertTrue(passed >= 10 && passed <= 11, "passed=" + passed);
+        assertEquals(100 - passed, limiter.getRejectedCount());
+    }
+
+    @Test
+    void testTokenBucketRefill() throws InterruptedException {
+        RateLimiter limiter = new TokenBucketRateLimiter(100, 1);
+        drain(limiter, 1000);
+        assertFalse(limiter.tryAcquire());
+
+        Thread.sleep(50);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void testTokenBucketSingleThreadGetsFullRate() {
+        //Netty事件循环等单线程调用方也能用满配置的阈值
+        RateLimiter limiter = new TokenBucketRateLimiter(100000, 1);
+        int passed = drain(limiter, 200000);
+
+        assertTrue(passed >= 100000 && passed < 110000, "passed=" + passed);
+    }
+
+    @Test
+    void testTokenBucketSharedAcrossThreads() throws InterruptedException {
+        RateLimiter limiter = new TokenBucketRateLimiter(5000, 10);
+        AtomicInteger passed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch done = new CountDownLatch(16);
+        for (int t = 0; t < 16; t++) {
+            executor.execute(() -> {
+                passed.addAndGet(drain(limiter, 10000));
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertTrue(passed.get() >= 50000 && passed.get() < 55000, "passed=" + passed.get());
+    }
+
+    @Test
+    void testSlidingWindowLimit() {
+        RateLimiter limiter = new SlidingWindowRateLimiter(20, 1);
+
+        assertEquals(20, drain(limiter, 100));
+        assertEquals(80, limiter.getRejectedCount());
+    }
+
+    @Test
+    void testConcurrentNeverExceedsBurst() throws InterruptedException {
+        RateLimiter limiter = new SlidingWindowRateLimiter(500, 10);
+        AtomicInteger passed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                passed.addAndGet(drain(limiter, 2000));
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(5000, passed.get());
+        assertEquals(passed.get(), limiter.getPassedCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.cache.ResultCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 客户端结果缓存测试
+ */
+public class ResultCacheTest {
+
+    private static Object getUnchecked(ResultCache cache, Object arg, ResultCache.Loader loader) throws Exception {
+        try {
+            return cache.get(new Object[]{arg}, loader);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Test
+    void testHitAndMiss() throws Throwable {
+        ResultCache cache = new ResultCache("svc.get", 10, 60000, "lru");
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("v1", cache.get(new Object[]{1}, () -> "v" + calls.incrementAndGet()));
+        assertEquals("v1", cache.get(new Object[]{1}, () -> "v" + calls.incrementAndGet()));
+        assertEquals("v2", cache.get(new Object[]{2}, () -> "v" + calls.incrementAndGet()));
+
+        ResultCache.CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testLruEviction() throws Throwable {
+        ResultCache cache = new ResultCache("svc.get", 2, 0, "lru");
+        cache.get(new Object[]{1}, () -> "a");
+        cache.get(new Object[]{2}, () -> "b");
+        cache.get(new Object[]{1}, () -> "x");
+        cache.get(new Object[]{3}, () -> "c");
+
+        // 2最久未访问，被淘汰
+        assertEquals("a", cache.get(new Object[]{1}, () -> "x"));
+        assertEquals("y", cache.get(new Object[]{2}, () -> "y"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testLfuEviction() throws Throwable {
+        ResultCache cache = new ResultCache("svc.get", 2, 0, "lfu");
+        cache.get(new Object[]{1}, () -> "a");
+        cache.get(new Object[]{1}, () -> "x");
+        cache.get(new Object[]{1}, () -> "x");
+        cache.get(new Object[]{2}, () -> "b");
+        cache.get(new Object[]{3}, () -> "c");
+
+        // 2访问次数最少，被淘汰
+        assertEquals("a", cache.get(new Object[]{1}, () -> "x"));
+        assertEquals("c", cache.get(new Object[]{3}, () -> "x"));
+        assertEquals(1, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    void testExpire() throws Throwable {
+        ResultCache cache = new ResultCache("svc.get", 10, 20, "lru");
+        cache.get(new Object[]{1}, () -> "old");
+        Thread.sleep(40);
+
+        assertEquals("new", cache.get(new Object[]{1}, () -> "new"));
+        assertEquals(1, cache.getStats().getExpirationCount());
+    }
+
+    @Test
+    void testConcurrentMissesCollapsed() throws Exception {
+        ResultCache cache = new ResultCache("svc.get", 10, 60000, "lru");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Object> leader = executor.submit(() -> getUnchecked(cache, "k", () -> {
+                calls.incrementAndGet();
+                loading.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return "v";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Object> follower = executor.submit(() -> getUnchecked(cache, "k", () -> {
+                calls.incrementAndGet();
+                return "other";
+            }));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("v", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("v", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailureNotCached() throws Throwable {
+        ResultCache cache = new ResultCache("svc.get", 10, 60000, "lru");
+        assertThrows(IllegalStateException.class,
+                () -> cache.get(new Object[]{1}, () -> { throw new IllegalStateException("down"); }));
+        assertEquals("ok", cache.get(new Object[]{1}, () -> "ok"));
+    }
+
+    @Test
+    void testNoResponseIsNotCached() throws Throwable {
+        Object noResponse = new Object();
+        ResultCache cache = new ResultCache("svc.get", 10, 60000, "lru", noResponse);
+        AtomicInteger calls = new AtomicInteger();
+
+        //等待响应超时，不应把超时当作结果缓存
+        assertSame(noResponse, cache.get(new Object[]{1}, () -> {
+            calls.incrementAndGet();
+            return noResponse;
+        }));
+        assertEquals(0, cache.size());
+        assertEquals("v", cache.get(new Object[]{1}, () -> {
+            calls.incrementAndGet();
+            return "v";
+        }));
+        assertEquals("v", cache.get(new Object[]{1}, () -> "other"));
+        assertEquals(2, calls.get());
+    }
+}
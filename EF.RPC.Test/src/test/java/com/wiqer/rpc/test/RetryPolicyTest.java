@@ -0,0 +1,186 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.impl.retry.LatencyTracker;
+import com.wiqer.rpc.impl.retry.RetryBudget;
+import com.wiqer.rpc.impl.retry.RetryPolicy;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重试策略、重试预算与耗时分位数测试
+ */
+public class RetryPolicyTest {
+
+    public interface OrderService {
+        @RpcMethod(idempotent = true, retryCount = 2, retryInterval = 1)
+        int query(int id);
+
+        //enableRetry默认为true，但未声明幂等，不重试
+        @RpcMethod(retryCount = 2, retryInterval = 1)
+        int create(int id);
+
+        @RpcMethod(idempotent = true, enableRetry = false, enableHedging = true)
+        int lookup(int id);
+    }
+
+    /**
+     * 每次发送由script决定：抛出异常模拟网络错误，或返回响应JSON
+     */
+    interface Script {
+        String respond(int attempt) throws IOException;
+    }
+
+    static class ScriptedProxy extends ObjectProxy {
+        private final Script script;
+        private final boolean correlates;
+        final AtomicInteger sends = new AtomicInteger();
+
+        ScriptedProxy(Script script, boolean correlates) {
+            super(OrderService.class, "1.0");
+            this.script = script;
+            this.correlates = correlates;
+        }
+
+        @Override
+        protected boolean sendMsg(Object proxy, Method method, SuperMsgMulti superMsgMulti, String markName) throws IOException {
+            superMsgMulti.setResponse(script.respond(sends.incrementAndGet()));
+            return true;
+        }
+
+        @Override
+        protected boolean receivesInSendMsg() {
+            return true;
+        }
+
+        @Override
+        protected boolean correlatesResponses() {
+            return correlates;
+        }
+
+        OrderService service() {
+            return (OrderService) Proxy.newProxyInstance(OrderService.class.getClassLoader(),
+                    new Class[]{OrderService.class}, this);
+        }
+    }
+
+    private static Script failFirst(int failures) {
+        return attempt -> {
+            if (attempt <= failures) {
+                throw new IOException("connection reset");
+            }
+            return "42";
+        };
+    }
+
+    @Test
+    void testRetriesOnlyIdempotentMethods() {
+        ScriptedProxy idempotent = new ScriptedProxy(failFirst(2), true);
+        assertEquals(42, idempotent.service().query(1));
+        assertEquals(3, idempotent.sends.get());
+
+        ScriptedProxy nonIdempotent = new ScriptedProxy(failFirst(2), true);
+        Throwable e = assertThrows(Throwable.class, () -> nonIdempotent.service().create(1));
+        assertTrue(e.getCause() instanceof IOException, e.toString());
+        assertEquals(1, nonIdempotent.sends.get());
+    }
+
+    @Test
+    void testHedgesSlowCallOnCorrelatingTransport() {
+        //分位数每32个样本计算一次，之后的调用才会对冲
+        ScriptedProxy proxy = new ScriptedProxy(slowAt(33), true);
+        OrderService service = proxy.service();
+        for (int i = 0; i < 32; i++) {
+            assertEquals(42, service.lookup(i));
+        }
+        long start = System.nanoTime();
+        assertEquals(42, service.lookup(32));
+        //对冲请求先返回，不必等慢的原请求
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(1, proxy.getHedgeCount());
+    }
+
+    @Test
+    void testDoesNotHedgeWithoutCorrelation() {
+        ScriptedProxy proxy = new ScriptedProxy(slowAt(33), false);
+        OrderService service = proxy.service();
+        for (int i = 0; i < 33; i++) {
+            assertEquals(42, service.lookup(i));
+        }
+        assertEquals(0, proxy.getHedgeCount());
+        assertEquals(33, proxy.sends.get());
+    }
+
+    /**
+     * 第slowAttempt次发送耗时2秒，其余立即返回
+     */
+    private static Script slowAt(int slowAttempt) {
+        return attempt -> {
+            if (attempt == slowAttempt) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "42";
+        };
+    }
+
+    @Test
+    void testBackoffWithJitter() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.backoffMillis(1);
+            long third = policy.backoffMillis(3);
+            long capped = policy.backoffMillis(10);
+            assertTrue(first >= 50 && first <= 100, "first=" + first);
+            assertTrue(third >= 200 && third <= 400, "third=" + third);
+            assertTrue(capped >= 500 && capped <= 1000, "capped=" + capped);
+        }
+    }
+
+    @Test
+    void testBudgetLimitsRetryRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 0);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        int retries = 0;
+        while (budget.tryWithdraw()) {
+            retries++;
+        }
+        assertEquals(10, retries);
+        assertEquals(1, budget.getExhaustedCount());
+    }
+
+    @Test
+    void testBudgetReserve() {
+        RetryBudget budget = new RetryBudget(0.0, 5);
+        int retries = 0;
+        for (int i = 0; i < 20; i++) {
+            if (budget.tryWithdraw()) {
+                retries++;
+            }
+        }
+        assertEquals(5, retries);
+    }
+
+    @Test
+    void testLatencyQuantile() {
+        LatencyTracker tracker = new LatencyTracker(0.95, 20);
+        assertEquals(-1, tracker.getQuantileNanos());
+        for (int i = 1; i <= 256; i++) {
+            tracker.record(i);
+        }
+        assertEquals(244, tracker.getQuantileNanos());
+    }
+}
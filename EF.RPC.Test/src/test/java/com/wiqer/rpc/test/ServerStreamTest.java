@@ -0,0 +1,117 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.stream.ServerStream;
+import com.wiqer.rpc.impl.stream.ServerStreamRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式调用的request-N流量控制和生命周期测试
+ */
+public class ServerStreamTest {
+
+    private final List<Object> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private final ServerStream<Integer> stream = new ServerStream<>(sink());
+
+    @Test
+    void testPushesOnlyWithinCredit() throws Exception {
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                stream.onNext(i);
+            }
+            stream.onCompleted();
+        });
+        producer.start();
+
+        Thread.sleep(100);
+        assertTrue(sent.isEmpty());
+
+        stream.request(2);
+        Thread.sleep(100);
+        assertEquals(2, sent.size());
+
+        stream.request(Long.MAX_VALUE);
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        assertEquals(5, sent.size());
+        producer.join();
+    }
+
+    @Test
+    void testCancelStopsProducer() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                stream.onNext(1);
+            } catch (CancellationException e) {
+                cancelled.countDown();
+            }
+        });
+        producer.start();
+
+        stream.cancel();
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        stream.onCompleted();
+        assertEquals(1, completed.getCount());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void testRegistryReleasesOnTerminalSignalOnly() {
+        ServerStreamRegistry registry = new ServerStreamRegistry(1, 0);
+        ServerStream<Object> first = registry.open("a", sink());
+        RpcException busy = assertThrows(RpcException.class, () -> registry.open("b", sink()));
+        assertEquals(RpcException.ErrorCodes.SERVER_BUSY, busy.getErrorCode());
+
+        //未结束的流一直占用名额
+        first.request(1);
+        first.onNext(1);
+        assertEquals(1, registry.size());
+
+        first.onCompleted();
+        assertEquals(0, registry.size());
+        registry.open("b", sink()).cancel();
+        assertEquals(0, registry.size());
+        registry.close();
+    }
+
+    @Test
+    void testIdleStreamExpiresWithTimeout() {
+        ServerStream<Integer> idle = new ServerStream<>(sink());
+        assertFalse(idle.expireIfIdle(System.nanoTime(), TimeUnit.SECONDS.toNanos(1)));
+        assertTrue(idle.expireIfIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(1)));
+        RpcException timeout = (RpcException) sent.get(0);
+        assertEquals(RpcException.ErrorCodes.TIMEOUT, timeout.getErrorCode());
+        assertThrows(CancellationException.class, () -> idle.onNext(1));
+        idle.onCompleted();
+        assertEquals(1, completed.getCount());
+    }
+
+    private ServerStream.Sink sink() {
+        return new ServerStream.Sink() {
+            @Override
+            public void next(Object value) {
+                sent.add(value);
+            }
+
+            @Override
+            public void error(Throwable error) {
+                sent.add(error);
+            }
+
+            @Override
+            public void complete() {
+                completed.countDown();
+            }
+        };
+    }
+}
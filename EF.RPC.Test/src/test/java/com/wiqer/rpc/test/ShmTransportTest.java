@@ -0,0 +1,222 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.annotation.RpcMethod;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.core.RpcServerHandler;
+import com.wiqer.rpc.impl.shm.ShmRingBuffer;
+import com.wiqer.rpc.impl.shm.ShmRpcClient;
+import com.wiqer.rpc.impl.shm.ShmRpcServer;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 共享内存传输测试
+ */
+public class ShmTransportTest {
+
+    public interface EchoService {
+        String echo(String text);
+
+        int add(int a, int b);
+
+        //业务异常不计入熔断
+        @RpcMethod(enableCircuitBreaker = true, circuitBreakerFailureThreshold = 2)
+        int fail(int code);
+
+        int limited(int value);
+
+        int slow(int value);
+    }
+
+    public static class EchoServiceImpl implements EchoService {
+        @Override
+        public String echo(String text) {
+            return text;
+        }
+
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public int fail(int code) {
+            throw new IllegalStateException("boom-" + code);
+        }
+
+        @Override
+        @RpcMethod(enableRateLimit = true, rateLimitThreshold = 1, rateLimitWindowSize = 1)
+        public int limited(int value) {
+            return value;
+        }
+
+        @Override
+        public int slow(int value) {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        }
+    }
+
+    @Test
+    void testRingBufferWrapsAround() {
+        ShmRingBuffer ring = new ShmRingBuffer(ByteBuffer.allocateDirect(ShmRingBuffer.requiredBytes(64)), 0, 64);
+        for (int i = 0; i < 100; i++) {
+            byte[] message = ("message-" + i).getBytes(StandardCharsets.UTF_8);
+            assertTrue(ring.offer(message));
+            assertArrayEquals(message, ring.poll());
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void testRingBufferRejectsWhenFull() {
+        ShmRingBuffer ring = new ShmRingBuffer(ByteBuffer.allocateDirect(ShmRingBuffer.requiredBytes(64)), 0, 64);
+        byte[] message = new byte[12];
+        int written = 0;
+        while (ring.offer(message)) {
+            written++;
+        }
+        assertEquals(4, written);
+        assertNotNull(ring.poll());
+        assertTrue(ring.offer(message));
+        assertThrows(IllegalArgumentException.class, () -> ring.offer(new byte[ring.maxMessageLength() + 1]));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-5, 1 << 20})
+    void testRingBufferRejectsCorruptLength(int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ShmRingBuffer.requiredBytes(64));
+        ShmRingBuffer ring = new ShmRingBuffer(buffer, 0, 64);
+        assertTrue(ring.offer(new byte[8]));
+        //模拟对端进程写坏记录长度
+        buffer.putInt(ShmRingBuffer.HEADER_LENGTH, length);
+        assertThrows(IllegalStateException.class, ring::poll);
+    }
+
+    @Test
+    void testServerExceptionIsRepliedAsRpcException(@TempDir Path directory) throws Exception {
+        ShmRpcServer server = new ShmRpcServer(directory.toString());
+        server.addService(EchoService.class.getName(), "1.0", new EchoServiceImpl());
+        server.start();
+        ShmRpcClient client = new ShmRpcClient(directory.toString(), 1 << 12);
+        try {
+            EchoService service = client.createService(EchoService.class, "1.0");
+            long start = System.nanoTime();
+            RpcException e = assertThrows(RpcException.class, () -> service.fail(7));
+            assertEquals(RpcException.ErrorCodes.INVOCATION_ERROR, e.getErrorCode());
+            assertEquals("boom-7", e.getMessage());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(RpcException.ErrorCodes.INVOCATION_ERROR,
+                        assertThrows(RpcException.class, () -> service.fail(7)).getErrorCode());
+            }
+            //错误响应立即返回，不等到超时
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(3, service.add(1, 2));
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    void testRateLimitRejectionReachesClient(@TempDir Path directory) throws Exception {
+        ShmRpcServer server = new ShmRpcServer(directory.toString());
+        server.addService(EchoService.class.getName(), "1.0", new EchoServiceImpl());
+        server.start();
+        ShmRpcClient client = new ShmRpcClient(directory.toString(), 1 << 12);
+        try {
+            EchoService service = client.createService(EchoService.class, "1.0");
+            assertEquals(1, service.limited(1));
+            //每秒1个许可，紧接着的调用被拒绝并回复给客户端，而不是等到超时
+            RpcException e = assertThrows(RpcException.class, () -> {
+                for (int i = 2; i < 5; i++) {
+                    service.limited(i);
+                }
+            });
+            assertEquals(RpcException.ErrorCodes.RATE_LIMITED, e.getErrorCode());
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    void testConcurrencyLimitRejectionReachesClient(@TempDir Path directory) throws Exception {
+        RpcServerHandler handler = new RpcServerHandler(new JsonSerializer());
+        handler.setAdaptiveConcurrencyEnabled(true);
+        ShmRpcServer server = new ShmRpcServer(directory.toString(), handler);
+        ExecutorService workers = Executors.newFixedThreadPool(40);
+        server.setExecutor(workers);
+        server.addService(EchoService.class.getName(), "1.0", new EchoServiceImpl());
+        server.start();
+        ShmRpcClient client = new ShmRpcClient(directory.toString(), 1 << 16);
+        ExecutorService callers = Executors.newFixedThreadPool(40);
+        try {
+            EchoService service = client.createService(EchoService.class, "1.0");
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                final int value = i;
+                results.add(callers.submit(() -> service.slow(value)));
+            }
+            int rejected = 0;
+            for (Future<Integer> result : results) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RpcException, e.getCause().toString());
+                    assertEquals(RpcException.ErrorCodes.CONCURRENCY_LIMITED, ((RpcException) e.getCause()).getErrorCode());
+                    rejected++;
+                }
+            }
+            //初始上限20，超出的请求立即收到拒绝
+            assertTrue(rejected > 0, "rejected=" + rejected);
+        } finally {
+            callers.shutdownNow();
+            client.close();
+            server.stop();
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRoundTrip(@TempDir Path directory) throws Exception {
+        ShmRpcServer server = new ShmRpcServer(directory.toString());
+        server.addService(EchoService.class.getName(), "1.0", new EchoServiceImpl());
+        server.start();
+        ShmRpcClient client = new ShmRpcClient(directory.toString(), 1 << 12);
+        try {
+            EchoService service = client.createService(EchoService.class, "1.0");
+            assertEquals(3, service.add(1, 2));
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                text.append(i);
+                //消息总长超过缓冲区容量，覆盖回绕
+                assertEquals(text.toString(), service.echo(text.toString()));
+            }
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+}
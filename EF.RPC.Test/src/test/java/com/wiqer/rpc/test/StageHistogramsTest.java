@@ -0,0 +1,95 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.monitor.CallTimeline;
+import com.wiqer.rpc.impl.monitor.CallTimeline.Point;
+import com.wiqer.rpc.impl.monitor.StageHistograms;
+import com.wiqer.rpc.impl.monitor.StageHistograms.Stage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流水线阶段耗时测试
+ */
+public class StageHistogramsTest {
+
+    @Test
+    void testNetworkExcludesServerTime() {
+        CallTimeline server = new CallTimeline()
+                .markAt(Point.RECEIVED, 1_000)
+                .markAt(Point.DESERIALIZED, 1_200)
+                .markAt(Point.INVOKE_START, 1_200)
+                .markAt(Point.INVOKE_END, 6_200)
+                .markAt(Point.REPLY_SENT, 6_500);
+        long[] serverDurations = server.serverDurations();
+        assertArrayEquals(new long[]{200, 0, 5_000, 300}, serverDurations);
+
+        CallTimeline client = new CallTimeline()
+                .markAt(Point.PROXY_ENTER, 100)
+                .markAt(Point.SERIALIZED, 400)
+                .markAt(Point.ENQUEUED, 450)
+                .markAt(Point.SENT, 500)
+                .markAt(Point.RECEIVED, 8_500)
+                .markAt(Point.DESERIALIZED, 8_600);
+        StageHistograms stages = new StageHistograms();
+        stages.recordClient(client, serverDurations);
+
+        assertEquals(300, stages.getLatency(Stage.SERIALIZE).getSum());
+        assertEquals(50, stages.getLatency(Stage.ENQUEUE).getSum());
+        assertEquals(50, stages.getLatency(Stage.WRITE).getSum());
+        assertEquals(8_000 - 5_500, stages.getLatency(Stage.NETWORK).getSum());
+        assertEquals(100, stages.getLatency(Stage.DESERIALIZE).getSum());
+        assertEquals(5_000, stages.getLatency(Stage.SERVER_INVOKE).getSum());
+    }
+
+    @Test
+    void testMissingPointsMergeIntoNextStage() {
+        // 传输层未打点时，序列化和入队耗时并入写出阶段
+        CallTimeline client = new CallTimeline()
+                .markAt(Point.PROXY_ENTER, 100)
+                .markAt(Point.SENT, 700)
+                .markAt(Point.RECEIVED, 1_700);
+        StageHistograms stages = new StageHistograms();
+        stages.recordClient(client, null);
+
+        assertEquals(0, stages.getLatency(Stage.SERIALIZE).getCount());
+        assertEquals(600, stages.getLatency(Stage.WRITE).getSum());
+        assertEquals(1_000, stages.getLatency(Stage.NETWORK).getSum());
+        assertEquals(0, stages.getLatency(Stage.DESERIALIZE).getCount());
+    }
+
+    @Test
+    void testCurrentTimeline() {
+        CallTimeline.markCurrent(Point.SERIALIZED);
+        CallTimeline timeline = new CallTimeline();
+        CallTimeline.setCurrent(timeline);
+        try {
+            CallTimeline.markCurrent(Point.SERIALIZED);
+        } finally {
+            CallTimeline.setCurrent(null);
+        }
+        assertTrue(timeline.get(Point.SERIALIZED) > 0);
+        assertNull(CallTimeline.current());
+    }
+
+    @Test
+    void testPooledTimelineIsReusedPerThread() {
+        CallTimeline first = CallTimeline.acquire().mark(Point.PROXY_ENTER);
+        long callId = first.getCallId();
+        //同一线程上的嵌套调用拿到另一个实例
+        CallTimeline nested = CallTimeline.acquire();
+        assertNotSame(first, nested);
+        nested.release();
+        first.release();
+
+        CallTimeline second = CallTimeline.acquire();
+        assertSame(first, second);
+        assertEquals(0, second.get(Point.PROXY_ENTER));
+        //上一次调用迟到的写完成回调不影响本次调用
+        second.markIfCall(callId, Point.SENT);
+        assertEquals(0, second.get(Point.SENT));
+        second.markIfCall(second.getCallId(), Point.SENT);
+        assertTrue(second.get(Point.SENT) > 0);
+        second.release();
+    }
+}
@@ -0,0 +1,125 @@
+package com.wiqer.rpc.test;
+
+import com.wiqer.rpc.impl.trace.Span;
+import com.wiqer.rpc.impl.trace.TraceContext;
+import com.wiqer.rpc.impl.trace.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调用链跟踪测试
+ */
+public class TracerTest {
+
+    @AfterEach
+    void resetExporter() {
+        Tracer.setExporter(null);
+    }
+
+    @Test
+    void testTraceparentRoundTrip() {
+        TraceContext context = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+
+        assertNotNull(context);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getSpanId());
+        assertTrue(context.isSampled());
+        assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", context.toTraceparent());
+
+        byte[] header = context.toBytes();
+        assertEquals(TraceContext.BINARY_LENGTH, header.length);
+        assertEquals(context.toTraceparent(), TraceContext.fromBytes(header).toTraceparent());
+    }
+
+    @Test
+    void testInvalidHeader() {
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("garbage"));
+        assertNull(TraceContext.fromBytes(new byte[3]));
+    }
+
+    @Test
+    void testNoopByDefault() {
+        Span span = Tracer.startSpan(Span.CLIENT, "svc.get", (TraceContext) null);
+
+        assertSame(Span.NOOP, span);
+        assertSame(Span.NOOP, span.startChild(Span.SEND));
+        assertNull(span.header());
+        span.end();
+    }
+
+    @Test
+    void testServerContinuesClientTrace() {
+        List<Span> exported = new ArrayList<>();
+        Tracer.setExporter(exported::add);
+
+        Span client = Tracer.startSpan(Span.CLIENT, "svc.get", (TraceContext) null);
+        Span server = Tracer.startSpan(Span.SERVER, "get", client.header());
+        Span invoke = server.startChild(Span.INVOKE);
+        invoke.end();
+        server.end();
+        client.end();
+
+        assertEquals(3, exported.size());
+        String traceId = client.getContext().getTraceId();
+        assertEquals(traceId, server.getContext().getTraceId());
+        assertEquals(traceId, invoke.getContext().getTraceId());
+        assertEquals(client.getContext().getSpanIdValue(), server.getParentSpanId());
+        assertEquals(server.getContext().getSpanIdValue(), invoke.getParentSpanId());
+        assertEquals(0, client.getParentSpanId());
+    }
+
+    @Test
+    void testCurrentServerSpanParentsOutgoingCalls() {
+        List<Span> exported = new ArrayList<>();
+        Tracer.setExporter(exported::add);
+
+        Span server = Tracer.startSpan(Span.SERVER, "get", (TraceContext) null);
+        Span client;
+        try (Tracer.Scope ignored = server.makeCurrent()) {
+            assertSame(server, Tracer.currentSpan());
+            client = Tracer.startSpan(Span.CLIENT, "svc.load");
+        }
+        assertNull(Tracer.currentSpan());
+
+        assertEquals(server.getContext().getTraceId(), client.getContext().getTraceId());
+        assertEquals(server.getContext().getSpanIdValue(), client.getParentSpanId());
+        assertEquals(0, Tracer.startSpan(Span.CLIENT, "svc.load").getParentSpanId());
+    }
+
+    @Test
+    void testRetriesGroupedUnderOneCallSpan() {
+        List<Span> exported = Collections.synchronizedList(new ArrayList<>());
+        Tracer.setExporter(exported::add);
+        RetryPolicyTest.ScriptedProxy proxy = new RetryPolicyTest.ScriptedProxy(attempt -> {
+            if (attempt <= 2) {
+                throw new IOException("connection reset");
+            }
+            return "42";
+        }, true);
+
+        Span server = Tracer.startSpan(Span.SERVER, "get", (TraceContext) null);
+        try (Tracer.Scope ignored = server.makeCurrent()) {
+            assertEquals(42, proxy.service().query(1));
+        }
+
+        List<Span> calls = exported.stream().filter(s -> Span.CALL.equals(s.getName())).collect(Collectors.toList());
+        List<Span> attempts = exported.stream().filter(s -> Span.CLIENT.equals(s.getName())).collect(Collectors.toList());
+        assertEquals(1, calls.size());
+        assertEquals(3, attempts.size());
+        Span call = calls.get(0);
+        assertEquals(server.getContext().getSpanIdValue(), call.getParentSpanId());
+        for (Span attempt : attempts) {
+            assertEquals(call.getContext().getTraceId(), attempt.getContext().getTraceId());
+            assertEquals(call.getContext().getSpanIdValue(), attempt.getParentSpanId());
+        }
+    }
+}
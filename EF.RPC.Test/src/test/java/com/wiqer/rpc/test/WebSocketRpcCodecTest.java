@@ -0,0 +1,138 @@
+package com.wiqer.rpc.test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.serialize.compress.PayloadCompressor;
+import com.wiqer.rpc.websocketimpl.WebSocketRpcCodec;
+import com.wiqer.rpc.websocketimpl.WebSocketRpcServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebSocket二进制帧编解码测试
+ */
+public class WebSocketRpcCodecTest {
+
+    @Test
+    void testRequestRoundTrip() {
+        ByteBuf frame = WebSocketRpcCodec.encodeRequest(ByteBufAllocator.DEFAULT, "42", "calc", "加法", new Object[]{1, 2});
+        try {
+            WebSocketRpcServer.WebSocketRpcRequest request = WebSocketRpcCodec.decodeRequest(frame);
+            assertEquals("42", request.getRequestId());
+            assertEquals("calc", request.getServiceName());
+            assertEquals("加法", request.getMethodName());
+            assertArrayEquals(new Object[]{1, 2}, request.getParameters());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testStreamControlFrames() {
+        ByteBuf frame = WebSocketRpcCodec.encodeRequestN(ByteBufAllocator.DEFAULT, "7", 16);
+        try {
+            WebSocketRpcServer.WebSocketRpcRequest request = WebSocketRpcCodec.decodeRequest(frame);
+            assertEquals("7", request.getRequestId());
+            assertEquals(WebSocketRpcCodec.TYPE_REQUEST_N, request.getType());
+            assertEquals(16, request.getN());
+        } finally {
+            frame.release();
+        }
+        frame = WebSocketRpcCodec.encodeCancel(ByteBufAllocator.DEFAULT, "7");
+        try {
+            assertEquals(WebSocketRpcCodec.TYPE_CANCEL, WebSocketRpcCodec.decodeRequest(frame).getType());
+        } finally {
+            frame.release();
+        }
+        JSONObject next = JSON.parseObject(WebSocketRpcCodec.encodeTextStreamNext("7", "[1,2]"));
+        assertEquals("next", next.getString("stream"));
+        assertEquals(2, next.getJSONArray("result").size());
+    }
+
+    @Test
+    void testResponseCarriesResultOnce() {
+        ByteBuf frame = WebSocketRpcCodec.encodeResponse(ByteBufAllocator.DEFAULT, "42", true, "{\"sum\":3}");
+        try {
+            assertEquals(WebSocketRpcCodec.VERSION, frame.readByte());
+            assertEquals(WebSocketRpcCodec.STATUS_OK, frame.readByte());
+            int length = frame.readUnsignedShort();
+            assertEquals("42", frame.readCharSequence(length, CharsetUtil.UTF_8).toString());
+            assertEquals("{\"sum\":3}", frame.toString(CharsetUtil.UTF_8));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testCompressedResultIsMarkedAndRestored() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            json.append(i == 0 ? "" : ",").append("\"efrpc\"");
+        }
+        String result = json.append(']').toString();
+        byte[] payload = new PayloadCompressor().encode(result.getBytes(CharsetUtil.UTF_8));
+        assertTrue(PayloadCompressor.isCompressed(payload));
+        ByteBuf frame = WebSocketRpcCodec.encodeResponse(ByteBufAllocator.DEFAULT, "42", WebSocketRpcCodec.STATUS_OK, payload);
+        try {
+            frame.skipBytes(2);
+            frame.skipBytes(frame.readUnsignedShort());
+            assertEquals((byte) 0xC1, frame.getByte(frame.readerIndex()));
+            assertEquals(result, new String(WebSocketRpcCodec.readPayload(frame), CharsetUtil.UTF_8));
+        } finally {
+            frame.release();
+        }
+        //未压缩的JSON原样返回
+        frame = WebSocketRpcCodec.encodeResponse(ByteBufAllocator.DEFAULT, "42", true, "{\"sum\":3}");
+        try {
+            frame.skipBytes(2);
+            frame.skipBytes(frame.readUnsignedShort());
+            assertEquals("{\"sum\":3}", new String(WebSocketRpcCodec.readPayload(frame), CharsetUtil.UTF_8));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testErrorResponseCarriesErrorCode() {
+        ByteBuf frame = WebSocketRpcCodec.encodeErrorResponse(ByteBufAllocator.DEFAULT, "42",
+                RpcException.ErrorCodes.RATE_LIMITED, "超出限流阈值");
+        try {
+            assertEquals(WebSocketRpcCodec.VERSION, frame.readByte());
+            assertEquals(WebSocketRpcCodec.STATUS_ERROR, frame.readByte());
+            int length = frame.readUnsignedShort();
+            assertEquals("42", frame.readCharSequence(length, CharsetUtil.UTF_8).toString());
+            RpcException error = WebSocketRpcCodec.decodeError(frame);
+            assertEquals(RpcException.ErrorCodes.RATE_LIMITED, error.getErrorCode());
+            assertEquals("超出限流阈值", error.getMessage());
+        } finally {
+            frame.release();
+        }
+        JSONObject text = JSON.parseObject(WebSocketRpcCodec.encodeTextError("42", RpcException.ErrorCodes.RATE_LIMITED, "超出限流阈值"));
+        assertFalse(text.getBooleanValue("success"));
+        assertEquals(RpcException.ErrorCodes.RATE_LIMITED, text.getString("errorCode"));
+        assertEquals("超出限流阈值", text.getString("error"));
+    }
+
+    @Test
+    void testInvocationTargetExceptionWithoutMessageUsesCauseType() {
+        RpcException error = RpcException.of(new InvocationTargetException(new NullPointerException()));
+        assertEquals(RpcException.ErrorCodes.INVOCATION_ERROR, error.getErrorCode());
+        assertEquals(NullPointerException.class.getName(), error.getMessage());
+    }
+
+    @Test
+    void testTextResponseEmbedsResultJson() {
+        JSONObject response = JSON.parseObject(WebSocketRpcCodec.encodeTextResponse("42", "{\"sum\":3}"));
+        assertEquals("42", response.getString("requestId"));
+        assertTrue(response.getBooleanValue("success"));
+        assertEquals(3, response.getJSONObject("result").getIntValue("sum"));
+        assertNull(JSON.parseObject(WebSocketRpcCodec.encodeTextResponse("42", null)).get("result"));
+    }
+}
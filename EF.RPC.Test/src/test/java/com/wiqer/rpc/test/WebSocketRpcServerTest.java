@@ -0,0 +1,263 @@
+package com.wiqer.rpc.test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.stream.StreamObserver;
+import com.wiqer.rpc.websocketimpl.WebSocketRpcServer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebSocket服务端流式调用的生命周期、连接级流数上限和流式线程池上限测试
+ */
+public class WebSocketRpcServerTest {
+
+    public static class TickService {
+        public void ticks(int count, StreamObserver<Integer> observer) {
+            for (int i = 0; i < count; i++) {
+                observer.onNext(i);
+            }
+            observer.onCompleted();
+        }
+
+        /**
+         * 把observer交给其他线程推送，方法立即返回
+         */
+        public void ticksLater(int count, StreamObserver<Integer> observer) {
+            Thread pusher = new Thread(() -> ticks(count, observer));
+            pusher.setDaemon(true);
+            pusher.start();
+        }
+
+        /**
+         * 既不推送也不结束流就返回
+         */
+        public void hang(int count, StreamObserver<Integer> observer) {
+        }
+    }
+
+    private final EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+    private WebSocketRpcServer server;
+
+    @AfterEach
+    void tearDown() {
+        clientGroup.shutdownGracefully();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testStreamsPerConnectionAreCapped() throws Exception {
+        int port = startServer(s -> s.setMaxStreamsPerConnection(2));
+        Client client = connect(port);
+
+        client.send(stream("s1"));
+        client.send(stream("s2"));
+        client.send(stream("s3"));
+        JSONObject rejected = client.next();
+        assertEquals("s3", rejected.getString("requestId"));
+        assertEquals(RpcException.ErrorCodes.SERVER_BUSY, rejected.getString("errorCode"));
+
+        //取消一个流后腾出位置
+        client.send(control("s1", "cancel", 0));
+        client.send(stream("s4"));
+        client.send(control("s4", "request", 1));
+        JSONObject next = client.next();
+        assertEquals("s4", next.getString("requestId"));
+        assertEquals("next", next.getString("stream"));
+        assertEquals(0, next.getIntValue("result"));
+    }
+
+    @Test
+    void testStreamPoolIsBounded() throws Exception {
+        int port = startServer(s -> {
+            s.setMaxStreamsPerConnection(0);
+            s.setMaxStreamThreads(1);
+        });
+        Client client = connect(port);
+
+        client.send(stream("s1"));
+        client.send(stream("s2"));
+        JSONObject rejected = client.next();
+        assertEquals("s2", rejected.getString("requestId"));
+        assertEquals(RpcException.ErrorCodes.SERVER_BUSY, rejected.getString("errorCode"));
+
+        //第一个流仍可正常推送并结束
+        client.send(control("s1", "request", Long.MAX_VALUE));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, client.next().getIntValue("result"));
+        }
+        assertEquals("complete", client.next().getString("stream"));
+    }
+
+    @Test
+    void testStreamStaysOpenAfterMethodReturns() throws Exception {
+        int port = startServer(s -> {
+        });
+        Client client = connect(port);
+
+        client.send(stream("s1", "ticksLater"));
+        Thread.sleep(200);
+        client.send(control("s1", "request", Long.MAX_VALUE));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, client.next().getIntValue("result"));
+        }
+        assertEquals("complete", client.next().getString("stream"));
+    }
+
+    @Test
+    void testNeverCompletingStreamTimesOutAndFreesSlot() throws Exception {
+        int port = startServer(s -> {
+            s.setMaxStreamsPerConnection(1);
+            s.setStreamIdleTimeout(300);
+        });
+        Client client = connect(port);
+
+        client.send(stream("h1", "hang"));
+        JSONObject timeout = client.next();
+        assertEquals("h1", timeout.getString("requestId"));
+        assertEquals(RpcException.ErrorCodes.TIMEOUT, timeout.getString("errorCode"));
+
+        //空闲超时后连接上的名额释放
+        client.send(stream("s2"));
+        client.send(control("s2", "request", 1));
+        JSONObject next = client.next();
+        assertEquals("s2", next.getString("requestId"));
+        assertEquals(0, next.getIntValue("result"));
+    }
+
+    private int startServer(Consumer<WebSocketRpcServer> config) throws Exception {
+        int port = freePort();
+        server = new WebSocketRpcServer("127.0.0.1:" + port);
+        server.registerService("tick", new TickService());
+        config.accept(server);
+        server.start();
+        return port;
+    }
+
+    private Client connect(int port) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                return Client.open(clientGroup, port);
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static String stream(String requestId) {
+        return stream(requestId, "ticks");
+    }
+
+    private static String stream(String requestId, String methodName) {
+        JSONObject request = new JSONObject();
+        request.put("requestId", requestId);
+        request.put("serviceName", "tick");
+        request.put("methodName", methodName);
+        request.put("parameters", new Object[]{3});
+        return request.toJSONString();
+    }
+
+    private static String control(String requestId, String type, long n) {
+        JSONObject request = new JSONObject();
+        request.put("requestId", requestId);
+        request.put("type", type);
+        request.put("n", n);
+        return request.toJSONString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class Client {
+        private final Channel channel;
+        private final BlockingQueue<String> frames;
+
+        private Client(Channel channel, BlockingQueue<String> frames) {
+            this.channel = channel;
+            this.frames = frames;
+        }
+
+        static Client open(EventLoopGroup group, int port) throws Exception {
+            BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            CompletableFuture<Void> handshake = new CompletableFuture<>();
+            Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(65536),
+                                    new WebSocketClientProtocolHandler(URI.create("ws://127.0.0.1:" + port + "/ws"),
+                                            WebSocketVersion.V13,
+                                            null, false, EmptyHttpHeaders.INSTANCE, 65536),
+                                    new SimpleChannelInboundHandler<TextWebSocketFrame>() {
+                                        @Override
+                                        protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
+                                            frames.add(frame.text());
+                                        }
+
+                                        @Override
+                                        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                            if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+                                                handshake.complete(null);
+                                            }
+                                        }
+
+                                        @Override
+                                        public void channelInactive(ChannelHandlerContext ctx) {
+                                            handshake.completeExceptionally(new CancellationException("连接已断开"));
+                                        }
+                                    });
+                        }
+                    });
+            Channel channel = bootstrap.connect("127.0.0.1", port).sync().channel();
+            handshake.get(5, TimeUnit.SECONDS);
+            return new Client(channel, frames);
+        }
+
+        void send(String text) {
+            channel.writeAndFlush(new TextWebSocketFrame(text));
+        }
+
+        JSONObject next() throws InterruptedException {
+            String text = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(text, "等待响应超时");
+            return JSON.parseObject(text);
+        }
+    }
+}
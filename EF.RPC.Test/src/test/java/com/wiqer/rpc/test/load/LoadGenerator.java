@@ -0,0 +1,124 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.monitor.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环压测：N个线程按固定间隔的预定时间发起调用，发起时间不受响应快慢影响。
+ * 调用阻塞导致后续请求晚发时，耗时从预定时间而不是实际发出时间算起（协调遗漏修正，同wrk2），
+ * 否则一次长停顿只会表现为一个慢样本。另外记录从实际发出算起的服务耗时作对照
+ */
+public class LoadGenerator {
+
+    /**
+     * 距预定时间不足该值时自旋等待，避免park的唤醒误差计入耗时
+     */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int threads;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    /**
+     * @param threads  客户端线程数，每个线程独占一个客户端
+     * @param rate     总目标速率（次/秒），均分到各线程
+     * @param warmup   预热时长，期间的调用不计入结果
+     * @param duration 统计时长
+     */
+    public LoadGenerator(int threads, double rate, long warmup, long duration, TimeUnit unit) {
+        if (threads <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("threads和rate必须大于0");
+        }
+        this.threads = threads;
+        this.rate = rate;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.durationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * @param clients 每个压测线程调用一次，返回该线程使用的调用
+     */
+    public LoadReport run(String name, ClientFactory clients) throws Exception {
+        List<Callable<?>> calls = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            calls.add(clients.newClient());
+        }
+
+        LatencyHistogram corrected = new LatencyHistogram();
+        LatencyHistogram service = new LatencyHistogram();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        long interval = Math.max(1, Math.round(threads * 1e9 / rate));
+        long begin = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long measureFrom = begin + warmupNanos;
+        long end = measureFrom + durationNanos;
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            Callable<?> call = calls.get(i);
+            //各线程错开发起时间，合起来是均匀的请求流
+            long first = begin + interval * i / threads;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (long intended = first; intended < end; intended += interval) {
+                        waitUntil(intended);
+                        long sent = System.nanoTime();
+                        boolean ok;
+                        try {
+                            call.call();
+                            ok = true;
+                        } catch (Throwable t) {
+                            firstError.compareAndSet(null, t);
+                            ok = false;
+                        }
+                        long finished = System.nanoTime();
+                        if (intended < measureFrom) {
+                            continue;
+                        }
+                        if (ok) {
+                            corrected.record(finished - intended);
+                            service.record(finished - sent);
+                            completed.increment();
+                        } else {
+                            errors.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "efrpc-load-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        long elapsed = Math.max(durationNanos, System.nanoTime() - measureFrom);
+        return new LoadReport(name, threads, rate, elapsed, completed.sum(), errors.sum(), firstError.get(),
+                corrected.snapshot(), service.snapshot());
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+        }
+    }
+
+    /**
+     * 为每个压测线程创建独占的调用
+     */
+    public interface ClientFactory {
+        Callable<?> newClient() throws Exception;
+    }
+}
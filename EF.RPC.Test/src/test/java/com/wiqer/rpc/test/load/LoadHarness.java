@@ -0,0 +1,79 @@
+package com.wiqer.rpc.test.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不依赖外部broker的端到端压测，各传输使用相同的线程数、目标速率和时长，结果可直接对比
+ * 用法：LoadHarness [transports=local,local-copy,loopback,shm,websocket,mqtt,mqtt-async] [threads=4] [rate=2000] [warmup=5] [duration=30] [qos=1]
+ * 速率为所有线程合计的次/秒，时长单位为秒
+ * Netty和RabbitMQ的回复链路接通后，实现LoadTransport即可加入对比
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "2000"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "5"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+        int qos = Integer.parseInt(options.getOrDefault("qos", "1"));
+
+        List<LoadReport> reports = new ArrayList<>();
+        for (String name : options.getOrDefault("transports", "local,loopback,shm,websocket,mqtt,mqtt-async").split(",")) {
+            try (LoadTransport transport = create(name.trim(), threads, qos)) {
+                transport.start();
+                LoadGenerator generator = new LoadGenerator(threads, rate, warmup, duration, TimeUnit.SECONDS);
+                LoadReport report = generator.run(transport.getName(), () -> {
+                    LoadService client = transport.newClient();
+                    return () -> {
+                        int a = ThreadLocalRandom.current().nextInt(1000);
+                        int b = ThreadLocalRandom.current().nextInt(1000);
+                        if (client.add(a, b) != a + b) {
+                            throw new IllegalStateException("返回值错误");
+                        }
+                        return null;
+                    };
+                });
+                reports.add(report);
+                if (report.getFirstError() != null) {
+                    System.out.println(report.getName() + " 首个错误: " + report.getFirstError());
+                }
+            }
+        }
+
+        System.out.println(LoadReport.header());
+        reports.forEach(System.out::println);
+    }
+
+    private static LoadTransport create(String name, int threads, int qos) {
+        switch (name) {
+            case "local":
+                return new LocalTransport(false);
+            case "local-copy":
+                return new LocalTransport(true);
+            case "loopback":
+                return new LoopbackTransport(threads);
+            case "shm":
+                return new ShmTransport();
+            case "websocket":
+                return new WebSocketTransport();
+            case "mqtt":
+                return new MqttLoopbackTransport(qos, false);
+            case "mqtt-async":
+                return new MqttLoopbackTransport(qos, true);
+            default:
+                throw new IllegalArgumentException("未知的传输: " + name);
+        }
+    }
+}
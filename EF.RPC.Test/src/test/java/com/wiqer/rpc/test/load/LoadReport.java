@@ -0,0 +1,76 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.monitor.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次压测的结果，耗时单位为纳秒
+ */
+public class LoadReport {
+
+    private final String name;
+    private final int threads;
+    private final double targetRate;
+    private final long elapsedNanos;
+    private final long completed;
+    private final long errors;
+    private final Throwable firstError;
+    private final LatencyHistogram.Snapshot latency;
+    private final LatencyHistogram.Snapshot serviceTime;
+
+    LoadReport(String name, int threads, double targetRate, long elapsedNanos, long completed, long errors,
+               Throwable firstError, LatencyHistogram.Snapshot latency, LatencyHistogram.Snapshot serviceTime) {
+        this.name = name;
+        this.threads = threads;
+        this.targetRate = targetRate;
+        this.elapsedNanos = elapsedNanos;
+        this.completed = completed;
+        this.errors = errors;
+        this.firstError = firstError;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    public String getName() { return name; }
+    public int getThreads() { return threads; }
+    public double getTargetRate() { return targetRate; }
+    public long getCompleted() { return completed; }
+    public long getErrors() { return errors; }
+    public Throwable getFirstError() { return firstError; }
+
+    /**
+     * 从预定发起时间算起的耗时（已修正协调遗漏）
+     */
+    public LatencyHistogram.Snapshot getLatency() { return latency; }
+
+    /**
+     * 从实际发出算起的耗时，未修正，仅供对照
+     */
+    public LatencyHistogram.Snapshot getServiceTime() { return serviceTime; }
+
+    /**
+     * 成功调用的吞吐量（次/秒）
+     */
+    public double getThroughput() {
+        return completed * 1e9 / elapsedNanos;
+    }
+
+    public static String header() {
+        return String.format("%-12s %7s %10s %10s %8s %10s %10s %10s %10s %10s %10s",
+                "transport", "threads", "target/s", "actual/s", "errors",
+                "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)", "svc99(us)");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s %7d %10.0f %10.0f %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f",
+                name, threads, targetRate, getThroughput(), errors,
+                micros(latency.getP50()), micros(latency.getP90()), micros(latency.getP99()),
+                micros(latency.getP999()), micros(latency.getMax()), micros(serviceTime.getP99()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,8 @@
+package com.wiqer.rpc.test.load;
+
+/**
+ * 压测用的服务接口，各传输共用
+ */
+public interface LoadService {
+    int add(int a, int b);
+}
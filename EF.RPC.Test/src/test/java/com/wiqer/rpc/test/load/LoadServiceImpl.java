@@ -0,0 +1,12 @@
+package com.wiqer.rpc.test.load;
+
+/**
+ * 压测服务实现，不含业务耗时，结果只反映框架和传输开销
+ */
+public class LoadServiceImpl implements LoadService {
+
+    @Override
+    public int add(int a, int b) {
+        return a + b;
+    }
+}
@@ -0,0 +1,24 @@
+package com.wiqer.rpc.test.load;
+
+import java.io.IOException;
+
+/**
+ * 压测传输：在进程内启动服务端（及所需的broker），为每个压测线程创建客户端代理
+ */
+public interface LoadTransport extends AutoCloseable {
+
+    String getName();
+
+    void start() throws Exception;
+
+    /**
+     * 每个压测线程调用一次，返回该线程独占的客户端代理
+     */
+    LoadService newClient() throws Exception;
+
+    /**
+     * 不声明InterruptedException，try-with-resources中使用时不会掩盖中断
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,41 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.local.LocalRpcClient;
+import com.wiqer.rpc.impl.local.LocalServiceRegistry;
+
+/**
+ * 同进程传输：服务注册到LocalServiceRegistry，代理直接调用实现
+ */
+public class LocalTransport implements LoadTransport {
+
+    private static final String VERSION = "v1";
+
+    private final boolean copyArguments;
+    private final LoadServiceImpl bean = new LoadServiceImpl();
+    private LocalRpcClient client;
+
+    public LocalTransport(boolean copyArguments) {
+        this.copyArguments = copyArguments;
+    }
+
+    @Override
+    public String getName() {
+        return copyArguments ? "local-copy" : "local";
+    }
+
+    @Override
+    public void start() {
+        LocalServiceRegistry.register(LoadService.class.getName(), VERSION, bean);
+        client = new LocalRpcClient(copyArguments);
+    }
+
+    @Override
+    public LoadService newClient() {
+        return client.createService(LoadService.class, VERSION);
+    }
+
+    @Override
+    public void close() {
+        LocalServiceRegistry.unregister(bean);
+    }
+}
@@ -0,0 +1,115 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.core.RpcServerHandler;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.serialize.JsonSerializer;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 进程内回环传输，代替broker：客户端走ObjectProxy，请求按Netty/RabbitMQ代理的格式序列化成字符串，
+ * 交给服务端线程池中的RpcServerHandler处理，回复经ObjectProxy反序列化。
+ * 没有网络和broker，结果是代理、序列化、线程切换和服务端分发的开销，作为各传输的下限
+ */
+public class LoopbackTransport implements LoadTransport {
+
+    private static final String VERSION = "v1";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final int serverThreads;
+    private final JsonSerializer serializer = new JsonSerializer();
+    private final RpcServerHandler handler = new RpcServerHandler(serializer);
+    private final LoadServiceImpl bean = new LoadServiceImpl();
+    private ExecutorService workers;
+
+    /**
+     * @param serverThreads 服务端处理线程数，与NettyRpcServer的线程池对应
+     */
+    public LoopbackTransport(int serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+
+    @Override
+    public void start() {
+        workers = Executors.newFixedThreadPool(serverThreads, r -> {
+            Thread t = new Thread(r, "efrpc-loopback-server");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public LoadService newClient() {
+        return (LoadService) Proxy.newProxyInstance(LoadService.class.getClassLoader(), new Class[]{LoadService.class},
+                new LoopbackObjectProxy());
+    }
+
+    @Override
+    public void close() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * sendMsg内把请求交给服务端线程池并等待回复，回复直接写回请求消息
+     */
+    private class LoopbackObjectProxy extends ObjectProxy {
+
+        LoopbackObjectProxy() {
+            super(LoadService.class, VERSION);
+        }
+
+        @Override
+        protected boolean sendMsg(Object proxy, Method method, SuperMsgMulti superMsgMulti, String markName) throws IOException {
+            String request = serializer.SerializeString(superMsgMulti);
+            Future<String> reply = workers.submit(() -> {
+                try {
+                    return handler.handle(request, bean, method);
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            });
+            try {
+                superMsgMulti.setResponse(reply.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            } catch (TimeoutException e) {
+                reply.cancel(true);
+                throw new RpcException(RpcException.ErrorCodes.TIMEOUT,
+                        "等待响应超时", method.getDeclaringClass().getName(), method.getName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待回复时被中断", e);
+            } catch (ExecutionException e) {
+                throw RpcException.of(e.getCause());
+            }
+            return true;
+        }
+
+        @Override
+        protected boolean receivesInSendMsg() {
+            return true;
+        }
+
+        @Override
+        protected boolean correlatesResponses() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.mqttimpl.MQTTOptions;
+import com.wiqer.rpc.impl.mqttimpl.consumerimpl.MQTTMsgConsumerMap;
+import com.wiqer.rpc.impl.mqttimpl.producerimpl.MQTTMsgProducerMap;
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.Properties;
+
+/**
+ * 在进程内启动Moquette broker（仅内存存储，监听127.0.0.1的随机端口），
+ * 服务端和客户端走真实的MQTTMsgConsumerMap/MQTTMsgProducerMap。
+ * 生产者按关联ID匹配响应，所有压测线程共用一个生产者，与实际部署中一个进程一个客户端连接一致
+ */
+public class MqttLoopbackTransport implements LoadTransport {
+
+    private final int qos;
+    private final boolean asyncClient;
+    private Server broker;
+    private MQTTMsgConsumerMap consumer;
+    private MQTTMsgProducerMap producer;
+    private String brokerUrl;
+
+    public MqttLoopbackTransport(int qos, boolean asyncClient) {
+        this.qos = qos;
+        this.asyncClient = asyncClient;
+    }
+
+    @Override
+    public String getName() {
+        return "mqtt-qos" + qos + (asyncClient ? "-async" : "");
+    }
+
+    @Override
+    public void start() throws Exception {
+        int port = freePort();
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, "127.0.0.1");
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(port));
+        properties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        //不设置存储路径时只使用内存
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.NETTY_TCP_NODELAY_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true");
+        broker = new Server();
+        broker.startServer(new MemoryConfig(properties));
+        brokerUrl = "tcp://127.0.0.1:" + port;
+
+        consumer = new MQTTMsgConsumerMap();
+        consumer.setOptions(options("efrpc-load-server"));
+        consumer.GetMathsInfo(LoadServiceImpl.class);
+
+        producer = new MQTTMsgProducerMap().setOptions(options("efrpc-load-client"));
+        producer.GetMathsInfo(LoadService.class);
+    }
+
+    @Override
+    public LoadService newClient() {
+        MQTTMsgProducerMap producer = this.producer;
+        return (LoadService) Proxy.newProxyInstance(LoadService.class.getClassLoader(), new Class[]{LoadService.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(producer, args);
+                    }
+                    return producer.invoke(proxy, method, args);
+                });
+    }
+
+    private MQTTOptions options(String clientId) {
+        MQTTOptions options = new MQTTOptions();
+        options.setBrokerUrl(brokerUrl);
+        options.setClientId(clientId);
+        options.setQos(qos);
+        options.setAsyncClient(asyncClient);
+        options.setCleanSession(true);
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (producer != null) {
+            producer.close();
+        }
+        if (consumer != null) {
+            consumer.close();
+        }
+        if (broker != null) {
+            broker.stopServer();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.shm.ShmRpcClient;
+import com.wiqer.rpc.impl.shm.ShmRpcServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 共享内存传输：服务端和客户端在同一进程中，但请求和响应都经过映射文件中的环形缓冲区和序列化，
+ * 与跨进程部署的差别只在于没有跨进程的缓存一致性开销
+ */
+public class ShmTransport implements LoadTransport {
+
+    private static final String VERSION = "v1";
+
+    private Path directory;
+    private ShmRpcServer server;
+    private ShmRpcClient client;
+
+    @Override
+    public String getName() {
+        return "shm";
+    }
+
+    @Override
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("efrpc-shm");
+        server = new ShmRpcServer(directory.toString());
+        server.addService(LoadService.class.getName(), VERSION, new LoadServiceImpl());
+        server.start();
+        client = new ShmRpcClient(directory.toString());
+    }
+
+    @Override
+    public LoadService newClient() {
+        return client.createService(LoadService.class, VERSION);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        if (directory != null) {
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.wiqer.rpc.test.load;
+
+import com.wiqer.rpc.impl.core.RpcException;
+import com.wiqer.rpc.impl.proxy.ObjectProxy;
+import com.wiqer.rpc.serialize.SuperMsgMulti;
+import com.wiqer.rpc.websocketimpl.WebSocketRpcCodec;
+import com.wiqer.rpc.websocketimpl.WebSocketRpcServer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在进程内启动WebSocketRpcServer（监听127.0.0.1的随机端口），客户端走ObjectProxy和二进制帧，
+ * 按requestId匹配响应；所有压测线程共用一个WebSocket连接，与浏览器或网关的单连接多路复用一致
+ */
+public class WebSocketTransport implements LoadTransport {
+
+    private static final String SERVICE = "load";
+    private static final String VERSION = "v1";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private WebSocketRpcServer server;
+    private EventLoopGroup group;
+    private Channel channel;
+
+    @Override
+    public String getName() {
+        return "websocket";
+    }
+
+    @Override
+    public void start() throws Exception {
+        int port = freePort();
+        server = new WebSocketRpcServer("127.0.0.1:" + port);
+        server.registerService(SERVICE, new LoadServiceImpl());
+        server.start();
+        group = new NioEventLoopGroup(1);
+        //服务端在后台线程中绑定端口，连接失败时重试
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (true) {
+            try {
+                channel = connect(port);
+                return;
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private Channel connect(int port) throws Exception {
+        CompletableFuture<Void> handshake = new CompletableFuture<>();
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(65536),
+                                new WebSocketClientProtocolHandler(URI.create("ws://127.0.0.1:" + port + "/ws"),
+                                        WebSocketVersion.V13, null, false, EmptyHttpHeaders.INSTANCE, 65536),
+                                new SimpleChannelInboundHandler<BinaryWebSocketFrame>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, BinaryWebSocketFrame frame) {
+                                        onResponse(frame.content());
+                                    }
+
+                                    @Override
+                                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                        if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+                                            handshake.complete(null);
+                                        }
+                                    }
+
+                                    @Override
+                                    public void channelInactive(ChannelHandlerContext ctx) {
+                                        RpcException closed = new RpcException(RpcException.ErrorCodes.NETWORK_ERROR, "连接已断开");
+                                        handshake.completeExceptionally(closed);
+                                        pending.values().forEach(reply -> reply.completeExceptionally(closed));
+                                    }
+                                });
+                    }
+                });
+        Channel connected = bootstrap.connect("127.0.0.1", port).sync().channel();
+        try {
+            handshake.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            connected.close();
+            throw e;
+        }
+        return connected;
+    }
+
+    /**
+     * 响应帧：版本 状态 requestId 结果或错误，格式见WebSocketRpcCodec
+     */
+    private void onResponse(ByteBuf in) {
+        in.skipBytes(1);
+        byte status = in.readByte();
+        String requestId = in.readCharSequence(in.readUnsignedShort(), CharsetUtil.UTF_8).toString();
+        CompletableFuture<String> reply = pending.remove(requestId);
+        if (reply == null) {
+            return;
+        }
+        if (status == WebSocketRpcCodec.STATUS_ERROR) {
+            reply.completeExceptionally(WebSocketRpcCodec.decodeError(in));
+        } else {
+            reply.complete(new String(WebSocketRpcCodec.readPayload(in), CharsetUtil.UTF_8));
+        }
+    }
+
+    @Override
+    public LoadService newClient() {
+        return (LoadService) Proxy.newProxyInstance(LoadService.class.getClassLoader(), new Class[]{LoadService.class},
+                new WebSocketObjectProxy());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().awaitUninterruptibly();
+        }
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * sendMsg内发送二进制请求帧并等待同一requestId的响应，结果直接写回请求消息
+     */
+    private class WebSocketObjectProxy extends ObjectProxy {
+
+        WebSocketObjectProxy() {
+            super(LoadService.class, VERSION);
+        }
+
+        @Override
+        protected boolean sendMsg(Object proxy, Method method, SuperMsgMulti superMsgMulti, String markName) throws IOException {
+            String requestId = Long.toString(requestIds.incrementAndGet());
+            CompletableFuture<String> reply = new CompletableFuture<>();
+            pending.put(requestId, reply);
+            channel.writeAndFlush(new BinaryWebSocketFrame(WebSocketRpcCodec.encodeRequest(
+                    channel.alloc(), requestId, SERVICE, method.getName(), superMsgMulti.msg)));
+            try {
+                superMsgMulti.setResponse(reply.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            } catch (TimeoutException e) {
+                throw new RpcException(RpcException.ErrorCodes.TIMEOUT,
+                        "等待响应超时", method.getDeclaringClass().getName(), method.getName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待响应时被中断", e);
+            } catch (ExecutionException e) {
+                throw RpcException.of(e.getCause());
+            } finally {
+                pending.remove(requestId);
+            }
+            return true;
+        }
+
+        @Override
+        protected boolean receivesInSendMsg() {
+            return true;
+        }
+
+        @Override
+        protected boolean correlatesResponses() {
+            return true;
+        }
+    }
+}